@@ -0,0 +1,119 @@
+package com.shop.backend.benchmarks;
+
+import com.shop.backend.async.ServiceExecutor;
+import com.shop.backend.metrics.MetricsRegistry;
+import com.shop.backend.models.Cart;
+import com.shop.backend.models.Order;
+import com.shop.backend.models.Product;
+import com.shop.backend.services.core.ConcurrentCartService;
+import com.shop.backend.services.core.IndexedOrderService;
+import com.shop.backend.services.core.IndexedProductService;
+import com.shop.backend.services.core.stock.StockReservationEngine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Load test of the synchronous and asynchronous execution modes
+ * Many caller threads, standing in for request threads, go through the
+ * asynchronous service variants the controllers use. In sync mode the
+ * ServiceExecutor runs each call on the caller; in async mode calls queue
+ * for its bounded pool. Sample time mode reports throughput together with
+ * the p99 and p99.9 latency of each mode.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@Threads(64)
+public class AsyncModeBenchmark {
+
+    @Param({"sync", "async"})
+    public String mode;
+
+    private static final int CATALOG_SIZE = 10_000;
+    private static final int ITEMS_PER_ORDER = 3;
+    // Room for every caller thread, so the benchmark measures queueing rather than rejection
+    private static final int QUEUE_SIZE = 1024;
+
+    private List<Product> products;
+    private StockReservationEngine stockEngine;
+    private IndexedProductService productService;
+    private ConcurrentCartService cartService;
+    private IndexedOrderService orderService;
+    private ServiceExecutor executor;
+
+    private final AtomicInteger nextUser = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        products = BenchmarkData.products(CATALOG_SIZE, BenchmarkData.UNLIMITED_STOCK);
+        stockEngine = new StockReservationEngine();
+        productService = BenchmarkData.productService(stockEngine, products);
+        executor = new ServiceExecutor(new MetricsRegistry(), "async".equals(mode), 0, QUEUE_SIZE);
+    }
+
+    @Setup(Level.Iteration)
+    public void setUpOrders() {
+        cartService = BenchmarkData.cartService(productService);
+        orderService = BenchmarkData.orderService(cartService, productService, stockEngine);
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDownOrders() {
+        orderService.shutdown();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        executor.shutdown();
+        stockEngine.shutdown();
+    }
+
+    /**
+     * Per-thread shopper, so carts of different threads never contend
+     */
+    @State(Scope.Thread)
+    public static class Shopper {
+        String userId;
+
+        @Setup(Level.Trial)
+        public void setUp(AsyncModeBenchmark benchmark) {
+            userId = "shopper-" + benchmark.nextUser.incrementAndGet();
+        }
+    }
+
+    @Benchmark
+    public Cart addToCart(Shopper shopper) {
+        String productId = products.get(ThreadLocalRandom.current().nextInt(CATALOG_SIZE)).getId();
+        return cartService.addToCartAsync(shopper.userId, productId, 1, executor).join();
+    }
+
+    @Benchmark
+    public Order checkout(Shopper shopper) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < ITEMS_PER_ORDER; i++) {
+            String productId = products.get(random.nextInt(CATALOG_SIZE)).getId();
+            cartService.addToCartAsync(shopper.userId, productId, 1, executor).join();
+        }
+        return orderService.createOrderFromCartAsync(shopper.userId, executor).join();
+    }
+}
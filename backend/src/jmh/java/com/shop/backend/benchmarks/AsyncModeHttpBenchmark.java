@@ -0,0 +1,182 @@
+package com.shop.backend.benchmarks;
+
+import com.shop.backend.BackendApplication;
+import com.shop.backend.models.Product;
+import com.shop.backend.services.core.IndexedProductService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * HTTP load test of the synchronous and asynchronous execution modes
+ * Starts the whole application on an ephemeral port, once per mode, and
+ * drives it over keep-alive connections from many client threads, so unlike
+ * AsyncModeBenchmark every request goes through Tomcat, the controllers and
+ * the metrics interceptor. The server's request threads are fewer than the
+ * clients, so in sync mode writes hold them while they run and in async mode
+ * they are handed back at once. The mixed group measures reads while
+ * writers keep the server busy. 503 responses count as completed requests
+ * and are reported after each iteration.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@Threads(64)
+public class AsyncModeHttpBenchmark {
+
+    @Param({"sync", "async"})
+    public String mode;
+
+    // Tomcat request threads
+    @Param({"16"})
+    public int serverThreads;
+
+    private static final int CATALOG_SIZE = 10_000;
+    private static final int ITEMS_PER_ORDER = 3;
+    private static final Duration TIMEOUT = Duration.ofSeconds(30);
+
+    private List<Product> products;
+    private ConfigurableApplicationContext context;
+    private HttpClient client;
+    private String baseUrl;
+
+    private final AtomicInteger nextUser = new AtomicInteger();
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new SpringApplicationBuilder(BackendApplication.class)
+                .web(WebApplicationType.SERVLET)
+                .properties(
+                        "server.port=0",
+                        "server.tomcat.threads.max=" + serverThreads,
+                        "server.tomcat.threads.min-spare=" + serverThreads,
+                        "shop.async.enabled=" + "async".equals(mode),
+                        "shop.storage.enabled=false",
+                        "spring.main.banner-mode=off",
+                        "logging.level.root=WARN")
+                .run();
+        products = BenchmarkData.products(CATALOG_SIZE, BenchmarkData.UNLIMITED_STOCK);
+        IndexedProductService productService = context.getBean(IndexedProductService.class);
+        for (Product product : products) {
+            productService.createProduct(product);
+        }
+        int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+        baseUrl = "http://localhost:" + port;
+        client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(TIMEOUT)
+                .build();
+    }
+
+    @TearDown(Level.Iteration)
+    public void report() {
+        System.out.printf("%n%d requests, %d answered 503%n", requests.sumThenReset(), rejected.sumThenReset());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    /**
+     * Per-thread shopper with a fresh cart every iteration, so carts neither
+     * contend nor keep growing
+     */
+    @State(Scope.Thread)
+    public static class Shopper {
+        String userId;
+
+        @Setup(Level.Iteration)
+        public void setUp(AsyncModeHttpBenchmark benchmark) {
+            userId = "shopper-" + benchmark.nextUser.incrementAndGet();
+        }
+    }
+
+    @Benchmark
+    public int addToCart(Shopper shopper) throws Exception {
+        return send(addRequest(shopper));
+    }
+
+    @Benchmark
+    public int checkout(Shopper shopper) throws Exception {
+        for (int i = 0; i < ITEMS_PER_ORDER; i++) {
+            send(addRequest(shopper));
+        }
+        return send(post("/api/orders/user/" + shopper.userId));
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(48)
+    public int mixedWrite(Shopper shopper) throws Exception {
+        return send(addRequest(shopper));
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(16)
+    public int mixedRead() throws Exception {
+        String productId = products.get(ThreadLocalRandom.current().nextInt(CATALOG_SIZE)).getId();
+        return send(HttpRequest.newBuilder(URI.create(baseUrl + "/api/products/" + productId))
+                .timeout(TIMEOUT)
+                .GET()
+                .build());
+    }
+
+    private HttpRequest addRequest(Shopper shopper) {
+        String productId = products.get(ThreadLocalRandom.current().nextInt(CATALOG_SIZE)).getId();
+        return post("/api/carts/" + shopper.userId + "/items?productId=" + productId + "&quantity=1");
+    }
+
+    private HttpRequest post(String path) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .timeout(TIMEOUT)
+                .POST(HttpRequest.BodyPublishers.noBody())
+                .build();
+    }
+
+    private int send(HttpRequest request) throws IOException, InterruptedException {
+        int status = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+        requests.increment();
+        if (status == 503) {
+            rejected.increment();
+        } else if (status >= 400) {
+            throw new IllegalStateException(request.method() + " " + request.uri() + " answered " + status);
+        }
+        return status;
+    }
+}
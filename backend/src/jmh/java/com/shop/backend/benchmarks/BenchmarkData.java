@@ -0,0 +1,129 @@
+package com.shop.backend.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shop.backend.models.Product;
+import com.shop.backend.models.User;
+import com.shop.backend.services.api.ProductService;
+import com.shop.backend.services.core.ConcurrentCartService;
+import com.shop.backend.services.core.IndexedOrderService;
+import com.shop.backend.services.core.IndexedProductService;
+import com.shop.backend.services.core.IndexedUserService;
+import com.shop.backend.services.core.stock.StockReservationEngine;
+import com.shop.backend.storage.FsyncPolicy;
+import com.shop.backend.storage.StorageEngine;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Deterministic dataset generators and service wiring for the benchmarks
+ * The same seed always produces the same catalog and users, so results
+ * from different runs and branches are comparable.
+ */
+final class BenchmarkData {
+
+    static final long SEED = 42;
+
+    static final String[] CATEGORIES = {
+            "Electronics", "Clothing", "Footwear", "Home", "Kitchen", "Garden", "Toys", "Books",
+            "Sports", "Beauty", "Health", "Automotive", "Music", "Office", "Pets", "Tools",
+            "Grocery", "Jewelry", "Baby", "Outdoors"
+    };
+
+    static final String[] ADJECTIVES = {
+            "Compact", "Wireless", "Premium", "Classic", "Portable", "Smart", "Ergonomic", "Vintage",
+            "Eco", "Deluxe", "Ultra", "Mini", "Pro", "Rugged", "Silent", "Bright"
+    };
+
+    static final String[] NOUNS = {
+            "Laptop", "Headphones", "Jacket", "Sneakers", "Lamp", "Blender", "Shovel", "Puzzle",
+            "Novel", "Racket", "Brush", "Charger", "Guitar", "Stapler", "Leash", "Drill",
+            "Coffee", "Necklace", "Stroller", "Tent", "Kettle", "Backpack", "Monitor", "Speaker"
+    };
+
+    // Stock high enough that order benchmarks never run out
+    static final int UNLIMITED_STOCK = 1_000_000_000;
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * Generate a catalog
+     *
+     * @param size  number of products
+     * @param stock stock of every product
+     * @return products with stable ids "p-0" .. "p-(size-1)"
+     */
+    static List<Product> products(int size, int stock) {
+        Random random = new Random(SEED);
+        List<Product> products = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            String adjective = ADJECTIVES[random.nextInt(ADJECTIVES.length)];
+            String noun = NOUNS[random.nextInt(NOUNS.length)];
+            String category = CATEGORIES[random.nextInt(CATEGORIES.length)];
+            double price = Math.round((1 + random.nextDouble() * 1999) * 100) / 100.0;
+            Product product = new Product(adjective + " " + noun + " " + i, price,
+                    adjective.toLowerCase() + " " + noun.toLowerCase() + " for everyday use", stock, category);
+            product.setId("p-" + i);
+            products.add(product);
+        }
+        return products;
+    }
+
+    /**
+     * Generate users with username "user-i", email "user-i@example.com" and password "secret-i"
+     *
+     * @param size number of users
+     * @return users
+     */
+    static List<User> users(int size) {
+        List<User> users = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            users.add(new User("user-" + i, "user-" + i + "@example.com", "secret-" + i, "CUSTOMER"));
+        }
+        return users;
+    }
+
+    static StorageEngine inMemoryStorage() {
+        return new StorageEngine(false, "data", FsyncPolicy.OS, 0, 0,
+                new ObjectMapper().findAndRegisterModules());
+    }
+
+    /**
+     * Build an in-memory product service holding exactly the given products
+     */
+    static IndexedProductService productService(StockReservationEngine stockEngine, List<Product> products) {
+        IndexedProductService service =
+                new IndexedProductService(stockEngine, inMemoryStorage(), new ObjectMapper(), event -> { }, "");
+        for (Product product : products) {
+            service.createProduct(product);
+        }
+        // The catalog is not empty, so no sample products are added
+        service.open();
+        return service;
+    }
+
+    static ConcurrentCartService cartService(ProductService productService) {
+        ConcurrentCartService service = new ConcurrentCartService(productService, inMemoryStorage(), event -> { });
+        service.open();
+        return service;
+    }
+
+    static IndexedOrderService orderService(ConcurrentCartService cartService, ProductService productService,
+                                            StockReservationEngine stockEngine) {
+        IndexedOrderService service =
+                new IndexedOrderService(cartService, productService, stockEngine, inMemoryStorage(), event -> { });
+        service.open();
+        return service;
+    }
+
+    static IndexedUserService userService(List<User> users) {
+        IndexedUserService service = new IndexedUserService(inMemoryStorage());
+        service.open();
+        for (User user : users) {
+            service.createUser(user);
+        }
+        return service;
+    }
+}
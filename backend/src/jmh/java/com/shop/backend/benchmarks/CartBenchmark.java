@@ -0,0 +1,105 @@
+package com.shop.backend.benchmarks;
+
+import com.shop.backend.models.Cart;
+import com.shop.backend.models.Product;
+import com.shop.backend.services.core.ConcurrentCartService;
+import com.shop.backend.services.core.IndexedProductService;
+import com.shop.backend.services.core.stock.StockReservationEngine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cart mutations at different cart sizes, on the Cart model directly and
+ * through the cart service
+ * Every operation leaves the cart at its starting size, so the size stays
+ * fixed for the whole run.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CartBenchmark {
+
+    @Param({"1", "10", "100", "1000"})
+    public int cartSize;
+
+    private List<Product> products;
+    private Cart cart;
+    private Product extra;
+
+    private StockReservationEngine stockEngine;
+    private ConcurrentCartService cartService;
+    private String userId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        products = BenchmarkData.products(cartSize + 1, BenchmarkData.UNLIMITED_STOCK);
+        extra = products.get(cartSize);
+
+        cart = new Cart("bench-user");
+        for (int i = 0; i < cartSize; i++) {
+            cart.addItem(products.get(i), 1);
+        }
+
+        stockEngine = new StockReservationEngine();
+        IndexedProductService productService = BenchmarkData.productService(stockEngine, products);
+        cartService = BenchmarkData.cartService(productService);
+        userId = "bench-user-" + Thread.currentThread().getId();
+        for (int i = 0; i < cartSize; i++) {
+            cartService.addToCart(userId, products.get(i).getId(), 1);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        stockEngine.shutdown();
+    }
+
+    @Benchmark
+    public Cart modelAddAndRemoveItem() {
+        cart.addItem(extra, 1);
+        cart.removeItem(extra.getId());
+        return cart;
+    }
+
+    @Benchmark
+    public Cart modelUpdateQuantity() {
+        String productId = products.get(ThreadLocalRandom.current().nextInt(cartSize)).getId();
+        cart.updateItemQuantity(productId, 2);
+        cart.updateItemQuantity(productId, 1);
+        return cart;
+    }
+
+    @Benchmark
+    public double modelTotal() {
+        return cart.getTotalAmount();
+    }
+
+    @Benchmark
+    public Cart serviceAddAndRemoveItem() {
+        cartService.addToCart(userId, extra.getId(), 1);
+        return cartService.removeFromCart(userId, extra.getId());
+    }
+
+    @Benchmark
+    public int serviceCartSize() {
+        return cartService.getCartSize(userId);
+    }
+}
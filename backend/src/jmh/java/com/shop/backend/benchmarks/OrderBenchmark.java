@@ -0,0 +1,111 @@
+package com.shop.backend.benchmarks;
+
+import com.shop.backend.models.Order;
+import com.shop.backend.models.Product;
+import com.shop.backend.services.core.ConcurrentCartService;
+import com.shop.backend.services.core.IndexedOrderService;
+import com.shop.backend.services.core.IndexedProductService;
+import com.shop.backend.services.core.stock.StockReservationEngine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Order creation through the checkout pipeline, and building Order models
+ * Run with -t to see how group commit behaves as checkout concurrency grows.
+ * The order store is rebuilt every iteration so it does not grow without
+ * bound over the run.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class OrderBenchmark {
+
+    @Param({"1", "5", "20"})
+    public int itemsPerOrder;
+
+    private static final int CATALOG_SIZE = 10_000;
+
+    private List<Product> products;
+    private StockReservationEngine stockEngine;
+    private IndexedProductService productService;
+    private ConcurrentCartService cartService;
+    private IndexedOrderService orderService;
+
+    private final AtomicInteger nextUser = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void setUpCatalog() {
+        products = BenchmarkData.products(CATALOG_SIZE, BenchmarkData.UNLIMITED_STOCK);
+        stockEngine = new StockReservationEngine();
+        productService = BenchmarkData.productService(stockEngine, products);
+    }
+
+    @Setup(Level.Iteration)
+    public void setUpOrders() {
+        cartService = BenchmarkData.cartService(productService);
+        orderService = BenchmarkData.orderService(cartService, productService, stockEngine);
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDownOrders() {
+        orderService.shutdown();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDownCatalog() {
+        stockEngine.shutdown();
+    }
+
+    /**
+     * Per-thread shopper, so carts of different threads never contend
+     */
+    @State(Scope.Thread)
+    public static class Shopper {
+        String userId;
+
+        @Setup(Level.Trial)
+        public void setUp(OrderBenchmark benchmark) {
+            userId = "shopper-" + benchmark.nextUser.incrementAndGet();
+        }
+    }
+
+    @Benchmark
+    public Order checkout(Shopper shopper) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < itemsPerOrder; i++) {
+            cartService.addToCart(shopper.userId, products.get(random.nextInt(CATALOG_SIZE)).getId(), 1);
+        }
+        return orderService.createOrderFromCart(shopper.userId);
+    }
+
+    @Benchmark
+    public Order buildOrderModel() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        List<Order.OrderItem> items = new ArrayList<>(itemsPerOrder);
+        for (int i = 0; i < itemsPerOrder; i++) {
+            Product product = products.get(random.nextInt(CATALOG_SIZE));
+            items.add(new Order.OrderItem(product.getId(), product.getName(), 1, product.getPrice()));
+        }
+        return new Order("shopper", items, "PENDING");
+    }
+}
@@ -0,0 +1,78 @@
+package com.shop.backend.benchmarks;
+
+import com.shop.backend.models.Product;
+import com.shop.backend.services.api.ProductService;
+import com.shop.backend.services.core.stock.StockReservationEngine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Product lookup and filter at different catalog sizes, against the service
+ * the controllers use; search has its own SearchBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class ProductServiceBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int catalogSize;
+
+    private ProductService service;
+    private StockReservationEngine stockEngine;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        stockEngine = new StockReservationEngine();
+        service = BenchmarkData.productService(stockEngine, BenchmarkData.products(catalogSize, 100));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        stockEngine.shutdown();
+    }
+
+    @Benchmark
+    public Product getProductById() {
+        return service.getProductById("p-" + ThreadLocalRandom.current().nextInt(catalogSize));
+    }
+
+    @Benchmark
+    public List<Product> getProductsByCategory() {
+        return service.getProductsByCategory(randomOf(BenchmarkData.CATEGORIES));
+    }
+
+    @Benchmark
+    public List<Product> filterByPriceRange() {
+        double min = ThreadLocalRandom.current().nextInt(1900);
+        return service.filterByPriceRange(min, min + 10);
+    }
+
+    @Benchmark
+    public List<Product> filterCategoryAndPriceSortedByPrice() {
+        double min = ThreadLocalRandom.current().nextInt(1500);
+        return service.filterProducts(randomOf(BenchmarkData.CATEGORIES), min, min + 500, "price_asc");
+    }
+
+    private static String randomOf(String[] values) {
+        return values[ThreadLocalRandom.current().nextInt(values.length)];
+    }
+}
@@ -0,0 +1,83 @@
+package com.shop.backend.benchmarks;
+
+import com.shop.backend.models.Product;
+import com.shop.backend.services.api.ProductService;
+import com.shop.backend.services.core.stock.StockReservationEngine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * searchProducts on a million-product catalog: selective and broad queries,
+ * with the page-sized limit the endpoint takes and without one
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class SearchBenchmark {
+
+    @Param({"1000000"})
+    public int catalogSize;
+
+    @Param({"20", "2147483647"})
+    public int limit;
+
+    private ProductService service;
+    private StockReservationEngine stockEngine;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        stockEngine = new StockReservationEngine();
+        service = BenchmarkData.productService(stockEngine, BenchmarkData.products(catalogSize, 100));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        stockEngine.shutdown();
+    }
+
+    // Product names end in their index, so this matches a handful of products
+    @Benchmark
+    public List<Product> searchSelective() {
+        return service.searchProducts(randomOf(BenchmarkData.NOUNS) + " "
+                + ThreadLocalRandom.current().nextInt(catalogSize), limit);
+    }
+
+    // About one product in 24
+    @Benchmark
+    public List<Product> searchByWord() {
+        return service.searchProducts(randomOf(BenchmarkData.NOUNS), limit);
+    }
+
+    @Benchmark
+    public List<Product> searchByPrefix() {
+        return service.searchProducts(randomOf(BenchmarkData.ADJECTIVES).substring(0, 3), limit);
+    }
+
+    // Below the minimum fragment length; answered without touching the index
+    @Benchmark
+    public List<Product> searchTooShort() {
+        return service.searchProducts(randomOf(BenchmarkData.NOUNS).substring(0, 2), limit);
+    }
+
+    private static String randomOf(String[] values) {
+        return values[ThreadLocalRandom.current().nextInt(values.length)];
+    }
+}
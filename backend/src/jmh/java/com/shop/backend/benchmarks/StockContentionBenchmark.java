@@ -0,0 +1,122 @@
+package com.shop.backend.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shop.backend.models.Product;
+import com.shop.backend.services.core.IndexedProductService;
+import com.shop.backend.services.core.stock.StockReservation;
+import com.shop.backend.services.core.stock.StockReservationEngine;
+import com.shop.backend.storage.FsyncPolicy;
+import com.shop.backend.storage.StorageEngine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Stock counters under contention: thousands of buyers on one hot product
+ * versus the same buyers spread over many products
+ * The durable variants run the engine behind a product service that logs
+ * every stock move to a write-ahead log, as the application does with
+ * storage enabled. Override the buyer count with -t.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(2048)
+public class StockContentionBenchmark {
+
+    private static final int PRODUCTS = 1024;
+    private static final Duration TIMEOUT = Duration.ofMinutes(5);
+
+    private StockReservationEngine engine;
+    private StockReservationEngine durableEngine;
+    private Path directory;
+    private StorageEngine storage;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        engine = new StockReservationEngine();
+        for (Product product : BenchmarkData.products(PRODUCTS, BenchmarkData.UNLIMITED_STOCK)) {
+            engine.track(product);
+        }
+
+        directory = Files.createTempDirectory("stock-bench");
+        ObjectMapper objectMapper = new ObjectMapper();
+        storage = new StorageEngine(true, directory.toString(), FsyncPolicy.OS, 0, 0, objectMapper);
+        durableEngine = new StockReservationEngine();
+        IndexedProductService productService =
+                new IndexedProductService(durableEngine, storage, objectMapper, event -> { }, "");
+        for (Product product : BenchmarkData.products(PRODUCTS, BenchmarkData.UNLIMITED_STOCK)) {
+            productService.createProduct(product);
+        }
+        productService.open();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        engine.shutdown();
+        durableEngine.shutdown();
+        storage.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public Integer adjustHotProduct() {
+        engine.adjust("p-0", -1);
+        return engine.adjust("p-0", 1);
+    }
+
+    @Benchmark
+    public Integer adjustSpreadProducts() {
+        String id = "p-" + ThreadLocalRandom.current().nextInt(PRODUCTS);
+        engine.adjust(id, -1);
+        return engine.adjust(id, 1);
+    }
+
+    @Benchmark
+    public boolean reserveAndConfirmHotProduct() {
+        return buy(engine, "p-0");
+    }
+
+    @Benchmark
+    public boolean reserveAndConfirmHotProductDurably() {
+        return buy(durableEngine, "p-0");
+    }
+
+    @Benchmark
+    public boolean reserveAndConfirmSpreadProductsDurably() {
+        return buy(durableEngine, "p-" + ThreadLocalRandom.current().nextInt(PRODUCTS));
+    }
+
+    // Sell one unit, then put it back so stock never runs out
+    private static boolean buy(StockReservationEngine engine, String productId) {
+        StockReservation reservation = engine.reserve(Collections.singletonMap(productId, 1), TIMEOUT);
+        boolean confirmed = engine.confirm(reservation.getId());
+        engine.adjust(productId, 1);
+        return confirmed;
+    }
+}
@@ -0,0 +1,58 @@
+package com.shop.backend.benchmarks;
+
+import com.shop.backend.models.User;
+import com.shop.backend.services.core.IndexedUserService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Login and user lookups at different user counts
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UserServiceBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int userCount;
+
+    private IndexedUserService service;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        service = BenchmarkData.userService(BenchmarkData.users(userCount));
+    }
+
+    @Benchmark
+    public User authenticate() {
+        int i = ThreadLocalRandom.current().nextInt(userCount);
+        return service.authenticate("user-" + i, "secret-" + i);
+    }
+
+    @Benchmark
+    public User authenticateWrongPassword() {
+        int i = ThreadLocalRandom.current().nextInt(userCount);
+        return service.authenticate("user-" + i, "wrong");
+    }
+
+    @Benchmark
+    public User getUserByEmail() {
+        return service.getUserByEmail("USER-" + ThreadLocalRandom.current().nextInt(userCount) + "@example.com");
+    }
+}
@@ -0,0 +1,114 @@
+package com.shop.backend.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shop.backend.storage.DurableStore;
+import com.shop.backend.storage.FsyncPolicy;
+import com.shop.backend.storage.Mutation;
+import com.shop.backend.storage.MutationLog;
+import com.shop.backend.storage.StorageEngine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.stream.Stream;
+
+/**
+ * Write-ahead log append throughput for each fsync policy
+ * Each operation appends recordsPerAppend records with one write, as a
+ * single change or a batch endpoint does. Run with -t to see INTERVAL share
+ * each fsync between concurrent writers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WriteAheadLogBenchmark {
+
+    @Param({"EVERY_WRITE", "INTERVAL", "OS"})
+    public FsyncPolicy fsync;
+
+    @Param({"256"})
+    public int payloadBytes;
+
+    @Param({"1", "32"})
+    public int recordsPerAppend;
+
+    private Path directory;
+    private StorageEngine storage;
+    private MutationLog log;
+    private List<Mutation> records;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("wal-bench");
+        storage = new StorageEngine(true, directory.toString(), fsync, 10, 0, new ObjectMapper());
+        log = storage.attach(new NullStore());
+        byte[] payload = new byte[payloadBytes];
+        Arrays.fill(payload, (byte) 'x');
+        records = new ArrayList<>(recordsPerAppend);
+        for (int i = 0; i < recordsPerAppend; i++) {
+            records.add(Mutation.put("key-" + i, payload));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        storage.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public void append() {
+        log.appendAll(records);
+    }
+
+    /**
+     * Store with no state; only its log is exercised
+     */
+    private static final class NullStore implements DurableStore<String> {
+        @Override
+        public String storeName() {
+            return "bench";
+        }
+
+        @Override
+        public Class<String> entityType() {
+            return String.class;
+        }
+
+        @Override
+        public void restore(String key, String value) {
+        }
+
+        @Override
+        public void discard(String key) {
+        }
+
+        @Override
+        public void snapshot(BiConsumer<String, String> sink) {
+        }
+    }
+}
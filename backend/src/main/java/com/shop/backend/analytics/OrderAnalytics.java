@@ -0,0 +1,232 @@
+package com.shop.backend.analytics;
+
+import com.shop.backend.models.Money;
+import com.shop.backend.models.Order;
+import com.shop.backend.models.OrderStatus;
+import com.shop.backend.models.OrderSummary;
+import com.shop.backend.models.ProductSales;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Running order aggregates for the admin dashboard
+ * The owner adds an order when it enters a status and removes it when it
+ * leaves one, so the aggregates always match the orders held and no read
+ * scans orders: each costs time in the size of its answer. Cancelled orders
+ * are counted in their status only; revenue, units and basket sizes leave
+ * them out, like the per-user aggregates of the order service.
+ *
+ * Days are taken in the system time zone, as Order.getCreatedAt is.
+ */
+public class OrderAnalytics {
+
+    public static final String UNCATEGORIZED = "uncategorized";
+
+    // Most sold first; ties broken by product ID so the ranking is a strict order
+    private static final Comparator<ProductTotals> BY_UNITS_SOLD =
+            Comparator.comparingLong((ProductTotals totals) -> totals.units).reversed()
+                    .thenComparing(totals -> totals.productId);
+
+    private final ZoneId zone;
+
+    // Guarded by this
+    private final Map<String, Long> ordersByStatus = new HashMap<>();
+    private final TreeMap<LocalDate, Long> revenueByDay = new TreeMap<>();
+    private final Map<String, Long> revenueByCategory = new HashMap<>();
+    private final Map<String, ProductTotals> byProduct = new HashMap<>();
+    private final TreeSet<ProductTotals> ranking = new TreeSet<>(BY_UNITS_SOLD);
+    private long orderCount;
+    private long itemCount;
+    private long revenueMinorUnits;
+
+    public OrderAnalytics() {
+        this(ZoneId.systemDefault());
+    }
+
+    public OrderAnalytics(ZoneId zone) {
+        this.zone = zone;
+    }
+
+    /**
+     * Aggregate a fixed set of orders, e.g. for a service that keeps no
+     * running aggregates
+     *
+     * @param orders orders to aggregate; every item is uncategorized
+     * @return aggregates
+     */
+    public static OrderAnalytics of(Iterable<Order> orders) {
+        OrderAnalytics analytics = new OrderAnalytics();
+        for (Order order : orders) {
+            analytics.add(order, null);
+        }
+        return analytics;
+    }
+
+    /**
+     * Count an order in its current status
+     *
+     * @param order      order
+     * @param categories category of each item, in item order; null or a null
+     *                   element means uncategorized
+     */
+    public synchronized void add(Order order, String[] categories) {
+        apply(order, categories, 1);
+    }
+
+    /**
+     * Take an order out of its current status; call before the status changes
+     *
+     * @param order      order
+     * @param categories the categories it was added with
+     */
+    public synchronized void remove(Order order, String[] categories) {
+        apply(order, categories, -1);
+    }
+
+    /**
+     * Get the totals over all orders
+     *
+     * @return summary
+     */
+    public synchronized OrderSummary summary() {
+        return new OrderSummary(orderCount, itemCount, Money.fromMinorUnits(revenueMinorUnits),
+                new TreeMap<>(ordersByStatus));
+    }
+
+    /**
+     * Count the orders in each status
+     *
+     * @return upper-case status -> number of orders
+     */
+    public synchronized Map<String, Long> countByStatus() {
+        return new TreeMap<>(ordersByStatus);
+    }
+
+    /**
+     * Get the revenue of each day in a range that had any
+     *
+     * @param from first day, inclusive
+     * @param to   last day, inclusive
+     * @return day -> revenue, oldest first
+     */
+    public synchronized Map<LocalDate, Double> revenueByDay(LocalDate from, LocalDate to) {
+        Map<LocalDate, Double> result = new LinkedHashMap<>();
+        if (from.isAfter(to)) {
+            return result;
+        }
+        for (Map.Entry<LocalDate, Long> day : revenueByDay.subMap(from, true, to, true).entrySet()) {
+            result.put(day.getKey(), Money.fromMinorUnits(day.getValue()));
+        }
+        return result;
+    }
+
+    /**
+     * Get the revenue of each product category
+     *
+     * @return category -> revenue, highest first
+     */
+    public synchronized Map<String, Double> revenueByCategory() {
+        List<Map.Entry<String, Long>> categories = new ArrayList<>(revenueByCategory.entrySet());
+        categories.sort(Map.Entry.<String, Long>comparingByValue().reversed());
+        Map<String, Double> result = new LinkedHashMap<>();
+        for (Map.Entry<String, Long> category : categories) {
+            result.put(category.getKey(), Money.fromMinorUnits(category.getValue()));
+        }
+        return result;
+    }
+
+    /**
+     * Get the best-selling products by units sold
+     *
+     * @param limit number of products
+     * @return up to limit products, most sold first
+     */
+    public synchronized List<ProductSales> topProducts(int limit) {
+        List<ProductSales> result = new ArrayList<>(Math.min(Math.max(limit, 0), ranking.size()));
+        for (ProductTotals totals : ranking) {
+            if (result.size() >= limit) {
+                break;
+            }
+            result.add(new ProductSales(totals.productId, totals.productName, totals.units,
+                    Money.fromMinorUnits(totals.revenueMinorUnits)));
+        }
+        return result;
+    }
+
+    private void apply(Order order, String[] categories, int sign) {
+        String status = order.getStatus();
+        if (status != null) {
+            adjust(ordersByStatus, status.toUpperCase(Locale.ROOT), sign);
+        }
+        if (OrderStatus.CANCELLED.name().equalsIgnoreCase(status)) {
+            return;
+        }
+        long total = Money.toMinorUnits(order.getTotalAmount());
+        orderCount += sign;
+        revenueMinorUnits += sign * total;
+        long createdAt = order.createdAtEpochMillis();
+        if (createdAt != Long.MIN_VALUE) {
+            adjust(revenueByDay, Instant.ofEpochMilli(createdAt).atZone(zone).toLocalDate(), sign * total);
+        }
+        List<Order.OrderItem> items = order.getItems();
+        for (int i = 0; i < items.size(); i++) {
+            Order.OrderItem item = items.get(i);
+            long lineTotal = Money.lineTotal(item.getPrice(), item.getQuantity());
+            itemCount += sign * item.getQuantity();
+            String category = categories != null && i < categories.length ? categories[i] : null;
+            adjust(revenueByCategory, category != null ? category : UNCATEGORIZED, sign * lineTotal);
+            adjustProduct(item, sign * item.getQuantity(), sign * lineTotal);
+        }
+    }
+
+    // The ranking is ordered by units, so a product leaves it while its units change
+    private void adjustProduct(Order.OrderItem item, long units, long revenue) {
+        ProductTotals totals = byProduct.get(item.getProductId());
+        if (totals == null) {
+            totals = new ProductTotals(item.getProductId(), item.getProductName());
+            byProduct.put(item.getProductId(), totals);
+        } else {
+            ranking.remove(totals);
+        }
+        totals.units += units;
+        totals.revenueMinorUnits += revenue;
+        if (totals.units <= 0) {
+            byProduct.remove(item.getProductId());
+        } else {
+            ranking.add(totals);
+        }
+    }
+
+    private static <K> void adjust(Map<K, Long> totals, K key, long delta) {
+        Long value = totals.merge(key, delta, Long::sum);
+        if (value == 0) {
+            totals.remove(key);
+        }
+    }
+
+    /**
+     * Units and revenue of one product
+     */
+    private static final class ProductTotals {
+        private final String productId;
+        private final String productName;
+        private long units;
+        private long revenueMinorUnits;
+
+        private ProductTotals(String productId, String productName) {
+            this.productId = productId;
+            this.productName = productName;
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.shop.backend.async;
+
+import com.shop.backend.metrics.CallMetrics;
+import com.shop.backend.metrics.MetricsRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded executor for the asynchronous service variants
+ * A fixed pool takes tasks from a bounded queue. When the queue is full,
+ * execute throws RejectedExecutionException at once instead of letting the
+ * backlog grow, so callers can shed load (the controllers answer 503).
+ * Time spent queued and running is recorded per task.
+ *
+ * With shop.async.enabled=false tasks run on the calling thread, which
+ * keeps the asynchronous API but restores synchronous execution.
+ */
+@Component
+public class ServiceExecutor implements Executor {
+
+    private static final String NAME = "service";
+
+    private final MetricsRegistry registry;
+    private final ThreadPoolExecutor pool;
+    private final CallMetrics queued;
+    private final CallMetrics running;
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * @param registry  receives the task metrics
+     * @param enabled   run tasks on the pool; false runs them on the caller
+     * @param threads   pool size; 0 or less means twice the processor count
+     * @param queueSize tasks that may wait for a thread before new ones are rejected
+     */
+    public ServiceExecutor(MetricsRegistry registry,
+                           @Value("${shop.async.enabled:true}") boolean enabled,
+                           @Value("${shop.async.threads:0}") int threads,
+                           @Value("${shop.async.queue-size:1024}") int queueSize) {
+        this.registry = registry;
+        this.queued = registry.executorTask(NAME, "queue");
+        this.running = registry.executorTask(NAME, "run");
+        if (enabled) {
+            int size = threads > 0 ? threads : 2 * Runtime.getRuntime().availableProcessors();
+            this.pool = new ThreadPoolExecutor(size, size, 0, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(queueSize), daemonThreads("service-executor"),
+                    new ThreadPoolExecutor.AbortPolicy());
+            this.pool.prestartAllCoreThreads();
+        } else {
+            this.pool = null;
+        }
+    }
+
+    @PostConstruct
+    public void registerGauges() {
+        registry.gauge("shop_executor_queued_tasks", "Tasks waiting for a service executor thread",
+                () -> pool != null ? pool.getQueue().size() : 0);
+        registry.gauge("shop_executor_active_threads", "Service executor threads running a task",
+                () -> pool != null ? pool.getActiveCount() : 0);
+        registry.gauge("shop_executor_rejected_tasks", "Tasks rejected because the service executor queue was full",
+                rejected::sum);
+    }
+
+    /**
+     * Run a task on the pool, or on the caller if the pool is disabled
+     *
+     * @param task task to run
+     * @throws RejectedExecutionException if the queue is full or the pool is shut down
+     */
+    @Override
+    public void execute(Runnable task) {
+        if (pool == null) {
+            task.run();
+            return;
+        }
+        long queuedAt = System.nanoTime();
+        try {
+            pool.execute(() -> {
+                long startedAt = System.nanoTime();
+                queued.record(startedAt - queuedAt, false);
+                boolean failed = true;
+                try {
+                    task.run();
+                    failed = false;
+                } finally {
+                    running.record(System.nanoTime() - startedAt, failed);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw e;
+        }
+    }
+
+    /**
+     * Check whether tasks run on the pool rather than on the caller
+     *
+     * @return true if asynchronous
+     */
+    public boolean isEnabled() {
+        return pool != null;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    private static ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
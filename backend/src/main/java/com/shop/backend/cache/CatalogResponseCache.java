@@ -0,0 +1,111 @@
+package com.shop.backend.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shop.backend.events.ProductChangeEvent;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Supplier;
+
+/**
+ * Serialized JSON bodies of the most read product endpoints
+ * Bodies are written with the application's ObjectMapper, so a cached
+ * response is byte-for-byte what the controller would have produced.
+ * Each ProductChangeEvent drops exactly the bodies that can contain the
+ * product: its own, the full listing, the listings of its old and new
+ * category and, unless only stock moved, the category list.
+ */
+@Component
+public class CatalogResponseCache {
+
+    private static final String ALL_PRODUCTS = "products";
+    private static final String CATEGORIES = "categories";
+
+    private final ObjectMapper objectMapper;
+    private final ResponseCache cache;
+    private final boolean enabled;
+
+    public CatalogResponseCache(ObjectMapper objectMapper,
+                                @Value("${shop.cache.enabled:true}") boolean enabled,
+                                @Value("${shop.cache.max-bytes:67108864}") long maxBytes) {
+        this.objectMapper = objectMapper;
+        this.enabled = enabled;
+        this.cache = new ResponseCache(maxBytes);
+    }
+
+    public static String allProductsKey() {
+        return ALL_PRODUCTS;
+    }
+
+    public static String productKey(String id) {
+        return "product:" + id;
+    }
+
+    public static String categoryKey(String category) {
+        return "category:" + category.toLowerCase(Locale.ROOT);
+    }
+
+    public static String categoriesKey() {
+        return CATEGORIES;
+    }
+
+    /**
+     * Build a JSON response from the cached body, loading it on a miss
+     *
+     * @param key    cache key
+     * @param loader reads the value to serialize; null means not found
+     * @return 200 with the body, or 404 if the loader returned null
+     */
+    public ResponseEntity<byte[]> respond(String key, Supplier<?> loader) {
+        byte[] body = enabled ? cache.get(key, () -> serialize(loader.get())) : serialize(loader.get());
+        if (body == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
+    @EventListener
+    public void onProductChange(ProductChangeEvent event) {
+        List<String> keys = new ArrayList<>(5);
+        keys.add(productKey(event.getProductId()));
+        keys.add(ALL_PRODUCTS);
+        if (event.getPreviousCategory() != null) {
+            keys.add(categoryKey(event.getPreviousCategory()));
+        }
+        if (event.getCategory() != null) {
+            keys.add(categoryKey(event.getCategory()));
+        }
+        if (event.getType() != ProductChangeEvent.Type.STOCK) {
+            keys.add(CATEGORIES);
+        }
+        cache.invalidate(keys);
+    }
+
+    /**
+     * Get the underlying cache, e.g. for size reporting
+     *
+     * @return cache
+     */
+    public ResponseCache getCache() {
+        return cache;
+    }
+
+    private byte[] serialize(Object value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return objectMapper.writeValueAsBytes(value);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to serialize " + value.getClass().getSimpleName(), e);
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.shop.backend.cache;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Cache of serialized response bodies bounded by their total size in bytes
+ * Hits are a hash lookup plus one field write and never lock. Eviction uses
+ * the CLOCK approximation of LRU: entries wait in a ring, and an entry read
+ * since it last came round gets a second chance instead of being evicted.
+ *
+ * Every invalidation bumps a generation counter. A body loaded while the
+ * generation moved is returned but not stored, so a load that raced with a
+ * change can never leave a stale body behind.
+ */
+public class ResponseCache {
+
+    private final long maxBytes;
+    private final long maxEntryBytes;
+
+    private final Map<String, CachedBody> bodies = new ConcurrentHashMap<>();
+
+    // Guarded by this: eviction ring, total size and generation
+    private final ArrayDeque<CachedBody> ring = new ArrayDeque<>();
+    private long bytes;
+    private volatile long generation;
+
+    /**
+     * @param maxBytes total size of all cached bodies; a single body larger
+     *                 than a quarter of it is never cached
+     */
+    public ResponseCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+        this.maxEntryBytes = maxBytes / 4;
+    }
+
+    /**
+     * Get a cached body, loading and storing it on a miss
+     *
+     * @param key    cache key
+     * @param loader produces the serialized body, or null for nothing to cache
+     * @return body, or null if the loader returned null
+     */
+    public byte[] get(String key, Supplier<byte[]> loader) {
+        CachedBody cached = bodies.get(key);
+        if (cached != null) {
+            cached.referenced = true;
+            return cached.body;
+        }
+        long loadedAt = generation;
+        byte[] body = loader.get();
+        if (body != null && body.length <= maxEntryBytes) {
+            put(key, body, loadedAt);
+        }
+        return body;
+    }
+
+    /**
+     * Drop the given keys
+     *
+     * @param keys cache keys
+     */
+    public synchronized void invalidate(Collection<String> keys) {
+        generation++;
+        for (String key : keys) {
+            CachedBody removed = bodies.remove(key);
+            if (removed != null) {
+                bytes -= removed.body.length;
+            }
+        }
+    }
+
+    /**
+     * Drop every body
+     */
+    public synchronized void invalidateAll() {
+        generation++;
+        bodies.clear();
+        ring.clear();
+        bytes = 0;
+    }
+
+    /**
+     * Get the number of cached bodies
+     *
+     * @return entry count
+     */
+    public int size() {
+        return bodies.size();
+    }
+
+    /**
+     * Get the total size of the cached bodies
+     *
+     * @return bytes
+     */
+    public synchronized long bytes() {
+        return bytes;
+    }
+
+    private synchronized void put(String key, byte[] body, long loadedAt) {
+        if (generation != loadedAt || bodies.containsKey(key)) {
+            return;
+        }
+        CachedBody entry = new CachedBody(key, body);
+        bodies.put(key, entry);
+        ring.addLast(entry);
+        bytes += body.length;
+        evict();
+    }
+
+    private void evict() {
+        while (bytes > maxBytes && !ring.isEmpty()) {
+            CachedBody candidate = ring.pollFirst();
+            if (bodies.get(candidate.key) != candidate) {
+                // Already invalidated; its bytes were released then
+                continue;
+            }
+            if (candidate.referenced) {
+                candidate.referenced = false;
+                ring.addLast(candidate);
+                continue;
+            }
+            bodies.remove(candidate.key);
+            bytes -= candidate.body.length;
+        }
+        // Invalidated entries stay in the ring until they come round; drop them
+        // in one pass once they outnumber the live ones
+        if (ring.size() > 2 * bodies.size() + 64) {
+            ring.removeIf(entry -> bodies.get(entry.key) != entry);
+        }
+    }
+
+    private static final class CachedBody {
+        private final String key;
+        private final byte[] body;
+        private volatile boolean referenced;
+
+        private CachedBody(String key, byte[] body) {
+            this.key = key;
+            this.body = body;
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.shop.backend.controllers;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Helper for endpoints answered by the asynchronous service variants
+ * The request thread only submits the call and is released; the response is
+ * built when the service future completes. If the service executor refuses
+ * the work because its queue is full, the client gets 503 with Retry-After
+ * at once instead of waiting in a backlog.
+ */
+final class AsyncResponses {
+
+    private static final String RETRY_AFTER_SECONDS = "1";
+
+    private AsyncResponses() {
+    }
+
+    /**
+     * Start an asynchronous service call and map its result to a response
+     *
+     * @param call     starts the service call
+     * @param response builds the response from the result
+     * @return future response, or 503 if the call was not admitted
+     */
+    static <T, R> CompletableFuture<ResponseEntity<R>> respond(Supplier<CompletableFuture<T>> call,
+                                                               Function<T, ResponseEntity<R>> response) {
+        CompletableFuture<T> result;
+        try {
+            result = call.get();
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS)
+                    .build());
+        }
+        return result.thenApply(response);
+    }
+}
@@ -1,13 +1,19 @@
 package com.shop.backend.controllers;
 
+import com.shop.backend.async.ServiceExecutor;
 import com.shop.backend.models.Cart;
 import com.shop.backend.services.api.CartService;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * REST Controller for Cart operations
+ * Item changes run on the ServiceExecutor and answer 503 when it is saturated.
  */
 @RestController
 @RequestMapping("/api/carts")
@@ -15,52 +21,71 @@ import org.springframework.web.bind.annotation.*;
 public class CartController {
 
     private final CartService cartService;
+    private final ServiceExecutor executor;
 
-    public CartController(@Qualifier("studentCartService") CartService cartService) {
+    public CartController(@Qualifier("concurrentCartService") CartService cartService, ServiceExecutor executor) {
         this.cartService = cartService;
+        this.executor = executor;
     }
 
     @GetMapping("/{userId}")
-    public ResponseEntity<Cart> getCartByUserId(@PathVariable String userId) {
-        Cart cart = cartService.getCartByUserId(userId);
-        if (cart != null) {
-            return ResponseEntity.ok(cart);
-        } else {
-            return ResponseEntity.notFound().build();
-        }
+    public ResponseEntity<Cart> getCartByUserId(@PathVariable String userId, WebRequest request) {
+        return ConditionalGets.unlessNotModified(request, cartService.getCartVersion(userId), () -> {
+            Cart cart = cartService.getCartByUserId(userId);
+            if (cart != null) {
+                return ResponseEntity.ok(cart);
+            } else {
+                return ResponseEntity.notFound().build();
+            }
+        });
     }
 
     @PostMapping("/{userId}")
-    public ResponseEntity<Cart> createCart(@PathVariable String userId) {
-        return ResponseEntity.ok(cartService.createCart(userId));
+    public CompletableFuture<ResponseEntity<Cart>> createCart(@PathVariable String userId) {
+        return AsyncResponses.respond(() -> cartService.createCartAsync(userId, executor), ResponseEntity::ok);
     }
 
     @PostMapping("/{userId}/items")
-    public ResponseEntity<Cart> addToCart(
+    public CompletableFuture<ResponseEntity<Cart>> addToCart(
             @PathVariable String userId,
             @RequestParam String productId,
             @RequestParam int quantity) {
-        return ResponseEntity.ok(cartService.addToCart(userId, productId, quantity));
+        return AsyncResponses.respond(() -> cartService.addToCartAsync(userId, productId, quantity, executor),
+                ResponseEntity::ok);
+    }
+
+    @PostMapping("/{userId}/items/batch")
+    public CompletableFuture<ResponseEntity<Cart>> addItemsToCart(
+            @PathVariable String userId,
+            @RequestBody Map<String, Integer> quantities) {
+        return AsyncResponses.respond(() -> cartService.addItemsToCartAsync(userId, quantities, executor), cart -> {
+            if (cart != null) {
+                return ResponseEntity.ok(cart);
+            }
+            return ResponseEntity.badRequest().build();
+        });
     }
 
     @PutMapping("/{userId}/items/{productId}")
-    public ResponseEntity<Cart> updateCartItem(
+    public CompletableFuture<ResponseEntity<Cart>> updateCartItem(
             @PathVariable String userId,
             @PathVariable String productId,
             @RequestParam int quantity) {
-        return ResponseEntity.ok(cartService.updateCartItem(userId, productId, quantity));
+        return AsyncResponses.respond(() -> cartService.updateCartItemAsync(userId, productId, quantity, executor),
+                ResponseEntity::ok);
     }
 
     @DeleteMapping("/{userId}/items/{productId}")
-    public ResponseEntity<Cart> removeFromCart(
+    public CompletableFuture<ResponseEntity<Cart>> removeFromCart(
             @PathVariable String userId,
             @PathVariable String productId) {
-        return ResponseEntity.ok(cartService.removeFromCart(userId, productId));
+        return AsyncResponses.respond(() -> cartService.removeFromCartAsync(userId, productId, executor),
+                ResponseEntity::ok);
     }
 
     @DeleteMapping("/{userId}")
-    public ResponseEntity<Cart> clearCart(@PathVariable String userId) {
-        return ResponseEntity.ok(cartService.clearCart(userId));
+    public CompletableFuture<ResponseEntity<Cart>> clearCart(@PathVariable String userId) {
+        return AsyncResponses.respond(() -> cartService.clearCartAsync(userId, executor), ResponseEntity::ok);
     }
 
     @GetMapping("/{userId}/size")
@@ -0,0 +1,43 @@
+package com.shop.backend.controllers;
+
+import com.shop.backend.events.ChangeFeed;
+import com.shop.backend.events.FeedEvent;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * REST Controller streaming product, cart and order changes as Server-Sent Events
+ * Lets clients keep their catalog, cart and order views current without
+ * polling the full listings.
+ */
+@RestController
+@RequestMapping("/api/events")
+@CrossOrigin(origins = "*") // Allow requests from any origin for demo purposes
+public class ChangeFeedController {
+
+    private final ChangeFeed changeFeed;
+    private final long timeoutMillis;
+
+    public ChangeFeedController(ChangeFeed changeFeed,
+                                @Value("${shop.events.timeout-ms:1800000}") long timeoutMillis) {
+        this.changeFeed = changeFeed;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    @GetMapping(value = "/catalog", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamCatalog() {
+        return SseFeeds.open(changeFeed, timeoutMillis, event -> FeedEvent.PRODUCT.equals(event.getTopic()));
+    }
+
+    @GetMapping(value = "/users/{userId}", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamUser(@PathVariable String userId) {
+        return SseFeeds.open(changeFeed, timeoutMillis, event -> userId.equals(event.getUserId()));
+    }
+
+    @GetMapping(value = "/orders", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamOrders() {
+        return SseFeeds.open(changeFeed, timeoutMillis, event -> FeedEvent.ORDER.equals(event.getTopic()));
+    }
+}
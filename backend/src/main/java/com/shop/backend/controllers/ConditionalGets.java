@@ -0,0 +1,42 @@
+package com.shop.backend.controllers;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.context.request.WebRequest;
+
+import java.util.function.Supplier;
+
+/**
+ * Helper for answering GETs of versioned resources with ETags
+ * The ETag is the resource version, read before the resource itself, so a
+ * tag never stands for older data than the body sent with it. A client
+ * that sends the current tag in If-None-Match gets 304 without the resource
+ * being read or serialized.
+ */
+final class ConditionalGets {
+
+    // Versions restart with the process; the epoch keeps tags from an earlier run from matching
+    private static final String EPOCH = Long.toString(System.currentTimeMillis(), 36);
+
+    private ConditionalGets() {
+    }
+
+    /**
+     * Build a response, or 304 if the client already has this version
+     *
+     * @param request  current request; the ETag header is set on its response
+     * @param version  resource version, or -1 if the service does not track it
+     * @param response builds the full response
+     * @return 304 or the full response
+     */
+    static <T> ResponseEntity<T> unlessNotModified(WebRequest request, long version,
+                                                   Supplier<ResponseEntity<T>> response) {
+        if (version < 0) {
+            return response.get();
+        }
+        if (request.checkNotModified(EPOCH + "-" + version)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).build();
+        }
+        return response.get();
+    }
+}
@@ -0,0 +1,48 @@
+package com.shop.backend.controllers;
+
+import com.shop.backend.metrics.MetricsRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.servlet.http.HttpServletRequest;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
+/**
+ * REST Controller exposing metrics in the Prometheus text format
+ * Only answers requests from the local machine unless
+ * shop.metrics.local-only is false.
+ */
+@RestController
+public class MetricsController {
+
+    private static final String PROMETHEUS_TEXT = "text/plain;version=0.0.4;charset=utf-8";
+
+    private final MetricsRegistry registry;
+    private final boolean localOnly;
+
+    public MetricsController(MetricsRegistry registry, @Value("${shop.metrics.local-only:true}") boolean localOnly) {
+        this.registry = registry;
+        this.localOnly = localOnly;
+    }
+
+    @GetMapping(value = "/metrics", produces = PROMETHEUS_TEXT)
+    public ResponseEntity<String> getMetrics(HttpServletRequest request) {
+        if (localOnly && !isLoopback(request.getRemoteAddr())) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        return ResponseEntity.ok(registry.scrape());
+    }
+
+    private static boolean isLoopback(String address) {
+        try {
+            // The remote address is an IP literal, so this never does a DNS lookup
+            return InetAddress.getByName(address).isLoopbackAddress();
+        } catch (UnknownHostException e) {
+            return false;
+        }
+    }
+}
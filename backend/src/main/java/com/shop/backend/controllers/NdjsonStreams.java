@@ -0,0 +1,48 @@
+package com.shop.backend.controllers;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shop.backend.models.Page;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.util.function.BiFunction;
+
+/**
+ * Helper for streaming a paginated listing as newline-delimited JSON
+ * The listing is fetched one page at a time and each page is written and
+ * flushed before the next one is read, so the full collection is never held
+ * in memory or serialized in one go.
+ */
+final class NdjsonStreams {
+
+    private NdjsonStreams() {
+    }
+
+    /**
+     * Build a streaming NDJSON response
+     *
+     * @param objectMapper mapper used to serialize each item
+     * @param pager        fetches a page given (cursor, limit)
+     * @return streaming response
+     */
+    static <T> ResponseEntity<StreamingResponseBody> stream(ObjectMapper objectMapper,
+                                                            BiFunction<String, Integer, Page<T>> pager) {
+        StreamingResponseBody body = outputStream -> {
+            String cursor = null;
+            do {
+                Page<T> page = pager.apply(cursor, Page.MAX_LIMIT);
+                if (page == null) {
+                    break;
+                }
+                for (T item : page.getItems()) {
+                    outputStream.write(objectMapper.writeValueAsBytes(item));
+                    outputStream.write('\n');
+                }
+                outputStream.flush();
+                cursor = page.getNextCursor();
+            } while (cursor != null);
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+    }
+}
@@ -1,26 +1,54 @@
 package com.shop.backend.controllers;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shop.backend.async.ServiceExecutor;
 import com.shop.backend.models.Order;
+import com.shop.backend.models.OrderStatus;
+import com.shop.backend.models.OrderSummary;
+import com.shop.backend.models.Page;
+import com.shop.backend.models.ProductSales;
 import com.shop.backend.services.api.OrderService;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * REST Controller for Order operations
+ * Checkout, status changes and cancellation run asynchronously and answer
+ * 503 when the ServiceExecutor is saturated. A status change the order's
+ * current status does not allow answers 409. The analytics endpoints read
+ * running aggregates and never scan the orders.
  */
 @RestController
 @RequestMapping("/api/orders")
 @CrossOrigin(origins = "*") // Allow requests from any origin for demo purposes
 public class OrderController {
 
+    private static final int DEFAULT_REVENUE_DAYS = 30;
+    private static final int MAX_REVENUE_DAYS = 366;
+    private static final int DEFAULT_TOP_PRODUCTS = 10;
+    private static final int MAX_TOP_PRODUCTS = 100;
+
     private final OrderService orderService;
+    private final ObjectMapper objectMapper;
+    private final ServiceExecutor executor;
 
-    public OrderController(@Qualifier("studentOrderService") OrderService orderService) {
+    public OrderController(@Qualifier("indexedOrderService") OrderService orderService, ObjectMapper objectMapper,
+                           ServiceExecutor executor) {
         this.orderService = orderService;
+        this.objectMapper = objectMapper;
+        this.executor = executor;
     }
 
     @GetMapping
@@ -28,48 +56,97 @@ public class OrderController {
         return ResponseEntity.ok(orderService.getAllOrders());
     }
 
-    @GetMapping("/{id}")
-    public ResponseEntity<Order> getOrderById(@PathVariable String id) {
-        Order order = orderService.getOrderById(id);
-        if (order != null) {
-            return ResponseEntity.ok(order);
-        } else {
-            return ResponseEntity.notFound().build();
+    @GetMapping("/page")
+    public ResponseEntity<Page<Order>> getOrdersPage(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit) {
+        Page<Order> page = orderService.getOrders(cursor, Page.clampLimit(limit));
+        if (page != null) {
+            return ResponseEntity.ok(page);
+        }
+        return ResponseEntity.badRequest().build();
+    }
+
+    @GetMapping("/created")
+    public ResponseEntity<Page<Order>> getOrdersCreatedBetween(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime since,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime until,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit) {
+        Page<Order> page = orderService.getOrdersCreatedBetween(since, until, cursor, Page.clampLimit(limit));
+        if (page != null) {
+            return ResponseEntity.ok(page);
         }
+        return ResponseEntity.badRequest().build();
+    }
+
+    @GetMapping(value = "/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamOrders() {
+        return NdjsonStreams.stream(objectMapper, orderService::getOrders);
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<Order> getOrderById(@PathVariable String id, WebRequest request) {
+        return ConditionalGets.unlessNotModified(request, orderService.getOrderVersion(id), () -> {
+            Order order = orderService.getOrderById(id);
+            if (order != null) {
+                return ResponseEntity.ok(order);
+            } else {
+                return ResponseEntity.notFound().build();
+            }
+        });
     }
 
     @GetMapping("/user/{userId}")
-    public ResponseEntity<List<Order>> getOrdersByUserId(@PathVariable String userId) {
-        return ResponseEntity.ok(orderService.getOrdersByUserId(userId));
+    public ResponseEntity<List<Order>> getOrdersByUserId(@PathVariable String userId, WebRequest request) {
+        return ConditionalGets.unlessNotModified(request, orderService.getUserOrdersVersion(userId),
+                () -> ResponseEntity.ok(orderService.getOrdersByUserId(userId)));
     }
 
     @PostMapping("/user/{userId}")
-    public ResponseEntity<Order> createOrderFromCart(@PathVariable String userId) {
-        Order order = orderService.createOrderFromCart(userId);
-        if (order != null) {
-            return ResponseEntity.status(HttpStatus.CREATED).body(order);
-        }
-        return ResponseEntity.badRequest().build();
+    public CompletableFuture<ResponseEntity<Order>> createOrderFromCart(@PathVariable String userId) {
+        return AsyncResponses.respond(() -> orderService.createOrderFromCartAsync(userId, executor), order -> {
+            if (order != null) {
+                return ResponseEntity.status(HttpStatus.CREATED).body(order);
+            }
+            return ResponseEntity.badRequest().build();
+        });
     }
 
     @PatchMapping("/{id}/status")
-    public ResponseEntity<Order> updateOrderStatus(
+    public CompletableFuture<ResponseEntity<Order>> updateOrderStatus(
             @PathVariable String id,
             @RequestParam String status) {
-        Order order = orderService.updateOrderStatus(id, status);
-        if (order != null) {
-            return ResponseEntity.ok(order);
+        if (OrderStatus.parse(status) == null) {
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().build());
         }
-        return ResponseEntity.notFound().build();
+        return AsyncResponses.respond(() -> orderService.updateOrderStatusAsync(id, status, executor), order -> {
+            if (order != null) {
+                return ResponseEntity.ok(order);
+            }
+            return refusedOrMissing(id);
+        });
     }
 
-    @DeleteMapping("/{id}")
-    public ResponseEntity<Void> cancelOrder(@PathVariable String id) {
-        boolean canceled = orderService.cancelOrder(id);
-        if (canceled) {
-            return ResponseEntity.noContent().build();
+    @PatchMapping("/status")
+    public CompletableFuture<ResponseEntity<List<Order>>> updateOrderStatuses(
+            @RequestParam String status,
+            @RequestBody List<String> ids) {
+        if (OrderStatus.parse(status) == null) {
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().build());
         }
-        return ResponseEntity.notFound().build();
+        return AsyncResponses.respond(() -> orderService.updateOrderStatusesAsync(ids, status, executor),
+                ResponseEntity::ok);
+    }
+
+    @DeleteMapping("/{id}")
+    public CompletableFuture<ResponseEntity<Void>> cancelOrder(@PathVariable String id) {
+        return AsyncResponses.respond(() -> orderService.cancelOrderAsync(id, executor), canceled -> {
+            if (canceled) {
+                return ResponseEntity.noContent().build();
+            }
+            return refusedOrMissing(id);
+        });
     }
 
     @GetMapping("/status/{status}")
@@ -77,6 +154,47 @@ public class OrderController {
         return ResponseEntity.ok(orderService.getOrdersByStatus(status));
     }
 
+    @GetMapping("/status/{status}/page")
+    public ResponseEntity<Page<Order>> getOrdersByStatusPage(
+            @PathVariable String status,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit) {
+        Page<Order> page = orderService.getOrdersByStatus(status, cursor, Page.clampLimit(limit));
+        if (page != null) {
+            return ResponseEntity.ok(page);
+        }
+        return ResponseEntity.badRequest().build();
+    }
+
+    @GetMapping(value = "/status/{status}/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamOrdersByStatus(@PathVariable String status) {
+        return NdjsonStreams.stream(objectMapper,
+                (cursor, limit) -> orderService.getOrdersByStatus(status, cursor, limit));
+    }
+
+    @GetMapping("/analytics/summary")
+    public ResponseEntity<OrderSummary> getOrderSummary() {
+        return ResponseEntity.ok(orderService.getOrderSummary());
+    }
+
+    @GetMapping("/analytics/revenue/daily")
+    public ResponseEntity<Map<LocalDate, Double>> getDailyRevenue(@RequestParam(required = false) Integer days) {
+        int span = days == null ? DEFAULT_REVENUE_DAYS : Math.max(1, Math.min(days, MAX_REVENUE_DAYS));
+        LocalDate today = LocalDate.now();
+        return ResponseEntity.ok(orderService.getDailyRevenue(today.minusDays(span - 1), today));
+    }
+
+    @GetMapping("/analytics/revenue/categories")
+    public ResponseEntity<Map<String, Double>> getRevenueByCategory() {
+        return ResponseEntity.ok(orderService.getRevenueByCategory());
+    }
+
+    @GetMapping("/analytics/top-products")
+    public ResponseEntity<List<ProductSales>> getTopProducts(@RequestParam(required = false) Integer limit) {
+        int count = limit == null ? DEFAULT_TOP_PRODUCTS : Math.max(1, Math.min(limit, MAX_TOP_PRODUCTS));
+        return ResponseEntity.ok(orderService.getTopProducts(count));
+    }
+
     @GetMapping("/user/{userId}/count")
     public ResponseEntity<Integer> getOrderCount(@PathVariable String userId) {
         return ResponseEntity.ok(orderService.getOrderCount(userId));
@@ -86,4 +204,12 @@ public class OrderController {
     public ResponseEntity<Double> getTotalSpent(@PathVariable String userId) {
         return ResponseEntity.ok(orderService.getTotalSpent(userId));
     }
-}
\ No newline at end of file
+
+    // A refused status change of an order that exists is a conflict with its current status
+    private <T> ResponseEntity<T> refusedOrMissing(String id) {
+        if (orderService.getOrderById(id) != null) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+        return ResponseEntity.notFound().build();
+    }
+}
@@ -1,17 +1,29 @@
 package com.shop.backend.controllers;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shop.backend.async.ServiceExecutor;
+import com.shop.backend.cache.CatalogResponseCache;
+import com.shop.backend.models.Page;
 import com.shop.backend.models.Product;
 import com.shop.backend.services.api.ProductService;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
-import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * REST Controller for Product operations
+ * The listing, single product, category and category list reads are served
+ * from pre-serialized JSON in the CatalogResponseCache. Reads carry the
+ * catalog version (the product version for a single product) as ETag and
+ * answer 304 when it still matches If-None-Match. Writes run on the
+ * ServiceExecutor and answer 503 when it is saturated.
  */
 @RestController
 @RequestMapping("/api/products")
@@ -19,80 +31,131 @@ import java.util.Set;
 public class ProductController {
 
     private final ProductService productService;
+    private final ObjectMapper objectMapper;
+    private final CatalogResponseCache responseCache;
+    private final ServiceExecutor executor;
 
-    public ProductController(@Qualifier("studentProductService") ProductService productService) {
+    public ProductController(@Qualifier("indexedProductService") ProductService productService,
+                             ObjectMapper objectMapper, CatalogResponseCache responseCache,
+                             ServiceExecutor executor) {
         this.productService = productService;
+        this.objectMapper = objectMapper;
+        this.responseCache = responseCache;
+        this.executor = executor;
     }
 
     @GetMapping
-    public ResponseEntity<List<Product>> getAllProducts() {
-        return ResponseEntity.ok(productService.getAllProducts());
+    public ResponseEntity<byte[]> getAllProducts(WebRequest request) {
+        return ConditionalGets.unlessNotModified(request, productService.getCatalogVersion(),
+                () -> responseCache.respond(CatalogResponseCache.allProductsKey(), productService::getAllProducts));
+    }
+
+    @GetMapping("/page")
+    public ResponseEntity<Page<Product>> getProductsPage(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit,
+            WebRequest request) {
+        return ConditionalGets.unlessNotModified(request, productService.getCatalogVersion(), () -> {
+            Page<Product> page = productService.getProducts(cursor, Page.clampLimit(limit));
+            if (page != null) {
+                return ResponseEntity.ok(page);
+            }
+            return ResponseEntity.badRequest().build();
+        });
+    }
+
+    @GetMapping(value = "/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamProducts() {
+        return NdjsonStreams.stream(objectMapper, productService::getProducts);
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<Product> getProductById(@PathVariable String id) {
-        Product product = productService.getProductById(id);
-        if (product != null) {
-            return ResponseEntity.ok(product);
-        } else {
-            return ResponseEntity.notFound().build();
-        }
+    public ResponseEntity<byte[]> getProductById(@PathVariable String id, WebRequest request) {
+        return ConditionalGets.unlessNotModified(request, productService.getProductVersion(id),
+                () -> responseCache.respond(CatalogResponseCache.productKey(id),
+                        () -> productService.getProductById(id)));
+    }
+
+    @GetMapping("/batch")
+    public ResponseEntity<List<Product>> getProductsByIds(@RequestParam List<String> ids) {
+        return ResponseEntity.ok(productService.getProductsByIds(ids));
     }
 
     @PostMapping
-    public ResponseEntity<Product> createProduct(@RequestBody Product product) {
-        return ResponseEntity.status(HttpStatus.CREATED).body(productService.createProduct(product));
+    public CompletableFuture<ResponseEntity<Product>> createProduct(@RequestBody Product product) {
+        return AsyncResponses.respond(() -> productService.createProductAsync(product, executor),
+                created -> ResponseEntity.status(HttpStatus.CREATED).body(created));
+    }
+
+    @PostMapping("/batch")
+    public CompletableFuture<ResponseEntity<List<Product>>> upsertProducts(@RequestBody List<Product> products) {
+        return AsyncResponses.respond(() -> productService.upsertProductsAsync(products, executor), ResponseEntity::ok);
     }
 
     @PutMapping("/{id}")
-    public ResponseEntity<Product> updateProduct(@PathVariable String id, @RequestBody Product product) {
-        Product updatedProduct = productService.updateProduct(id, product);
-        if (updatedProduct != null) {
-            return ResponseEntity.ok(updatedProduct);
-        }
-        return ResponseEntity.notFound().build();
+    public CompletableFuture<ResponseEntity<Product>> updateProduct(@PathVariable String id,
+                                                                    @RequestBody Product product) {
+        return AsyncResponses.respond(() -> productService.updateProductAsync(id, product, executor),
+                updatedProduct -> {
+                    if (updatedProduct != null) {
+                        return ResponseEntity.ok(updatedProduct);
+                    }
+                    return ResponseEntity.notFound().build();
+                });
     }
 
     @DeleteMapping("/{id}")
-    public ResponseEntity<Void> deleteProduct(@PathVariable String id) {
-        boolean deleted = productService.deleteProduct(id);
-        if (deleted) {
-            return ResponseEntity.noContent().build();
-        }
-        return ResponseEntity.notFound().build();
+    public CompletableFuture<ResponseEntity<Void>> deleteProduct(@PathVariable String id) {
+        return AsyncResponses.respond(() -> productService.deleteProductAsync(id, executor), deleted -> {
+            if (deleted) {
+                return ResponseEntity.noContent().build();
+            }
+            return ResponseEntity.notFound().build();
+        });
     }
 
     @GetMapping("/category/{category}")
-    public ResponseEntity<List<Product>> getProductsByCategory(@PathVariable String category) {
-        return ResponseEntity.ok(productService.getProductsByCategory(category));
+    public ResponseEntity<byte[]> getProductsByCategory(@PathVariable String category, WebRequest request) {
+        return ConditionalGets.unlessNotModified(request, productService.getCatalogVersion(),
+                () -> responseCache.respond(CatalogResponseCache.categoryKey(category),
+                        () -> productService.getProductsByCategory(category)));
     }
 
     @GetMapping("/search")
-    public ResponseEntity<List<Product>> searchProducts(@RequestParam String query) {
-        return ResponseEntity.ok(productService.searchProducts(query));
+    public ResponseEntity<List<Product>> searchProducts(@RequestParam String query,
+                                                        @RequestParam(required = false) Integer limit,
+                                                        WebRequest request) {
+        // Without a limit every match is returned, as before
+        int count = limit != null ? Page.clampLimit(limit) : Integer.MAX_VALUE;
+        return ConditionalGets.unlessNotModified(request, productService.getCatalogVersion(),
+                () -> ResponseEntity.ok(productService.searchProducts(query, count)));
     }
 
     @PatchMapping("/{id}/stock")
-    public ResponseEntity<Product> updateStock(
+    public CompletableFuture<ResponseEntity<Product>> updateStock(
             @PathVariable String id,
             @RequestParam int quantity) {
-        Product product = productService.updateStock(id, quantity);
-        if (product != null) {
-            return ResponseEntity.ok(product);
-        }
-        return ResponseEntity.notFound().build();
+        return AsyncResponses.respond(() -> productService.updateStockAsync(id, quantity, executor), product -> {
+            if (product != null) {
+                return ResponseEntity.ok(product);
+            }
+            return ResponseEntity.notFound().build();
+        });
     }
 
     @GetMapping("/categories")
-    public ResponseEntity<Set<String>> getAllCategories() {
-        return ResponseEntity.ok(productService.getAllCategories());
+    public ResponseEntity<byte[]> getAllCategories(WebRequest request) {
+        return ConditionalGets.unlessNotModified(request, productService.getCatalogVersion(),
+                () -> responseCache.respond(CatalogResponseCache.categoriesKey(), productService::getAllCategories));
     }
 
     @GetMapping("/filter/price")
     public ResponseEntity<List<Product>> filterByPriceRange(
             @RequestParam double minPrice,
-            @RequestParam double maxPrice) {
-        return ResponseEntity.ok(productService.filterByPriceRange(minPrice, maxPrice));
+            @RequestParam double maxPrice,
+            WebRequest request) {
+        return ConditionalGets.unlessNotModified(request, productService.getCatalogVersion(),
+                () -> ResponseEntity.ok(productService.filterByPriceRange(minPrice, maxPrice)));
     }
 
     @GetMapping("/filter")
@@ -100,7 +163,12 @@ public class ProductController {
             @RequestParam(required = false) String category,
             @RequestParam(required = false) Double minPrice,
             @RequestParam(required = false) Double maxPrice,
-            @RequestParam(required = false, defaultValue = "name") String sortBy) {
-        return ResponseEntity.ok(productService.filterProducts(category, minPrice, maxPrice, sortBy));
+            @RequestParam(required = false, defaultValue = "name") String sortBy,
+            @RequestParam(required = false) Integer limit,
+            WebRequest request) {
+        // Without a limit every match is returned, as before
+        int count = limit != null ? Page.clampLimit(limit) : Integer.MAX_VALUE;
+        return ConditionalGets.unlessNotModified(request, productService.getCatalogVersion(),
+                () -> ResponseEntity.ok(productService.filterProducts(category, minPrice, maxPrice, sortBy, count)));
     }
 }
\ No newline at end of file
@@ -0,0 +1,34 @@
+package com.shop.backend.controllers;
+
+import com.shop.backend.services.api.DuplicateUserException;
+import com.shop.backend.services.api.InsufficientStockException;
+import com.shop.backend.services.api.InvalidUserException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+/**
+ * Maps the service exceptions that describe a refused request to status
+ * codes; the message is sent as the body
+ * Asynchronous endpoints are covered too: Spring unwraps the
+ * CompletionException of a failed future before looking for a handler.
+ */
+@RestControllerAdvice
+public class ServiceExceptionHandler {
+
+    @ExceptionHandler(InvalidUserException.class)
+    public ResponseEntity<String> invalidUser(InvalidUserException e) {
+        return ResponseEntity.badRequest().body(e.getMessage());
+    }
+
+    @ExceptionHandler(DuplicateUserException.class)
+    public ResponseEntity<String> duplicateUser(DuplicateUserException e) {
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+    }
+
+    @ExceptionHandler(InsufficientStockException.class)
+    public ResponseEntity<String> insufficientStock(InsufficientStockException e) {
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+    }
+}
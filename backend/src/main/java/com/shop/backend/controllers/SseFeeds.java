@@ -0,0 +1,62 @@
+package com.shop.backend.controllers;
+
+import com.shop.backend.events.ChangeFeed;
+import com.shop.backend.events.FeedEvent;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Helper for streaming change feed events as Server-Sent Events
+ * Each event is named after its topic and carries the FeedEvent as JSON. If
+ * the client fell behind and events were dropped, a resync event with the
+ * drop count comes first; the client should reload before applying the
+ * events that follow. Idle connections get a comment line now and then.
+ */
+final class SseFeeds {
+
+    static final String RESYNC = "resync";
+
+    private SseFeeds() {
+    }
+
+    /**
+     * Subscribe a new SSE connection to the feed
+     *
+     * @param feed          change feed
+     * @param timeoutMillis how long the connection stays open; clients reconnect after it
+     * @param filter        selects the events sent on this connection
+     * @return emitter to return from the controller
+     */
+    static SseEmitter open(ChangeFeed feed, long timeoutMillis, Predicate<FeedEvent> filter) {
+        SseEmitter emitter = new SseEmitter(timeoutMillis);
+        ChangeFeed.Subscription subscription = feed.subscribe(filter, new ChangeFeed.Sink() {
+            @Override
+            public void send(List<FeedEvent> events, long dropped) throws IOException {
+                if (dropped > 0) {
+                    emitter.send(SseEmitter.event().name(RESYNC)
+                            .data(Collections.singletonMap("dropped", dropped), MediaType.APPLICATION_JSON));
+                }
+                for (FeedEvent event : events) {
+                    emitter.send(SseEmitter.event().name(event.getTopic()).data(event, MediaType.APPLICATION_JSON));
+                }
+            }
+
+            @Override
+            public void heartbeat() throws IOException {
+                emitter.send(SseEmitter.event().comment("heartbeat"));
+            }
+        });
+        emitter.onCompletion(subscription::close);
+        emitter.onTimeout(() -> {
+            subscription.close();
+            emitter.complete();
+        });
+        emitter.onError(error -> subscription.close());
+        return emitter;
+    }
+}
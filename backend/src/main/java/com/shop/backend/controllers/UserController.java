@@ -1,17 +1,25 @@
 package com.shop.backend.controllers;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shop.backend.async.ServiceExecutor;
+import com.shop.backend.models.Page;
 import com.shop.backend.models.User;
 import com.shop.backend.services.api.UserService;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * REST Controller for User operations
+ * Registration and login run on the ServiceExecutor and answer 503 when it
+ * is saturated.
  */
 @RestController
 @RequestMapping("/api/users")
@@ -19,9 +27,14 @@ import java.util.Map;
 public class UserController {
 
     private final UserService userService;
+    private final ObjectMapper objectMapper;
+    private final ServiceExecutor executor;
 
-    public UserController(@Qualifier("studentUserService") UserService userService) {
+    public UserController(@Qualifier("indexedUserService") UserService userService, ObjectMapper objectMapper,
+                          ServiceExecutor executor) {
         this.userService = userService;
+        this.objectMapper = objectMapper;
+        this.executor = executor;
     }
 
     @GetMapping
@@ -29,6 +42,22 @@ public class UserController {
         return ResponseEntity.ok(userService.getAllUsers());
     }
 
+    @GetMapping("/page")
+    public ResponseEntity<Page<User>> getUsersPage(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit) {
+        Page<User> page = userService.getUsers(cursor, Page.clampLimit(limit));
+        if (page != null) {
+            return ResponseEntity.ok(page);
+        }
+        return ResponseEntity.badRequest().build();
+    }
+
+    @GetMapping(value = "/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamUsers() {
+        return NdjsonStreams.stream(objectMapper, userService::getUsers);
+    }
+
     @GetMapping("/{id}")
     public ResponseEntity<User> getUserById(@PathVariable String id) {
         User user = userService.getUserById(id);
@@ -40,43 +69,51 @@ public class UserController {
     }
 
     @PostMapping
-    public ResponseEntity<User> createUser(@RequestBody User user) {
-        return ResponseEntity.status(HttpStatus.CREATED).body(userService.createUser(user));
+    public CompletableFuture<ResponseEntity<User>> createUser(@RequestBody User user) {
+        return AsyncResponses.respond(() -> userService.createUserAsync(user, executor), createdUser -> {
+            if (createdUser != null) {
+                return ResponseEntity.status(HttpStatus.CREATED).body(createdUser);
+            }
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        });
     }
 
     @PutMapping("/{id}")
-    public ResponseEntity<User> updateUser(@PathVariable String id, @RequestBody User user) {
-        User updatedUser = userService.updateUser(id, user);
-        if (updatedUser != null) {
-            return ResponseEntity.ok(updatedUser);
-        }
-        return ResponseEntity.notFound().build();
+    public CompletableFuture<ResponseEntity<User>> updateUser(@PathVariable String id, @RequestBody User user) {
+        return AsyncResponses.respond(() -> userService.updateUserAsync(id, user, executor), updatedUser -> {
+            if (updatedUser != null) {
+                return ResponseEntity.ok(updatedUser);
+            }
+            return ResponseEntity.notFound().build();
+        });
     }
 
     @DeleteMapping("/{id}")
-    public ResponseEntity<Void> deleteUser(@PathVariable String id) {
-        boolean deleted = userService.deleteUser(id);
-        if (deleted) {
-            return ResponseEntity.noContent().build();
-        }
-        return ResponseEntity.notFound().build();
+    public CompletableFuture<ResponseEntity<Void>> deleteUser(@PathVariable String id) {
+        return AsyncResponses.respond(() -> userService.deleteUserAsync(id, executor), deleted -> {
+            if (deleted) {
+                return ResponseEntity.noContent().build();
+            }
+            return ResponseEntity.notFound().build();
+        });
     }
 
     @PostMapping("/login")
-    public ResponseEntity<User> login(@RequestBody Map<String, String> credentials) {
+    public CompletableFuture<ResponseEntity<User>> login(@RequestBody Map<String, String> credentials) {
         String username = credentials.get("username");
         String password = credentials.get("password");
 
         if (username == null || password == null) {
-            return ResponseEntity.badRequest().build();
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().build());
         }
 
-        User user = userService.authenticate(username, password);
-        if (user != null) {
-            return ResponseEntity.ok(user);
-        } else {
-            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
-        }
+        return AsyncResponses.respond(() -> userService.authenticateAsync(username, password, executor), user -> {
+            if (user != null) {
+                return ResponseEntity.ok(user);
+            } else {
+                return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+            }
+        });
     }
 
     @GetMapping("/username/{username}")
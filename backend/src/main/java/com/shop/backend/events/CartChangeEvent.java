@@ -0,0 +1,20 @@
+package com.shop.backend.events;
+
+/**
+ * Published after a user's cart changed
+ */
+public class CartChangeEvent {
+
+    private final String userId;
+
+    /**
+     * @param userId owner of the cart
+     */
+    public CartChangeEvent(String userId) {
+        this.userId = userId;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+}
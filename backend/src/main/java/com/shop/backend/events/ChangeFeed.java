@@ -0,0 +1,376 @@
+package com.shop.backend.events;
+
+import com.shop.backend.services.api.CartService;
+import com.shop.backend.services.api.OrderService;
+import com.shop.backend.services.api.ProductService;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * Fan-out of product, cart and order changes to live subscribers
+ * Listeners only queue the service events, so a mutation never waits for a
+ * client. One dispatcher thread turns each event into a FeedEvent, reading
+ * the entity's version before the entity, and hands it to every subscriber
+ * whose filter accepts it.
+ *
+ * Each subscriber has a fixed ring buffer. A change to an entity that is
+ * still waiting in the buffer replaces the waiting event in place, so a
+ * slow client gets the latest state once rather than every step. When the
+ * buffer is full the oldest event is dropped and the client is told how
+ * many it missed, so it can reload instead of trusting a partial stream.
+ * Buffers are drained in batches on a small sender pool.
+ */
+@Component
+public class ChangeFeed {
+
+    // A comment line keeps idle connections from being closed by proxies
+    private static final long HEARTBEAT_SECONDS = 15;
+    private static final int SENDER_THREADS = 2;
+
+    private final ProductService productService;
+    private final CartService cartService;
+    private final OrderService orderService;
+    private final int bufferSize;
+
+    private final BlockingQueue<Object> inbox;
+    // Events lost because the inbox was full; every subscriber missed them
+    private final AtomicLong lost = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+
+    private final Thread dispatcher;
+    private final ExecutorService senders;
+    private final ScheduledExecutorService heartbeats;
+    private volatile boolean running = true;
+
+    public ChangeFeed(@Qualifier("indexedProductService") ProductService productService,
+                      @Qualifier("concurrentCartService") CartService cartService,
+                      @Qualifier("indexedOrderService") OrderService orderService,
+                      @Value("${shop.events.buffer-size:256}") int bufferSize,
+                      @Value("${shop.events.queue-size:65536}") int queueSize) {
+        this.productService = productService;
+        this.cartService = cartService;
+        this.orderService = orderService;
+        this.bufferSize = bufferSize;
+        this.inbox = new ArrayBlockingQueue<>(queueSize);
+        this.senders = Executors.newFixedThreadPool(SENDER_THREADS, daemonThreads("change-feed-sender"));
+        this.heartbeats = Executors.newSingleThreadScheduledExecutor(daemonThreads("change-feed-heartbeat"));
+        this.heartbeats.scheduleAtFixedRate(this::heartbeat, HEARTBEAT_SECONDS, HEARTBEAT_SECONDS, TimeUnit.SECONDS);
+        this.dispatcher = new Thread(this::dispatch, "change-feed-dispatcher");
+        this.dispatcher.setDaemon(true);
+        this.dispatcher.start();
+    }
+
+    /**
+     * Sends buffered events to one client
+     */
+    public interface Sink {
+
+        /**
+         * @param events  events in the order they happened, coalesced per entity
+         * @param dropped number of events dropped since the last call; if
+         *                non-zero the client should reload what it shows
+         * @throws IOException if the client is gone; the subscription is closed
+         */
+        void send(List<FeedEvent> events, long dropped) throws IOException;
+
+        /**
+         * Keep an idle connection open
+         *
+         * @throws IOException if the client is gone; the subscription is closed
+         */
+        void heartbeat() throws IOException;
+    }
+
+    /**
+     * Start receiving the events the filter accepts
+     *
+     * @param filter selects events for this subscriber
+     * @param sink   receives the events
+     * @return subscription, to be closed when the client goes away
+     */
+    public Subscription subscribe(Predicate<FeedEvent> filter, Sink sink) {
+        Subscription subscription = new Subscription(filter, sink, bufferSize);
+        subscriptions.add(subscription);
+        return subscription;
+    }
+
+    /**
+     * Get the number of open subscriptions
+     *
+     * @return subscriber count
+     */
+    public int subscriberCount() {
+        return subscriptions.size();
+    }
+
+    /**
+     * Get the number of events dropped for slow subscribers or a full inbox
+     *
+     * @return dropped events since start
+     */
+    public long droppedCount() {
+        return dropped.get();
+    }
+
+    @EventListener
+    public void onProductChange(ProductChangeEvent event) {
+        enqueue(event);
+    }
+
+    @EventListener
+    public void onCartChange(CartChangeEvent event) {
+        enqueue(event);
+    }
+
+    @EventListener
+    public void onOrderChange(OrderChangeEvent event) {
+        enqueue(event);
+    }
+
+    @PreDestroy
+    public void close() {
+        running = false;
+        dispatcher.interrupt();
+        heartbeats.shutdownNow();
+        senders.shutdownNow();
+        for (Subscription subscription : subscriptions) {
+            subscription.close();
+        }
+    }
+
+    private void enqueue(Object event) {
+        if (subscriptions.isEmpty()) {
+            return;
+        }
+        if (!inbox.offer(event)) {
+            lost.incrementAndGet();
+        }
+    }
+
+    private void dispatch() {
+        while (running) {
+            Object event;
+            try {
+                // Wake up now and then so a lost-only burst still reaches subscribers
+                event = inbox.poll(1, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            FeedEvent feedEvent = null;
+            if (event != null) {
+                try {
+                    feedEvent = toFeedEvent(event);
+                } catch (RuntimeException e) {
+                    // Subscribers are told they missed it rather than losing the dispatcher
+                    lost.incrementAndGet();
+                }
+            }
+            long missed = lost.getAndSet(0);
+            if (missed > 0) {
+                dropped.addAndGet(missed * subscriptions.size());
+            }
+            if (feedEvent == null && missed == 0) {
+                continue;
+            }
+            for (Subscription subscription : subscriptions) {
+                if (missed > 0) {
+                    subscription.markMissed(missed);
+                }
+                if (feedEvent != null && subscription.filter.test(feedEvent)) {
+                    subscription.offer(feedEvent);
+                }
+            }
+        }
+    }
+
+    private FeedEvent toFeedEvent(Object event) {
+        if (event instanceof ProductChangeEvent) {
+            ProductChangeEvent change = (ProductChangeEvent) event;
+            String id = change.getProductId();
+            long version = productService.getProductVersion(id);
+            Object data = change.getType() == ProductChangeEvent.Type.DELETED ? null : productService.getProductById(id);
+            return new FeedEvent(FeedEvent.PRODUCT, typeName(change.getType()), id, null, version, data);
+        }
+        if (event instanceof CartChangeEvent) {
+            String userId = ((CartChangeEvent) event).getUserId();
+            long version = cartService.getCartVersion(userId);
+            return new FeedEvent(FeedEvent.CART, "updated", userId, userId, version,
+                    cartService.getCartByUserId(userId));
+        }
+        OrderChangeEvent change = (OrderChangeEvent) event;
+        String id = change.getOrderId();
+        long version = orderService.getOrderVersion(id);
+        return new FeedEvent(FeedEvent.ORDER, typeName(change.getType()), id, change.getUserId(), version,
+                orderService.getOrderById(id));
+    }
+
+    private void heartbeat() {
+        for (Subscription subscription : subscriptions) {
+            subscription.heartbeat();
+        }
+    }
+
+    private static String typeName(Enum<?> type) {
+        return type.name().toLowerCase(Locale.ROOT);
+    }
+
+    private static ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * One subscriber's ring buffer
+     */
+    public final class Subscription {
+
+        private final Predicate<FeedEvent> filter;
+        private final Sink sink;
+
+        // Guarded by this: slots between head and tail (absolute positions),
+        // the position of each buffered entity, and the drop count
+        private final FeedEvent[] ring;
+        private final Map<String, Long> positions = new HashMap<>();
+        private long head;
+        private long tail;
+        private long missed;
+        private boolean scheduled;
+
+        private volatile boolean closed;
+
+        private Subscription(Predicate<FeedEvent> filter, Sink sink, int capacity) {
+            this.filter = filter;
+            this.sink = sink;
+            this.ring = new FeedEvent[Math.max(1, capacity)];
+        }
+
+        /**
+         * Stop receiving events; safe to call more than once
+         */
+        public void close() {
+            closed = true;
+            subscriptions.remove(this);
+            synchronized (this) {
+                positions.clear();
+                while (head < tail) {
+                    ring[slot(head++)] = null;
+                }
+            }
+        }
+
+        private synchronized void offer(FeedEvent event) {
+            if (closed) {
+                return;
+            }
+            String key = event.key();
+            Long position = positions.get(key);
+            if (position != null) {
+                int slot = slot(position);
+                ring[slot] = ring[slot].mergedWith(event);
+            } else {
+                if (tail - head == ring.length) {
+                    int oldest = slot(head++);
+                    positions.remove(ring[oldest].key());
+                    ring[oldest] = null;
+                    missed++;
+                    dropped.incrementAndGet();
+                }
+                ring[slot(tail)] = event;
+                positions.put(key, tail++);
+            }
+            schedule();
+        }
+
+        private synchronized void markMissed(long count) {
+            if (closed) {
+                return;
+            }
+            missed += count;
+            schedule();
+        }
+
+        // Caller holds this
+        private void schedule() {
+            if (scheduled) {
+                return;
+            }
+            scheduled = true;
+            try {
+                senders.execute(this::flush);
+            } catch (RejectedExecutionException e) {
+                // Shutting down
+                scheduled = false;
+            }
+        }
+
+        private void flush() {
+            while (true) {
+                List<FeedEvent> batch;
+                long batchMissed;
+                synchronized (this) {
+                    if (closed || (head == tail && missed == 0)) {
+                        scheduled = false;
+                        return;
+                    }
+                    batch = new ArrayList<>((int) (tail - head));
+                    while (head < tail) {
+                        int slot = slot(head++);
+                        batch.add(ring[slot]);
+                        ring[slot] = null;
+                    }
+                    positions.clear();
+                    batchMissed = missed;
+                    missed = 0;
+                }
+                try {
+                    sink.send(batch, batchMissed);
+                } catch (IOException | RuntimeException e) {
+                    close();
+                    return;
+                }
+            }
+        }
+
+        private void heartbeat() {
+            if (closed) {
+                return;
+            }
+            try {
+                sink.heartbeat();
+            } catch (IOException | RuntimeException e) {
+                close();
+            }
+        }
+
+        private int slot(long position) {
+            return (int) (position % ring.length);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.shop.backend.events;
+
+/**
+ * One entry of the change feed as sent to clients
+ * Carries the entity as it was when the event was dispatched, so a client
+ * can apply it directly instead of reading the entity back. Deleted
+ * products carry no data.
+ */
+public class FeedEvent {
+
+    public static final String PRODUCT = "product";
+    public static final String CART = "cart";
+    public static final String ORDER = "order";
+
+    static final String CREATED = "created";
+    static final String DELETED = "deleted";
+
+    private final String topic;
+    private final String type;
+    private final String id;
+    private final String userId;
+    private final long version;
+    private final Object data;
+
+    /**
+     * @param topic   product, cart or order
+     * @param type    kind of change, e.g. created or status
+     * @param id      product ID, order ID, or the owner's user ID for carts
+     * @param userId  user the entity belongs to (null for products)
+     * @param version entity version after the change, or -1 if untracked
+     * @param data    entity after the change, or null if it is gone
+     */
+    public FeedEvent(String topic, String type, String id, String userId, long version, Object data) {
+        this.topic = topic;
+        this.type = type;
+        this.id = id;
+        this.userId = userId;
+        this.version = version;
+        this.data = data;
+    }
+
+    public String getTopic() {
+        return topic;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public Object getData() {
+        return data;
+    }
+
+    // Events with the same key describe the same entity and may be coalesced
+    String key() {
+        return topic + ":" + id;
+    }
+
+    /**
+     * Coalesce a newer event for the same entity into this one
+     * The newer event wins, except that an entity the client has not yet
+     * been told about is still announced as created.
+     */
+    FeedEvent mergedWith(FeedEvent newer) {
+        if (CREATED.equals(type) && !DELETED.equals(newer.type)) {
+            return new FeedEvent(topic, CREATED, id, userId, newer.version, newer.data);
+        }
+        return newer;
+    }
+}
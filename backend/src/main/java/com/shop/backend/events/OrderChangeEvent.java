@@ -0,0 +1,38 @@
+package com.shop.backend.events;
+
+/**
+ * Published after an order was placed or changed status
+ */
+public class OrderChangeEvent {
+
+    public enum Type {
+        CREATED, STATUS
+    }
+
+    private final Type type;
+    private final String orderId;
+    private final String userId;
+
+    /**
+     * @param type    kind of change
+     * @param orderId order ID
+     * @param userId  user who placed the order
+     */
+    public OrderChangeEvent(Type type, String orderId, String userId) {
+        this.type = type;
+        this.orderId = orderId;
+        this.userId = userId;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public String getOrderId() {
+        return orderId;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+}
@@ -0,0 +1,48 @@
+package com.shop.backend.events;
+
+/**
+ * Published after a product was created, updated, deleted or had its stock
+ * changed
+ * Carries the category before and after the change, so listeners can tell
+ * which category listings are affected without reading the product back.
+ */
+public class ProductChangeEvent {
+
+    public enum Type {
+        CREATED, UPDATED, DELETED, STOCK
+    }
+
+    private final Type type;
+    private final String productId;
+    private final String previousCategory;
+    private final String category;
+
+    /**
+     * @param type             kind of change
+     * @param productId        product ID
+     * @param previousCategory category before the change (null if created)
+     * @param category         category after the change (null if deleted)
+     */
+    public ProductChangeEvent(Type type, String productId, String previousCategory, String category) {
+        this.type = type;
+        this.productId = productId;
+        this.previousCategory = previousCategory;
+        this.category = category;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public String getProductId() {
+        return productId;
+    }
+
+    public String getPreviousCategory() {
+        return previousCategory;
+    }
+
+    public String getCategory() {
+        return category;
+    }
+}
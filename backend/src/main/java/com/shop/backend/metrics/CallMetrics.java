@@ -0,0 +1,43 @@
+package com.shop.backend.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency and error count of one endpoint or service method
+ */
+public class CallMetrics {
+
+    // Rendered Prometheus labels, e.g. endpoint="GET /api/products/{id}"
+    private final String labels;
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LongAdder errors = new LongAdder();
+
+    CallMetrics(String labels) {
+        this.labels = labels;
+    }
+
+    /**
+     * Record one finished call
+     *
+     * @param nanos  elapsed time in nanoseconds
+     * @param failed whether the call counts as an error
+     */
+    public void record(long nanos, boolean failed) {
+        latency.record(nanos);
+        if (failed) {
+            errors.increment();
+        }
+    }
+
+    String getLabels() {
+        return labels;
+    }
+
+    LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    long getErrors() {
+        return errors.sum();
+    }
+}
@@ -0,0 +1,59 @@
+package com.shop.backend.metrics;
+
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Times every controller request and counts its errors
+ * The start time is kept as a request attribute that later dispatches leave
+ * alone, so streamed responses are timed until the stream is finished.
+ */
+public class EndpointMetricsInterceptor implements HandlerInterceptor {
+
+    private static final String START_ATTRIBUTE = EndpointMetricsInterceptor.class.getName() + ".start";
+
+    private final MetricsRegistry registry;
+
+    // Handler method -> its endpoint metrics, so the label is built once
+    private final Map<Method, CallMetrics> byHandler = new ConcurrentHashMap<>();
+
+    public EndpointMetricsInterceptor(MetricsRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (handler instanceof HandlerMethod && request.getAttribute(START_ATTRIBUTE) == null) {
+            request.setAttribute(START_ATTRIBUTE, System.nanoTime());
+        }
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+                                Exception ex) {
+        Object start = request.getAttribute(START_ATTRIBUTE);
+        if (!(start instanceof Long) || !(handler instanceof HandlerMethod)) {
+            return;
+        }
+        long elapsed = System.nanoTime() - (Long) start;
+        Method method = ((HandlerMethod) handler).getMethod();
+        CallMetrics metrics = byHandler.get(method);
+        if (metrics == null) {
+            metrics = byHandler.computeIfAbsent(method, key -> registry.endpoint(endpointOf(request)));
+        }
+        metrics.record(elapsed, ex != null || response.getStatus() >= 400);
+    }
+
+    private static String endpointOf(HttpServletRequest request) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        return request.getMethod() + " " + (pattern != null ? pattern : request.getRequestURI());
+    }
+}
@@ -0,0 +1,28 @@
+package com.shop.backend.metrics;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Registers the endpoint timing interceptor
+ */
+@Configuration
+public class MetricsConfig implements WebMvcConfigurer {
+
+    private final MetricsRegistry registry;
+    private final boolean enabled;
+
+    public MetricsConfig(MetricsRegistry registry, @Value("${shop.metrics.enabled:true}") boolean enabled) {
+        this.registry = registry;
+        this.enabled = enabled;
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry interceptors) {
+        if (enabled) {
+            interceptors.addInterceptor(new EndpointMetricsInterceptor(registry));
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package com.shop.backend.metrics;
+
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Holds every endpoint, service method, executor task and gauge metric and
+ * renders them in the Prometheus text exposition format
+ * Call metrics are created on first use and kept for the life of the
+ * process; recording into them never takes a lock. Gauges are only read when
+ * metrics are scraped.
+ */
+@Component
+public class MetricsRegistry {
+
+    private static final double[] QUANTILES = {0.5, 0.99, 0.999};
+    private static final double NANOS_PER_SECOND = 1_000_000_000.0;
+
+    private static final String ENDPOINT_FAMILY = "shop_http_request";
+    private static final String SERVICE_FAMILY = "shop_service_call";
+    private static final String EXECUTOR_FAMILY = "shop_executor_task";
+
+    // Label values -> metrics
+    private final Map<String, CallMetrics> endpoints = new ConcurrentHashMap<>();
+    private final Map<String, CallMetrics> serviceMethods = new ConcurrentHashMap<>();
+    private final Map<String, CallMetrics> executorPhases = new ConcurrentHashMap<>();
+
+    // Metric name -> gauge, sorted for a stable scrape
+    private final Map<String, Gauge> gauges = new ConcurrentSkipListMap<>();
+
+    /**
+     * Get the metrics of an endpoint, creating them on first use
+     *
+     * @param endpoint HTTP method and path pattern, e.g. "GET /api/products/{id}"
+     * @return endpoint metrics
+     */
+    public CallMetrics endpoint(String endpoint) {
+        return endpoints.computeIfAbsent(endpoint, key -> new CallMetrics(label("endpoint", key)));
+    }
+
+    /**
+     * Get the metrics of a service method, creating them on first use
+     *
+     * @param service bean name of the service
+     * @param method  method name
+     * @return method metrics
+     */
+    public CallMetrics serviceMethod(String service, String method) {
+        return serviceMethods.computeIfAbsent(service + '.' + method,
+                key -> new CallMetrics(label("service", service) + ',' + label("method", method)));
+    }
+
+    /**
+     * Get the metrics of one phase of the tasks run by an executor, creating
+     * them on first use
+     *
+     * @param executor executor name
+     * @param phase    e.g. "queue" for time waiting, "run" for time running
+     * @return phase metrics
+     */
+    public CallMetrics executorTask(String executor, String phase) {
+        return executorPhases.computeIfAbsent(executor + '.' + phase,
+                key -> new CallMetrics(label("executor", executor) + ',' + label("phase", phase)));
+    }
+
+    /**
+     * Register a gauge read at scrape time
+     *
+     * @param name  metric name
+     * @param help  one-line description
+     * @param value reads the current value
+     */
+    public void gauge(String name, String help, LongSupplier value) {
+        gauges.put(name, new Gauge(help, null, () -> Map.of("", value.getAsLong())));
+    }
+
+    /**
+     * Register a gauge with one label, read at scrape time
+     *
+     * @param name   metric name
+     * @param help   one-line description
+     * @param label  label name
+     * @param values reads label value -> current value
+     */
+    public void gauge(String name, String help, String label, Supplier<Map<String, Long>> values) {
+        gauges.put(name, new Gauge(help, label, values));
+    }
+
+    /**
+     * Render every metric in the Prometheus text format (version 0.0.4)
+     *
+     * @return exposition text
+     */
+    public String scrape() {
+        StringBuilder out = new StringBuilder(4096);
+        writeCalls(out, ENDPOINT_FAMILY, "HTTP requests by endpoint", "responses with status 400 or above",
+                endpoints.values());
+        writeCalls(out, SERVICE_FAMILY, "Service method calls", "calls that threw", serviceMethods.values());
+        writeCalls(out, EXECUTOR_FAMILY, "Executor tasks by phase", "tasks that threw", executorPhases.values());
+        for (Map.Entry<String, Gauge> entry : gauges.entrySet()) {
+            writeGauge(out, entry.getKey(), entry.getValue());
+        }
+        return out.toString();
+    }
+
+    private static void writeCalls(StringBuilder out, String family, String help, String errorHelp,
+                                   Collection<CallMetrics> calls) {
+        List<CallMetrics> sorted = new ArrayList<>(calls);
+        sorted.sort(Comparator.comparing(CallMetrics::getLabels));
+        List<LatencyHistogram.Snapshot> snapshots = new ArrayList<>(sorted.size());
+        for (CallMetrics call : sorted) {
+            snapshots.add(call.getLatency().snapshot());
+        }
+
+        String seconds = family + "_seconds";
+        header(out, seconds, help + ", latency in seconds", "summary");
+        for (int i = 0; i < sorted.size(); i++) {
+            String labels = sorted.get(i).getLabels();
+            LatencyHistogram.Snapshot snapshot = snapshots.get(i);
+            for (double quantile : QUANTILES) {
+                sample(out, seconds, labels + ",quantile=\"" + quantile + '"',
+                        seconds(snapshot.valueAtQuantile(quantile)));
+            }
+            sample(out, seconds + "_sum", labels, seconds(snapshot.getSumNanos()));
+            sample(out, seconds + "_count", labels, Long.toString(snapshot.getCount()));
+        }
+
+        String max = family + "_seconds_max";
+        header(out, max, help + ", slowest call in seconds", "gauge");
+        for (int i = 0; i < sorted.size(); i++) {
+            sample(out, max, sorted.get(i).getLabels(), seconds(snapshots.get(i).getMaxNanos()));
+        }
+
+        String errors = family + "_errors_total";
+        header(out, errors, help + ", " + errorHelp, "counter");
+        for (CallMetrics call : sorted) {
+            sample(out, errors, call.getLabels(), Long.toString(call.getErrors()));
+        }
+    }
+
+    private static void writeGauge(StringBuilder out, String name, Gauge gauge) {
+        header(out, name, gauge.help, "gauge");
+        Map<String, Long> values = new TreeMap<>(gauge.values.get());
+        for (Map.Entry<String, Long> entry : values.entrySet()) {
+            String labels = gauge.label != null ? label(gauge.label, entry.getKey()) : "";
+            sample(out, name, labels, Long.toString(entry.getValue()));
+        }
+    }
+
+    private static void header(StringBuilder out, String name, String help, String type) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void sample(StringBuilder out, String name, String labels, String value) {
+        out.append(name);
+        if (!labels.isEmpty()) {
+            out.append('{').append(labels).append('}');
+        }
+        out.append(' ').append(value).append('\n');
+    }
+
+    private static String seconds(long nanos) {
+        return Double.toString(nanos / NANOS_PER_SECOND);
+    }
+
+    private static String label(String name, String value) {
+        StringBuilder label = new StringBuilder(name.length() + value.length() + 3);
+        label.append(name).append("=\"");
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' || c == '"') {
+                label.append('\\').append(c);
+            } else if (c == '\n') {
+                label.append("\\n");
+            } else {
+                label.append(c);
+            }
+        }
+        return label.append('"').toString();
+    }
+
+    /**
+     * A value read at scrape time, optionally split by one label
+     */
+    private static final class Gauge {
+        private final String help;
+        private final String label;
+        private final Supplier<Map<String, Long>> values;
+
+        private Gauge(String help, String label, Supplier<Map<String, Long>> values) {
+            this.help = help;
+            this.label = label;
+            this.values = values;
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.shop.backend.metrics;
+
+import com.shop.backend.services.api.CartService;
+import com.shop.backend.services.api.OrderService;
+import com.shop.backend.services.api.ProductService;
+import com.shop.backend.services.api.UserService;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Wraps every service bean in a proxy that times the calls of its service
+ * API methods
+ * Proxies subclass the service, so beans injected by their concrete class
+ * (e.g. ConcurrentCartService) are timed too. Methods outside the service
+ * API, such as recovery callbacks, pass straight through.
+ */
+@Component
+public class ServiceMetricsPostProcessor implements BeanPostProcessor {
+
+    private static final List<Class<?>> SERVICE_APIS =
+            List.of(ProductService.class, CartService.class, OrderService.class, UserService.class);
+
+    private final MetricsRegistry registry;
+    private final boolean enabled;
+
+    public ServiceMetricsPostProcessor(MetricsRegistry registry,
+                                       @Value("${shop.metrics.enabled:true}") boolean enabled) {
+        this.registry = registry;
+        this.enabled = enabled;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (!enabled) {
+            return bean;
+        }
+        List<Class<?>> apis = new ArrayList<>();
+        for (Class<?> api : SERVICE_APIS) {
+            if (api.isInstance(bean)) {
+                apis.add(api);
+            }
+        }
+        if (apis.isEmpty()) {
+            return bean;
+        }
+        ProxyFactory factory = new ProxyFactory(bean);
+        factory.setProxyTargetClass(true);
+        factory.addAdvice(new TimingInterceptor(registry, beanName, apis));
+        return factory.getProxy();
+    }
+
+    /**
+     * Records the latency of each service API call and counts the ones that throw
+     */
+    private static final class TimingInterceptor implements MethodInterceptor {
+
+        // Marks methods that are not part of a service API
+        private static final CallMetrics UNTIMED = new CallMetrics("");
+
+        private final MetricsRegistry registry;
+        private final String service;
+        private final List<Class<?>> apis;
+        private final Map<Method, CallMetrics> byMethod = new ConcurrentHashMap<>();
+
+        private TimingInterceptor(MetricsRegistry registry, String service, List<Class<?>> apis) {
+            this.registry = registry;
+            this.service = service;
+            this.apis = apis;
+        }
+
+        @Override
+        public Object invoke(MethodInvocation invocation) throws Throwable {
+            CallMetrics metrics = metricsOf(invocation.getMethod());
+            if (metrics == UNTIMED) {
+                return invocation.proceed();
+            }
+            long start = System.nanoTime();
+            boolean failed = true;
+            try {
+                Object result = invocation.proceed();
+                failed = false;
+                return result;
+            } finally {
+                metrics.record(System.nanoTime() - start, failed);
+            }
+        }
+
+        private CallMetrics metricsOf(Method method) {
+            CallMetrics metrics = byMethod.get(method);
+            if (metrics == null) {
+                metrics = byMethod.computeIfAbsent(method, this::resolve);
+            }
+            return metrics;
+        }
+
+        private CallMetrics resolve(Method method) {
+            for (Class<?> api : apis) {
+                try {
+                    api.getMethod(method.getName(), method.getParameterTypes());
+                    return registry.serviceMethod(service, methodLabel(api, method));
+                } catch (NoSuchMethodException e) {
+                    // Try the next API
+                }
+            }
+            return UNTIMED;
+        }
+
+        // Overloads get their parameter types appended so they are reported separately
+        private static String methodLabel(Class<?> api, Method method) {
+            int overloads = 0;
+            for (Method candidate : api.getMethods()) {
+                if (candidate.getName().equals(method.getName())) {
+                    overloads++;
+                }
+            }
+            if (overloads == 1) {
+                return method.getName();
+            }
+            StringBuilder label = new StringBuilder(method.getName()).append('(');
+            Class<?>[] parameters = method.getParameterTypes();
+            for (int i = 0; i < parameters.length; i++) {
+                if (i > 0) {
+                    label.append(',');
+                }
+                label.append(parameters[i].getSimpleName());
+            }
+            return label.append(')').toString();
+        }
+    }
+}
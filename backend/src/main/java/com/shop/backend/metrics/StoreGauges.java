@@ -0,0 +1,59 @@
+package com.shop.backend.metrics;
+
+import com.shop.backend.cache.CatalogResponseCache;
+import com.shop.backend.events.ChangeFeed;
+import com.shop.backend.services.core.ConcurrentCartService;
+import com.shop.backend.services.core.IndexedOrderService;
+import com.shop.backend.services.core.IndexedProductService;
+import com.shop.backend.services.core.IndexedUserService;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+
+/**
+ * Publishes the sizes of the core stores, the response cache and the change
+ * feed as gauges
+ */
+@Component
+public class StoreGauges {
+
+    private final MetricsRegistry registry;
+    private final IndexedProductService productService;
+    private final ConcurrentCartService cartService;
+    private final IndexedOrderService orderService;
+    private final IndexedUserService userService;
+    private final CatalogResponseCache responseCache;
+    private final ChangeFeed changeFeed;
+
+    public StoreGauges(MetricsRegistry registry,
+                       IndexedProductService productService,
+                       ConcurrentCartService cartService,
+                       IndexedOrderService orderService,
+                       IndexedUserService userService,
+                       CatalogResponseCache responseCache,
+                       ChangeFeed changeFeed) {
+        this.registry = registry;
+        this.productService = productService;
+        this.cartService = cartService;
+        this.orderService = orderService;
+        this.userService = userService;
+        this.responseCache = responseCache;
+        this.changeFeed = changeFeed;
+    }
+
+    @PostConstruct
+    public void register() {
+        registry.gauge("shop_catalog_products", "Products in the catalog", productService::size);
+        registry.gauge("shop_carts_active", "Carts currently held", cartService::activeCartCount);
+        registry.gauge("shop_orders", "Orders held", orderService::size);
+        registry.gauge("shop_orders_by_status", "Orders held, by status", "status", orderService::countByStatus);
+        registry.gauge("shop_users", "Registered users", userService::size);
+        registry.gauge("shop_response_cache_entries", "Cached product responses",
+                () -> responseCache.getCache().size());
+        registry.gauge("shop_response_cache_bytes", "Size of the cached product responses",
+                () -> responseCache.getCache().bytes());
+        registry.gauge("shop_change_feed_subscribers", "Open change feed connections", changeFeed::subscriberCount);
+        registry.gauge("shop_change_feed_dropped_events", "Change feed events dropped for slow subscribers",
+                changeFeed::droppedCount);
+    }
+}
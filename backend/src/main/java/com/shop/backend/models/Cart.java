@@ -2,6 +2,7 @@ package com.shop.backend.models;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -14,11 +15,18 @@ import java.util.Map;
  */
 public class Cart {
     private String userId;
-    private List<CartItem> items = new ArrayList<>();
-    private double totalAmount;
 
-    // Extension mechanism for students to add custom fields
-    private Map<String, Object> customFields = new HashMap<>();
+    // Items keyed by product ID, in the order they were added
+    private final Map<String, CartItem> items = new LinkedHashMap<>();
+
+    // Running total in minor units, kept up to date by every mutation
+    private long totalMinorUnits;
+
+    // Running sum of item quantities, kept up to date the same way
+    private int totalQuantity;
+
+    // Extension mechanism for students to add custom fields; created on first use
+    private Map<String, Object> customFields;
 
     public Cart() {
     }
@@ -27,23 +35,25 @@ public class Cart {
         this.userId = userId;
     }
 
-    // Method to calculate total amount
+    // Method to calculate total amount from scratch
     public void calculateTotalAmount() {
-        this.totalAmount = items.stream()
-                .mapToDouble(item -> item.getPrice() * item.getQuantity())
-                .sum();
+        long total = 0;
+        int quantity = 0;
+        for (CartItem item : items.values()) {
+            total += Money.lineTotal(item.getPrice(), item.getQuantity());
+            quantity += item.getQuantity();
+        }
+        this.totalMinorUnits = total;
+        this.totalQuantity = quantity;
     }
 
     // Method to add item to cart
     public void addItem(Product product, int quantity) {
-        // Check if the product is already in the cart
-        for (CartItem item : items) {
-            if (item.getProductId().equals(product.getId())) {
-                // Update quantity
-                item.setQuantity(item.getQuantity() + quantity);
-                calculateTotalAmount();
-                return;
-            }
+        CartItem item = items.get(product.getId());
+        if (item != null) {
+            // Update quantity
+            setQuantity(item, item.getQuantity() + quantity);
+            return;
         }
 
         // Add new item
@@ -52,31 +62,56 @@ public class Cart {
                 product.getName(),
                 quantity,
                 product.getPrice());
-        items.add(newItem);
-        calculateTotalAmount();
+        items.put(newItem.getProductId(), newItem);
+        totalMinorUnits += Money.lineTotal(newItem.getPrice(), quantity);
+        totalQuantity += quantity;
     }
 
-    // Method to update item quantity
-    public void updateItemQuantity(String productId, int quantity) {
-        for (CartItem item : items) {
-            if (item.getProductId().equals(productId)) {
-                item.setQuantity(quantity);
-                calculateTotalAmount();
-                return;
-            }
+    // Method to update item quantity; false if the item is missing or already has that quantity
+    public boolean updateItemQuantity(String productId, int quantity) {
+        CartItem item = items.get(productId);
+        if (item == null || item.getQuantity() == quantity) {
+            return false;
         }
+        setQuantity(item, quantity);
+        return true;
     }
 
-    // Method to remove item from cart
-    public void removeItem(String productId) {
-        items.removeIf(item -> item.getProductId().equals(productId));
-        calculateTotalAmount();
+    // Method to remove item from cart; false if it was not in the cart
+    public boolean removeItem(String productId) {
+        CartItem item = items.remove(productId);
+        if (item == null) {
+            return false;
+        }
+        totalMinorUnits -= Money.lineTotal(item.getPrice(), item.getQuantity());
+        totalQuantity -= item.getQuantity();
+        return true;
+    }
+
+    // Method to get a single item; a copy, so change quantities through updateItemQuantity
+    public CartItem getItem(String productId) {
+        CartItem item = items.get(productId);
+        return item != null ? item.copy() : null;
     }
 
     // Method to clear cart
     public void clear() {
         items.clear();
-        totalAmount = 0;
+        totalMinorUnits = 0;
+        totalQuantity = 0;
+    }
+
+    // Method to get the number of units in the cart without copying its items
+    // Not a bean property, so it is not serialized with the cart
+    public int totalQuantity() {
+        return totalQuantity;
+    }
+
+    private void setQuantity(CartItem item, int quantity) {
+        totalMinorUnits += Money.lineTotal(item.getPrice(), quantity)
+                - Money.lineTotal(item.getPrice(), item.getQuantity());
+        totalQuantity += quantity - item.getQuantity();
+        item.setQuantity(quantity);
     }
 
     // Getters and Setters
@@ -88,34 +123,71 @@ public class Cart {
         this.userId = userId;
     }
 
+    /**
+     * Get the items in the order they were added
+     * The items are copies; change the cart through its methods so the
+     * running total stays right.
+     */
     public List<CartItem> getItems() {
-        return items;
+        List<CartItem> copies = new ArrayList<>(items.size());
+        for (CartItem item : items.values()) {
+            copies.add(item.copy());
+        }
+        return copies;
     }
 
+    // Keeps copies, so the caller's items can change without moving the total
     public void setItems(List<CartItem> items) {
-        this.items = items;
+        this.items.clear();
+        if (items != null) {
+            for (CartItem item : items) {
+                CartItem existing = this.items.putIfAbsent(item.getProductId(), item.copy());
+                if (existing != null) {
+                    // Merge duplicate lines for the same product
+                    existing.setQuantity(existing.getQuantity() + item.getQuantity());
+                }
+            }
+        }
         calculateTotalAmount();
     }
 
     public double getTotalAmount() {
-        return totalAmount;
+        return Money.fromMinorUnits(totalMinorUnits);
     }
 
     // Custom fields extension methods
+    /**
+     * Get the custom fields
+     * The map is writable; no storage is allocated until the first field is
+     * added through it or addCustomField.
+     */
     public Map<String, Object> getCustomFields() {
-        return customFields;
+        return new LazyFields(() -> customFields, this::fields);
     }
 
     public void setCustomFields(Map<String, Object> customFields) {
-        this.customFields = customFields;
+        // An empty map may be read-only; addCustomField creates a fresh one
+        if (customFields == null || customFields.isEmpty()) {
+            this.customFields = null;
+        } else {
+            // A view of another model's fields is copied rather than shared
+            this.customFields = customFields instanceof LazyFields ? new HashMap<>(customFields) : customFields;
+        }
     }
 
     public void addCustomField(String key, Object value) {
-        customFields.put(key, value);
+        fields().put(key, value);
     }
 
     public Object getCustomField(String key) {
-        return customFields.get(key);
+        return customFields != null ? customFields.get(key) : null;
+    }
+
+    private Map<String, Object> fields() {
+        if (customFields == null) {
+            customFields = new HashMap<>();
+        }
+        return customFields;
     }
 
     /**
@@ -170,7 +242,11 @@ public class Cart {
         }
 
         public double getSubtotal() {
-            return price * quantity;
+            return Money.fromMinorUnits(Money.lineTotal(price, quantity));
+        }
+
+        private CartItem copy() {
+            return new CartItem(productId, productName, quantity, price);
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,29 @@
+package com.shop.backend.models;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Id generator for the models
+ * Ids keep the canonical UUID text form the frontend already handles, but
+ * the 128 random bits come from the calling thread's own ThreadLocalRandom
+ * instead of the shared SecureRandom behind UUID.randomUUID, so creating
+ * ids never contends between threads. Ids are unique, not unguessable.
+ */
+public final class Ids {
+
+    private Ids() {
+    }
+
+    /**
+     * Create a random (version 4) UUID string
+     *
+     * @return new id
+     */
+    public static String newId() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long mostSigBits = (random.nextLong() & ~0xF000L) | 0x4000L;
+        long leastSigBits = (random.nextLong() & ~(0xC000L << 48)) | (0x8000L << 48);
+        return new UUID(mostSigBits, leastSigBits).toString();
+    }
+}
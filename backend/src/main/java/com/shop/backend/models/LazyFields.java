@@ -0,0 +1,62 @@
+package com.shop.backend.models;
+
+import java.util.AbstractMap;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * Writable view of a model's custom fields that are allocated on first write
+ * Reads see an empty map while the model has no fields; the first put
+ * creates the model's map, so models without custom fields keep none.
+ */
+final class LazyFields extends AbstractMap<String, Object> {
+
+    private final Supplier<Map<String, Object>> existing;
+    private final Supplier<Map<String, Object>> created;
+
+    /**
+     * @param existing returns the model's map, or null if it has none yet
+     * @param created  returns the model's map, creating it if needed
+     */
+    LazyFields(Supplier<Map<String, Object>> existing, Supplier<Map<String, Object>> created) {
+        this.existing = existing;
+        this.created = created;
+    }
+
+    @Override
+    public Object put(String key, Object value) {
+        return created.get().put(key, value);
+    }
+
+    @Override
+    public Object get(Object key) {
+        Map<String, Object> fields = existing.get();
+        return fields != null ? fields.get(key) : null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        Map<String, Object> fields = existing.get();
+        return fields != null && fields.containsKey(key);
+    }
+
+    @Override
+    public Object remove(Object key) {
+        Map<String, Object> fields = existing.get();
+        return fields != null ? fields.remove(key) : null;
+    }
+
+    @Override
+    public int size() {
+        Map<String, Object> fields = existing.get();
+        return fields != null ? fields.size() : 0;
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        Map<String, Object> fields = existing.get();
+        return fields != null ? fields.entrySet() : Collections.emptySet();
+    }
+}
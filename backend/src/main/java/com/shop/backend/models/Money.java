@@ -0,0 +1,43 @@
+package com.shop.backend.models;
+
+/**
+ * Helpers for exact money arithmetic
+ * Amounts are exposed as doubles for the frontend but summed as whole cents
+ * (minor units), so totals never drift from floating-point accumulation.
+ */
+public final class Money {
+
+    private Money() {
+    }
+
+    /**
+     * Convert an amount to minor units
+     *
+     * @param amount amount, e.g. 12.34
+     * @return amount in cents, e.g. 1234
+     */
+    public static long toMinorUnits(double amount) {
+        return Math.round(amount * 100);
+    }
+
+    /**
+     * Convert minor units back to an amount
+     *
+     * @param minorUnits amount in cents
+     * @return amount
+     */
+    public static double fromMinorUnits(long minorUnits) {
+        return minorUnits / 100.0;
+    }
+
+    /**
+     * Get the exact total of a line
+     *
+     * @param unitPrice price of one unit
+     * @param quantity  number of units
+     * @return line total in cents
+     */
+    public static long lineTotal(double unitPrice, int quantity) {
+        return toMinorUnits(unitPrice) * quantity;
+    }
+}
@@ -1,11 +1,13 @@
 package com.shop.backend.models;
 
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.UUID;
 
 /**
  * Base Order model
@@ -15,35 +17,41 @@ import java.util.UUID;
  * TODO: Students need to implement the methods in this class
  */
 public class Order {
+    private static final long NO_TIMESTAMP = Long.MIN_VALUE;
+
     private String id;
     private String userId;
     private List<OrderItem> items = new ArrayList<>();
-    private double totalAmount;
+    // Total in minor units, kept up to date as items are added
+    private long totalMinorUnits;
     private String status; // e.g., "PENDING", "SHIPPED", "DELIVERED"
-    private LocalDateTime createdAt;
+    // Creation time in epoch milliseconds; exposed as a LocalDateTime for the frontend
+    private long createdAtMillis = NO_TIMESTAMP;
 
-    // Extension mechanism for students to add custom fields
-    private Map<String, Object> customFields = new HashMap<>();
+    // Extension mechanism for students to add custom fields; created on first use
+    private Map<String, Object> customFields;
 
     public Order() {
-        this.id = UUID.randomUUID().toString();
-        this.createdAt = LocalDateTime.now();
+        this.id = Ids.newId();
+        this.createdAtMillis = System.currentTimeMillis();
     }
 
     public Order(String userId, List<OrderItem> items, String status) {
-        this.id = UUID.randomUUID().toString();
+        this.id = Ids.newId();
         this.userId = userId;
-        this.items = items;
+        this.items = copiesOf(items);
         this.status = status;
-        this.createdAt = LocalDateTime.now();
+        this.createdAtMillis = System.currentTimeMillis();
         this.calculateTotalAmount();
     }
 
-    // Method to calculate total amount
+    // Method to calculate total amount from scratch
     public void calculateTotalAmount() {
-        this.totalAmount = items.stream()
-                .mapToDouble(item -> item.getPrice() * item.getQuantity())
-                .sum();
+        long total = 0;
+        for (OrderItem item : items) {
+            total += Money.lineTotal(item.getPrice(), item.getQuantity());
+        }
+        this.totalMinorUnits = total;
     }
 
     // Getters and Setters
@@ -63,22 +71,27 @@ public class Order {
         this.userId = userId;
     }
 
+    /**
+     * Get the items
+     * Read-only copies; add items with addItem so the running total stays right.
+     */
     public List<OrderItem> getItems() {
-        return items;
+        return Collections.unmodifiableList(copiesOf(items));
     }
 
     public void setItems(List<OrderItem> items) {
-        this.items = items;
+        this.items = copiesOf(items);
         calculateTotalAmount();
     }
 
     public void addItem(OrderItem item) {
-        this.items.add(item);
-        calculateTotalAmount();
+        OrderItem copy = item.copy();
+        this.items.add(copy);
+        totalMinorUnits += Money.lineTotal(copy.getPrice(), copy.getQuantity());
     }
 
     public double getTotalAmount() {
-        return totalAmount;
+        return Money.fromMinorUnits(totalMinorUnits);
     }
 
     public String getStatus() {
@@ -90,28 +103,70 @@ public class Order {
     }
 
     public LocalDateTime getCreatedAt() {
-        return createdAt;
+        if (createdAtMillis == NO_TIMESTAMP) {
+            return null;
+        }
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(createdAtMillis), ZoneId.systemDefault());
     }
 
     public void setCreatedAt(LocalDateTime createdAt) {
-        this.createdAt = createdAt;
+        this.createdAtMillis = createdAt != null
+                ? createdAt.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli()
+                : NO_TIMESTAMP;
+    }
+
+    /**
+     * Get the creation time without building a LocalDateTime
+     *
+     * @return epoch milliseconds, or Long.MIN_VALUE if unset
+     */
+    public long createdAtEpochMillis() {
+        return createdAtMillis;
     }
 
     // Custom fields extension methods
+    /**
+     * Get the custom fields
+     * The map is writable; no storage is allocated until the first field is
+     * added through it or addCustomField.
+     */
     public Map<String, Object> getCustomFields() {
-        return customFields;
+        return new LazyFields(() -> customFields, this::fields);
     }
 
     public void setCustomFields(Map<String, Object> customFields) {
-        this.customFields = customFields;
+        // An empty map may be read-only; addCustomField creates a fresh one
+        if (customFields == null || customFields.isEmpty()) {
+            this.customFields = null;
+        } else {
+            // A view of another model's fields is copied rather than shared
+            this.customFields = customFields instanceof LazyFields ? new HashMap<>(customFields) : customFields;
+        }
     }
 
     public void addCustomField(String key, Object value) {
-        customFields.put(key, value);
+        fields().put(key, value);
     }
 
     public Object getCustomField(String key) {
-        return customFields.get(key);
+        return customFields != null ? customFields.get(key) : null;
+    }
+
+    private Map<String, Object> fields() {
+        if (customFields == null) {
+            customFields = new HashMap<>();
+        }
+        return customFields;
+    }
+
+    private static List<OrderItem> copiesOf(List<OrderItem> items) {
+        List<OrderItem> copies = new ArrayList<>(items != null ? items.size() : 0);
+        if (items != null) {
+            for (OrderItem item : items) {
+                copies.add(item.copy());
+            }
+        }
+        return copies;
     }
 
     /**
@@ -164,5 +219,9 @@ public class Order {
         public void setPrice(double price) {
             this.price = price;
         }
+
+        private OrderItem copy() {
+            return new OrderItem(productId, productName, quantity, price);
+        }
     }
 }
\ No newline at end of file
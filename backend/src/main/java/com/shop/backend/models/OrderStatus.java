@@ -0,0 +1,47 @@
+package com.shop.backend.models;
+
+import java.util.Locale;
+
+/**
+ * Order lifecycle
+ * An order is placed PENDING, then either ships and is delivered, or is
+ * cancelled before it ships. DELIVERED and CANCELLED are final.
+ * Order.status holds the name, so the JSON the frontend sees is unchanged.
+ */
+public enum OrderStatus {
+    PENDING, SHIPPED, DELIVERED, CANCELLED;
+
+    /**
+     * Check whether an order in this status may move to another
+     *
+     * @param next target status
+     * @return true if the transition is allowed; staying put is not a transition
+     */
+    public boolean canMoveTo(OrderStatus next) {
+        switch (this) {
+            case PENDING:
+                return next == SHIPPED || next == CANCELLED;
+            case SHIPPED:
+                return next == DELIVERED;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Parse a status name, ignoring case
+     *
+     * @param status status name, e.g. "shipped"
+     * @return status, or null if the name is null or unknown
+     */
+    public static OrderStatus parse(String status) {
+        if (status == null) {
+            return null;
+        }
+        try {
+            return valueOf(status.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
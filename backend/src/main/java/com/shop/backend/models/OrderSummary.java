@@ -0,0 +1,78 @@
+package com.shop.backend.models;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Totals over all orders for the admin dashboard
+ * Revenue, item counts and averages leave cancelled orders out; the status
+ * counts include every order.
+ */
+public class OrderSummary {
+    private long orderCount;
+    private long itemCount;
+    private double revenue;
+    private double averageBasketSize;
+    private double averageOrderValue;
+    private Map<String, Long> ordersByStatus = new LinkedHashMap<>();
+
+    public OrderSummary() {
+    }
+
+    public OrderSummary(long orderCount, long itemCount, double revenue, Map<String, Long> ordersByStatus) {
+        this.orderCount = orderCount;
+        this.itemCount = itemCount;
+        this.revenue = revenue;
+        this.averageBasketSize = orderCount > 0 ? (double) itemCount / orderCount : 0.0;
+        this.averageOrderValue = orderCount > 0 ? revenue / orderCount : 0.0;
+        this.ordersByStatus = ordersByStatus;
+    }
+
+    public long getOrderCount() {
+        return orderCount;
+    }
+
+    public void setOrderCount(long orderCount) {
+        this.orderCount = orderCount;
+    }
+
+    public long getItemCount() {
+        return itemCount;
+    }
+
+    public void setItemCount(long itemCount) {
+        this.itemCount = itemCount;
+    }
+
+    public double getRevenue() {
+        return revenue;
+    }
+
+    public void setRevenue(double revenue) {
+        this.revenue = revenue;
+    }
+
+    public double getAverageBasketSize() {
+        return averageBasketSize;
+    }
+
+    public void setAverageBasketSize(double averageBasketSize) {
+        this.averageBasketSize = averageBasketSize;
+    }
+
+    public double getAverageOrderValue() {
+        return averageOrderValue;
+    }
+
+    public void setAverageOrderValue(double averageOrderValue) {
+        this.averageOrderValue = averageOrderValue;
+    }
+
+    public Map<String, Long> getOrdersByStatus() {
+        return ordersByStatus;
+    }
+
+    public void setOrdersByStatus(Map<String, Long> ordersByStatus) {
+        this.ordersByStatus = ordersByStatus;
+    }
+}
@@ -0,0 +1,97 @@
+package com.shop.backend.models;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * One page of a cursor-paginated listing
+ * nextCursor is passed back to fetch the following page and is null on the
+ * last page.
+ */
+public class Page<T> {
+    public static final int DEFAULT_LIMIT = 50;
+    public static final int MAX_LIMIT = 500;
+
+    private List<T> items = new ArrayList<>();
+    private String nextCursor;
+
+    public Page() {
+    }
+
+    public Page(List<T> items, String nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+
+    /**
+     * Clamp a requested page size to the allowed range
+     *
+     * @param limit requested page size (null for the default)
+     * @return page size between 1 and MAX_LIMIT
+     */
+    public static int clampLimit(Integer limit) {
+        if (limit == null || limit <= 0) {
+            return DEFAULT_LIMIT;
+        }
+        return Math.min(limit, MAX_LIMIT);
+    }
+
+    /**
+     * Build a page from a full list using a string key as the cursor
+     * Items are ordered by key; the cursor is the key of the last item
+     * returned, so the page after it starts at the first larger key.
+     *
+     * @param all    all items (may be null)
+     * @param key    unique key of an item
+     * @param cursor key of the last item already seen (null for the first page)
+     * @param limit  page size
+     * @return requested page
+     */
+    public static <T> Page<T> keyset(List<T> all, Function<T, String> key, String cursor, int limit) {
+        if (all == null || all.isEmpty()) {
+            return new Page<>(Collections.emptyList(), null);
+        }
+        List<T> sorted = new ArrayList<>(all);
+        sorted.sort(Comparator.comparing(key));
+
+        int start = 0;
+        if (cursor != null) {
+            // First index whose key is strictly greater than the cursor
+            int low = 0;
+            int high = sorted.size();
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (key.apply(sorted.get(mid)).compareTo(cursor) <= 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            start = low;
+        }
+        int end = Math.min(start + limit, sorted.size());
+        List<T> items = new ArrayList<>(sorted.subList(start, end));
+        String nextCursor = end < sorted.size() && !items.isEmpty() ? key.apply(items.get(items.size() - 1)) : null;
+        return new Page<>(items, nextCursor);
+    }
+
+    // Getters and Setters
+    public List<T> getItems() {
+        return items;
+    }
+
+    public void setItems(List<T> items) {
+        this.items = items;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+}
@@ -0,0 +1,53 @@
+package com.shop.backend.models;
+
+/**
+ * Units sold and revenue of one product, over orders that were not cancelled
+ */
+public class ProductSales {
+    private String productId;
+    private String productName;
+    private long quantity;
+    private double revenue;
+
+    public ProductSales() {
+    }
+
+    public ProductSales(String productId, String productName, long quantity, double revenue) {
+        this.productId = productId;
+        this.productName = productName;
+        this.quantity = quantity;
+        this.revenue = revenue;
+    }
+
+    public String getProductId() {
+        return productId;
+    }
+
+    public void setProductId(String productId) {
+        this.productId = productId;
+    }
+
+    public String getProductName() {
+        return productName;
+    }
+
+    public void setProductName(String productName) {
+        this.productName = productName;
+    }
+
+    public long getQuantity() {
+        return quantity;
+    }
+
+    public void setQuantity(long quantity) {
+        this.quantity = quantity;
+    }
+
+    public double getRevenue() {
+        return revenue;
+    }
+
+    public void setRevenue(double revenue) {
+        this.revenue = revenue;
+    }
+}
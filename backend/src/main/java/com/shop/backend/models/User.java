@@ -2,7 +2,6 @@ package com.shop.backend.models;
 
 import java.util.HashMap;
 import java.util.Map;
-import java.util.UUID;
 
 /**
  * Base User model
@@ -18,15 +17,15 @@ public class User {
     private String password; // Note: In a real application, this would be hashed
     private String role; // e.g., "CUSTOMER", "ADMIN"
 
-    // Extension mechanism for students to add custom fields
-    private Map<String, Object> customFields = new HashMap<>();
+    // Extension mechanism for students to add custom fields; created on first use
+    private Map<String, Object> customFields;
 
     public User() {
-        this.id = UUID.randomUUID().toString();
+        this.id = Ids.newId();
     }
 
     public User(String username, String email, String password, String role) {
-        this.id = UUID.randomUUID().toString();
+        this.id = Ids.newId();
         this.username = username;
         this.email = email;
         this.password = password;
@@ -79,19 +78,37 @@ public class User {
     }
 
     // Custom fields extension methods
+    /**
+     * Get the custom fields
+     * The map is writable; no storage is allocated until the first field is
+     * added through it or addCustomField.
+     */
     public Map<String, Object> getCustomFields() {
-        return customFields;
+        return new LazyFields(() -> customFields, this::fields);
     }
 
     public void setCustomFields(Map<String, Object> customFields) {
-        this.customFields = customFields;
+        // An empty map may be read-only; addCustomField creates a fresh one
+        if (customFields == null || customFields.isEmpty()) {
+            this.customFields = null;
+        } else {
+            // A view of another model's fields is copied rather than shared
+            this.customFields = customFields instanceof LazyFields ? new HashMap<>(customFields) : customFields;
+        }
     }
 
     public void addCustomField(String key, Object value) {
-        customFields.put(key, value);
+        fields().put(key, value);
     }
 
     public Object getCustomField(String key) {
-        return customFields.get(key);
+        return customFields != null ? customFields.get(key) : null;
+    }
+
+    private Map<String, Object> fields() {
+        if (customFields == null) {
+            customFields = new HashMap<>();
+        }
+        return customFields;
     }
 }
\ No newline at end of file
@@ -1,6 +1,10 @@
 package com.shop.backend.services.api;
 
 import com.shop.backend.models.Cart;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * Cart Service Interface
@@ -77,4 +81,132 @@ public interface CartService {
      * @return total amount
      */
     double getCartTotal(String userId);
+
+    /**
+     * Add several items to the cart at once
+     * The default implementation checks every line first and then calls
+     * addToCart for each, so it is not atomic; implementations should add
+     * the whole batch under one lock.
+     * 
+     * @param userId     user ID
+     * @param quantities product ID -> quantity to add
+     * @return updated cart, or null if a product does not exist or a quantity is not positive
+     */
+    default Cart addItemsToCart(String userId, Map<String, Integer> quantities) {
+        if (userId == null || quantities == null || quantities.isEmpty()) {
+            return null;
+        }
+        for (Map.Entry<String, Integer> line : quantities.entrySet()) {
+            if (line.getValue() == null || line.getValue() <= 0) {
+                return null;
+            }
+        }
+        Cart cart = null;
+        for (Map.Entry<String, Integer> line : quantities.entrySet()) {
+            cart = addToCart(userId, line.getKey(), line.getValue());
+            if (cart == null) {
+                return null;
+            }
+        }
+        return cart;
+    }
+
+    /**
+     * Get the version of a user's cart
+     * Versions only grow and change after every change to the cart. The
+     * default implementation does not track versions.
+     * 
+     * @param userId user ID
+     * @return version, or -1 if the user has no cart or versions are not tracked
+     */
+    default long getCartVersion(String userId) {
+        return -1;
+    }
+
+    /**
+     * Add an item to the cart asynchronously
+     * The default implementation runs addToCart on the executor.
+     * 
+     * @param userId    user ID
+     * @param productId product ID
+     * @param quantity  quantity to add
+     * @param executor  runs the work
+     * @return future completed with the updated cart, or null if the item could not be added
+     * @throws RejectedExecutionException if the executor refuses the work
+     */
+    default CompletableFuture<Cart> addToCartAsync(String userId, String productId, int quantity, Executor executor) {
+        return CompletableFuture.supplyAsync(() -> addToCart(userId, productId, quantity), executor);
+    }
+
+    /**
+     * Change an item's quantity asynchronously
+     * The default implementation runs updateCartItem on the executor.
+     * 
+     * @param userId    user ID
+     * @param productId product ID
+     * @param quantity  new quantity
+     * @param executor  runs the work
+     * @return future completed with the updated cart, or null if the item could not be updated
+     * @throws RejectedExecutionException if the executor refuses the work
+     */
+    default CompletableFuture<Cart> updateCartItemAsync(String userId, String productId, int quantity,
+                                                        Executor executor) {
+        return CompletableFuture.supplyAsync(() -> updateCartItem(userId, productId, quantity), executor);
+    }
+
+    /**
+     * Remove an item from the cart asynchronously
+     * The default implementation runs removeFromCart on the executor.
+     * 
+     * @param userId    user ID
+     * @param productId product ID
+     * @param executor  runs the work
+     * @return future completed with the updated cart, or null if not found
+     * @throws RejectedExecutionException if the executor refuses the work
+     */
+    default CompletableFuture<Cart> removeFromCartAsync(String userId, String productId, Executor executor) {
+        return CompletableFuture.supplyAsync(() -> removeFromCart(userId, productId), executor);
+    }
+
+    /**
+     * Empty the cart asynchronously
+     * The default implementation runs clearCart on the executor.
+     * 
+     * @param userId   user ID
+     * @param executor runs the work
+     * @return future completed with the cleared cart, or null if not found
+     * @throws RejectedExecutionException if the executor refuses the work
+     */
+    default CompletableFuture<Cart> clearCartAsync(String userId, Executor executor) {
+        return CompletableFuture.supplyAsync(() -> clearCart(userId), executor);
+    }
+
+    /**
+     * Create a cart asynchronously
+     * The default implementation runs createCart on the executor.
+     * 
+     * @param userId   user ID
+     * @param executor runs the work
+     * @return future completed with the created cart
+     * @throws RejectedExecutionException if the executor refuses the work
+     */
+    default CompletableFuture<Cart> createCartAsync(String userId, Executor executor) {
+        return CompletableFuture.supplyAsync(() -> createCart(userId), executor);
+    }
+
+    /**
+     * Add several items to the cart asynchronously
+     * The default implementation runs addItemsToCart on the executor.
+     * 
+     * @param userId     user ID
+     * @param quantities product ID -> quantity to add
+     * @param executor   runs the work
+     * @return future completed with the updated cart, or null if a product does
+     *         not exist or a quantity is not positive
+     * @throws RejectedExecutionException if the executor refuses the work
+     */
+    default CompletableFuture<Cart> addItemsToCartAsync(String userId, Map<String, Integer> quantities,
+                                                        Executor executor) {
+        return CompletableFuture.supplyAsync(() -> addItemsToCart(userId, quantities), executor);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,13 @@
+package com.shop.backend.services.api;
+
+/**
+ * Thrown when a username or email already belongs to another user
+ */
+public class DuplicateUserException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public DuplicateUserException(String message) {
+        super(message);
+    }
+}
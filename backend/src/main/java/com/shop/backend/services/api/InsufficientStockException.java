@@ -0,0 +1,20 @@
+package com.shop.backend.services.api;
+
+/**
+ * Thrown when a stock change would take a product's stock below zero
+ */
+public class InsufficientStockException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String productId;
+
+    public InsufficientStockException(String productId, int requested, int available) {
+        super("Cannot remove " + -requested + " of product " + productId + ": only " + available + " in stock");
+        this.productId = productId;
+    }
+
+    public String getProductId() {
+        return productId;
+    }
+}
@@ -0,0 +1,13 @@
+package com.shop.backend.services.api;
+
+/**
+ * Thrown when a user to create or update is missing a required field
+ */
+public class InvalidUserException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public InvalidUserException(String message) {
+        super(message);
+    }
+}
@@ -1,7 +1,19 @@
 package com.shop.backend.services.api;
 
+import com.shop.backend.analytics.OrderAnalytics;
 import com.shop.backend.models.Order;
+import com.shop.backend.models.OrderSummary;
+import com.shop.backend.models.Page;
+import com.shop.backend.models.ProductSales;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * Order Service Interface
@@ -17,6 +29,18 @@ public interface OrderService {
      */
     List<Order> getAllOrders();
 
+    /**
+     * Get one page of orders
+     * The default implementation pages over getAllOrders() ordered by ID.
+     * 
+     * @param cursor cursor from the previous page (null for the first page)
+     * @param limit  maximum number of orders
+     * @return page of orders, or null if the cursor is invalid
+     */
+    default Page<Order> getOrders(String cursor, int limit) {
+        return Page.keyset(getAllOrders(), Order::getId, cursor, limit);
+    }
+
     /**
      * Get order by ID
      * 
@@ -43,18 +67,21 @@ public interface OrderService {
 
     /**
      * Update order status
+     * Statuses follow OrderStatus: PENDING to SHIPPED or CANCELLED, SHIPPED
+     * to DELIVERED. Asking for the current status changes nothing.
      * 
      * @param id     order ID
-     * @param status new status
-     * @return updated order
+     * @param status new status, any case
+     * @return updated order, or null if the order or status is unknown or
+     *         the order's current status does not allow the change
      */
     Order updateOrderStatus(String id, String status);
 
     /**
-     * Cancel an order
+     * Cancel a pending order and put its stock back on sale
      * 
      * @param id order ID
-     * @return true if canceled, false otherwise
+     * @return true if canceled, false if unknown or no longer pending
      */
     boolean cancelOrder(String id);
 
@@ -66,6 +93,19 @@ public interface OrderService {
      */
     List<Order> getOrdersByStatus(String status);
 
+    /**
+     * Get one page of orders with a status
+     * The default implementation pages over getOrdersByStatus() ordered by ID.
+     * 
+     * @param status order status
+     * @param cursor cursor from the previous page (null for the first page)
+     * @param limit  maximum number of orders
+     * @return page of orders, or null if the cursor is invalid
+     */
+    default Page<Order> getOrdersByStatus(String status, String cursor, int limit) {
+        return Page.keyset(getOrdersByStatus(status), Order::getId, cursor, limit);
+    }
+
     /**
      * Get order count for a user
      * 
@@ -81,4 +121,174 @@ public interface OrderService {
      * @return total amount spent
      */
     double getTotalSpent(String userId);
+
+    /**
+     * Move several orders to the same status
+     * The default implementation calls updateOrderStatus for each order;
+     * implementations should apply and log the batch in one write.
+     * 
+     * @param ids    order IDs
+     * @param status new status
+     * @return the orders now in the status, in input order; unknown IDs and
+     *         orders whose current status does not allow the change are skipped
+     */
+    default List<Order> updateOrderStatuses(Collection<String> ids, String status) {
+        List<Order> result = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            Order order = updateOrderStatus(id, status);
+            if (order != null) {
+                result.add(order);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Get the version of an order
+     * Versions only grow and change after every status change. The default
+     * implementation does not track versions.
+     * 
+     * @param id order ID
+     * @return version, or -1 if unknown or not tracked
+     */
+    default long getOrderVersion(String id) {
+        return -1;
+    }
+
+    /**
+     * Get the version of a user's order list
+     * Changes after any of the user's orders is created or changes status.
+     * The default implementation does not track versions.
+     * 
+     * @param userId user ID
+     * @return version, or -1 if the user has no orders or versions are not tracked
+     */
+    default long getUserOrdersVersion(String userId) {
+        return -1;
+    }
+
+    /**
+     * Get one page of the orders created in a time range, newest first
+     * The default implementation filters and sorts getAllOrders() on every
+     * call; implementations should index orders by creation time.
+     * 
+     * @param since  earliest creation time, inclusive (null for no lower bound)
+     * @param until  latest creation time, exclusive (null for no upper bound)
+     * @param cursor cursor from the previous page (null for the first page)
+     * @param limit  maximum number of orders
+     * @return page of orders, or null if the cursor is invalid
+     */
+    default Page<Order> getOrdersCreatedBetween(LocalDateTime since, LocalDateTime until, String cursor, int limit) {
+        List<Order> matching = new ArrayList<>();
+        for (Order order : getAllOrders()) {
+            LocalDateTime createdAt = order.getCreatedAt();
+            if (createdAt != null && (since == null || !createdAt.isBefore(since))
+                    && (until == null || createdAt.isBefore(until))) {
+                matching.add(order);
+            }
+        }
+        // Keys count down as orders get newer, so the ascending keyset is newest first
+        return Page.keyset(matching, order -> String.format("%019d:%s",
+                Long.MAX_VALUE - Math.max(0, order.createdAtEpochMillis()), order.getId()), cursor, limit);
+    }
+
+    /**
+     * Get order count, revenue, basket size and orders per status over all orders
+     * The default implementation aggregates getAllOrders() on every call;
+     * implementations should keep running aggregates.
+     * 
+     * @return summary; cancelled orders only count towards their status
+     */
+    default OrderSummary getOrderSummary() {
+        return OrderAnalytics.of(getAllOrders()).summary();
+    }
+
+    /**
+     * Get the revenue of each day in a range
+     * The default implementation aggregates getAllOrders() on every call.
+     * 
+     * @param from first day, inclusive
+     * @param to   last day, inclusive
+     * @return day -> revenue for the days with any, oldest first
+     */
+    default Map<LocalDate, Double> getDailyRevenue(LocalDate from, LocalDate to) {
+        return OrderAnalytics.of(getAllOrders()).revenueByDay(from, to);
+    }
+
+    /**
+     * Get the revenue of each product category
+     * The default implementation does not know product categories and
+     * reports all revenue as uncategorized.
+     * 
+     * @return category -> revenue, highest first
+     */
+    default Map<String, Double> getRevenueByCategory() {
+        return OrderAnalytics.of(getAllOrders()).revenueByCategory();
+    }
+
+    /**
+     * Get the best-selling products by units sold
+     * The default implementation aggregates getAllOrders() on every call.
+     * 
+     * @param limit number of products
+     * @return up to limit products, most sold first
+     */
+    default List<ProductSales> getTopProducts(int limit) {
+        return OrderAnalytics.of(getAllOrders()).topProducts(limit);
+    }
+
+    /**
+     * Check out the user's cart asynchronously
+     * The default implementation runs createOrderFromCart on the executor.
+     * 
+     * @param userId   user ID
+     * @param executor runs the work
+     * @return future completed with the new order, or null if it could not be placed
+     * @throws RejectedExecutionException if the executor refuses the work
+     */
+    default CompletableFuture<Order> createOrderFromCartAsync(String userId, Executor executor) {
+        return CompletableFuture.supplyAsync(() -> createOrderFromCart(userId), executor);
+    }
+
+    /**
+     * Update an order's status asynchronously
+     * The default implementation runs updateOrderStatus on the executor.
+     * 
+     * @param id       order ID
+     * @param status   new status
+     * @param executor runs the work
+     * @return future completed with the updated order, or null if not found
+     * @throws RejectedExecutionException if the executor refuses the work
+     */
+    default CompletableFuture<Order> updateOrderStatusAsync(String id, String status, Executor executor) {
+        return CompletableFuture.supplyAsync(() -> updateOrderStatus(id, status), executor);
+    }
+
+    /**
+     * Cancel an order asynchronously
+     * The default implementation runs cancelOrder on the executor.
+     * 
+     * @param id       order ID
+     * @param executor runs the work
+     * @return future completed with true if cancelled
+     * @throws RejectedExecutionException if the executor refuses the work
+     */
+    default CompletableFuture<Boolean> cancelOrderAsync(String id, Executor executor) {
+        return CompletableFuture.supplyAsync(() -> cancelOrder(id), executor);
+    }
+
+    /**
+     * Move several orders to the same status asynchronously
+     * The default implementation runs updateOrderStatuses on the executor.
+     * 
+     * @param ids      order IDs
+     * @param status   new status
+     * @param executor runs the work
+     * @return future completed with the orders now in the status, in input order
+     * @throws RejectedExecutionException if the executor refuses the work
+     */
+    default CompletableFuture<List<Order>> updateOrderStatusesAsync(Collection<String> ids, String status,
+                                                                    Executor executor) {
+        return CompletableFuture.supplyAsync(() -> updateOrderStatuses(ids, status), executor);
+    }
 }
\ No newline at end of file
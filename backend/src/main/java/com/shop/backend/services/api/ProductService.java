@@ -1,8 +1,14 @@
 package com.shop.backend.services.api;
 
 import com.shop.backend.models.Product;
+import com.shop.backend.models.Page;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * Product Service Interface
@@ -18,6 +24,19 @@ public interface ProductService {
      */
     List<Product> getAllProducts();
 
+    /**
+     * Get one page of products
+     * The default implementation pages over getAllProducts() ordered by ID;
+     * implementations with an ordered store should override it.
+     * 
+     * @param cursor cursor from the previous page (null for the first page)
+     * @param limit  maximum number of products
+     * @return page of products, or null if the cursor is invalid
+     */
+    default Page<Product> getProducts(String cursor, int limit) {
+        return Page.keyset(getAllProducts(), Product::getId, cursor, limit);
+    }
+
     /**
      * Get product by ID
      * 
@@ -67,12 +86,31 @@ public interface ProductService {
      */
     List<Product> searchProducts(String query);
 
+    /**
+     * Search products by name, returning at most limit results
+     * The default implementation runs the unlimited search and keeps the first
+     * limit products; implementations should rank only what they return.
+     * 
+     * @param query search query
+     * @param limit maximum number of results
+     * @return list of products matching the query, most relevant first
+     */
+    default List<Product> searchProducts(String query, int limit) {
+        List<Product> all = searchProducts(query);
+        if (all.size() <= limit) {
+            return all;
+        }
+        return new ArrayList<>(all.subList(0, Math.max(limit, 0)));
+    }
+
     /**
      * Update product stock
      * 
      * @param id       product ID
      * @param quantity quantity to add (positive) or remove (negative)
-     * @return updated product
+     * @return updated product, or null if not found
+     * @throws InsufficientStockException if removing the quantity would take
+     *                                    the stock below zero
      */
     Product updateStock(String id, int quantity);
 
@@ -103,4 +141,160 @@ public interface ProductService {
      * @return list of filtered and sorted products
      */
     List<Product> filterProducts(String category, Double minPrice, Double maxPrice, String sortBy);
+
+    /**
+     * Filter products with multiple criteria, returning at most limit results
+     * The default implementation runs the unlimited query and keeps the first
+     * limit products; implementations should stop once they have them.
+     * 
+     * @param category category to filter by (null for all)
+     * @param minPrice minimum price (null for no minimum)
+     * @param maxPrice maximum price (null for no maximum)
+     * @param sortBy   "price_asc", "price_desc", "name_asc" or "name_desc"
+     * @param limit    maximum number of results
+     * @return list of filtered and sorted products
+     */
+    default List<Product> filterProducts(String category, Double minPrice, Double maxPrice, String sortBy,
+                                         int limit) {
+        List<Product> all = filterProducts(category, minPrice, maxPrice, sortBy);
+        if (all.size() <= limit) {
+            return all;
+        }
+        return new ArrayList<>(all.subList(0, Math.max(limit, 0)));
+    }
+
+    /**
+     * Create or replace several products at once
+     * A product whose ID exists is updated, any other is created (keeping
+     * its ID if it has one). The default implementation calls
+     * updateProduct/createProduct for each product; implementations should
+     * apply the whole batch in one write.
+     * 
+     * @param products products to create or replace
+     * @return the stored products, in input order
+     */
+    default List<Product> upsertProducts(List<Product> products) {
+        List<Product> result = new ArrayList<>(products.size());
+        for (Product product : products) {
+            if (product == null) {
+                continue;
+            }
+            Product stored = product.getId() != null && getProductById(product.getId()) != null
+                    ? updateProduct(product.getId(), product)
+                    : createProduct(product);
+            if (stored != null) {
+                result.add(stored);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Get several products by ID
+     * 
+     * @param ids product IDs
+     * @return the products that exist, in input order
+     */
+    default List<Product> getProductsByIds(Collection<String> ids) {
+        List<Product> result = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            Product product = getProductById(id);
+            if (product != null) {
+                result.add(product);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Get the version of a product
+     * Versions only grow and change after every change to the product,
+     * stock included. The default implementation does not track versions.
+     * 
+     * @param id product ID
+     * @return version, or -1 if unknown or not tracked
+     */
+    default long getProductVersion(String id) {
+        return -1;
+    }
+
+    /**
+     * Get the version of the whole catalog
+     * Changes after any product is created, updated, deleted or restocked.
+     * The default implementation does not track versions.
+     * 
+     * @return version, or -1 if not tracked
+     */
+    default long getCatalogVersion() {
+        return -1;
+    }
+
+    /**
+     * Create a product asynchronously
+     * The default implementation runs createProduct on the executor.
+     * 
+     * @param product  product to create
+     * @param executor runs the work
+     * @return future completed with the created product
+     * @throws RejectedExecutionException if the executor refuses the work
+     */
+    default CompletableFuture<Product> createProductAsync(Product product, Executor executor) {
+        return CompletableFuture.supplyAsync(() -> createProduct(product), executor);
+    }
+
+    /**
+     * Update a product asynchronously
+     * The default implementation runs updateProduct on the executor.
+     * 
+     * @param id       product ID
+     * @param product  updated product data
+     * @param executor runs the work
+     * @return future completed with the updated product, or null if not found
+     * @throws RejectedExecutionException if the executor refuses the work
+     */
+    default CompletableFuture<Product> updateProductAsync(String id, Product product, Executor executor) {
+        return CompletableFuture.supplyAsync(() -> updateProduct(id, product), executor);
+    }
+
+    /**
+     * Delete a product asynchronously
+     * The default implementation runs deleteProduct on the executor.
+     * 
+     * @param id       product ID
+     * @param executor runs the work
+     * @return future completed with true if deleted
+     * @throws RejectedExecutionException if the executor refuses the work
+     */
+    default CompletableFuture<Boolean> deleteProductAsync(String id, Executor executor) {
+        return CompletableFuture.supplyAsync(() -> deleteProduct(id), executor);
+    }
+
+    /**
+     * Update product stock asynchronously
+     * The default implementation runs updateStock on the executor.
+     * 
+     * @param id       product ID
+     * @param quantity quantity to add (positive) or remove (negative)
+     * @param executor runs the work
+     * @return future completed with the updated product, or null if not found;
+     *         failed with InsufficientStockException if removing the quantity
+     *         would take the stock below zero
+     * @throws RejectedExecutionException if the executor refuses the work
+     */
+    default CompletableFuture<Product> updateStockAsync(String id, int quantity, Executor executor) {
+        return CompletableFuture.supplyAsync(() -> updateStock(id, quantity), executor);
+    }
+
+    /**
+     * Create or replace several products asynchronously
+     * The default implementation runs upsertProducts on the executor.
+     * 
+     * @param products products to create or replace
+     * @param executor runs the work
+     * @return future completed with the stored products, in input order
+     * @throws RejectedExecutionException if the executor refuses the work
+     */
+    default CompletableFuture<List<Product>> upsertProductsAsync(List<Product> products, Executor executor) {
+        return CompletableFuture.supplyAsync(() -> upsertProducts(products), executor);
+    }
 }
\ No newline at end of file
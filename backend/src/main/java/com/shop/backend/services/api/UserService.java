@@ -1,7 +1,11 @@
 package com.shop.backend.services.api;
 
 import com.shop.backend.models.User;
+import com.shop.backend.models.Page;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * User Service Interface
@@ -17,6 +21,18 @@ public interface UserService {
      */
     List<User> getAllUsers();
 
+    /**
+     * Get one page of users
+     * The default implementation pages over getAllUsers() ordered by ID.
+     * 
+     * @param cursor cursor from the previous page (null for the first page)
+     * @param limit  maximum number of users
+     * @return page of users, or null if the cursor is invalid
+     */
+    default Page<User> getUsers(String cursor, int limit) {
+        return Page.keyset(getAllUsers(), User::getId, cursor, limit);
+    }
+
     /**
      * Get user by ID
      * 
@@ -30,6 +46,8 @@ public interface UserService {
      * 
      * @param user user to create
      * @return created user
+     * @throws InvalidUserException   if the username is missing or blank
+     * @throws DuplicateUserException if the username or email is already taken
      */
     User createUser(User user);
 
@@ -38,7 +56,9 @@ public interface UserService {
      * 
      * @param id   user ID
      * @param user updated user data
-     * @return updated user
+     * @return updated user, or null if not found
+     * @throws InvalidUserException   if the username is missing or blank
+     * @throws DuplicateUserException if the username or email belongs to another user
      */
     User updateUser(String id, User user);
 
@@ -74,4 +94,59 @@ public interface UserService {
      * @return user if found
      */
     User getUserByEmail(String email);
+
+    /**
+     * Create a user asynchronously
+     * The default implementation runs createUser on the executor.
+     * 
+     * @param user     user to create
+     * @param executor runs the work
+     * @return future completed with the created user, or failed as createUser throws
+     * @throws RejectedExecutionException if the executor refuses the work
+     */
+    default CompletableFuture<User> createUserAsync(User user, Executor executor) {
+        return CompletableFuture.supplyAsync(() -> createUser(user), executor);
+    }
+
+    /**
+     * Authenticate a user asynchronously
+     * The default implementation runs authenticate on the executor.
+     * 
+     * @param username username
+     * @param password password
+     * @param executor runs the work
+     * @return future completed with the user, or null if the credentials are wrong
+     * @throws RejectedExecutionException if the executor refuses the work
+     */
+    default CompletableFuture<User> authenticateAsync(String username, String password, Executor executor) {
+        return CompletableFuture.supplyAsync(() -> authenticate(username, password), executor);
+    }
+
+    /**
+     * Update a user asynchronously
+     * The default implementation runs updateUser on the executor.
+     * 
+     * @param id       user ID
+     * @param user     updated user data
+     * @param executor runs the work
+     * @return future completed with the updated user, or null if not found;
+     *         failed as updateUser throws
+     * @throws RejectedExecutionException if the executor refuses the work
+     */
+    default CompletableFuture<User> updateUserAsync(String id, User user, Executor executor) {
+        return CompletableFuture.supplyAsync(() -> updateUser(id, user), executor);
+    }
+
+    /**
+     * Delete a user asynchronously
+     * The default implementation runs deleteUser on the executor.
+     * 
+     * @param id       user ID
+     * @param executor runs the work
+     * @return future completed with true if deleted
+     * @throws RejectedExecutionException if the executor refuses the work
+     */
+    default CompletableFuture<Boolean> deleteUserAsync(String id, Executor executor) {
+        return CompletableFuture.supplyAsync(() -> deleteUser(id), executor);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,282 @@
+package com.shop.backend.services.core;
+
+import com.shop.backend.models.Cart;
+import com.shop.backend.models.Order;
+import com.shop.backend.models.OrderStatus;
+import com.shop.backend.models.Product;
+import com.shop.backend.services.api.ProductService;
+import com.shop.backend.services.core.stock.StockReservation;
+import com.shop.backend.services.core.stock.StockReservationEngine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Group-commit checkout
+ * Checkout requests are queued and a single committer thread takes them in
+ * micro-batches. For each batch it locks the carts, validates the items
+ * against the catalog, reserves stock, then inserts all new orders in one
+ * pass before confirming the stock and clearing the carts. A cart cannot
+ * change while its checkout is in flight, and a checkout that fails leaves
+ * cart and stock untouched. A request can be withdrawn until the committer
+ * starts on it; after that its result is the only answer.
+ * Once the order sink has stored a batch its orders exist, so nothing after
+ * that rolls them back or fails their results: an error while confirming
+ * stock, clearing a cart or announcing the orders is only logged.
+ */
+class CheckoutPipeline {
+
+    private static final Logger logger = LoggerFactory.getLogger(CheckoutPipeline.class);
+
+    // Upper bound on checkouts committed together
+    private static final int MAX_BATCH_SIZE = 256;
+
+    // Stock is held this long if the committer dies between reserve and confirm
+    private static final Duration RESERVATION_TIMEOUT = Duration.ofSeconds(30);
+
+    private final ConcurrentCartService cartService;
+    private final ProductService productService;
+    private final StockReservationEngine stockEngine;
+    private final Consumer<List<Order>> orderSink;
+    private final Consumer<List<Order>> orderListener;
+
+    private final BlockingQueue<Request> queue = new LinkedBlockingQueue<>();
+    private final Thread committer;
+    private volatile boolean running = true;
+
+    /**
+     * @param cartService    carts to check out
+     * @param productService catalog used to validate items and prices
+     * @param stockEngine    stock counters
+     * @param orderSink      stores each batch of new orders; if it throws,
+     *                       nothing of the batch may have been kept
+     * @param orderListener  told about each stored batch before its checkouts
+     *                       complete
+     */
+    CheckoutPipeline(ConcurrentCartService cartService, ProductService productService,
+                     StockReservationEngine stockEngine, Consumer<List<Order>> orderSink,
+                     Consumer<List<Order>> orderListener) {
+        this.cartService = cartService;
+        this.productService = productService;
+        this.stockEngine = stockEngine;
+        this.orderSink = orderSink;
+        this.orderListener = orderListener;
+        this.committer = new Thread(this::run, "checkout-committer");
+        this.committer.setDaemon(true);
+        this.committer.start();
+    }
+
+    /**
+     * Queue a checkout
+     *
+     * @param userId user whose cart is checked out
+     * @return the queued request; its result is completed with the new order,
+     *         or null if the cart is empty, an item is no longer sold, stock
+     *         is short or the request was withdrawn
+     */
+    Request submit(String userId) {
+        Request request = new Request(userId);
+        if (!running) {
+            request.withdraw();
+            return request;
+        }
+        queue.add(request);
+        return request;
+    }
+
+    /**
+     * Stop the committer; checkouts still queued complete with null
+     */
+    void shutdown() {
+        running = false;
+        committer.interrupt();
+        Request request;
+        while ((request = queue.poll()) != null) {
+            request.withdraw();
+        }
+    }
+
+    private void run() {
+        List<Request> batch = new ArrayList<>(MAX_BATCH_SIZE);
+        while (running) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            queue.drainTo(batch, MAX_BATCH_SIZE - 1);
+            try {
+                commit(batch);
+            } catch (Throwable e) {
+                // Keep committing later batches; this one has been answered as far as possible
+                logger.error("Checkout batch failed", e);
+            }
+            batch.clear();
+        }
+    }
+
+    private void commit(List<Request> batch) {
+        List<Checkout> accepted = new ArrayList<>(batch.size());
+        Set<String> lockedUsers = new HashSet<>();
+        List<Order> orders;
+        try {
+            for (Request request : batch) {
+                // Withdrawn requests have already been answered
+                if (!request.claimed.compareAndSet(false, true)) {
+                    continue;
+                }
+                // A second checkout of the same cart in one batch finds it already taken
+                if (!lockedUsers.add(request.userId)) {
+                    request.result.complete(null);
+                    continue;
+                }
+                Checkout checkout = prepare(request);
+                if (checkout != null) {
+                    accepted.add(checkout);
+                } else {
+                    request.result.complete(null);
+                }
+            }
+
+            orders = new ArrayList<>(accepted.size());
+            for (Checkout checkout : accepted) {
+                orders.add(checkout.order);
+            }
+            orderSink.accept(orders);
+        } catch (Throwable e) {
+            // Nothing was stored: give everything back
+            try {
+                for (Checkout checkout : accepted) {
+                    stockEngine.release(checkout.reservation.getId());
+                }
+            } finally {
+                for (String userId : lockedUsers) {
+                    cartService.unlockCart(userId, false);
+                }
+                for (Request request : batch) {
+                    request.result.completeExceptionally(e);
+                }
+            }
+            return;
+        }
+
+        // The orders are stored; from here on every checkout completes with its order
+        for (Checkout checkout : accepted) {
+            finish(checkout);
+        }
+        for (String userId : lockedUsers) {
+            // No-op for carts finish has already cleared and unlocked
+            cartService.unlockCart(userId, false);
+        }
+        try {
+            orderListener.accept(orders);
+        } catch (Throwable e) {
+            logger.error("Announcing {} new orders failed", orders.size(), e);
+        }
+        for (Checkout checkout : accepted) {
+            checkout.request.result.complete(checkout.order);
+        }
+    }
+
+    // Confirm the stock and clear the cart of a stored order
+    private void finish(Checkout checkout) {
+        try {
+            if (!stockEngine.confirm(checkout.reservation.getId())) {
+                logger.error("Stock reservation {} of order {} had already ended",
+                        checkout.reservation.getId(), checkout.order.getId());
+            }
+        } catch (Throwable e) {
+            logger.error("Confirming the stock of order {} failed", checkout.order.getId(), e);
+        }
+        try {
+            cartService.unlockCart(checkout.request.userId, true);
+        } catch (Throwable e) {
+            logger.error("Clearing the cart of order {} failed", checkout.order.getId(), e);
+        }
+    }
+
+    // Lock the cart, price it from the catalog and reserve its stock
+    private Checkout prepare(Request request) {
+        Cart cart = cartService.lockCart(request.userId);
+        if (cart == null || cart.getItems().isEmpty()) {
+            return null;
+        }
+        Map<String, Integer> quantities = new LinkedHashMap<>();
+        List<Order.OrderItem> items = new ArrayList<>(cart.getItems().size());
+        for (Cart.CartItem item : cart.getItems()) {
+            Product product = productService.getProductById(item.getProductId());
+            if (product == null || item.getQuantity() <= 0) {
+                return null;
+            }
+            // Orders are charged at the current catalog price
+            items.add(new Order.OrderItem(product.getId(), product.getName(), item.getQuantity(), product.getPrice()));
+            quantities.put(product.getId(), item.getQuantity());
+        }
+        StockReservation reservation = stockEngine.reserve(quantities, RESERVATION_TIMEOUT);
+        if (reservation == null) {
+            return null;
+        }
+        return new Checkout(request, new Order(request.userId, items, OrderStatus.PENDING.name()), reservation);
+    }
+
+    /**
+     * A queued checkout
+     */
+    static final class Request {
+        private final String userId;
+        private final CompletableFuture<Order> result = new CompletableFuture<>();
+
+        // Set by the committer when it starts on the request, or by withdraw
+        private final AtomicBoolean claimed = new AtomicBoolean();
+
+        private Request(String userId) {
+            this.userId = userId;
+        }
+
+        /**
+         * @return future completed with the new order, or null if there is none
+         */
+        CompletableFuture<Order> result() {
+            return result;
+        }
+
+        /**
+         * Take the request back if the committer has not started on it
+         *
+         * @return true if withdrawn, the result is then null; false if the
+         *         committer has it and the result will tell how it ended
+         */
+        boolean withdraw() {
+            if (!claimed.compareAndSet(false, true)) {
+                return false;
+            }
+            result.complete(null);
+            return true;
+        }
+    }
+
+    private static final class Checkout {
+        private final Request request;
+        private final Order order;
+        private final StockReservation reservation;
+
+        private Checkout(Request request, Order order, StockReservation reservation) {
+            this.request = request;
+            this.order = order;
+            this.reservation = reservation;
+        }
+    }
+}
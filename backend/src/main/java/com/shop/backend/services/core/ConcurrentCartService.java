@@ -0,0 +1,368 @@
+package com.shop.backend.services.core;
+
+import com.shop.backend.events.CartChangeEvent;
+import com.shop.backend.models.Cart;
+import com.shop.backend.models.Product;
+import com.shop.backend.services.api.CartService;
+import com.shop.backend.services.api.ProductService;
+import com.shop.backend.storage.DurableStore;
+import com.shop.backend.storage.Mutation;
+import com.shop.backend.storage.MutationLog;
+import com.shop.backend.storage.StorageEngine;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+
+/**
+ * Concurrent implementation of CartService
+ * Every user's cart has its own lock, so requests for different users never
+ * contend while requests for the same user are applied one at a time.
+ * Callers always get a copy of the cart, never the live object, so a
+ * response being serialized cannot observe a concurrent mutation.
+ * Each change logs the whole cart while its lock is still held, then gives
+ * the cart a new version from a counter shared by all carts and publishes a
+ * CartChangeEvent. An update or removal that leaves the cart as it was does
+ * none of the three.
+ */
+@Service("concurrentCartService")
+public class ConcurrentCartService implements CartService, DurableStore<Cart> {
+
+    private final ProductService productService;
+
+    private final StorageEngine storage;
+
+    private final ApplicationEventPublisher events;
+
+    // Replaced by the real log once recovery has finished
+    private volatile MutationLog log = MutationLog.NOOP;
+
+    // User ID -> cart and its lock
+    private final Map<String, CartEntry> carts = new ConcurrentHashMap<>();
+
+    // Last cart version handed out
+    private final AtomicLong versions = new AtomicLong();
+
+    public ConcurrentCartService(@Qualifier("indexedProductService") ProductService productService,
+                                 StorageEngine storage, ApplicationEventPublisher events) {
+        this.productService = productService;
+        this.storage = storage;
+        this.events = events;
+    }
+
+    @PostConstruct
+    public void open() {
+        log = storage.attach(this);
+    }
+
+    @Override
+    public Cart getCartByUserId(String userId) {
+        CartEntry entry = userId != null ? carts.get(userId) : null;
+        if (entry == null) {
+            return null;
+        }
+        entry.lock.lock();
+        try {
+            return copyOf(entry.cart);
+        } finally {
+            entry.lock.unlock();
+        }
+    }
+
+    @Override
+    public Cart createCart(String userId) {
+        if (userId == null) {
+            return null;
+        }
+        CartEntry entry = entryFor(userId);
+        entry.lock.lock();
+        try {
+            return copyOf(entry.cart);
+        } finally {
+            entry.lock.unlock();
+        }
+    }
+
+    @Override
+    public Cart addToCart(String userId, String productId, int quantity) {
+        if (userId == null || quantity <= 0) {
+            return null;
+        }
+        Product product = productService.getProductById(productId);
+        if (product == null) {
+            return null;
+        }
+        CartEntry entry = entryFor(userId);
+        entry.lock.lock();
+        try {
+            entry.cart.addItem(product, quantity);
+            logCart(entry.cart);
+            changed(entry);
+            return copyOf(entry.cart);
+        } finally {
+            entry.lock.unlock();
+        }
+    }
+
+    /**
+     * Resolve every product first, then add all lines under one lock
+     * acquisition with one log record; nothing is added if any line is invalid
+     */
+    @Override
+    public Cart addItemsToCart(String userId, Map<String, Integer> quantities) {
+        if (userId == null || quantities == null || quantities.isEmpty()) {
+            return null;
+        }
+        List<Product> products = new ArrayList<>(quantities.size());
+        for (Map.Entry<String, Integer> line : quantities.entrySet()) {
+            if (line.getValue() == null || line.getValue() <= 0) {
+                return null;
+            }
+            Product product = productService.getProductById(line.getKey());
+            if (product == null) {
+                return null;
+            }
+            products.add(product);
+        }
+        CartEntry entry = entryFor(userId);
+        entry.lock.lock();
+        try {
+            for (Product product : products) {
+                entry.cart.addItem(product, quantities.get(product.getId()));
+            }
+            logCart(entry.cart);
+            changed(entry);
+            return copyOf(entry.cart);
+        } finally {
+            entry.lock.unlock();
+        }
+    }
+
+    @Override
+    public Cart updateCartItem(String userId, String productId, int quantity) {
+        CartEntry entry = userId != null ? carts.get(userId) : null;
+        if (entry == null || productId == null) {
+            return null;
+        }
+        entry.lock.lock();
+        try {
+            boolean modified = quantity <= 0
+                    ? entry.cart.removeItem(productId)
+                    : entry.cart.updateItemQuantity(productId, quantity);
+            if (modified) {
+                logCart(entry.cart);
+                changed(entry);
+            }
+            return copyOf(entry.cart);
+        } finally {
+            entry.lock.unlock();
+        }
+    }
+
+    @Override
+    public Cart removeFromCart(String userId, String productId) {
+        CartEntry entry = userId != null ? carts.get(userId) : null;
+        if (entry == null || productId == null) {
+            return null;
+        }
+        entry.lock.lock();
+        try {
+            if (entry.cart.removeItem(productId)) {
+                logCart(entry.cart);
+                changed(entry);
+            }
+            return copyOf(entry.cart);
+        } finally {
+            entry.lock.unlock();
+        }
+    }
+
+    @Override
+    public Cart clearCart(String userId) {
+        if (userId == null) {
+            return null;
+        }
+        CartEntry entry = entryFor(userId);
+        entry.lock.lock();
+        try {
+            entry.cart.clear();
+            logCart(entry.cart);
+            changed(entry);
+            return copyOf(entry.cart);
+        } finally {
+            entry.lock.unlock();
+        }
+    }
+
+    @Override
+    public int getCartSize(String userId) {
+        CartEntry entry = userId != null ? carts.get(userId) : null;
+        if (entry == null) {
+            return 0;
+        }
+        entry.lock.lock();
+        try {
+            return entry.cart.totalQuantity();
+        } finally {
+            entry.lock.unlock();
+        }
+    }
+
+    @Override
+    public double getCartTotal(String userId) {
+        CartEntry entry = userId != null ? carts.get(userId) : null;
+        if (entry == null) {
+            return 0.0;
+        }
+        entry.lock.lock();
+        try {
+            return entry.cart.getTotalAmount();
+        } finally {
+            entry.lock.unlock();
+        }
+    }
+
+    @Override
+    public long getCartVersion(String userId) {
+        CartEntry entry = userId != null ? carts.get(userId) : null;
+        return entry != null ? entry.version : -1;
+    }
+
+    /**
+     * Get the number of carts currently held
+     *
+     * @return number of carts
+     */
+    public int activeCartCount() {
+        return carts.size();
+    }
+
+    /**
+     * Lock a user's cart for checkout and return a copy of it
+     * The lock is held until unlockCart is called by the same thread, so the
+     * cart cannot change between reading it and clearing it.
+     *
+     * @param userId user ID
+     * @return copy of the cart, or null if the user has no cart (nothing is locked then)
+     */
+    public Cart lockCart(String userId) {
+        CartEntry entry = userId != null ? carts.get(userId) : null;
+        if (entry == null) {
+            return null;
+        }
+        entry.lock.lock();
+        return copyOf(entry.cart);
+    }
+
+    /**
+     * Release a cart locked by lockCart
+     *
+     * @param userId user ID
+     * @param clear  true to empty the cart before unlocking it
+     */
+    public void unlockCart(String userId, boolean clear) {
+        CartEntry entry = carts.get(userId);
+        if (entry == null || !entry.lock.isHeldByCurrentThread()) {
+            return;
+        }
+        try {
+            if (clear) {
+                entry.cart.clear();
+                logCart(entry.cart);
+                changed(entry);
+            }
+        } finally {
+            entry.lock.unlock();
+        }
+    }
+
+    @Override
+    public String storeName() {
+        return "carts";
+    }
+
+    @Override
+    public Class<Cart> entityType() {
+        return Cart.class;
+    }
+
+    @Override
+    public void restore(String key, Cart cart) {
+        carts.put(key, new CartEntry(cart, versions.incrementAndGet()));
+    }
+
+    @Override
+    public void discard(String key) {
+        carts.remove(key);
+    }
+
+    /**
+     * Carts change in place, so each one is copied under its lock and handed
+     * to the sink after the lock is released
+     */
+    @Override
+    public void snapshot(BiConsumer<String, Cart> sink) {
+        for (Map.Entry<String, CartEntry> cart : carts.entrySet()) {
+            CartEntry entry = cart.getValue();
+            Cart copy;
+            entry.lock.lock();
+            try {
+                copy = copyOf(entry.cart);
+            } finally {
+                entry.lock.unlock();
+            }
+            sink.accept(cart.getKey(), copy);
+        }
+    }
+
+    private CartEntry entryFor(String userId) {
+        return carts.computeIfAbsent(userId, id -> new CartEntry(new Cart(id), versions.incrementAndGet()));
+    }
+
+    // Called with the cart's lock held after the change was logged
+    private void changed(CartEntry entry) {
+        entry.version = versions.incrementAndGet();
+        events.publishEvent(new CartChangeEvent(entry.cart.getUserId()));
+    }
+
+    // Called with the cart's lock held, so records for one user stay in order
+    private void logCart(Cart cart) {
+        if (log.isActive()) {
+            log.append(Mutation.put(cart.getUserId(), storage.encode(cart)));
+        }
+    }
+
+    private static Cart copyOf(Cart cart) {
+        Cart copy = new Cart(cart.getUserId());
+        // getItems and setItems both copy, so the two carts share no items
+        copy.setItems(cart.getItems());
+        if (!cart.getCustomFields().isEmpty()) {
+            copy.setCustomFields(new HashMap<>(cart.getCustomFields()));
+        }
+        return copy;
+    }
+
+    /**
+     * A user's cart together with the lock that serializes its updates
+     * The version is written under the lock after each change.
+     */
+    private static final class CartEntry {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Cart cart;
+        private volatile long version;
+
+        private CartEntry(Cart cart, long version) {
+            this.cart = cart;
+            this.version = version;
+        }
+    }
+}
@@ -0,0 +1,713 @@
+package com.shop.backend.services.core;
+
+import com.shop.backend.analytics.OrderAnalytics;
+import com.shop.backend.events.OrderChangeEvent;
+import com.shop.backend.models.Money;
+import com.shop.backend.models.Order;
+import com.shop.backend.models.OrderStatus;
+import com.shop.backend.models.OrderSummary;
+import com.shop.backend.models.Page;
+import com.shop.backend.models.Product;
+import com.shop.backend.models.ProductSales;
+import com.shop.backend.services.api.OrderService;
+import com.shop.backend.services.api.ProductService;
+import com.shop.backend.services.core.index.TimePartitionedIndex;
+import com.shop.backend.services.core.stock.StockReservationEngine;
+import com.shop.backend.storage.DurableStore;
+import com.shop.backend.storage.Mutation;
+import com.shop.backend.storage.MutationLog;
+import com.shop.backend.storage.StorageEngine;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+
+/**
+ * Concurrent implementation of OrderService
+ * Orders are created through the group-commit CheckoutPipeline and kept in
+ * an id-keyed hash index plus a creation-ordered view, with secondary
+ * indexes by user, by status and by creation time; the creation time index
+ * is split into day partitions so range queries only visit the days they
+ * cover. Per-user order count and total spent are maintained as running
+ * aggregates, so reading them never scans orders.
+ * Canceled orders are excluded from both aggregates. Dashboard aggregates
+ * (revenue per day and category, best sellers, basket size, orders per
+ * status) are kept the same way in an OrderAnalytics.
+ * A committed checkout batch is logged with a single append.
+ * Orders and per-user order lists carry versions taken from one counter
+ * after each insert or status change, and every placed order and status
+ * change made while serving requests is published as an OrderChangeEvent.
+ *
+ * Status changes follow the OrderStatus state machine. Each order's state is
+ * moved by compare-and-set, so of two racing changes (say cancel and ship)
+ * exactly one wins and the other is refused, with no lock held while
+ * deciding. The winner then brings the indexes, aggregates and log up to
+ * the state under the order's own lock, and runs the side effects of the
+ * transition, such as putting a cancelled order's stock back, once.
+ */
+@Service("indexedOrderService")
+public class IndexedOrderService implements OrderService, DurableStore<Order> {
+
+    private static final String CANCELLED = OrderStatus.CANCELLED.name();
+
+    // Time covered by each partition of the creation time index
+    private static final Duration CREATED_AT_PARTITION = Duration.ofDays(1);
+
+    // How long a request thread waits for its checkout to be committed
+    private static final long CHECKOUT_TIMEOUT_SECONDS = 10;
+
+    private final ProductService productService;
+    private final StockReservationEngine stockEngine;
+    private final CheckoutPipeline checkoutPipeline;
+    private final StorageEngine storage;
+    private final ApplicationEventPublisher events;
+
+    // Replaced by the real log once recovery has finished
+    private volatile MutationLog log = MutationLog.NOOP;
+
+    // Primary index: order id -> entry
+    private final Map<String, Entry> ordersById = new ConcurrentHashMap<>();
+
+    // Creation order: sequence number -> entry
+    private final ConcurrentNavigableMap<Long, Entry> ordersInOrder = new ConcurrentSkipListMap<>();
+
+    // User ID -> that user's orders and aggregates
+    private final Map<String, UserOrders> ordersByUser = new ConcurrentHashMap<>();
+
+    // Upper-case status -> orders with that status
+    private final Map<String, ConcurrentNavigableMap<Long, Entry>> ordersByStatus = new ConcurrentHashMap<>();
+
+    // Creation time -> orders, in day partitions
+    private final TimePartitionedIndex<Entry> ordersByCreatedAt = new TimePartitionedIndex<>(CREATED_AT_PARTITION);
+
+    // Updated as orders enter and leave a status, like the per-user aggregates
+    private final OrderAnalytics analytics = new OrderAnalytics();
+
+    // Guards every insert into the indexes above
+    private final Object writeLock = new Object();
+
+    private long nextSequence;
+
+    // Last order version handed out
+    private final AtomicLong versions = new AtomicLong();
+
+    public IndexedOrderService(ConcurrentCartService cartService,
+                               @Qualifier("indexedProductService") ProductService productService,
+                               StockReservationEngine stockEngine,
+                               StorageEngine storage,
+                               ApplicationEventPublisher events) {
+        this.productService = productService;
+        this.stockEngine = stockEngine;
+        this.storage = storage;
+        this.events = events;
+        this.checkoutPipeline = new CheckoutPipeline(cartService, productService, stockEngine, this::insertAll,
+                this::announceCreated);
+    }
+
+    @PostConstruct
+    public void open() {
+        log = storage.attach(this);
+    }
+
+    @Override
+    public List<Order> getAllOrders() {
+        List<Order> result = new ArrayList<>(ordersById.size());
+        for (Entry entry : ordersInOrder.values()) {
+            result.add(entry.order);
+        }
+        return result;
+    }
+
+    @Override
+    public Page<Order> getOrders(String cursor, int limit) {
+        return page(ordersInOrder, cursor, limit);
+    }
+
+    @Override
+    public Order getOrderById(String id) {
+        Entry entry = id != null ? ordersById.get(id) : null;
+        return entry != null ? entry.order : null;
+    }
+
+    @Override
+    public List<Order> getOrdersByUserId(String userId) {
+        UserOrders userOrders = userId != null ? ordersByUser.get(userId) : null;
+        return userOrders != null ? ordersOf(userOrders.orders) : new ArrayList<>();
+    }
+
+    /**
+     * Check out the user's cart
+     * Blocks until the checkout pipeline has committed the batch holding this
+     * request. Returns null if the cart is empty, an item is no longer sold,
+     * stock is short or the commit failed. A checkout the committer has not
+     * started within the timeout is withdrawn and also returns null; one it
+     * has started is waited for, since the order may be stored.
+     */
+    @Override
+    public Order createOrderFromCart(String userId) {
+        if (userId == null) {
+            return null;
+        }
+        CheckoutPipeline.Request request = checkoutPipeline.submit(userId);
+        try {
+            return request.result().get(CHECKOUT_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            return null;
+        } catch (TimeoutException e) {
+            // Fall through to withdraw or wait
+        }
+        if (request.withdraw()) {
+            return null;
+        }
+        try {
+            return request.result().join();
+        } catch (CompletionException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Check out the user's cart without waiting for the commit
+     * Hands back the checkout pipeline's own future, so no thread is held
+     * while the batch commits and the executor is not used. Completes with
+     * null in the same cases as createOrderFromCart.
+     */
+    @Override
+    public CompletableFuture<Order> createOrderFromCartAsync(String userId, Executor executor) {
+        if (userId == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        CheckoutPipeline.Request request = checkoutPipeline.submit(userId);
+        // Time out on a copy so the pipeline's own future is left to the committer;
+        // a failed commit cannot be withdrawn and falls through to its own null
+        return request.result().copy()
+                .orTimeout(CHECKOUT_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                .exceptionallyCompose(e -> request.withdraw()
+                        ? CompletableFuture.completedFuture(null)
+                        : request.result())
+                .exceptionally(e -> null);
+    }
+
+    /**
+     * Move an order along the OrderStatus state machine
+     * Asking for the status the order is already in changes nothing and
+     * returns the order. Moving to CANCELLED puts the stock back, as
+     * cancelOrder does.
+     */
+    @Override
+    public Order updateOrderStatus(String id, String status) {
+        Entry entry = id != null ? ordersById.get(id) : null;
+        OrderStatus target = OrderStatus.parse(status);
+        if (entry == null || target == null) {
+            return null;
+        }
+        if (transition(entry, target) == null) {
+            return entry.state.get() == target ? entry.order : null;
+        }
+        changeStatus(entry);
+        publishStatus(entry);
+        afterTransition(entry, target);
+        return entry.order;
+    }
+
+    /**
+     * Move each order by compare-and-set as updateOrderStatus does, then lock
+     * the ones moved in sequence order, so two batches never deadlock, apply
+     * them all and log them with one append while the locks are still held;
+     * records for one order therefore stay in order
+     */
+    @Override
+    public List<Order> updateOrderStatuses(Collection<String> ids, String status) {
+        OrderStatus target = OrderStatus.parse(status);
+        if (target == null) {
+            return new ArrayList<>();
+        }
+        Map<String, Entry> unique = new LinkedHashMap<>();
+        for (String id : ids) {
+            Entry entry = id != null ? ordersById.get(id) : null;
+            if (entry != null) {
+                unique.putIfAbsent(id, entry);
+            }
+        }
+        List<Order> updated = new ArrayList<>(unique.size());
+        List<Entry> moved = new ArrayList<>(unique.size());
+        for (Entry entry : unique.values()) {
+            if (transition(entry, target) != null) {
+                moved.add(entry);
+                updated.add(entry.order);
+            } else if (entry.state.get() == target) {
+                updated.add(entry.order);
+            }
+        }
+        List<Entry> locked = new ArrayList<>(moved);
+        locked.sort(Comparator.comparingLong(entry -> entry.sequence));
+        for (Entry entry : locked) {
+            entry.lock.lock();
+        }
+        try {
+            List<Mutation> mutations = new ArrayList<>(log.isActive() ? moved.size() : 0);
+            for (Entry entry : moved) {
+                if (syncStatus(entry) && log.isActive()) {
+                    mutations.add(Mutation.put(entry.order.getId(), storage.encode(entry.order)));
+                }
+            }
+            log.appendAll(mutations);
+        } finally {
+            for (Entry entry : locked) {
+                entry.lock.unlock();
+            }
+        }
+        for (Entry entry : moved) {
+            publishStatus(entry);
+            afterTransition(entry, target);
+        }
+        return updated;
+    }
+
+    /**
+     * Cancel a pending order and put its stock back on sale
+     * Of any number of racing cancels and status changes, one cancel at most
+     * succeeds, so the stock is put back once.
+     */
+    @Override
+    public boolean cancelOrder(String id) {
+        Entry entry = id != null ? ordersById.get(id) : null;
+        if (entry == null) {
+            return false;
+        }
+        if (transition(entry, OrderStatus.CANCELLED) == null) {
+            return false;
+        }
+        changeStatus(entry);
+        publishStatus(entry);
+        afterTransition(entry, OrderStatus.CANCELLED);
+        return true;
+    }
+
+    @Override
+    public List<Order> getOrdersByStatus(String status) {
+        return ordersOf(statusView(status));
+    }
+
+    @Override
+    public Page<Order> getOrdersByStatus(String status, String cursor, int limit) {
+        return page(statusView(status), cursor, limit);
+    }
+
+    @Override
+    public int getOrderCount(String userId) {
+        UserOrders userOrders = userId != null ? ordersByUser.get(userId) : null;
+        return userOrders != null ? userOrders.count.get() : 0;
+    }
+
+    @Override
+    public double getTotalSpent(String userId) {
+        UserOrders userOrders = userId != null ? ordersByUser.get(userId) : null;
+        return userOrders != null ? Money.fromMinorUnits(userOrders.spentMinorUnits.get()) : 0.0;
+    }
+
+    @Override
+    public long getOrderVersion(String id) {
+        Entry entry = id != null ? ordersById.get(id) : null;
+        return entry != null ? entry.version : -1;
+    }
+
+    @Override
+    public long getUserOrdersVersion(String userId) {
+        UserOrders userOrders = userId != null ? ordersByUser.get(userId) : null;
+        return userOrders != null ? userOrders.version.get() : -1;
+    }
+
+    @Override
+    public Page<Order> getOrdersCreatedBetween(LocalDateTime since, LocalDateTime until, String cursor, int limit) {
+        long from = since != null ? epochMillis(since) : Long.MIN_VALUE;
+        long to = until != null ? epochMillis(until) : Long.MAX_VALUE;
+        Page<Entry> entries = ordersByCreatedAt.newestFirst(from, to, cursor, limit);
+        if (entries == null) {
+            return null;
+        }
+        List<Order> orders = new ArrayList<>(entries.getItems().size());
+        for (Entry entry : entries.getItems()) {
+            orders.add(entry.order);
+        }
+        return new Page<>(orders, entries.getNextCursor());
+    }
+
+    @Override
+    public OrderSummary getOrderSummary() {
+        return analytics.summary();
+    }
+
+    @Override
+    public Map<LocalDate, Double> getDailyRevenue(LocalDate from, LocalDate to) {
+        if (from == null || to == null) {
+            return new LinkedHashMap<>();
+        }
+        return analytics.revenueByDay(from, to);
+    }
+
+    @Override
+    public Map<String, Double> getRevenueByCategory() {
+        return analytics.revenueByCategory();
+    }
+
+    @Override
+    public List<ProductSales> getTopProducts(int limit) {
+        return analytics.topProducts(limit);
+    }
+
+    /**
+     * Get the number of orders held
+     *
+     * @return number of orders
+     */
+    public int size() {
+        return ordersById.size();
+    }
+
+    /**
+     * Count the orders in each status
+     *
+     * @return upper-case status -> number of orders
+     */
+    public Map<String, Long> countByStatus() {
+        return analytics.countByStatus();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        checkoutPipeline.shutdown();
+    }
+
+    @Override
+    public String storeName() {
+        return "orders";
+    }
+
+    @Override
+    public Class<Order> entityType() {
+        return Order.class;
+    }
+
+    /**
+     * An order already held only takes the status of the record; nothing
+     * else about an order changes after checkout. Restored statuses are taken
+     * as they are, without transition checks or side effects.
+     */
+    @Override
+    public void restore(String key, Order order) {
+        synchronized (writeLock) {
+            Entry entry = ordersById.get(key);
+            if (entry == null) {
+                insert(order);
+            } else {
+                entry.state.set(stateOf(order));
+                entry.lock.lock();
+                try {
+                    syncStatus(entry);
+                } finally {
+                    entry.lock.unlock();
+                }
+            }
+        }
+    }
+
+    // Orders are never deleted, so the log holds no DELETE records for them
+    @Override
+    public void discard(String key) {
+    }
+
+    @Override
+    public void snapshot(BiConsumer<String, Order> sink) {
+        for (Entry entry : ordersInOrder.values()) {
+            sink.accept(entry.order.getId(), entry.order);
+        }
+    }
+
+    // Log a committed batch of orders with one write, then insert it in one pass;
+    // if the write fails nothing is indexed and the checkout pipeline rolls back
+    private void insertAll(List<Order> orders) {
+        List<Mutation> mutations = new ArrayList<>(log.isActive() ? orders.size() : 0);
+        if (log.isActive()) {
+            for (Order order : orders) {
+                mutations.add(Mutation.put(order.getId(), storage.encode(order)));
+            }
+        }
+        synchronized (writeLock) {
+            log.appendAll(mutations);
+            for (Order order : orders) {
+                insert(order);
+            }
+        }
+    }
+
+    // Called by the checkout pipeline after the batch is stored, before its checkouts complete
+    private void announceCreated(List<Order> orders) {
+        for (Order order : orders) {
+            events.publishEvent(new OrderChangeEvent(OrderChangeEvent.Type.CREATED, order.getId(), order.getUserId()));
+        }
+    }
+
+    private void insert(Order order) {
+        OrderStatus state = stateOf(order);
+        order.setStatus(state.name());
+        Entry entry = new Entry(nextSequence++, order, categoriesOf(order), state, versions.incrementAndGet());
+        ordersById.put(order.getId(), entry);
+        ordersInOrder.put(entry.sequence, entry);
+        if (order.createdAtEpochMillis() != Long.MIN_VALUE) {
+            ordersByCreatedAt.add(order.createdAtEpochMillis(), entry.sequence, entry);
+        }
+        // A restored order may have no user; it is listed and counted everywhere but per user
+        UserOrders userOrders = order.getUserId() != null
+                ? ordersByUser.computeIfAbsent(order.getUserId(), userId -> new UserOrders())
+                : null;
+        if (userOrders != null) {
+            userOrders.orders.put(entry.sequence, entry);
+        }
+        entry.lock.lock();
+        try {
+            addToStatus(entry);
+        } finally {
+            entry.lock.unlock();
+        }
+        if (userOrders != null) {
+            userOrders.advanceVersion(versions.incrementAndGet());
+        }
+    }
+
+    // Move the order's state to target by compare-and-set if the state machine allows it;
+    // returns the state moved from, or null if refused. Only the winner runs the side effects.
+    private static OrderStatus transition(Entry entry, OrderStatus target) {
+        while (true) {
+            OrderStatus current = entry.state.get();
+            if (!current.canMoveTo(target)) {
+                return null;
+            }
+            if (entry.state.compareAndSet(current, target)) {
+                return current;
+            }
+        }
+    }
+
+    // Apply the order's state and log it before anyone else can change it again
+    private void changeStatus(Entry entry) {
+        entry.lock.lock();
+        try {
+            if (syncStatus(entry) && log.isActive()) {
+                log.append(Mutation.put(entry.order.getId(), storage.encode(entry.order)));
+            }
+        } finally {
+            entry.lock.unlock();
+        }
+    }
+
+    // Bring the order's status, indexes and aggregates up to its state; caller holds the entry's lock.
+    // Transitions won in quick succession may get here in either order: the first applies the latest
+    // state and the others find nothing left to do.
+    private boolean syncStatus(Entry entry) {
+        String status = entry.state.get().name();
+        if (status.equals(entry.order.getStatus())) {
+            return false;
+        }
+        setStatus(entry, status);
+        return true;
+    }
+
+    // Side effects of a transition; runs once, in the thread that won it
+    private void afterTransition(Entry entry, OrderStatus to) {
+        if (to == OrderStatus.CANCELLED) {
+            stockEngine.restock(quantitiesOf(entry.order));
+        }
+    }
+
+    // Orders restored with a status no longer known are taken to be pending
+    private static OrderStatus stateOf(Order order) {
+        OrderStatus state = OrderStatus.parse(order.getStatus());
+        return state != null ? state : OrderStatus.PENDING;
+    }
+
+    private void publishStatus(Entry entry) {
+        events.publishEvent(new OrderChangeEvent(OrderChangeEvent.Type.STATUS, entry.order.getId(),
+                entry.order.getUserId()));
+    }
+
+    // Keep the status index and user aggregates in step; caller holds the entry's lock
+    private void setStatus(Entry entry, String status) {
+        removeFromStatus(entry);
+        entry.order.setStatus(status);
+        addToStatus(entry);
+        long version = versions.incrementAndGet();
+        entry.version = version;
+        UserOrders userOrders = userOrdersOf(entry.order);
+        if (userOrders != null) {
+            userOrders.advanceVersion(version);
+        }
+    }
+
+    private void addToStatus(Entry entry) {
+        String status = entry.order.getStatus();
+        if (status != null) {
+            statusBucket(status).put(entry.sequence, entry);
+        }
+        analytics.add(entry.order, entry.categories);
+        UserOrders userOrders = userOrdersOf(entry.order);
+        if (userOrders != null && !CANCELLED.equalsIgnoreCase(status)) {
+            userOrders.count.incrementAndGet();
+            userOrders.spentMinorUnits.addAndGet(Money.toMinorUnits(entry.order.getTotalAmount()));
+        }
+    }
+
+    private void removeFromStatus(Entry entry) {
+        String status = entry.order.getStatus();
+        if (status != null) {
+            statusBucket(status).remove(entry.sequence);
+        }
+        analytics.remove(entry.order, entry.categories);
+        UserOrders userOrders = userOrdersOf(entry.order);
+        if (userOrders != null && !CANCELLED.equalsIgnoreCase(status)) {
+            userOrders.count.decrementAndGet();
+            userOrders.spentMinorUnits.addAndGet(-Money.toMinorUnits(entry.order.getTotalAmount()));
+        }
+    }
+
+    // Null for an order without a user
+    private UserOrders userOrdersOf(Order order) {
+        String userId = order.getUserId();
+        return userId != null ? ordersByUser.get(userId) : null;
+    }
+
+    private ConcurrentNavigableMap<Long, Entry> statusBucket(String status) {
+        return ordersByStatus.computeIfAbsent(status.toUpperCase(Locale.ROOT), key -> new ConcurrentSkipListMap<>());
+    }
+
+    // Read-only lookup; unknown statuses do not create buckets
+    private ConcurrentNavigableMap<Long, Entry> statusView(String status) {
+        ConcurrentNavigableMap<Long, Entry> bucket =
+                status != null ? ordersByStatus.get(status.toUpperCase(Locale.ROOT)) : null;
+        return bucket != null ? bucket : new ConcurrentSkipListMap<>();
+    }
+
+    private static List<Order> ordersOf(ConcurrentNavigableMap<Long, Entry> entries) {
+        List<Order> result = new ArrayList<>();
+        for (Entry entry : entries.values()) {
+            result.add(entry.order);
+        }
+        return result;
+    }
+
+    // Keyset page over a sequence-ordered view; the cursor is the last sequence returned
+    private static Page<Order> page(ConcurrentNavigableMap<Long, Entry> entries, String cursor, int limit) {
+        if (limit <= 0) {
+            return new Page<>(new ArrayList<>(), null);
+        }
+        Map<Long, Entry> view = entries;
+        if (cursor != null) {
+            try {
+                view = entries.tailMap(Long.parseLong(cursor), false);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        List<Order> items = new ArrayList<>();
+        long lastSequence = -1;
+        for (Entry entry : view.values()) {
+            if (items.size() == limit) {
+                return new Page<>(items, Long.toString(lastSequence));
+            }
+            items.add(entry.order);
+            lastSequence = entry.sequence;
+        }
+        return new Page<>(items, null);
+    }
+
+    // Categories at checkout time, so later catalog edits do not move past revenue
+    private String[] categoriesOf(Order order) {
+        List<Order.OrderItem> items = order.getItems();
+        String[] categories = new String[items.size()];
+        for (int i = 0; i < categories.length; i++) {
+            Product product = productService.getProductById(items.get(i).getProductId());
+            categories[i] = product != null ? product.getCategory() : null;
+        }
+        return categories;
+    }
+
+    // Same zone as Order.getCreatedAt
+    private static long epochMillis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private static Map<String, Integer> quantitiesOf(Order order) {
+        Map<String, Integer> quantities = new LinkedHashMap<>();
+        for (Order.OrderItem item : order.getItems()) {
+            quantities.merge(item.getProductId(), item.getQuantity(), Integer::sum);
+        }
+        return quantities;
+    }
+
+    /**
+     * A user's orders in creation order, with running aggregates
+     */
+    private static final class UserOrders {
+        private final ConcurrentNavigableMap<Long, Entry> orders = new ConcurrentSkipListMap<>();
+        private final AtomicInteger count = new AtomicInteger();
+        private final AtomicLong spentMinorUnits = new AtomicLong();
+        private final AtomicLong version = new AtomicLong(-1);
+
+        // Orders of one user change under different locks, so only ever raise it
+        private void advanceVersion(long next) {
+            version.accumulateAndGet(next, Math::max);
+        }
+    }
+
+    /**
+     * Index entry; the sequence number fixes the order's place in the listing
+     * The state decides status changes by compare-and-set and may run ahead of
+     * order.status; the lock serializes applying it, and the version is
+     * written under it.
+     */
+    private static final class Entry {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final long sequence;
+        private final Order order;
+        private final String[] categories;
+        private final AtomicReference<OrderStatus> state;
+        private volatile long version;
+
+        private Entry(long sequence, Order order, String[] categories, OrderStatus state, long version) {
+            this.sequence = sequence;
+            this.order = order;
+            this.categories = categories;
+            this.state = new AtomicReference<>(state);
+            this.version = version;
+        }
+    }
+}
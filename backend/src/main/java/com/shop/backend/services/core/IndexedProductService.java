@@ -0,0 +1,712 @@
+package com.shop.backend.services.core;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shop.backend.events.ProductChangeEvent;
+import com.shop.backend.models.Ids;
+import com.shop.backend.models.Page;
+import com.shop.backend.models.Product;
+import com.shop.backend.services.api.InsufficientStockException;
+import com.shop.backend.services.api.ProductService;
+import com.shop.backend.services.core.catalog.CatalogSegment;
+import com.shop.backend.services.core.index.CategoryIndex;
+import com.shop.backend.services.core.index.NameIndex;
+import com.shop.backend.services.core.index.PriceIndex;
+import com.shop.backend.services.core.index.ProductQueryPlanner;
+import com.shop.backend.services.core.index.ProductSearchIndex;
+import com.shop.backend.services.core.stock.StockReservationEngine;
+import com.shop.backend.storage.DurableStore;
+import com.shop.backend.storage.Mutation;
+import com.shop.backend.storage.MutationLog;
+import com.shop.backend.storage.StorageEngine;
+import com.shop.backend.storage.StorageException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.function.BiConsumer;
+
+/**
+ * Concurrent implementation of ProductService
+ * Products are kept in an id-keyed hash index, so lookups by id are constant
+ * time, plus an insertion-ordered view that backs getAllProducts.
+ * Name and description are kept in an inverted index for searchProducts,
+ * category, price and name in secondary indexes for the browse and filter
+ * queries.
+ * Stock is held in lock-free counters by the StockReservationEngine.
+ * Readers never block; writers are serialized so all indexes always move
+ * together, and each change is appended to the write-ahead log under the
+ * same lock so the log replays in the order the changes were made.
+ * Stock moves never take that lock: each is logged as a small record of the
+ * product's new stock, keyed by STOCK_KEY_PREFIX and the product id.
+ * With shop.catalog.segment set, the product fields are kept in a
+ * memory-mapped CatalogSegment: entries then hold a row number instead of a
+ * Product, and Product objects are built on each read. The entries, the id
+ * keys, the secondary and search indexes and the stock counters stay on the
+ * heap and still grow with the catalog. Products created or changed later
+ * live on the heap as before, on top of the segment.
+ * Every change made while serving requests is announced as a
+ * ProductChangeEvent once it is visible to readers; recovery is silent.
+ * Each change then takes a new value from one version counter, which
+ * becomes the product's version and the catalog version. The version moves
+ * only after the change is visible and announced, so a reader that reads the
+ * version before the data never pairs a version with older data.
+ */
+@Service("indexedProductService")
+public class IndexedProductService implements ProductService, DurableStore<Product> {
+
+    /**
+     * Key prefix of the log records that carry only a product's stock
+     * A product created with an id that starts with it gets a new id.
+     */
+    public static final String STOCK_KEY_PREFIX = "~stock/";
+
+    // Primary index: product id -> entry
+    private final Map<String, Entry> productsById = new ConcurrentHashMap<>();
+
+    // Insertion order: sequence number -> entry
+    private final ConcurrentNavigableMap<Long, Entry> productsInOrder = new ConcurrentSkipListMap<>();
+
+    // Full-text index over name and description
+    private final ProductSearchIndex searchIndex = new ProductSearchIndex();
+
+    // Case-folded category -> products
+    private final CategoryIndex categoryIndex = new CategoryIndex();
+
+    // Price -> products
+    private final PriceIndex priceIndex = new PriceIndex();
+
+    // Lowercase name -> products
+    private final NameIndex nameIndex = new NameIndex();
+
+    private final ProductQueryPlanner queryPlanner =
+            new ProductQueryPlanner(categoryIndex, priceIndex, nameIndex, this::getProductById, productsById::size);
+
+    // Atomic stock counters, shared with checkout
+    private final StockReservationEngine stockEngine;
+
+    private final StorageEngine storage;
+
+    private final ObjectMapper objectMapper;
+
+    private final ApplicationEventPublisher events;
+
+    // Memory-mapped catalog, or null when products live only on the heap
+    private final Path segmentPath;
+    private volatile CatalogSegment segment;
+
+    // Replaced by the real log once recovery has finished
+    private volatile MutationLog log = MutationLog.NOOP;
+
+    // Guards every mutation of the indexes above
+    private final Object writeLock = new Object();
+
+    // Held while reading stock into a record and appending it, so the last
+    // record for a product always carries its latest stock; taken inside
+    // writeLock by product writes and on its own by stock moves
+    private final Object logLock = new Object();
+
+    private long nextSequence;
+
+    // Last version handed out; also the catalog version
+    private final AtomicLong versions = new AtomicLong();
+
+    public IndexedProductService(StockReservationEngine stockEngine, StorageEngine storage,
+                                 ObjectMapper objectMapper, ApplicationEventPublisher events,
+                                 @Value("${shop.catalog.segment:}") String segmentPath) {
+        this.stockEngine = stockEngine;
+        this.storage = storage;
+        this.objectMapper = objectMapper;
+        this.events = events;
+        this.segmentPath = segmentPath.isEmpty() ? null : Paths.get(segmentPath);
+    }
+
+    /**
+     * Map the catalog segment if there is one, recover changes from the log
+     * and seed sample products on first start
+     * In segment mode without a segment file yet, the recovered catalog is
+     * written out as the segment.
+     */
+    @PostConstruct
+    public void open() {
+        try {
+            if (segmentPath != null && Files.exists(segmentPath)) {
+                loadSegment(CatalogSegment.open(segmentPath, objectMapper));
+            }
+            log = storage.attach(this);
+            stockEngine.setStockListener(this::stockChanged);
+            if (productsById.isEmpty()) {
+                seed();
+            }
+            if (segmentPath != null && segment == null) {
+                compactToSegment();
+            }
+        } catch (IOException e) {
+            throw new StorageException("Failed to open catalog segment " + segmentPath, e);
+        }
+    }
+
+    /**
+     * Write the whole catalog to the segment file and serve it from there
+     * Products that were on the heap become rows of the segment; the log is
+     * then snapshotted so it does not bring them back on the next start.
+     *
+     * @throws IOException if the segment cannot be written
+     */
+    public void compactToSegment() throws IOException {
+        if (segmentPath == null) {
+            return;
+        }
+        synchronized (writeLock) {
+            CatalogSegment.write(segmentPath, getAllProducts(), objectMapper);
+            CatalogSegment mapped = CatalogSegment.open(segmentPath, objectMapper);
+            for (int row = 0; row < mapped.size(); row++) {
+                String id = mapped.id(row);
+                Entry current = productsById.get(id);
+                Entry compacted = new Entry(current.sequence, row, null, current.version);
+                productsById.put(id, compacted);
+                productsInOrder.put(compacted.sequence, compacted);
+                stockEngine.track(id, stockEngine.available(id));
+            }
+            segment = mapped;
+        }
+        if (storage.isEnabled()) {
+            storage.snapshotAll();
+        }
+    }
+
+    private void seed() {
+        // Add some sample products
+        createProduct(new Product("Laptop", 1200.0, "High-performance laptop", 10, "Electronics"));
+        createProduct(new Product("Smartphone", 800.0, "Latest smartphone", 15, "Electronics"));
+        createProduct(new Product("Headphones", 150.0, "Noise-cancelling headphones", 20, "Electronics"));
+        createProduct(new Product("T-Shirt", 25.0, "Cotton t-shirt", 50, "Clothing"));
+        createProduct(new Product("Jeans", 45.0, "Blue jeans", 30, "Clothing"));
+        createProduct(new Product("Running Shoes", 95.0, "Sports running shoes", 25, "Footwear"));
+        createProduct(new Product("Desk Lamp", 35.0, "LED desk lamp", 40, "Home"));
+        createProduct(new Product("Coffee Maker", 120.0, "Automatic coffee maker", 15, "Kitchen"));
+    }
+
+    @Override
+    public List<Product> getAllProducts() {
+        List<Product> result = new ArrayList<>(productsById.size());
+        for (Entry entry : productsInOrder.values()) {
+            result.add(productOf(entry));
+        }
+        return result;
+    }
+
+    /**
+     * Get one page of products in insertion order
+     * The cursor is the insertion sequence of the last product returned, so
+     * a page is a range scan of the ordered view, never a copy of the catalog.
+     */
+    @Override
+    public Page<Product> getProducts(String cursor, int limit) {
+        if (limit <= 0) {
+            return new Page<>(new ArrayList<>(), null);
+        }
+        Map<Long, Entry> view = productsInOrder;
+        if (cursor != null) {
+            try {
+                view = productsInOrder.tailMap(Long.parseLong(cursor), false);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        List<Product> items = new ArrayList<>(Math.min(limit, productsById.size()));
+        long lastSequence = -1;
+        for (Entry entry : view.values()) {
+            if (items.size() == limit) {
+                // There is at least one more product after this page
+                return new Page<>(items, Long.toString(lastSequence));
+            }
+            items.add(productOf(entry));
+            lastSequence = entry.sequence;
+        }
+        return new Page<>(items, null);
+    }
+
+    @Override
+    public Product getProductById(String id) {
+        if (id == null) {
+            return null;
+        }
+        Entry entry = productsById.get(id);
+        return entry != null ? productOf(entry) : null;
+    }
+
+    @Override
+    public Product createProduct(Product product) {
+        if (product == null) {
+            return null;
+        }
+        synchronized (writeLock) {
+            if (product.getId() == null || productsById.containsKey(product.getId()) || isStockKey(product.getId())) {
+                // Never let a new product silently replace an existing one
+                product.setId(Ids.newId());
+            }
+            insert(product);
+            logPut(product);
+        }
+        events.publishEvent(new ProductChangeEvent(ProductChangeEvent.Type.CREATED, product.getId(),
+                null, product.getCategory()));
+        advanceVersion(product.getId());
+        return product;
+    }
+
+    @Override
+    public Product updateProduct(String id, Product updatedProduct) {
+        if (id == null || updatedProduct == null) {
+            return null;
+        }
+        String previousCategory;
+        synchronized (writeLock) {
+            Entry entry = productsById.get(id);
+            if (entry == null) {
+                return null;
+            }
+            previousCategory = categoryOf(entry);
+            updatedProduct.setId(id);
+            replace(entry, updatedProduct);
+            logPut(updatedProduct);
+        }
+        events.publishEvent(new ProductChangeEvent(ProductChangeEvent.Type.UPDATED, id,
+                previousCategory, updatedProduct.getCategory()));
+        advanceVersion(id);
+        return updatedProduct;
+    }
+
+    @Override
+    public boolean deleteProduct(String id) {
+        if (id == null) {
+            return false;
+        }
+        String previousCategory;
+        synchronized (writeLock) {
+            Entry entry = productsById.get(id);
+            if (entry == null) {
+                return false;
+            }
+            previousCategory = categoryOf(entry);
+            remove(id);
+            log.append(Mutation.delete(id));
+        }
+        events.publishEvent(new ProductChangeEvent(ProductChangeEvent.Type.DELETED, id, previousCategory, null));
+        advanceVersion(id);
+        return true;
+    }
+
+    /**
+     * Apply the whole batch under one acquisition of the write lock and log
+     * it with one append
+     */
+    @Override
+    public List<Product> upsertProducts(List<Product> products) {
+        List<Product> stored = new ArrayList<>(products.size());
+        List<ProductChangeEvent> changes = new ArrayList<>(products.size());
+        synchronized (writeLock) {
+            for (Product product : products) {
+                if (product == null) {
+                    continue;
+                }
+                Entry entry = product.getId() != null ? productsById.get(product.getId()) : null;
+                if (entry != null) {
+                    String previousCategory = categoryOf(entry);
+                    replace(entry, product);
+                    changes.add(new ProductChangeEvent(ProductChangeEvent.Type.UPDATED, product.getId(),
+                            previousCategory, product.getCategory()));
+                } else {
+                    if (product.getId() == null || isStockKey(product.getId())) {
+                        product.setId(Ids.newId());
+                    }
+                    insert(product);
+                    changes.add(new ProductChangeEvent(ProductChangeEvent.Type.CREATED, product.getId(),
+                            null, product.getCategory()));
+                }
+                stored.add(product);
+            }
+            logPutAll(stored);
+        }
+        for (ProductChangeEvent change : changes) {
+            events.publishEvent(change);
+            advanceVersion(change.getProductId());
+        }
+        return stored;
+    }
+
+    @Override
+    public List<Product> getProductsByIds(Collection<String> ids) {
+        return lookup(ids);
+    }
+
+    @Override
+    public List<Product> getProductsByCategory(String category) {
+        return lookup(categoryIndex.ids(category));
+    }
+
+    @Override
+    public List<Product> searchProducts(String query) {
+        return searchProducts(query, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Only the best {@code limit} matches are ranked and resolved; see ProductSearchIndex
+     */
+    @Override
+    public List<Product> searchProducts(String query, int limit) {
+        // Ids come back ranked by relevance
+        return lookup(searchIndex.search(query, limit));
+    }
+
+    /**
+     * Add or remove stock without taking the write lock
+     * The new stock is logged and announced by stockChanged.
+     */
+    @Override
+    public Product updateStock(String id, int quantity) {
+        Entry entry = id != null ? productsById.get(id) : null;
+        if (entry == null) {
+            return null;
+        }
+        if (stockEngine.adjust(id, quantity) == null) {
+            int available = stockEngine.available(id);
+            if (available < 0) {
+                // Deleted since the lookup
+                return null;
+            }
+            throw new InsufficientStockException(id, quantity, available);
+        }
+        return productOf(entry);
+    }
+
+    @Override
+    public Set<String> getAllCategories() {
+        return categoryIndex.categories();
+    }
+
+    @Override
+    public List<Product> filterByPriceRange(double minPrice, double maxPrice) {
+        return lookup(priceIndex.ids(minPrice, maxPrice));
+    }
+
+    @Override
+    public List<Product> filterProducts(String category, Double minPrice, Double maxPrice, String sortBy) {
+        return filterProducts(category, minPrice, maxPrice, sortBy, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Stops as soon as {@code limit} products are found; see ProductQueryPlanner
+     */
+    @Override
+    public List<Product> filterProducts(String category, Double minPrice, Double maxPrice, String sortBy, int limit) {
+        return queryPlanner.execute(category, minPrice, maxPrice, ProductQueryPlanner.SortOrder.parse(sortBy), limit);
+    }
+
+    @Override
+    public long getProductVersion(String id) {
+        Entry entry = id != null ? productsById.get(id) : null;
+        return entry != null ? entry.version : -1;
+    }
+
+    @Override
+    public long getCatalogVersion() {
+        return versions.get();
+    }
+
+    /**
+     * Get the number of products in the catalog
+     *
+     * @return catalog size
+     */
+    public int size() {
+        return productsById.size();
+    }
+
+    @Override
+    public String storeName() {
+        return "products";
+    }
+
+    @Override
+    public Class<Product> entityType() {
+        return Product.class;
+    }
+
+    /**
+     * A stock record only sets the stock of the product logged before it
+     */
+    @Override
+    public void restore(String key, Product product) {
+        if (isStockKey(key)) {
+            restoreStock(key.substring(STOCK_KEY_PREFIX.length()), product.getStock());
+            return;
+        }
+        synchronized (writeLock) {
+            Entry entry = productsById.get(key);
+            if (entry != null) {
+                swap(entry, product);
+                // The record holds the stock as it was; nothing was reserved before recovery
+                stockEngine.track(product);
+            } else {
+                insert(product);
+            }
+        }
+        advanceVersion(key);
+    }
+
+    @Override
+    public void discard(String key) {
+        synchronized (writeLock) {
+            remove(key);
+        }
+        advanceVersion(key);
+    }
+
+    /**
+     * Rows still served unchanged from the segment are not written; rows whose
+     * stock moved are written in full and deleted rows as deletions
+     */
+    @Override
+    public void snapshot(BiConsumer<String, Product> sink) {
+        for (Entry entry : productsInOrder.values()) {
+            Product product = entry.product;
+            if (product != null) {
+                sink.accept(product.getId(), product);
+            } else {
+                String id = segment.id(entry.row);
+                if (stockEngine.available(id) != segment.stock(entry.row)) {
+                    sink.accept(id, productOf(entry));
+                }
+            }
+        }
+        CatalogSegment base = segment;
+        if (base != null) {
+            for (int row = 0; row < base.size(); row++) {
+                String id = base.id(row);
+                if (!productsById.containsKey(id)) {
+                    sink.accept(id, null);
+                }
+            }
+        }
+    }
+
+    // Index every row of a freshly mapped segment without building Product objects
+    private void loadSegment(CatalogSegment mapped) {
+        synchronized (writeLock) {
+            for (int row = 0; row < mapped.size(); row++) {
+                String id = mapped.id(row);
+                Entry entry = new Entry(nextSequence++, row, null, versions.get());
+                productsById.put(id, entry);
+                productsInOrder.put(entry.sequence, entry);
+                addToIndexes(entry.sequence, id, mapped.name(row), mapped.description(row), mapped.category(row),
+                        mapped.price(row));
+                stockEngine.track(id, mapped.stock(row));
+            }
+            segment = mapped;
+        }
+    }
+
+    // The heap product, or a fresh view of the segment row with its live stock
+    private Product productOf(Entry entry) {
+        Product product = entry.product;
+        if (product != null) {
+            return product;
+        }
+        Product view = segment.product(entry.row);
+        view.setStock(stockEngine.available(view.getId()));
+        return view;
+    }
+
+    private void insert(Product product) {
+        // Starts above every version an earlier product with this id had
+        Entry entry = new Entry(nextSequence++, -1, product, versions.get());
+        productsById.put(product.getId(), entry);
+        productsInOrder.put(entry.sequence, entry);
+        addToIndexes(entry);
+        stockEngine.track(product);
+    }
+
+    // Update a product in place; the live stock counter is kept and only a
+    // change from the stock the update was made against is applied to it
+    private void replace(Entry entry, Product product) {
+        int seenStock = stockEngine.available(product.getId());
+        swap(entry, product);
+        stockEngine.retrack(product, seenStock);
+    }
+
+    // Keep the original position in the listing, swap the data
+    private void swap(Entry entry, Product product) {
+        removeFromSecondaryIndexes(entry);
+        entry.product = product;
+        addToIndexes(entry);
+    }
+
+    private boolean remove(String id) {
+        Entry entry = productsById.remove(id);
+        if (entry == null) {
+            return false;
+        }
+        productsInOrder.remove(entry.sequence);
+        removeFromSecondaryIndexes(entry);
+        searchIndex.remove(id);
+        stockEngine.untrack(id);
+        return true;
+    }
+
+    // Called by the stock engine for every stock move, including checkout reservations
+    private void stockChanged(String id) {
+        logStock(id);
+        Entry entry = productsById.get(id);
+        if (entry != null) {
+            String category = categoryOf(entry);
+            events.publishEvent(new ProductChangeEvent(ProductChangeEvent.Type.STOCK, id, category, category));
+        }
+        advanceVersion(id);
+    }
+
+    // Take the next version for a product that just changed; stock moves
+    // concurrently, so a product's version is only ever raised
+    private void advanceVersion(String id) {
+        long version = versions.incrementAndGet();
+        Entry entry = productsById.get(id);
+        if (entry != null) {
+            Entry.VERSION.accumulateAndGet(entry, version, Math::max);
+        }
+    }
+
+    // Stock moves outside the write lock; log the counter as it is now, so the
+    // last record for the product always carries its latest stock
+    private void logStock(String id) {
+        if (!log.isActive()) {
+            return;
+        }
+        synchronized (logLock) {
+            int stock = stockEngine.available(id);
+            if (stock >= 0) {
+                log.append(Mutation.put(STOCK_KEY_PREFIX + id,
+                        ("{\"stock\":" + stock + "}").getBytes(StandardCharsets.UTF_8)));
+            }
+        }
+    }
+
+    private void restoreStock(String id, int stock) {
+        synchronized (writeLock) {
+            Entry entry = productsById.get(id);
+            if (entry == null) {
+                // Deleted after the record was written
+                return;
+            }
+            Product product = entry.product;
+            if (product != null) {
+                product.setStock(stock);
+                stockEngine.track(product);
+            } else {
+                stockEngine.track(id, stock);
+            }
+        }
+        advanceVersion(id);
+    }
+
+    private static boolean isStockKey(String id) {
+        return id.startsWith(STOCK_KEY_PREFIX);
+    }
+
+    // Read without building a Product for segment rows
+    private String categoryOf(Entry entry) {
+        Product product = entry.product;
+        return product != null ? product.getCategory() : segment.category(entry.row);
+    }
+
+    private void logPut(Product product) {
+        if (log.isActive()) {
+            synchronized (logLock) {
+                log.append(Mutation.put(product.getId(), storage.encode(product)));
+            }
+        }
+    }
+
+    // One append for the whole batch
+    private void logPutAll(List<Product> products) {
+        if (!log.isActive()) {
+            return;
+        }
+        List<Mutation> mutations = new ArrayList<>(products.size());
+        synchronized (logLock) {
+            for (Product product : products) {
+                mutations.add(Mutation.put(product.getId(), storage.encode(product)));
+            }
+            log.appendAll(mutations);
+        }
+    }
+
+    // Resolve ids from a secondary index, skipping any deleted in the meantime
+    private List<Product> lookup(Collection<String> ids) {
+        List<Product> result = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            Entry entry = productsById.get(id);
+            if (entry != null) {
+                result.add(productOf(entry));
+            }
+        }
+        return result;
+    }
+
+    private void addToIndexes(Entry entry) {
+        Product product = entry.product;
+        addToIndexes(entry.sequence, product.getId(), product.getName(), product.getDescription(),
+                product.getCategory(), product.getPrice());
+    }
+
+    private void addToIndexes(long sequence, String id, String name, String description, String category,
+                              double price) {
+        searchIndex.index(id, sequence, name, description);
+        categoryIndex.add(category, sequence, id);
+        priceIndex.add(price, sequence, id);
+        nameIndex.add(name, sequence, id);
+    }
+
+    // The search index replaces documents in place, so only these need the old values
+    private void removeFromSecondaryIndexes(Entry entry) {
+        Product product = productOf(entry);
+        categoryIndex.remove(product.getCategory(), entry.sequence);
+        priceIndex.remove(product.getPrice(), entry.sequence);
+        nameIndex.remove(product.getName(), entry.sequence);
+    }
+
+    /**
+     * Index entry; the sequence number fixes the product's place in the listing
+     * The product is null while it is served from its segment row.
+     */
+    private static final class Entry {
+        private static final AtomicLongFieldUpdater<Entry> VERSION =
+                AtomicLongFieldUpdater.newUpdater(Entry.class, "version");
+
+        private final long sequence;
+        private final int row;
+        private volatile Product product;
+        private volatile long version;
+
+        private Entry(long sequence, int row, Product product, long version) {
+            this.sequence = sequence;
+            this.row = row;
+            this.product = product;
+            this.version = version;
+        }
+    }
+}
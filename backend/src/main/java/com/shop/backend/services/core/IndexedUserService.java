@@ -0,0 +1,360 @@
+package com.shop.backend.services.core;
+
+import com.shop.backend.models.Ids;
+import com.shop.backend.models.Page;
+import com.shop.backend.models.User;
+import com.shop.backend.services.api.DuplicateUserException;
+import com.shop.backend.services.api.InvalidUserException;
+import com.shop.backend.services.api.UserService;
+import com.shop.backend.storage.DurableStore;
+import com.shop.backend.storage.Mutation;
+import com.shop.backend.storage.MutationLog;
+import com.shop.backend.storage.StorageEngine;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.BiConsumer;
+
+/**
+ * Concurrent implementation of UserService
+ * Users are kept in an id-keyed hash index with unique indexes on username
+ * and email, so login and the lookups behind it take constant time
+ * regardless of the number of users. Usernames and emails are matched
+ * case-insensitively and claimed with putIfAbsent, so two concurrent
+ * registrations can never end up with the same one.
+ * Changes are logged while the user's entry is locked.
+ */
+@Service("indexedUserService")
+public class IndexedUserService implements UserService, DurableStore<User> {
+
+    private final StorageEngine storage;
+
+    // Replaced by the real log once recovery has finished
+    private volatile MutationLog log = MutationLog.NOOP;
+
+    // Primary index: user id -> entry
+    private final Map<String, Entry> usersById = new ConcurrentHashMap<>();
+
+    // Registration order: sequence number -> entry
+    private final ConcurrentNavigableMap<Long, Entry> usersInOrder = new ConcurrentSkipListMap<>();
+
+    // Normalized username -> user id
+    private final Map<String, String> idsByUsername = new ConcurrentHashMap<>();
+
+    // Normalized email -> user id
+    private final Map<String, String> idsByEmail = new ConcurrentHashMap<>();
+
+    private final Object sequenceLock = new Object();
+
+    private long nextSequence;
+
+    public IndexedUserService(StorageEngine storage) {
+        this.storage = storage;
+    }
+
+    @PostConstruct
+    public void open() {
+        log = storage.attach(this);
+    }
+
+    @Override
+    public List<User> getAllUsers() {
+        List<User> result = new ArrayList<>(usersById.size());
+        for (Entry entry : usersInOrder.values()) {
+            result.add(entry.user);
+        }
+        return result;
+    }
+
+    @Override
+    public Page<User> getUsers(String cursor, int limit) {
+        if (limit <= 0) {
+            return new Page<>(new ArrayList<>(), null);
+        }
+        Map<Long, Entry> view = usersInOrder;
+        if (cursor != null) {
+            try {
+                view = usersInOrder.tailMap(Long.parseLong(cursor), false);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        List<User> items = new ArrayList<>();
+        long lastSequence = -1;
+        for (Entry entry : view.values()) {
+            if (items.size() == limit) {
+                return new Page<>(items, Long.toString(lastSequence));
+            }
+            items.add(entry.user);
+            lastSequence = entry.sequence;
+        }
+        return new Page<>(items, null);
+    }
+
+    @Override
+    public User getUserById(String id) {
+        Entry entry = id != null ? usersById.get(id) : null;
+        return entry != null ? entry.user : null;
+    }
+
+    /**
+     * Create a user
+     * The username and email are claimed case-insensitively before the user
+     * becomes visible.
+     */
+    @Override
+    public User createUser(User user) {
+        if (user == null || normalize(user.getUsername()) == null) {
+            throw new InvalidUserException("A username is required");
+        }
+        if (user.getId() == null || usersById.containsKey(user.getId())) {
+            user.setId(Ids.newId());
+        }
+        String id = user.getId();
+        String username = normalize(user.getUsername());
+        String email = normalize(user.getEmail());
+
+        if (!claim(idsByUsername, username, id)) {
+            throw usernameTaken(user.getUsername());
+        }
+        if (!claim(idsByEmail, email, id)) {
+            release(idsByUsername, username, id);
+            throw emailTaken(user.getEmail());
+        }
+
+        Entry entry = newEntry(user);
+        // Locked before it is visible, so an update cannot be logged ahead of the insert
+        synchronized (entry) {
+            usersById.put(id, entry);
+            usersInOrder.put(entry.sequence, entry);
+            logPut(user);
+        }
+        return user;
+    }
+
+    /**
+     * Update a user
+     * A missing password keeps the current one. Returns null if the user does
+     * not exist.
+     */
+    @Override
+    public User updateUser(String id, User updatedUser) {
+        Entry entry = id != null ? usersById.get(id) : null;
+        if (entry == null) {
+            return null;
+        }
+        if (updatedUser == null || normalize(updatedUser.getUsername()) == null) {
+            throw new InvalidUserException("A username is required");
+        }
+        synchronized (entry) {
+            if (usersById.get(id) != entry) {
+                // Deleted while we waited
+                return null;
+            }
+            User current = entry.user;
+            String oldUsername = normalize(current.getUsername());
+            String oldEmail = normalize(current.getEmail());
+            String newUsername = normalize(updatedUser.getUsername());
+            String newEmail = normalize(updatedUser.getEmail());
+
+            if (!claim(idsByUsername, newUsername, id)) {
+                throw usernameTaken(updatedUser.getUsername());
+            }
+            if (!claim(idsByEmail, newEmail, id)) {
+                if (!newUsername.equals(oldUsername)) {
+                    release(idsByUsername, newUsername, id);
+                }
+                throw emailTaken(updatedUser.getEmail());
+            }
+
+            updatedUser.setId(id);
+            if (updatedUser.getPassword() == null) {
+                updatedUser.setPassword(current.getPassword());
+            }
+            entry.user = updatedUser;
+
+            if (!newUsername.equals(oldUsername)) {
+                release(idsByUsername, oldUsername, id);
+            }
+            if (oldEmail != null && !oldEmail.equals(newEmail)) {
+                release(idsByEmail, oldEmail, id);
+            }
+            logPut(updatedUser);
+            return updatedUser;
+        }
+    }
+
+    @Override
+    public boolean deleteUser(String id) {
+        Entry entry = id != null ? usersById.get(id) : null;
+        if (entry == null) {
+            return false;
+        }
+        synchronized (entry) {
+            if (!usersById.remove(id, entry)) {
+                return false;
+            }
+            usersInOrder.remove(entry.sequence);
+            release(idsByUsername, normalize(entry.user.getUsername()), id);
+            release(idsByEmail, normalize(entry.user.getEmail()), id);
+            log.append(Mutation.delete(id));
+            return true;
+        }
+    }
+
+    @Override
+    public User authenticate(String username, String password) {
+        User user = getUserByUsername(username);
+        if (user == null || user.getPassword() == null || password == null) {
+            return null;
+        }
+        // Compare without short-circuiting on the first differing character
+        boolean matches = MessageDigest.isEqual(
+                user.getPassword().getBytes(StandardCharsets.UTF_8),
+                password.getBytes(StandardCharsets.UTF_8));
+        return matches ? user : null;
+    }
+
+    @Override
+    public User getUserByUsername(String username) {
+        String key = normalize(username);
+        return key != null ? getUserById(idsByUsername.get(key)) : null;
+    }
+
+    @Override
+    public User getUserByEmail(String email) {
+        String key = normalize(email);
+        return key != null ? getUserById(idsByEmail.get(key)) : null;
+    }
+
+    /**
+     * Get the number of registered users
+     *
+     * @return number of users
+     */
+    public int size() {
+        return usersById.size();
+    }
+
+    @Override
+    public String storeName() {
+        return "users";
+    }
+
+    @Override
+    public Class<User> entityType() {
+        return User.class;
+    }
+
+    /**
+     * Replay a stored user; records were checked for uniqueness when they
+     * were written, so keys are taken over without checking again
+     */
+    @Override
+    public void restore(String key, User user) {
+        Entry entry = usersById.get(key);
+        if (entry != null) {
+            unindex(key, entry);
+        }
+        // An update keeps the user's place in the listing
+        Entry restored = entry != null ? new Entry(entry.sequence, user) : newEntry(user);
+        usersById.put(key, restored);
+        usersInOrder.put(restored.sequence, restored);
+        putKey(idsByUsername, normalize(user.getUsername()), key);
+        putKey(idsByEmail, normalize(user.getEmail()), key);
+    }
+
+    @Override
+    public void discard(String key) {
+        Entry entry = usersById.get(key);
+        if (entry != null) {
+            unindex(key, entry);
+        }
+    }
+
+    @Override
+    public void snapshot(BiConsumer<String, User> sink) {
+        for (Entry entry : usersInOrder.values()) {
+            User user = entry.user;
+            sink.accept(user.getId(), user);
+        }
+    }
+
+    private void unindex(String id, Entry entry) {
+        usersById.remove(id);
+        usersInOrder.remove(entry.sequence);
+        release(idsByUsername, normalize(entry.user.getUsername()), id);
+        release(idsByEmail, normalize(entry.user.getEmail()), id);
+    }
+
+    private void logPut(User user) {
+        if (log.isActive()) {
+            log.append(Mutation.put(user.getId(), storage.encode(user)));
+        }
+    }
+
+    private Entry newEntry(User user) {
+        synchronized (sequenceLock) {
+            return new Entry(nextSequence++, user);
+        }
+    }
+
+    private static void putKey(Map<String, String> index, String key, String id) {
+        if (key != null) {
+            index.put(key, id);
+        }
+    }
+
+    // Take a unique key for a user; succeeds if it is free or already theirs
+    private static boolean claim(Map<String, String> index, String key, String id) {
+        if (key == null) {
+            return true;
+        }
+        String owner = index.putIfAbsent(key, id);
+        return owner == null || owner.equals(id);
+    }
+
+    private static void release(Map<String, String> index, String key, String id) {
+        if (key != null) {
+            index.remove(key, id);
+        }
+    }
+
+    private static DuplicateUserException usernameTaken(String username) {
+        return new DuplicateUserException("Username " + username + " is already taken");
+    }
+
+    private static DuplicateUserException emailTaken(String email) {
+        return new DuplicateUserException("Email " + email + " is already taken");
+    }
+
+    private static String normalize(String value) {
+        if (value == null) {
+            return null;
+        }
+        String normalized = value.trim().toLowerCase(Locale.ROOT);
+        return normalized.isEmpty() ? null : normalized;
+    }
+
+    /**
+     * Index entry; the sequence number fixes the user's place in the listing
+     */
+    private static final class Entry {
+        private final long sequence;
+        private volatile User user;
+
+        private Entry(long sequence, User user) {
+            this.sequence = sequence;
+            this.user = user;
+        }
+    }
+}
@@ -0,0 +1,357 @@
+package com.shop.backend.services.core.catalog;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shop.backend.models.Product;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Read-only, memory-mapped columnar image of a product catalog
+ * Every field is stored in its own column and mapped separately, so the
+ * field values live in the OS page cache instead of the Java heap and a
+ * query only touches the pages of the columns it reads. Product objects are
+ * built on demand by product(row) and not retained. Rows are addressed by
+ * number; looking a product up by id is left to the caller's own index.
+ *
+ * Layout:
+ * <pre>
+ *   int magic, int format version, int row count
+ *   SECTIONS x (long offset, long length)
+ *   sections: id, name, description, image URL, custom fields (JSON) and
+ *             category names as string columns; category code, price and
+ *             stock as fixed-width columns
+ * </pre>
+ * A string column is a null bitmap, row count + 1 offsets and the UTF-8
+ * bytes. Each column is limited to 2 GB. open checks that every section
+ * lies within the file and has the size the row count calls for, so a
+ * truncated or garbled file is refused rather than read past its end.
+ */
+public final class CatalogSegment {
+
+    private static final int MAGIC = 0x43534547; // "CSEG"
+    private static final int FORMAT_VERSION = 2;
+
+    private static final int ID = 0;
+    private static final int NAME = 1;
+    private static final int DESCRIPTION = 2;
+    private static final int IMAGE_URL = 3;
+    private static final int CUSTOM_FIELDS = 4;
+    private static final int CATEGORY_NAMES = 5;
+    private static final int CATEGORY_CODES = 6;
+    private static final int PRICES = 7;
+    private static final int STOCKS = 8;
+    private static final int SECTIONS = 9;
+
+    private static final int HEADER_BYTES = 12 + SECTIONS * 16;
+
+    private static final TypeReference<HashMap<String, Object>> FIELDS_TYPE =
+            new TypeReference<HashMap<String, Object>>() { };
+
+    private final int rows;
+    private final StringColumn ids;
+    private final StringColumn names;
+    private final StringColumn descriptions;
+    private final StringColumn imageUrls;
+    private final StringColumn customFields;
+    private final StringColumn categoryNames;
+    private final ByteBuffer categoryCodes;
+    private final ByteBuffer prices;
+    private final ByteBuffer stocks;
+    private final ObjectMapper objectMapper;
+
+    private CatalogSegment(int rows, ByteBuffer[] sections, ObjectMapper objectMapper) {
+        this.rows = rows;
+        this.ids = new StringColumn(sections[ID]);
+        this.names = new StringColumn(sections[NAME]);
+        this.descriptions = new StringColumn(sections[DESCRIPTION]);
+        this.imageUrls = new StringColumn(sections[IMAGE_URL]);
+        this.customFields = new StringColumn(sections[CUSTOM_FIELDS]);
+        this.categoryNames = new StringColumn(sections[CATEGORY_NAMES]);
+        this.categoryCodes = sections[CATEGORY_CODES];
+        this.prices = sections[PRICES];
+        this.stocks = sections[STOCKS];
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Map a segment file
+     * The mappings stay valid after the channel is closed and are released
+     * when the segment is garbage collected.
+     *
+     * @param path         segment file
+     * @param objectMapper decodes custom fields
+     * @return mapped segment
+     * @throws IOException if the file cannot be read, is not a segment, or is
+     *                     truncated or corrupt
+     */
+    public static CatalogSegment open(Path path, ObjectMapper objectMapper) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            if (fileSize < HEADER_BYTES) {
+                throw new IOException("Truncated catalog segment: " + path);
+            }
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+            if (header.getInt(0) != MAGIC) {
+                throw new IOException("Not a catalog segment: " + path);
+            }
+            if (header.getInt(4) != FORMAT_VERSION) {
+                throw new IOException("Unsupported catalog segment version " + header.getInt(4) + ": " + path);
+            }
+            int rows = header.getInt(8);
+            if (rows < 0) {
+                throw new IOException("Corrupt catalog segment header: " + path);
+            }
+            ByteBuffer[] sections = new ByteBuffer[SECTIONS];
+            for (int i = 0; i < SECTIONS; i++) {
+                long offset = header.getLong(12 + i * 16);
+                long length = header.getLong(20 + i * 16);
+                if (offset < HEADER_BYTES || length < 0 || length > Integer.MAX_VALUE || offset > fileSize - length) {
+                    throw new IOException("Truncated or corrupt catalog segment: " + path);
+                }
+                sections[i] = channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+            }
+            check(rows, sections, path);
+            return new CatalogSegment(rows, sections, objectMapper);
+        }
+    }
+
+    /**
+     * Write products to a new segment file, replacing any existing one
+     * atomically
+     *
+     * @param path         segment file
+     * @param products     products in listing order
+     * @param objectMapper encodes custom fields
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(Path path, List<Product> products, ObjectMapper objectMapper) throws IOException {
+        int rows = products.size();
+        List<String> idValues = new ArrayList<>(rows);
+        List<String> nameValues = new ArrayList<>(rows);
+        List<String> descriptionValues = new ArrayList<>(rows);
+        List<String> imageUrlValues = new ArrayList<>(rows);
+        List<String> customFieldValues = new ArrayList<>(rows);
+        Map<String, Integer> categoryCodeOf = new LinkedHashMap<>();
+        ByteBuffer codes = ByteBuffer.allocate(rows * 4);
+        ByteBuffer priceColumn = ByteBuffer.allocate(rows * 8);
+        ByteBuffer stockColumn = ByteBuffer.allocate(rows * 4);
+
+        for (Product product : products) {
+            idValues.add(product.getId());
+            nameValues.add(product.getName());
+            descriptionValues.add(product.getDescription());
+            imageUrlValues.add(product.getImageUrl());
+            Map<String, Object> fields = product.getCustomFields();
+            customFieldValues.add(fields == null || fields.isEmpty() ? null : objectMapper.writeValueAsString(fields));
+            String category = product.getCategory();
+            codes.putInt(category == null ? -1
+                    : categoryCodeOf.computeIfAbsent(category, key -> categoryCodeOf.size()));
+            priceColumn.putDouble(product.getPrice());
+            stockColumn.putInt(product.getStock());
+        }
+
+        byte[][] sections = new byte[SECTIONS][];
+        sections[ID] = StringColumn.encode(idValues);
+        sections[NAME] = StringColumn.encode(nameValues);
+        sections[DESCRIPTION] = StringColumn.encode(descriptionValues);
+        sections[IMAGE_URL] = StringColumn.encode(imageUrlValues);
+        sections[CUSTOM_FIELDS] = StringColumn.encode(customFieldValues);
+        sections[CATEGORY_NAMES] = StringColumn.encode(new ArrayList<>(categoryCodeOf.keySet()));
+        sections[CATEGORY_CODES] = codes.array();
+        sections[PRICES] = priceColumn.array();
+        sections[STOCKS] = stockColumn.array();
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        header.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(rows);
+        long offset = HEADER_BYTES;
+        for (byte[] section : sections) {
+            header.putLong(offset).putLong(section.length);
+            offset += section.length;
+        }
+        header.flip();
+
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            writeFully(channel, header);
+            for (byte[] section : sections) {
+                writeFully(channel, ByteBuffer.wrap(section));
+            }
+            channel.force(true);
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Every column must hold exactly one value per row, and every category code must name a category
+    private static void check(int rows, ByteBuffer[] sections, Path path) throws IOException {
+        boolean intact = StringColumn.holds(sections[ID], rows)
+                && StringColumn.holds(sections[NAME], rows)
+                && StringColumn.holds(sections[DESCRIPTION], rows)
+                && StringColumn.holds(sections[IMAGE_URL], rows)
+                && StringColumn.holds(sections[CUSTOM_FIELDS], rows)
+                && StringColumn.holds(sections[CATEGORY_NAMES], -1)
+                && sections[CATEGORY_CODES].capacity() == rows * 4L
+                && sections[PRICES].capacity() == rows * 8L
+                && sections[STOCKS].capacity() == rows * 4L;
+        if (intact) {
+            int categories = sections[CATEGORY_NAMES].getInt(0);
+            for (int row = 0; row < rows && intact; row++) {
+                int code = sections[CATEGORY_CODES].getInt(row * 4);
+                intact = code >= -1 && code < categories;
+            }
+        }
+        if (!intact) {
+            throw new IOException("Corrupt catalog segment: " + path);
+        }
+    }
+
+    /**
+     * Get the number of products in the segment
+     *
+     * @return row count
+     */
+    public int size() {
+        return rows;
+    }
+
+    public String id(int row) {
+        return ids.get(row);
+    }
+
+    public String name(int row) {
+        return names.get(row);
+    }
+
+    public String description(int row) {
+        return descriptions.get(row);
+    }
+
+    public String category(int row) {
+        int code = categoryCodes.getInt(row * 4);
+        return code >= 0 ? categoryNames.get(code) : null;
+    }
+
+    public double price(int row) {
+        return prices.getDouble(row * 8);
+    }
+
+    public int stock(int row) {
+        return stocks.getInt(row * 4);
+    }
+
+    /**
+     * Build a Product from a row
+     * The result is a fresh object owned by the caller; changing it does not
+     * change the segment.
+     *
+     * @param row row
+     * @return product
+     */
+    public Product product(int row) {
+        Product product = new Product(names.get(row), price(row), descriptions.get(row), stock(row), category(row));
+        product.setId(ids.get(row));
+        product.setImageUrl(imageUrls.get(row));
+        String fields = customFields.get(row);
+        if (fields != null) {
+            try {
+                product.setCustomFields(objectMapper.readValue(fields, FIELDS_TYPE));
+            } catch (IOException e) {
+                throw new IllegalStateException("Corrupt custom fields in catalog segment row " + row, e);
+            }
+        }
+        return product;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Variable-width string column: null bitmap, offsets, UTF-8 bytes
+     * Reads use absolute positions only, so one column can be shared by any
+     * number of threads.
+     */
+    private static final class StringColumn {
+        private final ByteBuffer buffer;
+        private final int offsetsStart;
+        private final int bytesStart;
+
+        private StringColumn(ByteBuffer buffer) {
+            this.buffer = buffer;
+            int count = buffer.getInt(0);
+            this.offsetsStart = 4 + bitmapBytes(count);
+            this.bytesStart = offsetsStart + (count + 1) * 4;
+        }
+
+        private String get(int index) {
+            if ((buffer.get(4 + (index >>> 3)) & (1 << (index & 7))) != 0) {
+                return null;
+            }
+            int start = buffer.getInt(offsetsStart + index * 4);
+            int end = buffer.getInt(offsetsStart + (index + 1) * 4);
+            byte[] bytes = new byte[end - start];
+            buffer.get(bytesStart + start, bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        private static byte[] encode(List<String> values) {
+            int count = values.size();
+            byte[] bitmap = new byte[bitmapBytes(count)];
+            ByteBuffer offsets = ByteBuffer.allocate((count + 1) * 4);
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            for (int i = 0; i < count; i++) {
+                offsets.putInt(bytes.size());
+                String value = values.get(i);
+                if (value == null) {
+                    bitmap[i >>> 3] |= (byte) (1 << (i & 7));
+                } else {
+                    bytes.writeBytes(value.getBytes(StandardCharsets.UTF_8));
+                }
+            }
+            offsets.putInt(bytes.size());
+
+            ByteBuffer column = ByteBuffer.allocate(4 + bitmap.length + offsets.capacity() + bytes.size());
+            column.putInt(count).put(bitmap).put(offsets.array()).put(bytes.toByteArray());
+            return column.array();
+        }
+
+        // True if the buffer holds a whole column of count values, or of any number if count is -1
+        private static boolean holds(ByteBuffer buffer, int count) {
+            if (buffer.capacity() < 4) {
+                return false;
+            }
+            int stored = buffer.getInt(0);
+            if (stored < 0 || (count >= 0 && stored != count)) {
+                return false;
+            }
+            long offsetsStart = 4 + ((stored + 31L) >>> 5) * 4;
+            long bytesStart = offsetsStart + (stored + 1L) * 4;
+            if (bytesStart > buffer.capacity()) {
+                return false;
+            }
+            int end = buffer.getInt((int) offsetsStart + stored * 4);
+            return end >= 0 && bytesStart + end == buffer.capacity();
+        }
+
+        // Rounded up to whole ints so the offsets stay aligned
+        private static int bitmapBytes(int count) {
+            return ((count + 31) >>> 5) * 4;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.shop.backend.services.core.index;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Secondary index from category to products
+ * Categories are matched case-insensitively; each one remembers the spelling
+ * it was first added with and keeps its products in insertion order.
+ *
+ * Writes must be serialized by the caller; reads may run concurrently.
+ */
+public class CategoryIndex {
+
+    // Case-folded category -> bucket
+    private final Map<String, Bucket> buckets = new ConcurrentHashMap<>();
+
+    /**
+     * Add a product to its category
+     *
+     * @param category category name
+     * @param sequence product insertion sequence
+     * @param id       product ID
+     */
+    public void add(String category, long sequence, String id) {
+        if (category == null) {
+            return;
+        }
+        buckets.computeIfAbsent(fold(category), k -> new Bucket(category)).ids.put(sequence, id);
+    }
+
+    /**
+     * Remove a product from its category
+     *
+     * @param category category name
+     * @param sequence product insertion sequence
+     */
+    public void remove(String category, long sequence) {
+        if (category == null) {
+            return;
+        }
+        String key = fold(category);
+        Bucket bucket = buckets.get(key);
+        if (bucket != null) {
+            bucket.ids.remove(sequence);
+            if (bucket.ids.isEmpty()) {
+                buckets.remove(key, bucket);
+            }
+        }
+    }
+
+    /**
+     * Get the products of a category
+     *
+     * @param category category name (any case)
+     * @return product IDs in insertion order
+     */
+    public Collection<String> ids(String category) {
+        return idsBySequence(category).values();
+    }
+
+    /**
+     * Get the products of a category keyed by insertion sequence
+     *
+     * @param category category name (any case)
+     * @return sequence -> product ID view
+     */
+    public ConcurrentNavigableMap<Long, String> idsBySequence(String category) {
+        Bucket bucket = category != null ? buckets.get(fold(category)) : null;
+        return bucket != null ? bucket.ids : new ConcurrentSkipListMap<>();
+    }
+
+    /**
+     * Get the number of products in a category
+     *
+     * @param category category name (any case)
+     * @return product count
+     */
+    public int count(String category) {
+        Bucket bucket = category != null ? buckets.get(fold(category)) : null;
+        return bucket != null ? bucket.ids.size() : 0;
+    }
+
+    /**
+     * Get all categories that currently have products
+     *
+     * @return category names
+     */
+    public Set<String> categories() {
+        Set<String> categories = new HashSet<>();
+        for (Bucket bucket : buckets.values()) {
+            if (!bucket.ids.isEmpty()) {
+                categories.add(bucket.displayName);
+            }
+        }
+        return Collections.unmodifiableSet(categories);
+    }
+
+    /**
+     * Fold a category name the way the index matches it
+     * Anything that compares categories outside the index uses this, so a
+     * product is found by the same names whichever index drives a query.
+     *
+     * @param category category name (any case)
+     * @return folded name, or null if the category is null
+     */
+    public static String fold(String category) {
+        return category != null ? category.toLowerCase(Locale.ROOT) : null;
+    }
+
+    private static final class Bucket {
+        private final String displayName;
+        private final ConcurrentNavigableMap<Long, String> ids = new ConcurrentSkipListMap<>();
+
+        private Bucket(String displayName) {
+            this.displayName = displayName;
+        }
+    }
+}
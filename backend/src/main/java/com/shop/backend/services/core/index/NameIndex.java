@@ -0,0 +1,83 @@
+package com.shop.backend.services.core.index;
+
+import java.util.Locale;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Sorted secondary index from product name to products
+ * Names are compared case-insensitively; equal names stay in insertion order.
+ *
+ * Writes must be serialized by the caller; reads may run concurrently.
+ */
+public class NameIndex {
+
+    private final ConcurrentNavigableMap<Key, String> ids = new ConcurrentSkipListMap<>();
+
+    /**
+     * Add a product under its name
+     *
+     * @param name     product name
+     * @param sequence product insertion sequence
+     * @param id       product ID
+     */
+    public void add(String name, long sequence, String id) {
+        ids.put(new Key(name, sequence), id);
+    }
+
+    /**
+     * Remove a product from its name
+     *
+     * @param name     product name
+     * @param sequence product insertion sequence
+     */
+    public void remove(String name, long sequence) {
+        ids.remove(new Key(name, sequence));
+    }
+
+    /**
+     * Get all products ordered by name ascending
+     *
+     * @return sorted view
+     */
+    public ConcurrentNavigableMap<Key, String> ascending() {
+        return ids;
+    }
+
+    /**
+     * Index key: lowercase name first, insertion sequence as tie-break
+     */
+    public static final class Key implements Comparable<Key> {
+        private final String name;
+        private final long sequence;
+
+        private Key(String name, long sequence) {
+            this.name = name == null ? "" : name.toLowerCase(Locale.ROOT);
+            this.sequence = sequence;
+        }
+
+        public long getSequence() {
+            return sequence;
+        }
+
+        @Override
+        public int compareTo(Key other) {
+            int byName = name.compareTo(other.name);
+            return byName != 0 ? byName : Long.compare(sequence, other.sequence);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return name.equals(other.name) && sequence == other.sequence;
+        }
+
+        @Override
+        public int hashCode() {
+            return name.hashCode() * 31 + Long.hashCode(sequence);
+        }
+    }
+}
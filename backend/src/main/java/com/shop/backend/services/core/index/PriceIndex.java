@@ -0,0 +1,113 @@
+package com.shop.backend.services.core.index;
+
+import java.util.Collection;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Sorted secondary index from price to products
+ * Products with the same price stay in insertion order, so every range is a
+ * stable, already sorted view.
+ *
+ * Writes must be serialized by the caller; reads may run concurrently.
+ */
+public class PriceIndex {
+
+    private final ConcurrentNavigableMap<Key, String> ids = new ConcurrentSkipListMap<>();
+
+    /**
+     * Add a product at its price
+     *
+     * @param price    product price
+     * @param sequence product insertion sequence
+     * @param id       product ID
+     */
+    public void add(double price, long sequence, String id) {
+        ids.put(new Key(price, sequence), id);
+    }
+
+    /**
+     * Remove a product from its price
+     *
+     * @param price    product price
+     * @param sequence product insertion sequence
+     */
+    public void remove(double price, long sequence) {
+        ids.remove(new Key(price, sequence));
+    }
+
+    /**
+     * Get the products within a price range
+     *
+     * @param minPrice minimum price (inclusive, null for no minimum)
+     * @param maxPrice maximum price (inclusive, null for no maximum)
+     * @return range view ordered by price ascending
+     */
+    public ConcurrentNavigableMap<Key, String> range(Double minPrice, Double maxPrice) {
+        if (minPrice != null && maxPrice != null) {
+            if (minPrice > maxPrice) {
+                return new ConcurrentSkipListMap<>();
+            }
+            return ids.subMap(new Key(minPrice, Long.MIN_VALUE), true, new Key(maxPrice, Long.MAX_VALUE), true);
+        }
+        if (minPrice != null) {
+            return ids.tailMap(new Key(minPrice, Long.MIN_VALUE), true);
+        }
+        if (maxPrice != null) {
+            return ids.headMap(new Key(maxPrice, Long.MAX_VALUE), true);
+        }
+        return ids;
+    }
+
+    /**
+     * Get the product IDs within a price range
+     *
+     * @param minPrice minimum price (inclusive)
+     * @param maxPrice maximum price (inclusive)
+     * @return product IDs ordered by price ascending
+     */
+    public Collection<String> ids(double minPrice, double maxPrice) {
+        return range(minPrice, maxPrice).values();
+    }
+
+    /**
+     * Index key: price first, insertion sequence as tie-break
+     */
+    public static final class Key implements Comparable<Key> {
+        private final double price;
+        private final long sequence;
+
+        private Key(double price, long sequence) {
+            this.price = price;
+            this.sequence = sequence;
+        }
+
+        public double getPrice() {
+            return price;
+        }
+
+        public long getSequence() {
+            return sequence;
+        }
+
+        @Override
+        public int compareTo(Key other) {
+            int byPrice = Double.compare(price, other.price);
+            return byPrice != 0 ? byPrice : Long.compare(sequence, other.sequence);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return Double.compare(price, other.price) == 0 && sequence == other.sequence;
+        }
+
+        @Override
+        public int hashCode() {
+            return Double.hashCode(price) * 31 + Long.hashCode(sequence);
+        }
+    }
+}
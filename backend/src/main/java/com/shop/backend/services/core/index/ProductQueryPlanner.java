@@ -0,0 +1,282 @@
+package com.shop.backend.services.core.index;
+
+import com.shop.backend.models.Product;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.function.Function;
+import java.util.function.IntSupplier;
+
+/**
+ * Query engine for filtered, sorted product listings
+ * Picks the most selective index for the filters (category or price range)
+ * and, when the requested order matches an index, streams results straight
+ * from it and stops after the first {@code limit} matches. Only small
+ * candidate sets are sorted, and then with a bounded top-K heap.
+ *
+ * A large category is intersected with the sorted index rather than
+ * filtered product by product: the walk checks each index key's sequence
+ * against the category's members and only resolves products that belong.
+ * The walk is chosen when it is expected to stop sooner than collecting
+ * the category would take, i.e. when limit * catalog / category is below
+ * the category size.
+ */
+public class ProductQueryPlanner {
+
+    // Candidate sets up to this size are collected and sorted instead of walking a sorted index
+    private static final int SMALL_CANDIDATE_SET = 10_000;
+
+    private final CategoryIndex categoryIndex;
+    private final PriceIndex priceIndex;
+    private final NameIndex nameIndex;
+    private final Function<String, Product> resolver;
+    private final IntSupplier catalogSize;
+
+    /**
+     * @param categoryIndex category index
+     * @param priceIndex    price index
+     * @param nameIndex     name index
+     * @param resolver      looks a product up by ID, null if it no longer exists
+     * @param catalogSize   number of products in the catalog
+     */
+    public ProductQueryPlanner(CategoryIndex categoryIndex, PriceIndex priceIndex, NameIndex nameIndex,
+                               Function<String, Product> resolver, IntSupplier catalogSize) {
+        this.categoryIndex = categoryIndex;
+        this.priceIndex = priceIndex;
+        this.nameIndex = nameIndex;
+        this.resolver = resolver;
+        this.catalogSize = catalogSize;
+    }
+
+    /**
+     * Supported result orders
+     */
+    public enum SortOrder {
+        PRICE_ASC, PRICE_DESC, NAME_ASC, NAME_DESC;
+
+        /**
+         * Parse the sortBy parameter
+         * Accepts "price_asc", "price_desc", "name_asc", "name_desc" and the
+         * short forms "price" and "name"; anything else sorts by name.
+         *
+         * @param sortBy sort parameter
+         * @return sort order
+         */
+        public static SortOrder parse(String sortBy) {
+            if (sortBy == null) {
+                return NAME_ASC;
+            }
+            switch (sortBy.toLowerCase(Locale.ROOT)) {
+                case "price":
+                case "price_asc":
+                    return PRICE_ASC;
+                case "price_desc":
+                    return PRICE_DESC;
+                case "name_desc":
+                    return NAME_DESC;
+                default:
+                    return NAME_ASC;
+            }
+        }
+
+        private boolean byPrice() {
+            return this == PRICE_ASC || this == PRICE_DESC;
+        }
+
+        private boolean descending() {
+            return this == PRICE_DESC || this == NAME_DESC;
+        }
+    }
+
+    /**
+     * Run a filtered, sorted query
+     *
+     * @param category category to filter by (null for all)
+     * @param minPrice minimum price (null for no minimum)
+     * @param maxPrice maximum price (null for no maximum)
+     * @param order    result order
+     * @param limit    maximum number of results
+     * @return matching products in the requested order
+     */
+    public List<Product> execute(String category, Double minPrice, Double maxPrice, SortOrder order, int limit) {
+        if (limit <= 0) {
+            return new ArrayList<>();
+        }
+        Filter filter = new Filter(category, minPrice, maxPrice);
+        boolean priceFiltered = minPrice != null || maxPrice != null;
+        Map<PriceIndex.Key, String> priceRange = priceIndex.range(minPrice, maxPrice);
+
+        // Category is the driving index when it is at least as selective as the price range
+        if (category != null) {
+            Map<Long, String> members = categoryIndex.idsBySequence(category);
+            int categorySize = categoryIndex.count(category);
+            if (!priceFiltered || categorySize <= countUpTo(priceRange, categorySize + 1)) {
+                if (categorySize > SMALL_CANDIDATE_SET && walkStopsSooner(categorySize, limit)) {
+                    return walkSortedIndex(filter, members, order, limit);
+                }
+                List<Hit> hits = new ArrayList<>(categorySize);
+                for (Map.Entry<Long, String> entry : members.entrySet()) {
+                    addIfMatches(hits, filter, entry.getKey(), entry.getValue());
+                }
+                return topK(hits, order, limit);
+            }
+            // The price range is the smaller set; category members are still checked by key
+            if (order.byPrice()) {
+                return walkSortedIndex(filter, members, order, limit);
+            }
+        } else if (order.byPrice()) {
+            // Price order comes straight off the price index
+            return walkSortedIndex(filter, null, order, limit);
+        }
+
+        // Name order: sort a small price range, otherwise walk the name index
+        if (priceFiltered && countUpTo(priceRange, SMALL_CANDIDATE_SET + 1) <= SMALL_CANDIDATE_SET) {
+            List<Hit> hits = new ArrayList<>();
+            for (Map.Entry<PriceIndex.Key, String> entry : priceRange.entrySet()) {
+                addIfMatches(hits, filter, entry.getKey().getSequence(), entry.getValue());
+            }
+            return topK(hits, order, limit);
+        }
+        Map<Long, String> members = category != null ? categoryIndex.idsBySequence(category) : null;
+        return walkSortedIndex(filter, members, order, limit);
+    }
+
+    // A walk visits about limit * catalog / category keys before it has limit members
+    private boolean walkStopsSooner(int categorySize, int limit) {
+        return (long) limit * catalogSize.getAsInt() < (long) categorySize * categorySize;
+    }
+
+    // Stream an index already sorted in the requested order, stopping at the limit;
+    // members (sequence -> ID), if given, restricts the walk without resolving other products
+    private List<Product> walkSortedIndex(Filter filter, Map<Long, String> members, SortOrder order, int limit) {
+        List<Product> result = new ArrayList<>();
+        if (order.byPrice()) {
+            Map<PriceIndex.Key, String> range = order.descending()
+                    ? priceIndex.range(filter.minPrice, filter.maxPrice).descendingMap()
+                    : priceIndex.range(filter.minPrice, filter.maxPrice);
+            for (Map.Entry<PriceIndex.Key, String> entry : range.entrySet()) {
+                if (collect(result, filter, members, entry.getKey().getSequence(), entry.getValue(), limit)) {
+                    break;
+                }
+            }
+        } else {
+            Map<NameIndex.Key, String> names = order.descending()
+                    ? nameIndex.ascending().descendingMap()
+                    : nameIndex.ascending();
+            for (Map.Entry<NameIndex.Key, String> entry : names.entrySet()) {
+                if (collect(result, filter, members, entry.getKey().getSequence(), entry.getValue(), limit)) {
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
+    // Add the product if it is a member and matches; true once the limit is reached
+    private boolean collect(List<Product> result, Filter filter, Map<Long, String> members, long sequence,
+                            String id, int limit) {
+        if (members != null && !members.containsKey(sequence)) {
+            return false;
+        }
+        Product product = resolver.apply(id);
+        if (product != null && filter.matches(product)) {
+            result.add(product);
+        }
+        return result.size() >= limit;
+    }
+
+    private void addIfMatches(List<Hit> hits, Filter filter, long sequence, String id) {
+        Product product = resolver.apply(id);
+        if (product != null && filter.matches(product)) {
+            hits.add(new Hit(sequence, product));
+        }
+    }
+
+    // Sort the candidates, keeping only the best `limit` of them when that is cheaper
+    private static List<Product> topK(List<Hit> hits, SortOrder order, int limit) {
+        Comparator<Hit> comparator = comparator(order);
+        List<Product> result = new ArrayList<>(Math.min(hits.size(), limit));
+        if (hits.size() <= limit) {
+            hits.sort(comparator);
+            for (Hit hit : hits) {
+                result.add(hit.product);
+            }
+            return result;
+        }
+        // Max-heap on the requested order holds the current best `limit` hits
+        PriorityQueue<Hit> heap = new PriorityQueue<>(limit + 1, comparator.reversed());
+        for (Hit hit : hits) {
+            heap.offer(hit);
+            if (heap.size() > limit) {
+                heap.poll();
+            }
+        }
+        List<Hit> best = new ArrayList<>(heap);
+        best.sort(comparator);
+        for (Hit hit : best) {
+            result.add(hit.product);
+        }
+        return result;
+    }
+
+    private static Comparator<Hit> comparator(SortOrder order) {
+        Comparator<Hit> primary;
+        if (order.byPrice()) {
+            primary = Comparator.comparingDouble(hit -> hit.product.getPrice());
+        } else {
+            primary = Comparator.comparing(hit -> hit.lowercaseName);
+        }
+        // Reverse the whole key so ties match a descending walk of the indexes
+        Comparator<Hit> ascending = primary.thenComparingLong(hit -> hit.sequence);
+        return order.descending() ? ascending.reversed() : ascending;
+    }
+
+    private static int countUpTo(Map<?, ?> view, int cap) {
+        int count = 0;
+        for (Object ignored : view.keySet()) {
+            if (++count >= cap) {
+                break;
+            }
+        }
+        return count;
+    }
+
+    private static final class Filter {
+        // Folded like CategoryIndex keys
+        private final String category;
+        private final Double minPrice;
+        private final Double maxPrice;
+
+        private Filter(String category, Double minPrice, Double maxPrice) {
+            this.category = CategoryIndex.fold(category);
+            this.minPrice = minPrice;
+            this.maxPrice = maxPrice;
+        }
+
+        private boolean matches(Product product) {
+            if (category != null && !category.equals(CategoryIndex.fold(product.getCategory()))) {
+                return false;
+            }
+            if (minPrice != null && product.getPrice() < minPrice) {
+                return false;
+            }
+            return maxPrice == null || product.getPrice() <= maxPrice;
+        }
+    }
+
+    private static final class Hit {
+        private final long sequence;
+        private final Product product;
+        private final String lowercaseName;
+
+        private Hit(long sequence, Product product) {
+            this.sequence = sequence;
+            this.product = product;
+            this.lowercaseName = product.getName() == null ? "" : product.getName().toLowerCase(Locale.ROOT);
+        }
+    }
+}
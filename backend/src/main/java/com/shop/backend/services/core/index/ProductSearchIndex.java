@@ -0,0 +1,317 @@
+package com.shop.backend.services.core.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Inverted index over product names and descriptions
+ * Every token is stored with all of its suffixes in a sorted dictionary, so a
+ * query fragment that appears anywhere inside a word is found with a prefix
+ * range lookup. Candidates are verified against the cached lowercase text,
+ * which keeps the result identical to a plain substring search.
+ *
+ * Only suffixes of at least MIN_FRAGMENT_LENGTH characters are stored. A
+ * shorter fragment would match nearly every product, so a query needs one
+ * word of that length to be looked up; queries without one find nothing.
+ * Matches are ranked with a bounded heap, so asking for the best few costs
+ * no more than verifying the candidates.
+ *
+ * Writes must be serialized by the caller; searches may run concurrently.
+ */
+public class ProductSearchIndex {
+
+    /**
+     * Shortest query word that is looked up in the index
+     */
+    public static final int MIN_FRAGMENT_LENGTH = 3;
+
+    // Lowest score first, then latest inserted, so the head is the match to drop
+    private static final Comparator<Match> WORST_FIRST =
+            Comparator.comparingInt((Match m) -> m.score).thenComparing(m -> m.sequence, Comparator.reverseOrder());
+
+    // Score tiers used for relevance ranking
+    private static final int NAME_EXACT = 100;
+    private static final int NAME_PREFIX = 50;
+    private static final int NAME_WORD_PREFIX = 30;
+    private static final int NAME_CONTAINS = 20;
+    private static final int DESCRIPTION_WORD_PREFIX = 10;
+    private static final int DESCRIPTION_CONTAINS = 5;
+
+    // Token suffix -> ids of products containing it
+    private final NavigableMap<String, Set<String>> postings = new ConcurrentSkipListMap<>();
+
+    // Product id -> indexed text
+    private final Map<String, Document> documents = new ConcurrentHashMap<>();
+
+    /**
+     * Add or replace a product in the index
+     *
+     * @param id          product ID
+     * @param sequence    insertion sequence, used to break ranking ties
+     * @param name        product name
+     * @param description product description
+     */
+    public void index(String id, long sequence, String name, String description) {
+        Document previous = documents.get(id);
+        Document document = new Document(sequence, lowercase(name), lowercase(description));
+        Set<String> keys = suffixes(document);
+        if (previous != null) {
+            Set<String> stale = suffixes(previous);
+            stale.removeAll(keys);
+            for (String key : stale) {
+                removePosting(key, id);
+            }
+        }
+        for (String key : keys) {
+            postings.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet()).add(id);
+        }
+        documents.put(id, document);
+    }
+
+    /**
+     * Remove a product from the index
+     *
+     * @param id product ID
+     */
+    public void remove(String id) {
+        Document document = documents.remove(id);
+        if (document == null) {
+            return;
+        }
+        for (String key : suffixes(document)) {
+            removePosting(key, id);
+        }
+    }
+
+    /**
+     * Find products whose name or description contains the query
+     *
+     * @param query search query (case-insensitive)
+     * @return matching product IDs, most relevant first
+     */
+    public List<String> search(String query) {
+        return search(query, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Find the most relevant products whose name or description contains the query
+     *
+     * @param query search query (case-insensitive); needs a word of at least
+     *              MIN_FRAGMENT_LENGTH characters to match anything
+     * @param limit maximum number of results
+     * @return up to limit matching product IDs, most relevant first
+     */
+    public List<String> search(String query, int limit) {
+        if (query == null || limit <= 0) {
+            return Collections.emptyList();
+        }
+        String lowercaseQuery = lowercase(query);
+        List<String> fragments = new ArrayList<>();
+        for (String token : tokenize(lowercaseQuery)) {
+            if (token.length() >= MIN_FRAGMENT_LENGTH) {
+                fragments.add(token);
+            }
+        }
+        if (fragments.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        // Holds the best `limit` matches so far, worst at the head
+        PriorityQueue<Match> best = new PriorityQueue<>(WORST_FIRST);
+        for (String id : candidates(fragments)) {
+            Document document = documents.get(id);
+            if (document == null) {
+                continue;
+            }
+            int score = score(document, lowercaseQuery);
+            if (score <= 0) {
+                continue;
+            }
+            if (best.size() < limit) {
+                best.offer(new Match(id, document.sequence, score));
+            } else if (beats(score, document.sequence, best.peek())) {
+                best.poll();
+                best.offer(new Match(id, document.sequence, score));
+            }
+        }
+
+        String[] ids = new String[best.size()];
+        for (int i = ids.length - 1; i >= 0; i--) {
+            ids[i] = best.poll().id;
+        }
+        return Arrays.asList(ids);
+    }
+
+    /**
+     * Get the number of indexed products
+     *
+     * @return number of documents
+     */
+    public int size() {
+        return documents.size();
+    }
+
+    // Intersect the postings of every query token: walk the smallest, probe the others
+    private Collection<String> candidates(List<String> tokens) {
+        List<Set<String>> perToken = new ArrayList<>(tokens.size());
+        for (String token : tokens) {
+            Set<String> ids = idsWithFragment(token);
+            if (ids.isEmpty()) {
+                return Collections.emptySet();
+            }
+            perToken.add(ids);
+        }
+        perToken.sort(Comparator.comparingInt(Set::size));
+        if (perToken.size() == 1) {
+            return perToken.get(0);
+        }
+        List<String> result = new ArrayList<>();
+        for (String id : perToken.get(0)) {
+            if (inAll(perToken, id)) {
+                result.add(id);
+            }
+        }
+        return result;
+    }
+
+    private static boolean inAll(List<Set<String>> sets, String id) {
+        for (int i = 1; i < sets.size(); i++) {
+            if (!sets.get(i).contains(id)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Every suffix starting with the fragment belongs to a word containing it
+    private Set<String> idsWithFragment(String fragment) {
+        NavigableMap<String, Set<String>> range = postings.subMap(fragment, true, fragment + Character.MAX_VALUE, false);
+        if (range.size() == 1) {
+            return range.firstEntry().getValue();
+        }
+        Set<String> ids = new HashSet<>();
+        for (Set<String> posting : range.values()) {
+            ids.addAll(posting);
+        }
+        return ids;
+    }
+
+    private void removePosting(String key, String id) {
+        Set<String> ids = postings.get(key);
+        if (ids != null) {
+            ids.remove(id);
+            if (ids.isEmpty()) {
+                postings.remove(key, ids);
+            }
+        }
+    }
+
+    // Same order as WORST_FIRST, without building a Match for a loser
+    private static boolean beats(int score, long sequence, Match worst) {
+        return score > worst.score || (score == worst.score && sequence < worst.sequence);
+    }
+
+    private static int score(Document document, String query) {
+        String name = document.name;
+        String description = document.description;
+        int nameAt = name.indexOf(query);
+        if (nameAt >= 0) {
+            if (name.length() == query.length()) {
+                return NAME_EXACT;
+            }
+            if (nameAt == 0) {
+                return NAME_PREFIX;
+            }
+            return startsWord(name, query) ? NAME_WORD_PREFIX : NAME_CONTAINS;
+        }
+        if (description.contains(query)) {
+            return startsWord(description, query) ? DESCRIPTION_WORD_PREFIX : DESCRIPTION_CONTAINS;
+        }
+        return 0;
+    }
+
+    private static boolean startsWord(String text, String query) {
+        for (int at = text.indexOf(query); at >= 0; at = text.indexOf(query, at + 1)) {
+            if (at == 0 || !Character.isLetterOrDigit(text.charAt(at - 1))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Set<String> suffixes(Document document) {
+        Set<String> keys = new HashSet<>();
+        for (String token : tokenize(document.name)) {
+            addSuffixes(keys, token);
+        }
+        for (String token : tokenize(document.description)) {
+            addSuffixes(keys, token);
+        }
+        return keys;
+    }
+
+    // Shorter suffixes are never looked up
+    private static void addSuffixes(Set<String> keys, String token) {
+        for (int i = 0; i <= token.length() - MIN_FRAGMENT_LENGTH; i++) {
+            keys.add(token.substring(i));
+        }
+    }
+
+    private static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                tokens.add(text.substring(start, i));
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+
+    private static String lowercase(String text) {
+        return text == null ? "" : text.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Lowercase copy of the searchable fields of one product
+     */
+    private static final class Document {
+        private final long sequence;
+        private final String name;
+        private final String description;
+
+        private Document(long sequence, String name, String description) {
+            this.sequence = sequence;
+            this.name = name;
+            this.description = description;
+        }
+    }
+
+    private static final class Match {
+        private final String id;
+        private final long sequence;
+        private final int score;
+
+        private Match(String id, long sequence, int score) {
+            this.id = id;
+            this.sequence = sequence;
+            this.score = score;
+        }
+    }
+}
@@ -0,0 +1,297 @@
+package com.shop.backend.services.core.index;
+
+import com.shop.backend.models.Page;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Secondary index of entries by creation time, split into fixed-length
+ * partitions (e.g. one per day)
+ * A range query only visits the partitions that overlap the range, and
+ * returns entries newest first with a keyset cursor. Entries with the same
+ * timestamp are ordered by their insertion sequence.
+ *
+ * Once entries stop arriving for a partition it is sealed: its skip list is
+ * replaced by sorted arrays, which take a fraction of the memory, answer the
+ * same queries by binary search and never change again. A partition is
+ * sealed when the partition two after it receives its first entry. A late
+ * entry for a sealed partition, e.g. during recovery, turns it back into a
+ * skip list.
+ *
+ * Writes must be serialized by the caller; reads may run concurrently.
+ */
+public class TimePartitionedIndex<V> {
+
+    private final long partitionMillis;
+
+    // Partition start (epoch millis) -> partition, oldest first
+    private final ConcurrentNavigableMap<Long, Partition<V>> partitions = new ConcurrentSkipListMap<>();
+
+    /**
+     * @param partitionLength time covered by each partition
+     */
+    public TimePartitionedIndex(Duration partitionLength) {
+        this.partitionMillis = partitionLength.toMillis();
+        if (partitionMillis <= 0) {
+            throw new IllegalArgumentException("Partition length must be positive: " + partitionLength);
+        }
+    }
+
+    /**
+     * Add an entry
+     *
+     * @param createdAt creation time in epoch milliseconds
+     * @param sequence  insertion sequence, unique per entry
+     * @param value     entry
+     */
+    public void add(long createdAt, long sequence, V value) {
+        long start = partitionStart(createdAt);
+        Partition<V> partition = partitions.get(start);
+        if (partition == null) {
+            partition = new Partition<>();
+            partitions.put(start, partition);
+            // Keep the partition before this one open for entries committed just after the boundary
+            sealBefore(start - partitionMillis);
+        }
+        partition.add(new Key(createdAt, sequence), value);
+    }
+
+    /**
+     * Get entries created in a time range, newest first
+     *
+     * @param since  earliest creation time, inclusive, in epoch milliseconds
+     * @param until  latest creation time, exclusive, in epoch milliseconds
+     * @param cursor cursor from the previous page (null for the first page)
+     * @param limit  maximum number of entries
+     * @return page of entries, or null if the cursor is invalid
+     */
+    public Page<V> newestFirst(long since, long until, String cursor, int limit) {
+        if (limit <= 0) {
+            return new Page<>(new ArrayList<>(), null);
+        }
+        Key upper = new Key(until, Long.MIN_VALUE);
+        if (cursor != null) {
+            Key after = Key.parse(cursor);
+            if (after == null) {
+                return null;
+            }
+            if (after.compareTo(upper) < 0) {
+                upper = after;
+            }
+        }
+        Key lower = new Key(since, Long.MIN_VALUE);
+        List<Key> keys = new ArrayList<>();
+        List<V> values = new ArrayList<>();
+        if (lower.compareTo(upper) < 0) {
+            Map<Long, Partition<V>> overlapping =
+                    partitions.subMap(partitionStart(since), true, partitionStart(upper.createdAt), true)
+                            .descendingMap();
+            for (Partition<V> partition : overlapping.values()) {
+                // One more than asked for tells whether another page follows
+                partition.store.collectNewestFirst(lower, upper, limit + 1 - values.size(), keys, values);
+                if (values.size() > limit) {
+                    break;
+                }
+            }
+        }
+        if (values.size() <= limit) {
+            return new Page<>(values, null);
+        }
+        return new Page<>(new ArrayList<>(values.subList(0, limit)), keys.get(limit - 1).toString());
+    }
+
+    /**
+     * Get the number of partitions
+     *
+     * @return partition count
+     */
+    public int partitionCount() {
+        return partitions.size();
+    }
+
+    /**
+     * Get the number of sealed partitions
+     *
+     * @return sealed partition count
+     */
+    public int sealedPartitionCount() {
+        int sealed = 0;
+        for (Partition<V> partition : partitions.values()) {
+            if (partition.store instanceof SealedStore) {
+                sealed++;
+            }
+        }
+        return sealed;
+    }
+
+    private void sealBefore(long start) {
+        for (Partition<V> partition : partitions.headMap(start).values()) {
+            partition.seal();
+        }
+    }
+
+    private long partitionStart(long createdAt) {
+        if (createdAt < Long.MIN_VALUE + partitionMillis) {
+            // Rounding down would overflow; only open-ended range bounds get here
+            return Long.MIN_VALUE;
+        }
+        return Math.floorDiv(createdAt, partitionMillis) * partitionMillis;
+    }
+
+    /**
+     * Position of an entry: creation time, then insertion sequence
+     * Rendered as "createdAt:sequence" for cursors.
+     */
+    private static final class Key implements Comparable<Key> {
+        private final long createdAt;
+        private final long sequence;
+
+        private Key(long createdAt, long sequence) {
+            this.createdAt = createdAt;
+            this.sequence = sequence;
+        }
+
+        private static Key parse(String cursor) {
+            int colon = cursor.indexOf(':');
+            if (colon < 0) {
+                return null;
+            }
+            try {
+                return new Key(Long.parseLong(cursor.substring(0, colon)), Long.parseLong(cursor.substring(colon + 1)));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
+        @Override
+        public int compareTo(Key other) {
+            int byTime = Long.compare(createdAt, other.createdAt);
+            return byTime != 0 ? byTime : Long.compare(sequence, other.sequence);
+        }
+
+        @Override
+        public String toString() {
+            return createdAt + ":" + sequence;
+        }
+    }
+
+    /**
+     * One partition; its store is swapped whole, so readers always see a
+     * complete live or sealed store
+     */
+    private static final class Partition<V> {
+        private volatile Store<V> store = new LiveStore<>(new ConcurrentSkipListMap<>());
+
+        private void add(Key key, V value) {
+            Store<V> current = store;
+            if (current instanceof LiveStore) {
+                ((LiveStore<V>) current).entries.put(key, value);
+                return;
+            }
+            ConcurrentSkipListMap<Key, V> entries = ((SealedStore<V>) current).toMap();
+            entries.put(key, value);
+            store = new LiveStore<>(entries);
+        }
+
+        private void seal() {
+            Store<V> current = store;
+            if (current instanceof LiveStore) {
+                store = new SealedStore<>(((LiveStore<V>) current).entries);
+            }
+        }
+    }
+
+    private interface Store<V> {
+
+        // Append entries with lower <= key < upper, newest first, at most max of them
+        void collectNewestFirst(Key lower, Key upper, int max, List<Key> keys, List<V> values);
+    }
+
+    private static final class LiveStore<V> implements Store<V> {
+        private final ConcurrentSkipListMap<Key, V> entries;
+
+        private LiveStore(ConcurrentSkipListMap<Key, V> entries) {
+            this.entries = entries;
+        }
+
+        @Override
+        public void collectNewestFirst(Key lower, Key upper, int max, List<Key> keys, List<V> values) {
+            int added = 0;
+            for (Map.Entry<Key, V> entry : entries.subMap(lower, true, upper, false).descendingMap().entrySet()) {
+                if (added++ == max) {
+                    return;
+                }
+                keys.add(entry.getKey());
+                values.add(entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Entries of a sealed partition in ascending key order, as parallel arrays
+     */
+    private static final class SealedStore<V> implements Store<V> {
+        private final long[] createdAts;
+        private final long[] sequences;
+        private final Object[] values;
+
+        private SealedStore(ConcurrentSkipListMap<Key, V> entries) {
+            int size = entries.size();
+            createdAts = new long[size];
+            sequences = new long[size];
+            values = new Object[size];
+            int i = 0;
+            for (Map.Entry<Key, V> entry : entries.entrySet()) {
+                createdAts[i] = entry.getKey().createdAt;
+                sequences[i] = entry.getKey().sequence;
+                values[i] = entry.getValue();
+                i++;
+            }
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void collectNewestFirst(Key lower, Key upper, int max, List<Key> keys, List<V> result) {
+            int added = 0;
+            for (int i = firstAtOrAbove(upper) - 1; i >= 0 && added < max; i--, added++) {
+                Key key = new Key(createdAts[i], sequences[i]);
+                if (key.compareTo(lower) < 0) {
+                    return;
+                }
+                keys.add(key);
+                result.add((V) values[i]);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private ConcurrentSkipListMap<Key, V> toMap() {
+            ConcurrentSkipListMap<Key, V> entries = new ConcurrentSkipListMap<>();
+            for (int i = 0; i < values.length; i++) {
+                entries.put(new Key(createdAts[i], sequences[i]), (V) values[i]);
+            }
+            return entries;
+        }
+
+        // Index of the first entry whose key is not below the given key
+        private int firstAtOrAbove(Key key) {
+            int low = 0;
+            int high = values.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                int byTime = Long.compare(createdAts[mid], key.createdAt);
+                int cmp = byTime != 0 ? byTime : Long.compare(sequences[mid], key.sequence);
+                if (cmp < 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+}
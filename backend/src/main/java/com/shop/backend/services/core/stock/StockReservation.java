@@ -0,0 +1,65 @@
+package com.shop.backend.services.core.stock;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Stock held for a pending purchase
+ * A reservation starts PENDING and moves exactly once, either to CONFIRMED
+ * (the stock is sold) or to RELEASED (the stock goes back on sale, on
+ * request or when the reservation expires).
+ */
+public class StockReservation {
+
+    /**
+     * Reservation lifecycle states
+     */
+    public enum State {
+        PENDING, CONFIRMED, RELEASED
+    }
+
+    private final String id;
+    private final Map<String, Integer> quantities;
+    private final AtomicReference<State> state = new AtomicReference<>(State.PENDING);
+    private volatile ScheduledFuture<?> expiry;
+
+    StockReservation(String id, Map<String, Integer> quantities) {
+        this.id = id;
+        this.quantities = Collections.unmodifiableMap(quantities);
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Get the reserved quantity per product
+     *
+     * @return product ID -> quantity
+     */
+    public Map<String, Integer> getQuantities() {
+        return quantities;
+    }
+
+    public State getState() {
+        return state.get();
+    }
+
+    // Move out of PENDING; only one caller can ever succeed
+    boolean finish(State target) {
+        if (!state.compareAndSet(State.PENDING, target)) {
+            return false;
+        }
+        ScheduledFuture<?> scheduled = expiry;
+        if (scheduled != null) {
+            scheduled.cancel(false);
+        }
+        return true;
+    }
+
+    void setExpiry(ScheduledFuture<?> expiry) {
+        this.expiry = expiry;
+    }
+}
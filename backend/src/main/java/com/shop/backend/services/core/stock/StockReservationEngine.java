@@ -0,0 +1,279 @@
+package com.shop.backend.services.core.stock;
+
+import com.shop.backend.models.Ids;
+import com.shop.backend.models.Product;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Lock-free stock counters with all-or-nothing reservations
+ * Each product's available stock is an atomic counter that is only ever
+ * decremented by a compare-and-set that checks there is enough left, so
+ * stock can never go negative no matter how many buyers race for the same
+ * product. The counter is the source of truth; the product's stock field is
+ * refreshed from it after every change.
+ */
+@Component
+public class StockReservationEngine {
+
+    // Product ID -> stock counter
+    private final Map<String, StockCell> cells = new ConcurrentHashMap<>();
+
+    // Reservation ID -> reservation still waiting for confirm or release
+    private final Map<String, StockReservation> pending = new ConcurrentHashMap<>();
+
+    private final ScheduledThreadPoolExecutor expiryScheduler;
+
+    // Told the product ID after every counter change that stays made
+    private volatile Consumer<String> stockListener = productId -> { };
+
+    public StockReservationEngine() {
+        expiryScheduler = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "stock-reservation-expiry");
+            thread.setDaemon(true);
+            return thread;
+        });
+        expiryScheduler.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * Start tracking a product, or point an existing counter at a new version
+     * of it; the counter is set to the product's current stock
+     *
+     * @param product product to track
+     */
+    public void track(Product product) {
+        StockCell cell = cells.computeIfAbsent(product.getId(), id -> new StockCell());
+        cell.product = product;
+        cell.available.set(Math.max(0, product.getStock()));
+        cell.publish();
+    }
+
+    /**
+     * Point an existing counter at a new version of its product without
+     * resetting it
+     * Stock held by pending reservations stays held: only the difference
+     * between the new version's stock and the stock it was edited from is
+     * added to the counter, by compare-and-set, and the result is never
+     * below zero. The new version then publishes the live count.
+     *
+     * @param product   new version of the product
+     * @param seenStock stock the new version was edited from; -1 tracks the
+     *                  product afresh
+     */
+    public void retrack(Product product, int seenStock) {
+        StockCell cell = cells.get(product.getId());
+        if (cell == null || seenStock < 0) {
+            track(product);
+            return;
+        }
+        int delta = product.getStock() - seenStock;
+        cell.product = product;
+        if (delta != 0) {
+            cell.available.accumulateAndGet(delta, (current, change) -> Math.max(0, current + change));
+        }
+        cell.publish();
+    }
+
+    /**
+     * Start tracking a product that has no Product object on the heap
+     * Nothing is published; readers ask available() for the stock instead.
+     *
+     * @param productId product ID
+     * @param stock     current stock
+     */
+    public void track(String productId, int stock) {
+        StockCell cell = cells.computeIfAbsent(productId, id -> new StockCell());
+        cell.product = null;
+        cell.available.set(Math.max(0, stock));
+    }
+
+    /**
+     * Stop tracking a product
+     *
+     * @param productId product ID
+     */
+    public void untrack(String productId) {
+        cells.remove(productId);
+    }
+
+    /**
+     * Register the callback run after every stock change except track, which
+     * callers already know about, and the give-back of a failed reservation,
+     * which leaves every counter as it was
+     *
+     * @param stockListener receives the ID of the product whose stock changed
+     */
+    public void setStockListener(Consumer<String> stockListener) {
+        this.stockListener = stockListener;
+    }
+
+    /**
+     * Get the stock currently available for sale
+     *
+     * @param productId product ID
+     * @return available quantity, or -1 if the product is not tracked
+     */
+    public int available(String productId) {
+        StockCell cell = cells.get(productId);
+        return cell != null ? cell.available.get() : -1;
+    }
+
+    /**
+     * Add or remove stock
+     *
+     * @param productId product ID
+     * @param delta     quantity to add (positive) or remove (negative)
+     * @return new available quantity, or null if the product is not tracked
+     *         or there is not enough stock to remove
+     */
+    public Integer adjust(String productId, int delta) {
+        Integer next = move(productId, delta);
+        if (next != null) {
+            stockListener.accept(productId);
+        }
+        return next;
+    }
+
+    /**
+     * Reserve stock for several products at once
+     * Either every line is reserved or none is. Unless confirmed or released
+     * first, the reservation is released automatically after the timeout.
+     * The listener hears about the lines only once all of them are taken.
+     *
+     * @param quantities product ID -> quantity to reserve
+     * @param timeout    how long to hold the stock
+     * @return reservation, or null if any product is unknown or short
+     */
+    public StockReservation reserve(Map<String, Integer> quantities, Duration timeout) {
+        // A fixed order stops two overlapping reservations from each taking half of the last units
+        Map<String, Integer> lines = new TreeMap<>(quantities);
+        List<Map.Entry<String, Integer>> taken = new ArrayList<>(lines.size());
+        for (Map.Entry<String, Integer> line : lines.entrySet()) {
+            if (line.getValue() <= 0 || move(line.getKey(), -line.getValue()) == null) {
+                // Give back everything taken so far; nothing moved for good, so nobody is told
+                for (Map.Entry<String, Integer> done : taken) {
+                    move(done.getKey(), done.getValue());
+                }
+                return null;
+            }
+            taken.add(line);
+        }
+        for (String productId : lines.keySet()) {
+            stockListener.accept(productId);
+        }
+
+        StockReservation reservation = new StockReservation(Ids.newId(), lines);
+        pending.put(reservation.getId(), reservation);
+        reservation.setExpiry(expiryScheduler.schedule(
+                () -> release(reservation.getId()), timeout.toMillis(), TimeUnit.MILLISECONDS));
+        return reservation;
+    }
+
+    /**
+     * Confirm a reservation; the stock is sold and will not come back
+     *
+     * @param reservationId reservation ID
+     * @return true if confirmed, false if it was already released or unknown
+     */
+    public boolean confirm(String reservationId) {
+        StockReservation reservation = pending.get(reservationId);
+        if (reservation == null || !reservation.finish(StockReservation.State.CONFIRMED)) {
+            return false;
+        }
+        pending.remove(reservationId);
+        return true;
+    }
+
+    /**
+     * Release a reservation and put its stock back on sale
+     *
+     * @param reservationId reservation ID
+     * @return true if released, false if it was already confirmed, released or unknown
+     */
+    public boolean release(String reservationId) {
+        StockReservation reservation = pending.get(reservationId);
+        if (reservation == null || !reservation.finish(StockReservation.State.RELEASED)) {
+            return false;
+        }
+        pending.remove(reservationId);
+        restock(reservation.getQuantities());
+        return true;
+    }
+
+    /**
+     * Put sold stock back on sale, e.g. when a confirmed order is canceled
+     *
+     * @param quantities product ID -> quantity to return
+     */
+    public void restock(Map<String, Integer> quantities) {
+        for (Map.Entry<String, Integer> line : quantities.entrySet()) {
+            adjust(line.getKey(), line.getValue());
+        }
+    }
+
+    /**
+     * Get the number of reservations waiting for confirm or release
+     *
+     * @return pending reservation count
+     */
+    public int pendingReservations() {
+        return pending.size();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        expiryScheduler.shutdownNow();
+    }
+
+    // Compare-and-set the counter and publish it, without telling the listener
+    private Integer move(String productId, int delta) {
+        StockCell cell = cells.get(productId);
+        if (cell == null) {
+            return null;
+        }
+        while (true) {
+            int current = cell.available.get();
+            int next = current + delta;
+            if (next < 0) {
+                return null;
+            }
+            if (cell.available.compareAndSet(current, next)) {
+                cell.publish();
+                return next;
+            }
+        }
+    }
+
+    /**
+     * Stock counter of one product
+     */
+    private static final class StockCell {
+        private final AtomicInteger available = new AtomicInteger();
+        private volatile Product product;
+
+        // Copy the counter into the product until no change slipped in between
+        private void publish() {
+            Product target = product;
+            if (target == null) {
+                return;
+            }
+            int value;
+            do {
+                value = available.get();
+                target.setStock(value);
+            } while (value != available.get());
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.shop.backend.storage;
+
+import java.util.function.BiConsumer;
+
+/**
+ * An in-memory store whose state can be rebuilt from a snapshot and its
+ * mutation log
+ * Recovery calls restore and discard from a single thread before the store
+ * serves requests; none of them may log.
+ *
+ * @param <T> entity type, encoded as JSON
+ */
+public interface DurableStore<T> {
+
+    /**
+     * Get the store name, used to name its files
+     *
+     * @return store name
+     */
+    String storeName();
+
+    /**
+     * Get the class entities are decoded into
+     *
+     * @return entity class
+     */
+    Class<T> entityType();
+
+    /**
+     * Insert or replace an entity during recovery
+     *
+     * @param key   entity key
+     * @param value decoded entity
+     */
+    void restore(String key, T value);
+
+    /**
+     * Remove an entity during recovery
+     *
+     * @param key entity key
+     */
+    void discard(String key);
+
+    /**
+     * Hand every entity to the sink in the store's own order
+     * Runs on the snapshot thread while requests are being served, so it
+     * must not block writers for longer than it takes to copy one entity.
+     * A null entity records a deletion the image must carry, e.g. of an
+     * entity that lives outside the store's own files.
+     *
+     * @param sink receives key and entity, or key and null
+     */
+    void snapshot(BiConsumer<String, T> sink);
+}
@@ -0,0 +1,22 @@
+package com.shop.backend.storage;
+
+/**
+ * When appended log records are forced to disk
+ */
+public enum FsyncPolicy {
+    /**
+     * Force after every append; nothing acknowledged is ever lost
+     */
+    EVERY_WRITE,
+
+    /**
+     * Force all logs together on a fixed interval (group commit); a crash can
+     * lose at most the last interval
+     */
+    INTERVAL,
+
+    /**
+     * Never force explicitly and leave write-back to the operating system
+     */
+    OS
+}
@@ -0,0 +1,59 @@
+package com.shop.backend.storage;
+
+/**
+ * One logged change to a store
+ * A PUT carries the full encoded entity, a DELETE only its key. Applying the
+ * same mutation twice has the same effect as applying it once.
+ */
+public class Mutation {
+
+    /**
+     * Kind of change
+     */
+    public enum Type {
+        PUT, DELETE
+    }
+
+    private final Type type;
+    private final String key;
+    private final byte[] payload;
+
+    private Mutation(Type type, String key, byte[] payload) {
+        this.type = type;
+        this.key = key;
+        this.payload = payload;
+    }
+
+    /**
+     * @param key     entity key
+     * @param payload encoded entity
+     * @return PUT mutation
+     */
+    public static Mutation put(String key, byte[] payload) {
+        return new Mutation(Type.PUT, key, payload);
+    }
+
+    /**
+     * @param key entity key
+     * @return DELETE mutation
+     */
+    public static Mutation delete(String key) {
+        return new Mutation(Type.DELETE, key, new byte[0]);
+    }
+
+    static Mutation of(Type type, String key, byte[] payload) {
+        return new Mutation(type, key, payload);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public byte[] getPayload() {
+        return payload;
+    }
+}
@@ -0,0 +1,51 @@
+package com.shop.backend.storage;
+
+import java.util.List;
+
+/**
+ * Append-only log of mutations to one store
+ */
+public interface MutationLog {
+
+    /**
+     * Log that does nothing, used when persistence is disabled
+     */
+    MutationLog NOOP = new MutationLog() {
+        @Override
+        public boolean isActive() {
+            return false;
+        }
+
+        @Override
+        public void append(Mutation mutation) {
+        }
+
+        @Override
+        public void appendAll(List<Mutation> mutations) {
+        }
+    };
+
+    /**
+     * Tell whether appended mutations are kept
+     * Callers check this to skip encoding entities nobody will read.
+     *
+     * @return false for NOOP
+     */
+    default boolean isActive() {
+        return true;
+    }
+
+    /**
+     * Append one mutation
+     *
+     * @param mutation mutation to log
+     */
+    void append(Mutation mutation);
+
+    /**
+     * Append several mutations with a single write
+     *
+     * @param mutations mutations to log, in order
+     */
+    void appendAll(List<Mutation> mutations);
+}
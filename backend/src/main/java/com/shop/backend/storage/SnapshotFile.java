@@ -0,0 +1,305 @@
+package com.shop.backend.storage;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.zip.CRC32;
+
+/**
+ * Binary snapshot image of one store
+ *
+ * Layout:
+ * <pre>
+ *   int    magic, int format version
+ *   UTF    store name
+ *   long   log offset the image starts replay from
+ *   long   creation time (epoch millis)
+ *   chunk* int entry count, int body length, int CRC32 of the body,
+ *          body: entry count x (int key length, key, int payload length, payload),
+ *          payload length -1 marking a deletion
+ *   end    int 0, long total entry count
+ * </pre>
+ * Chunks are checksummed independently so they can be verified and decoded
+ * in parallel while the file is still being read.
+ * The image it replaces is kept as {@code <store>.snap.prev}, a fallback if
+ * the new one turns out to be unreadable.
+ */
+final class SnapshotFile {
+
+    private static final int MAGIC = 0x53484F50; // "SHOP"
+    private static final int FORMAT_VERSION = 1;
+
+    // A chunk is closed at whichever limit it reaches first
+    private static final int CHUNK_ENTRIES = 1024;
+    private static final int CHUNK_BYTES = 1 << 20;
+
+    private SnapshotFile() {
+    }
+
+    /**
+     * Write a store's image to a temporary file and move it into place
+     * The current image becomes the previous one, and the directory is
+     * forced so both renames are durable when this returns.
+     *
+     * @param path      final snapshot path
+     * @param store     store to write
+     * @param logOffset log position taken before the store was read
+     * @param encoder   entity encoder
+     */
+    static <T> void write(Path path, DurableStore<T> store, long logOffset,
+                          Function<Object, byte[]> encoder) throws IOException {
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileOutputStream file = new FileOutputStream(temp.toFile());
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file, 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeUTF(store.storeName());
+            out.writeLong(logOffset);
+            out.writeLong(System.currentTimeMillis());
+
+            ChunkWriter chunks = new ChunkWriter(out);
+            store.snapshot((key, value) -> chunks.add(key, value != null ? encoder.apply(value) : null));
+            chunks.flush();
+
+            out.writeInt(0);
+            out.writeLong(chunks.total);
+            out.flush();
+            file.getFD().sync();
+        }
+        if (Files.exists(path)) {
+            Files.move(path, previous(path), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        syncDirectory(path);
+    }
+
+    /**
+     * Get the path the image replaced by the next write is kept at
+     *
+     * @param path snapshot path
+     * @return path of the previous image
+     */
+    static Path previous(Path path) {
+        return path.resolveSibling(path.getFileName() + ".prev");
+    }
+
+    /**
+     * Read only the log offset from an image's header
+     *
+     * @param path snapshot path
+     * @return log offset the image starts replay from
+     * @throws StorageException if the header is not a snapshot header
+     */
+    static long logOffset(Path path) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                throw new StorageException("Not a snapshot: " + path, null);
+            }
+            in.readUTF();
+            return in.readLong();
+        }
+    }
+
+    /**
+     * Stream an image into a store
+     * Chunks are read on the calling thread, checked and decoded on the pool,
+     * and restored in file order on the calling thread. At most a few chunks
+     * per pool thread are in memory at once.
+     *
+     * @param path     snapshot path
+     * @param store    store to fill
+     * @param decoder  entity decoder; called from pool threads
+     * @param pool     decoding threads
+     * @param parallel number of pool threads
+     * @return log offset to replay from
+     * @throws StorageException if the image is corrupt
+     */
+    static <T> long read(Path path, DurableStore<T> store, Function<byte[], T> decoder,
+                         ExecutorService pool, int parallel) throws IOException {
+        long fileSize = Files.size(path);
+        try (InputStream raw = Files.newInputStream(path);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(raw, 1 << 16))) {
+            if (in.readInt() != MAGIC) {
+                throw new StorageException("Not a snapshot: " + path, null);
+            }
+            int version = in.readInt();
+            if (version != FORMAT_VERSION) {
+                throw new StorageException("Unsupported snapshot version " + version + ": " + path, null);
+            }
+            if (!store.storeName().equals(in.readUTF())) {
+                throw new StorageException("Snapshot belongs to another store: " + path, null);
+            }
+            long logOffset = in.readLong();
+            in.readLong(); // creation time, informational
+
+            Deque<Future<List<Restored<T>>>> inFlight = new ArrayDeque<>();
+            long restored = 0;
+            try {
+                while (true) {
+                    int count = in.readInt();
+                    if (count == 0) {
+                        break;
+                    }
+                    int length = in.readInt();
+                    int checksum = in.readInt();
+                    if (count < 0 || length < 0 || length > fileSize) {
+                        throw new StorageException("Corrupt chunk header in " + path, null);
+                    }
+                    byte[] body = new byte[length];
+                    in.readFully(body);
+                    inFlight.add(pool.submit(() -> decodeChunk(body, count, checksum, decoder)));
+                    if (inFlight.size() >= parallel * 2) {
+                        restored += restore(store, inFlight.poll());
+                    }
+                }
+                while (!inFlight.isEmpty()) {
+                    restored += restore(store, inFlight.poll());
+                }
+            } finally {
+                for (Future<?> future : inFlight) {
+                    future.cancel(true);
+                }
+            }
+            if (in.readLong() != restored) {
+                throw new StorageException("Snapshot entry count mismatch in " + path, null);
+            }
+            return logOffset;
+        }
+    }
+
+    private static void syncDirectory(Path path) {
+        try (FileChannel directory = FileChannel.open(path.toAbsolutePath().getParent(), StandardOpenOption.READ)) {
+            directory.force(true);
+        } catch (IOException e) {
+            // Not every platform can force a directory; the moves are still atomic
+        }
+    }
+
+    private static <T> List<Restored<T>> decodeChunk(byte[] body, int count, int checksum,
+                                                     Function<byte[], T> decoder) {
+        CRC32 crc = new CRC32();
+        crc.update(body);
+        if ((int) crc.getValue() != checksum) {
+            throw new StorageException("Snapshot chunk checksum mismatch", null);
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(body);
+        List<Restored<T>> entries = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            byte[] key = new byte[buffer.getInt()];
+            buffer.get(key);
+            int length = buffer.getInt();
+            if (length < 0) {
+                entries.add(new Restored<>(new String(key, StandardCharsets.UTF_8), null));
+                continue;
+            }
+            byte[] payload = new byte[length];
+            buffer.get(payload);
+            entries.add(new Restored<>(new String(key, StandardCharsets.UTF_8), decoder.apply(payload)));
+        }
+        return entries;
+    }
+
+    private static <T> int restore(DurableStore<T> store, Future<List<Restored<T>>> chunk) throws IOException {
+        List<Restored<T>> entries;
+        try {
+            entries = chunk.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while loading snapshot", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof StorageException
+                    ? (StorageException) cause
+                    : new StorageException("Failed to decode snapshot chunk", cause);
+        }
+        for (Restored<T> entry : entries) {
+            if (entry.value != null) {
+                store.restore(entry.key, entry.value);
+            } else {
+                store.discard(entry.key);
+            }
+        }
+        return entries.size();
+    }
+
+    /**
+     * Buffers entries into chunks and writes each with its checksum
+     */
+    private static final class ChunkWriter {
+        private final DataOutputStream out;
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream(CHUNK_BYTES);
+        private final DataOutputStream body = new DataOutputStream(bytes);
+        private final CRC32 crc = new CRC32();
+        private int count;
+        private long total;
+
+        private ChunkWriter(DataOutputStream out) {
+            this.out = out;
+        }
+
+        private void add(String key, byte[] payload) {
+            try {
+                byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+                body.writeInt(keyBytes.length);
+                body.write(keyBytes);
+                if (payload != null) {
+                    body.writeInt(payload.length);
+                    body.write(payload);
+                } else {
+                    body.writeInt(-1);
+                }
+                count++;
+                total++;
+                if (count == CHUNK_ENTRIES || bytes.size() >= CHUNK_BYTES) {
+                    flush();
+                }
+            } catch (IOException e) {
+                throw new StorageException("Failed to write snapshot chunk", e);
+            }
+        }
+
+        private void flush() throws IOException {
+            if (count == 0) {
+                return;
+            }
+            crc.reset();
+            crc.update(bytes.toByteArray());
+            out.writeInt(count);
+            out.writeInt(bytes.size());
+            out.writeInt((int) crc.getValue());
+            bytes.writeTo(out);
+            bytes.reset();
+            count = 0;
+        }
+    }
+
+    private static final class Restored<T> {
+        private final String key;
+        private final T value;
+
+        private Restored(String key, T value) {
+            this.key = key;
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,284 @@
+package com.shop.backend.storage;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Recovers every durable store from its snapshot and write-ahead log
+ * Persistence is off unless shop.storage.enabled is true; stores then get
+ * MutationLog.NOOP and behave as pure in-memory stores. With the INTERVAL
+ * policy one background thread forces all logs together, so concurrent
+ * writers share the cost of each fsync.
+ * A background thread periodically writes a snapshot of each store. The log
+ * is rotated to a new segment before the store is read, so replaying the log
+ * from there over the image rebuilds every change the image may have missed.
+ * Once the new image is durable, log segments older than the previous image
+ * are deleted; the previous image and the log after it stay as a fallback.
+ */
+@Component
+public class StorageEngine {
+
+    private final boolean enabled;
+    private final Path directory;
+    private final FsyncPolicy fsyncPolicy;
+    private final ObjectMapper objectMapper;
+
+    private final List<Attached<?>> stores = new CopyOnWriteArrayList<>();
+
+    // Runs log syncs and snapshots, one thread each so a long snapshot never delays a sync
+    private final ScheduledExecutorService background;
+
+    // Decodes snapshot chunks at startup; its threads exit once idle
+    private final ThreadPoolExecutor decodePool;
+    private final int decodeThreads = Runtime.getRuntime().availableProcessors();
+
+    public StorageEngine(@Value("${shop.storage.enabled:false}") boolean enabled,
+                         @Value("${shop.storage.directory:data}") String directory,
+                         @Value("${shop.storage.fsync:INTERVAL}") FsyncPolicy fsyncPolicy,
+                         @Value("${shop.storage.fsync-interval-ms:50}") long fsyncIntervalMillis,
+                         @Value("${shop.storage.snapshot-interval-seconds:300}") long snapshotIntervalSeconds,
+                         ObjectMapper objectMapper) {
+        this.enabled = enabled;
+        this.directory = Paths.get(directory);
+        this.fsyncPolicy = fsyncPolicy;
+        this.objectMapper = objectMapper;
+
+        if (!enabled) {
+            this.background = null;
+            this.decodePool = null;
+            return;
+        }
+        ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(2, daemonThreads("storage-background"));
+        if (fsyncPolicy == FsyncPolicy.INTERVAL) {
+            scheduler.scheduleWithFixedDelay(this::syncAll, fsyncIntervalMillis, fsyncIntervalMillis,
+                    TimeUnit.MILLISECONDS);
+        }
+        if (snapshotIntervalSeconds > 0) {
+            scheduler.scheduleWithFixedDelay(this::snapshotQuietly, snapshotIntervalSeconds, snapshotIntervalSeconds,
+                    TimeUnit.SECONDS);
+        }
+        this.background = scheduler;
+
+        this.decodePool = new ThreadPoolExecutor(decodeThreads, decodeThreads, 5, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), daemonThreads("snapshot-decode"));
+        this.decodePool.allowCoreThreadTimeOut(true);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public FsyncPolicy getFsyncPolicy() {
+        return fsyncPolicy;
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Load a store's snapshot, replay its log over it and return the log for
+     * new mutations
+     * A snapshot that fails to load is set aside and the previous one is
+     * loaded instead, with the log replayed from its position; PUTs carry
+     * full entities, so replaying over a partial image still ends in the
+     * logged state. Without a usable image the whole log is replayed, which
+     * is only complete if no segment has been deleted yet.
+     *
+     * @param store store to recover
+     * @return log to append to; MutationLog.NOOP when persistence is disabled
+     */
+    public <T> MutationLog attach(DurableStore<T> store) {
+        if (!enabled) {
+            return MutationLog.NOOP;
+        }
+        Path logPath = directory.resolve(store.storeName() + ".wal");
+        Path snapshotPath = directory.resolve(store.storeName() + ".snap");
+        try {
+            Files.createDirectories(directory);
+            WriteAheadLog log = new WriteAheadLog(logPath, fsyncPolicy);
+            long replayFrom = loadSnapshot(store, snapshotPath, log.startOffset());
+            log.replay(replayFrom, mutation -> apply(store, mutation));
+            stores.add(new Attached<>(store, log, snapshotPath));
+            return log;
+        } catch (IOException e) {
+            throw new StorageException("Failed to recover " + store.storeName(), e);
+        }
+    }
+
+    /**
+     * Write a fresh snapshot of every attached store and drop the log it
+     * makes redundant
+     * Stores are read with their normal weakly consistent iteration, so
+     * requests keep being served while this runs.
+     */
+    public synchronized void snapshotAll() {
+        for (Attached<?> attached : stores) {
+            try {
+                long logOffset = attached.log.rotate();
+                SnapshotFile.write(attached.snapshotPath, attached.store, logOffset, this::encode);
+                attached.log.truncateBefore(fallbackOffset(attached.snapshotPath));
+            } catch (IOException e) {
+                throw new StorageException("Failed to snapshot " + attached.store.storeName(), e);
+            }
+        }
+    }
+
+    /**
+     * Encode an entity for a PUT mutation
+     *
+     * @param value entity
+     * @return JSON bytes
+     */
+    public byte[] encode(Object value) {
+        try {
+            return objectMapper.writeValueAsBytes(value);
+        } catch (IOException e) {
+            throw new StorageException("Failed to encode " + value.getClass().getSimpleName(), e);
+        }
+    }
+
+    /**
+     * Decode the payload of a PUT mutation
+     *
+     * @param payload JSON bytes
+     * @param type    entity class
+     * @return entity
+     */
+    public <T> T decode(byte[] payload, Class<T> type) {
+        try {
+            return objectMapper.readValue(payload, type);
+        } catch (IOException e) {
+            throw new StorageException("Failed to decode " + type.getSimpleName(), e);
+        }
+    }
+
+    /**
+     * Stop the background threads, write a final snapshot so the next start
+     * has little log to replay, and close the logs
+     */
+    @PreDestroy
+    public void close() {
+        if (background != null) {
+            background.shutdownNow();
+            decodePool.shutdownNow();
+            snapshotQuietly();
+        }
+        for (Attached<?> attached : stores) {
+            try {
+                attached.log.close();
+            } catch (IOException e) {
+                // Keep closing the others
+            }
+        }
+        stores.clear();
+    }
+
+    // Newest image first, then the previous one; returns the log offset to replay from
+    private <T> long loadSnapshot(DurableStore<T> store, Path snapshotPath, long logStart) throws IOException {
+        for (Path image : List.of(snapshotPath, SnapshotFile.previous(snapshotPath))) {
+            if (!Files.exists(image)) {
+                continue;
+            }
+            try {
+                if (SnapshotFile.logOffset(image) < logStart) {
+                    continue;
+                }
+                return SnapshotFile.read(image, store, payload -> decode(payload, store.entityType()),
+                        decodePool, decodeThreads);
+            } catch (StorageException e) {
+                if (image.equals(snapshotPath)) {
+                    // Moved aside so the next snapshot keeps the previous image as its fallback
+                    Files.move(image, image.resolveSibling(image.getFileName() + ".corrupt"),
+                            StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+        }
+        if (logStart > 0) {
+            throw new StorageException("No usable snapshot of " + store.storeName()
+                    + " and its log starts at offset " + logStart, null);
+        }
+        return 0;
+    }
+
+    // The log must reach back to the previous image; without one nothing is dropped
+    private static long fallbackOffset(Path snapshotPath) {
+        Path previous = SnapshotFile.previous(snapshotPath);
+        if (!Files.exists(previous)) {
+            return 0;
+        }
+        try {
+            return SnapshotFile.logOffset(previous);
+        } catch (IOException | StorageException e) {
+            return 0;
+        }
+    }
+
+    private <T> void apply(DurableStore<T> store, Mutation mutation) {
+        if (mutation.getType() == Mutation.Type.DELETE) {
+            store.discard(mutation.getKey());
+        } else {
+            store.restore(mutation.getKey(), decode(mutation.getPayload(), store.entityType()));
+        }
+    }
+
+    private void syncAll() {
+        for (Attached<?> attached : stores) {
+            try {
+                attached.log.sync();
+            } catch (StorageException e) {
+                // Retried on the next tick
+            }
+        }
+    }
+
+    // An exception would cancel the schedule; the next run tries again instead
+    private void snapshotQuietly() {
+        try {
+            snapshotAll();
+        } catch (StorageException e) {
+            // Keep the previous snapshot
+        }
+    }
+
+    private static ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * A recovered store with its log and snapshot file
+     */
+    private static final class Attached<T> {
+        private final DurableStore<T> store;
+        private final WriteAheadLog log;
+        private final Path snapshotPath;
+
+        private Attached(DurableStore<T> store, WriteAheadLog log, Path snapshotPath) {
+            this.store = store;
+            this.log = log;
+            this.snapshotPath = snapshotPath;
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.shop.backend.storage;
+
+/**
+ * Unchecked wrapper for storage I/O failures
+ */
+public class StorageException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public StorageException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,412 @@
+package com.shop.backend.storage;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only, checksummed binary log backed by a FileChannel
+ *
+ * Every record is framed as
+ * <pre>
+ *   int    body length
+ *   int    CRC32 of the body
+ *   body:  byte type, int key length, key (UTF-8), int payload length, payload
+ * </pre>
+ * On replay, reading stops at the first truncated or corrupt record (a write
+ * torn by a crash) and the file is cut back to the last good record.
+ *
+ * The log is split into segment files named after the log offset of their
+ * first byte ({@code products.wal.0}, {@code products.wal.52311}, ...), so
+ * offsets keep counting across segments. rotate starts a new segment and
+ * truncateBefore deletes whole segments a snapshot has made redundant.
+ *
+ * An append that fails part way is cut back off the file, so a torn frame
+ * never sits in front of records appended after it. If it cannot be cut
+ * off, the log refuses every later append and rotation.
+ */
+public class WriteAheadLog implements MutationLog, Closeable {
+
+    private static final int FRAME_HEADER_BYTES = 8;
+
+    private final Path path;
+    private final FsyncPolicy fsyncPolicy;
+    private final SegmentOpener opener;
+
+    // Segment files by the offset of their first byte; the last one takes appends
+    private final NavigableMap<Long, Path> segments = new TreeMap<>();
+
+    private volatile FileChannel channel;
+    private long activeBase;
+
+    // Set when bytes were written since the last force
+    private volatile boolean dirty;
+
+    // Set when a failed append could not be cut off; the log is unusable from then on
+    private volatile StorageException failure;
+
+    /**
+     * Open a log, creating its first segment if needed
+     * A single-file log from before segments were introduced becomes the
+     * segment at offset 0.
+     *
+     * @param path        log name; segments are stored next to it
+     * @param fsyncPolicy when to force appended records to disk
+     * @throws IOException if the files cannot be opened
+     */
+    public WriteAheadLog(Path path, FsyncPolicy fsyncPolicy) throws IOException {
+        this(path, fsyncPolicy, WriteAheadLog::openSegment);
+    }
+
+    WriteAheadLog(Path path, FsyncPolicy fsyncPolicy, SegmentOpener opener) throws IOException {
+        this.path = path;
+        this.fsyncPolicy = fsyncPolicy;
+        this.opener = opener;
+        findSegments();
+        if (segments.isEmpty()) {
+            if (Files.exists(path)) {
+                Files.move(path, segmentPath(0));
+            }
+            segments.put(0L, segmentPath(0));
+        }
+        this.activeBase = segments.lastKey();
+        this.channel = open(segments.lastEntry().getValue());
+        this.channel.position(channel.size());
+    }
+
+    /**
+     * Read every intact record from the given offset and drop anything after
+     * the last one; appends continue from there
+     *
+     * @param fromOffset log offset to start reading at
+     * @param consumer   receives each mutation in order
+     * @return offset just past the last intact record
+     * @throws IOException      if the files cannot be read
+     * @throws StorageException if the log was truncated past the offset
+     */
+    public synchronized long replay(long fromOffset, Consumer<Mutation> consumer) throws IOException {
+        if (fromOffset < segments.firstKey()) {
+            throw new StorageException("Log " + path + " starts at " + segments.firstKey()
+                    + ", after replay offset " + fromOffset, null);
+        }
+        Long start = segments.floorKey(fromOffset);
+        for (Map.Entry<Long, Path> segment : segments.tailMap(start, true).entrySet()) {
+            long base = segment.getKey();
+            boolean active = base == activeBase;
+            FileChannel file = active ? channel : open(segment.getValue());
+            boolean damaged;
+            try {
+                long end = replaySegment(file, Math.max(fromOffset, base) - base, consumer);
+                damaged = file.size() > end;
+                if (damaged) {
+                    file.truncate(end);
+                }
+                if (active) {
+                    file.position(end);
+                }
+            } finally {
+                if (!active) {
+                    file.close();
+                }
+            }
+            if (damaged && !active) {
+                // Later segments cannot follow a gap; the damaged one takes appends again
+                dropAfter(base);
+                break;
+            }
+        }
+        return position();
+    }
+
+    /**
+     * Start a new segment at the current end of the log
+     * The finished segment is forced to disk first. Nothing happens if the
+     * current segment is still empty.
+     *
+     * @return log offset the new segment starts at
+     */
+    public synchronized long rotate() {
+        checkUsable();
+        try {
+            long size = channel.position();
+            if (size == 0) {
+                return activeBase;
+            }
+            long base = activeBase + size;
+            Path next = segmentPath(base);
+            FileChannel nextChannel = open(next);
+            FileChannel finished = channel;
+            finished.force(false);
+            segments.put(base, next);
+            channel = nextChannel;
+            activeBase = base;
+            finished.close();
+            return base;
+        } catch (IOException e) {
+            throw new StorageException("Failed to rotate " + path, e);
+        }
+    }
+
+    /**
+     * Delete the segments that end at or before the given offset
+     * The segment taking appends is always kept.
+     *
+     * @param offset first log offset that must stay readable
+     */
+    public synchronized void truncateBefore(long offset) {
+        while (segments.size() > 1) {
+            Map.Entry<Long, Path> first = segments.firstEntry();
+            if (segments.higherKey(first.getKey()) > offset) {
+                return;
+            }
+            try {
+                Files.deleteIfExists(first.getValue());
+            } catch (IOException e) {
+                throw new StorageException("Failed to delete " + first.getValue(), e);
+            }
+            segments.remove(first.getKey());
+        }
+    }
+
+    /**
+     * Get the oldest offset the log can still replay from
+     *
+     * @return offset of the first segment
+     */
+    public synchronized long startOffset() {
+        return segments.firstKey();
+    }
+
+    @Override
+    public void append(Mutation mutation) {
+        appendAll(Collections.singletonList(mutation));
+    }
+
+    @Override
+    public void appendAll(List<Mutation> mutations) {
+        if (mutations.isEmpty()) {
+            return;
+        }
+        ByteBuffer buffer = encode(mutations);
+        synchronized (this) {
+            checkUsable();
+            long start;
+            try {
+                start = channel.position();
+            } catch (IOException e) {
+                throw new StorageException("Failed to append to " + path, e);
+            }
+            try {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                if (fsyncPolicy == FsyncPolicy.EVERY_WRITE) {
+                    channel.force(false);
+                } else {
+                    dirty = true;
+                }
+            } catch (IOException e) {
+                // The caller is told the records were not logged, so none of them may survive
+                cutBack(start, e);
+                throw new StorageException("Failed to append to " + path, e);
+            }
+        }
+    }
+
+    /**
+     * Force appended records to disk if anything was written since the last call
+     */
+    public void sync() {
+        if (!dirty) {
+            return;
+        }
+        dirty = false;
+        try {
+            channel.force(false);
+        } catch (IOException e) {
+            dirty = true;
+            throw new StorageException("Failed to sync " + path, e);
+        }
+    }
+
+    /**
+     * Get the offset the next record will be written at
+     *
+     * @return current end of the log
+     */
+    public synchronized long position() {
+        try {
+            return activeBase + channel.position();
+        } catch (IOException e) {
+            throw new StorageException("Failed to read position of " + path, e);
+        }
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel.isOpen()) {
+            if (fsyncPolicy != FsyncPolicy.OS) {
+                channel.force(false);
+            }
+            channel.close();
+        }
+    }
+
+    // Read intact records from a relative offset; returns the relative offset past the last one
+    private static long replaySegment(FileChannel file, long fromOffset, Consumer<Mutation> consumer)
+            throws IOException {
+        long size = file.size();
+        long offset = Math.min(fromOffset, size);
+        InputStream raw = Channels.newInputStream(file.position(offset));
+        DataInputStream in = new DataInputStream(new BufferedInputStream(raw, 1 << 16));
+        CRC32 crc = new CRC32();
+        while (true) {
+            byte[] body;
+            try {
+                int length = in.readInt();
+                int checksum = in.readInt();
+                if (length <= 0 || length > size - offset - FRAME_HEADER_BYTES) {
+                    break;
+                }
+                body = new byte[length];
+                in.readFully(body);
+                crc.reset();
+                crc.update(body);
+                if ((int) crc.getValue() != checksum) {
+                    break;
+                }
+            } catch (EOFException e) {
+                break;
+            }
+            consumer.accept(decode(body));
+            offset += FRAME_HEADER_BYTES + body.length;
+        }
+        return offset;
+    }
+
+    // Drop whatever a failed append left after start; if that fails too, stop taking appends
+    private void cutBack(long start, IOException cause) {
+        try {
+            channel.truncate(start);
+            channel.position(start);
+        } catch (IOException e) {
+            cause.addSuppressed(e);
+            failure = new StorageException("Failed to cut a torn append off " + path, cause);
+        }
+    }
+
+    private void checkUsable() {
+        if (failure != null) {
+            throw new StorageException("Log " + path + " refuses appends after a torn write", failure);
+        }
+    }
+
+    // Delete the segments after base and make the segment at base take appends
+    private void dropAfter(long base) throws IOException {
+        channel.close();
+        while (segments.lastKey() > base) {
+            Files.deleteIfExists(segments.pollLastEntry().getValue());
+        }
+        activeBase = base;
+        channel = open(segments.get(base));
+        channel.position(channel.size());
+    }
+
+    private void findSegments() throws IOException {
+        Path directory = path.toAbsolutePath().getParent();
+        String prefix = path.getFileName() + ".";
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, prefix + "*")) {
+            for (Path file : files) {
+                String suffix = file.getFileName().toString().substring(prefix.length());
+                if (!suffix.isEmpty() && suffix.chars().allMatch(Character::isDigit)) {
+                    segments.put(Long.parseLong(suffix), file);
+                }
+            }
+        }
+    }
+
+    private Path segmentPath(long base) {
+        return path.resolveSibling(path.getFileName() + "." + base);
+    }
+
+    private FileChannel open(Path file) throws IOException {
+        return opener.open(file);
+    }
+
+    private static FileChannel openSegment(Path file) throws IOException {
+        return FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    private static ByteBuffer encode(List<Mutation> mutations) {
+        int size = 0;
+        byte[][] keys = new byte[mutations.size()][];
+        for (int i = 0; i < mutations.size(); i++) {
+            keys[i] = mutations.get(i).getKey().getBytes(StandardCharsets.UTF_8);
+            size += FRAME_HEADER_BYTES + bodyLength(keys[i], mutations.get(i).getPayload());
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        CRC32 crc = new CRC32();
+        for (int i = 0; i < mutations.size(); i++) {
+            Mutation mutation = mutations.get(i);
+            byte[] payload = mutation.getPayload();
+            int length = bodyLength(keys[i], payload);
+            int bodyStart = buffer.position() + FRAME_HEADER_BYTES;
+            buffer.putInt(length);
+            buffer.putInt(0); // checksum, filled in below
+            buffer.put((byte) mutation.getType().ordinal());
+            buffer.putInt(keys[i].length);
+            buffer.put(keys[i]);
+            buffer.putInt(payload.length);
+            buffer.put(payload);
+            crc.reset();
+            crc.update(buffer.array(), bodyStart, length);
+            buffer.putInt(bodyStart - 4, (int) crc.getValue());
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static int bodyLength(byte[] key, byte[] payload) {
+        return 1 + 4 + key.length + 4 + payload.length;
+    }
+
+    private static Mutation decode(byte[] body) {
+        ByteBuffer buffer = ByteBuffer.wrap(body);
+        Mutation.Type type = Mutation.Type.values()[buffer.get()];
+        byte[] key = new byte[buffer.getInt()];
+        buffer.get(key);
+        byte[] payload = new byte[buffer.getInt()];
+        buffer.get(payload);
+        return Mutation.of(type, new String(key, StandardCharsets.UTF_8), payload);
+    }
+
+    /**
+     * Opens segment files for reading and writing; tests substitute failing channels
+     */
+    @FunctionalInterface
+    interface SegmentOpener {
+        FileChannel open(Path file) throws IOException;
+    }
+}
@@ -0,0 +1,128 @@
+package com.shop.backend.analytics;
+
+import com.shop.backend.models.Order;
+import com.shop.backend.models.OrderStatus;
+import com.shop.backend.models.OrderSummary;
+import com.shop.backend.models.ProductSales;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+
+class OrderAnalyticsTest {
+
+    private static final LocalDate DAY = LocalDate.of(2024, 3, 10);
+
+    @Test
+    void summaryCountsCancelledOrdersInTheirStatusOnly() {
+        OrderAnalytics analytics = new OrderAnalytics();
+        analytics.add(order(DAY, OrderStatus.PENDING, line("p-1", 2, 10.0), line("p-2", 1, 5.0)), null);
+        analytics.add(order(DAY, OrderStatus.DELIVERED, line("p-1", 1, 10.0)), null);
+        analytics.add(order(DAY, OrderStatus.CANCELLED, line("p-3", 4, 100.0)), null);
+
+        OrderSummary summary = analytics.summary();
+        assertThat(summary.getOrderCount()).isEqualTo(2);
+        assertThat(summary.getItemCount()).isEqualTo(4);
+        assertThat(summary.getRevenue()).isEqualTo(35.0);
+        assertThat(summary.getAverageBasketSize()).isEqualTo(2.0);
+        assertThat(summary.getAverageOrderValue()).isEqualTo(17.5);
+        assertThat(summary.getOrdersByStatus())
+                .containsOnly(entry("CANCELLED", 1L), entry("DELIVERED", 1L), entry("PENDING", 1L));
+        assertThat(analytics.topProducts(10)).extracting(ProductSales::getProductId).containsExactly("p-1", "p-2");
+    }
+
+    @Test
+    void removingAndReAddingFollowsAStatusChange() {
+        OrderAnalytics analytics = new OrderAnalytics();
+        Order order = order(DAY, OrderStatus.PENDING, line("p-1", 3, 2.5));
+        String[] categories = {"tools"};
+        analytics.add(order, categories);
+
+        analytics.remove(order, categories);
+        order.setStatus(OrderStatus.SHIPPED.name());
+        analytics.add(order, categories);
+        assertThat(analytics.countByStatus()).containsOnly(entry("SHIPPED", 1L));
+        assertThat(analytics.summary().getRevenue()).isEqualTo(7.5);
+
+        analytics.remove(order, categories);
+        order.setStatus(OrderStatus.CANCELLED.name());
+        analytics.add(order, categories);
+        assertThat(analytics.countByStatus()).containsOnly(entry("CANCELLED", 1L));
+        assertThat(analytics.summary().getOrderCount()).isZero();
+        assertThat(analytics.summary().getRevenue()).isZero();
+        assertThat(analytics.revenueByDay(DAY, DAY)).isEmpty();
+        assertThat(analytics.revenueByCategory()).isEmpty();
+        assertThat(analytics.topProducts(10)).isEmpty();
+    }
+
+    @Test
+    void revenueByDayCoversAnInclusiveRangeOfDaysWithSales() {
+        OrderAnalytics analytics = new OrderAnalytics();
+        analytics.add(order(DAY.minusDays(1), OrderStatus.PENDING, line("p-1", 1, 1.0)), null);
+        analytics.add(order(DAY, OrderStatus.PENDING, line("p-1", 1, 2.0)), null);
+        analytics.add(order(DAY, OrderStatus.PENDING, line("p-1", 1, 0.5)), null);
+        analytics.add(order(DAY.plusDays(2), OrderStatus.PENDING, line("p-1", 1, 4.0)), null);
+
+        assertThat(analytics.revenueByDay(DAY, DAY.plusDays(2)))
+                .containsExactly(entry(DAY, 2.5), entry(DAY.plusDays(2), 4.0));
+        assertThat(analytics.revenueByDay(DAY.minusDays(1), DAY.minusDays(1)))
+                .containsExactly(entry(DAY.minusDays(1), 1.0));
+        assertThat(analytics.revenueByDay(DAY.plusDays(2), DAY)).isEmpty();
+    }
+
+    @Test
+    void revenueByCategoryIsHighestFirstWithUnknownCategoriesGrouped() {
+        OrderAnalytics analytics = new OrderAnalytics();
+        analytics.add(order(DAY, OrderStatus.PENDING, line("p-1", 1, 5.0), line("p-2", 1, 30.0), line("p-3", 1, 1.0)),
+                new String[] {"garden", "kitchen"});
+        analytics.add(order(DAY, OrderStatus.PENDING, line("p-4", 2, 10.0)), new String[] {null});
+
+        assertThat(analytics.revenueByCategory()).containsExactly(
+                entry("kitchen", 30.0), entry(OrderAnalytics.UNCATEGORIZED, 21.0), entry("garden", 5.0));
+    }
+
+    @Test
+    void topProductsRankByUnitsThenProductId() {
+        OrderAnalytics analytics = new OrderAnalytics();
+        analytics.add(order(DAY, OrderStatus.PENDING, line("p-b", 2, 1.0), line("p-a", 2, 3.0)), null);
+        analytics.add(order(DAY, OrderStatus.PENDING, line("p-c", 5, 1.0)), null);
+        Order more = order(DAY, OrderStatus.PENDING, line("p-b", 4, 1.0));
+        analytics.add(more, null);
+
+        List<ProductSales> top = analytics.topProducts(2);
+        assertThat(top).extracting(ProductSales::getProductId).containsExactly("p-b", "p-c");
+        assertThat(top.get(0).getQuantity()).isEqualTo(6);
+        assertThat(top.get(0).getRevenue()).isEqualTo(6.0);
+
+        analytics.remove(more, null);
+        assertThat(analytics.topProducts(10)).extracting(ProductSales::getProductId)
+                .containsExactly("p-c", "p-a", "p-b");
+        assertThat(analytics.topProducts(0)).isEmpty();
+    }
+
+    @Test
+    void ofAggregatesOrdersAsUncategorized() {
+        OrderAnalytics analytics = OrderAnalytics.of(Arrays.asList(
+                order(DAY, OrderStatus.PENDING, line("p-1", 1, 3.0)),
+                order(DAY, OrderStatus.SHIPPED, line("p-2", 1, 4.0))));
+
+        assertThat(analytics.summary().getOrderCount()).isEqualTo(2);
+        assertThat(analytics.revenueByCategory()).containsExactly(entry(OrderAnalytics.UNCATEGORIZED, 7.0));
+    }
+
+    private static Order order(LocalDate day, OrderStatus status, Order.OrderItem... items) {
+        Order order = new Order("user", Arrays.asList(items), status.name());
+        order.setCreatedAt(LocalDateTime.of(day, LocalTime.NOON));
+        return order;
+    }
+
+    private static Order.OrderItem line(String productId, int quantity, double price) {
+        return new Order.OrderItem(productId, "Product " + productId, quantity, price);
+    }
+}
@@ -0,0 +1,122 @@
+package com.shop.backend.async;
+
+import com.shop.backend.metrics.MetricsRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Inline mode runs tasks on the caller; pool mode rejects at once when its
+ * queue is full and records every task it ran
+ */
+class ServiceExecutorTest {
+
+    private final MetricsRegistry registry = new MetricsRegistry();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private ServiceExecutor executor;
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        executor.shutdown();
+    }
+
+    @Test
+    void inlineModeRunsOnTheCaller() {
+        executor = executor(false, 0, 0);
+        AtomicReference<Thread> ranOn = new AtomicReference<>();
+
+        executor.execute(() -> ranOn.set(Thread.currentThread()));
+
+        assertThat(executor.isEnabled()).isFalse();
+        assertThat(ranOn.get()).isSameAs(Thread.currentThread());
+        // Nothing queued, so no task metrics and nothing ever rejected
+        assertThat(registry.scrape()).contains(
+                "shop_executor_task_seconds_count{executor=\"service\",phase=\"queue\"} 0\n",
+                "shop_executor_task_seconds_count{executor=\"service\",phase=\"run\"} 0\n",
+                "shop_executor_rejected_tasks 0\n");
+    }
+
+    @Test
+    void inlineModePropagatesFailuresToTheCaller() {
+        executor = executor(false, 0, 0);
+
+        assertThatThrownBy(() -> executor.execute(() -> {
+            throw new IllegalStateException("boom");
+        })).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void fullQueueRejectsAtOnce() throws Exception {
+        executor = executor(true, 1, 1);
+        CountDownLatch running = new CountDownLatch(1);
+        executor.execute(() -> {
+            running.countDown();
+            await(release);
+        });
+        assertThat(running.await(5, TimeUnit.SECONDS)).isTrue();
+        // Waits in the queue behind the running task
+        CountDownLatch queuedRan = new CountDownLatch(1);
+        executor.execute(queuedRan::countDown);
+
+        long start = System.nanoTime();
+        assertThatThrownBy(() -> executor.execute(() -> { })).isInstanceOf(RejectedExecutionException.class);
+        assertThatThrownBy(() -> executor.execute(() -> { })).isInstanceOf(RejectedExecutionException.class);
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isLessThan(1_000);
+        assertThat(registry.scrape()).contains("shop_executor_rejected_tasks 2\n",
+                "shop_executor_queued_tasks 1\n", "shop_executor_active_threads 1\n");
+
+        release.countDown();
+        assertThat(queuedRan.await(5, TimeUnit.SECONDS)).isTrue();
+        executor.execute(() -> { });
+    }
+
+    @Test
+    void poolRunsTasksOnItsThreadsAndRecordsThem() throws Exception {
+        executor = executor(true, 2, 16);
+        AtomicReference<String> ranOn = new AtomicReference<>();
+        CountDownLatch done = new CountDownLatch(2);
+
+        executor.execute(() -> {
+            ranOn.set(Thread.currentThread().getName());
+            done.countDown();
+        });
+        executor.execute(() -> {
+            done.countDown();
+            throw new IllegalStateException("boom");
+        });
+        assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(ranOn.get()).startsWith("service-executor-");
+        // A task's run time is recorded just after it returns
+        String run = "shop_executor_task_seconds_count{executor=\"service\",phase=\"run\"} 2\n";
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!registry.scrape().contains(run) && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertThat(registry.scrape()).contains(run,
+                "shop_executor_task_seconds_count{executor=\"service\",phase=\"queue\"} 2\n",
+                "shop_executor_task_errors_total{executor=\"service\",phase=\"run\"} 1\n");
+    }
+
+    private ServiceExecutor executor(boolean enabled, int threads, int queueSize) {
+        ServiceExecutor executor = new ServiceExecutor(registry, enabled, threads, queueSize);
+        executor.registerGauges();
+        return executor;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.shop.backend.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Byte-bounded storage, CLOCK eviction and generation checks of ResponseCache
+ */
+class ResponseCacheTest {
+
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @Test
+    void hitsDoNotCallTheLoader() {
+        ResponseCache cache = new ResponseCache(1000);
+
+        byte[] first = cache.get("a", body(100));
+        byte[] second = cache.get("a", body(100));
+
+        assertThat(second).isSameAs(first);
+        assertThat(loads).hasValue(1);
+        assertThat(cache.bytes()).isEqualTo(100);
+    }
+
+    @Test
+    void nullAndOversizedBodiesAreNotStored() {
+        ResponseCache cache = new ResponseCache(1000);
+
+        assertThat(cache.get("missing", () -> null)).isNull();
+        // A quarter of the budget is the largest body kept
+        assertThat(cache.get("large", body(251))).hasSize(251);
+        assertThat(cache.get("limit", body(250))).hasSize(250);
+
+        assertThat(cache.size()).isEqualTo(1);
+        assertThat(cache.bytes()).isEqualTo(250);
+    }
+
+    @Test
+    void evictionGivesRecentlyReadEntriesASecondChance() {
+        ResponseCache cache = new ResponseCache(400);
+        for (String key : List.of("a", "b", "c", "d")) {
+            cache.get(key, body(100));
+        }
+        cache.get("a", body(100));
+
+        cache.get("e", body(100));
+
+        assertThat(cache.bytes()).isEqualTo(400);
+        assertThat(isCached(cache, "a")).isTrue();
+        assertThat(isCached(cache, "b")).isFalse();
+        assertThat(isCached(cache, "e")).isTrue();
+    }
+
+    @Test
+    void invalidationReleasesTheBytes() {
+        ResponseCache cache = new ResponseCache(1000);
+        cache.get("a", body(100));
+        cache.get("b", body(100));
+
+        cache.invalidate(List.of("a", "unknown"));
+        assertThat(cache.bytes()).isEqualTo(100);
+        assertThat(isCached(cache, "a")).isFalse();
+
+        cache.invalidateAll();
+        assertThat(cache.size()).isZero();
+        assertThat(cache.bytes()).isZero();
+    }
+
+    @Test
+    void bodyLoadedAcrossAnInvalidationIsReturnedButNotStored() {
+        ResponseCache cache = new ResponseCache(1000);
+
+        byte[] stale = cache.get("a", () -> {
+            cache.invalidate(List.of("a"));
+            return new byte[100];
+        });
+
+        assertThat(stale).hasSize(100);
+        assertThat(cache.size()).isZero();
+        // Loads after the invalidation are stored again
+        cache.get("a", body(100));
+        assertThat(isCached(cache, "a")).isTrue();
+    }
+
+    private Supplier<byte[]> body(int size) {
+        return () -> {
+            loads.incrementAndGet();
+            return new byte[size];
+        };
+    }
+
+    private static boolean isCached(ResponseCache cache, String key) {
+        return cache.get(key, () -> null) != null;
+    }
+}
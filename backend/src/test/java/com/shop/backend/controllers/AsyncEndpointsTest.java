@@ -0,0 +1,276 @@
+package com.shop.backend.controllers;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shop.backend.async.ServiceExecutor;
+import com.shop.backend.cache.CatalogResponseCache;
+import com.shop.backend.events.ProductChangeEvent;
+import com.shop.backend.metrics.MetricsRegistry;
+import com.shop.backend.models.Product;
+import com.shop.backend.services.core.ConcurrentCartService;
+import com.shop.backend.services.core.IndexedOrderService;
+import com.shop.backend.services.core.IndexedProductService;
+import com.shop.backend.services.core.IndexedUserService;
+import com.shop.backend.services.core.stock.StockReservationEngine;
+import com.shop.backend.storage.FsyncPolicy;
+import com.shop.backend.storage.StorageEngine;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+
+/**
+ * Write endpoints in both execution modes: a saturated pool answers 503
+ * with Retry-After and changes nothing, and inline mode
+ * (shop.async.enabled=false) runs writes on the request thread with the same
+ * responses as the pool
+ */
+class AsyncEndpointsTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+    private final MetricsRegistry registry = new MetricsRegistry();
+    private final CountDownLatch release = new CountDownLatch(1);
+    // Thread that published the last product change, i.e. ran the last product write
+    private final AtomicReference<Thread> productWriter = new AtomicReference<>();
+    private StockReservationEngine stockEngine;
+    private IndexedProductService productService;
+    private ConcurrentCartService cartService;
+    private IndexedOrderService orderService;
+    private IndexedUserService userService;
+    private ServiceExecutor executor;
+    private MockMvc mvc;
+
+    @BeforeEach
+    void setUp() {
+        stockEngine = new StockReservationEngine();
+        productService = new IndexedProductService(stockEngine, storage(), objectMapper, event -> {
+            if (event instanceof ProductChangeEvent) {
+                productWriter.set(Thread.currentThread());
+            }
+        }, "");
+        Product product = new Product("Lamp", 20, "", 100, "Home");
+        product.setId("lamp");
+        productService.createProduct(product);
+        productService.open();
+        cartService = new ConcurrentCartService(productService, storage(), event -> { });
+        cartService.open();
+        orderService = new IndexedOrderService(cartService, productService, stockEngine, storage(), event -> { });
+        orderService.open();
+        userService = new IndexedUserService(storage());
+        userService.open();
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        if (executor != null) {
+            executor.shutdown();
+        }
+        orderService.shutdown();
+        stockEngine.shutdown();
+    }
+
+    @Test
+    void saturatedPoolAnswers503WithRetryAfter() throws Exception {
+        start(new ServiceExecutor(registry, true, 1, 1));
+        saturate();
+        String orderId = orderService.createOrderFromCart(withCart("bob")).getId();
+
+        List<RequestBuilder> writes = List.of(
+                post("/api/products").contentType(MediaType.APPLICATION_JSON).content(productJson("Desk")),
+                put("/api/products/lamp").contentType(MediaType.APPLICATION_JSON).content(productJson("Renamed")),
+                patch("/api/products/lamp/stock?quantity=5"),
+                delete("/api/products/lamp"),
+                post("/api/products/batch").contentType(MediaType.APPLICATION_JSON)
+                        .content("[" + productJson("Shelf") + "]"),
+                post("/api/carts/alice/items?productId=lamp&quantity=1"),
+                post("/api/carts/alice/items/batch").contentType(MediaType.APPLICATION_JSON).content("{\"lamp\":1}"),
+                patch("/api/orders/" + orderId + "/status?status=shipped"),
+                delete("/api/orders/" + orderId),
+                post("/api/users").contentType(MediaType.APPLICATION_JSON).content(userJson("carol")),
+                post("/api/users/login").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"username\":\"carol\",\"password\":\"secret\"}"));
+        for (RequestBuilder write : writes) {
+            MvcResult response = perform(write);
+            assertThat(response.getResponse().getStatus()).isEqualTo(503);
+            assertThat(response.getResponse().getHeader(HttpHeaders.RETRY_AFTER)).isEqualTo("1");
+        }
+
+        assertThat(productService.getAllProducts()).extracting(Product::getName).containsExactly("Lamp");
+        assertThat(productService.getProductById("lamp").getStock()).isEqualTo(99);
+        assertThat(cartService.getCartByUserId("alice")).isNull();
+        assertThat(orderService.getOrderById(orderId).getStatus()).isEqualTo("PENDING");
+        assertThat(userService.getAllUsers()).isEmpty();
+        assertThat(registry.scrape()).contains("shop_executor_rejected_tasks " + writes.size() + "\n");
+
+        // Once the pool drains, the same write goes through
+        release.countDown();
+        MvcResult created = perform(post("/api/users").contentType(MediaType.APPLICATION_JSON)
+                .content(userJson("carol")));
+        assertThat(created.getResponse().getStatus()).isEqualTo(201);
+    }
+
+    @Test
+    void checkoutDoesNotNeedThePool() throws Exception {
+        start(new ServiceExecutor(registry, true, 1, 1));
+        saturate();
+
+        MvcResult result = perform(post("/api/orders/user/" + withCart("alice")));
+
+        assertThat(result.getResponse().getStatus()).isEqualTo(201);
+        assertThat(orderService.getOrderCount("alice")).isEqualTo(1);
+    }
+
+    @Test
+    void inlineModeRunsWritesOnTheRequestThread() throws Exception {
+        start(new ServiceExecutor(registry, false, 0, 0));
+
+        MvcResult result = perform(post("/api/products").contentType(MediaType.APPLICATION_JSON)
+                .content(productJson("Desk")));
+
+        assertThat(result.getResponse().getStatus()).isEqualTo(201);
+        assertThat(productWriter.get()).isSameAs(Thread.currentThread());
+        assertThat(registry.scrape())
+                .contains("shop_executor_task_seconds_count{executor=\"service\",phase=\"queue\"} 0\n");
+    }
+
+    @Test
+    void poolModeRunsWritesOnThePool() throws Exception {
+        start(new ServiceExecutor(registry, true, 2, 16));
+
+        MvcResult result = perform(post("/api/products").contentType(MediaType.APPLICATION_JSON)
+                .content(productJson("Desk")));
+
+        assertThat(result.getResponse().getStatus()).isEqualTo(201);
+        assertThat(productWriter.get().getName()).startsWith("service-executor-");
+    }
+
+    @Test
+    void inlineModeAnswersLikeThePool() throws Exception {
+        start(new ServiceExecutor(registry, false, 0, 0));
+        List<Integer> inline = writeScenario();
+
+        tearDown();
+        setUp();
+        start(new ServiceExecutor(registry, true, 2, 16));
+        List<Integer> pooled = writeScenario();
+
+        assertThat(inline).isEqualTo(pooled).containsExactly(
+                201, 409, 400, 200, 401, 200, 201, 404, 200, 404, 400, 201, 200, 400, 200, 409, 409, 204, 404);
+    }
+
+    // Successes, refusals and errors of every kind, as status codes
+    private List<Integer> writeScenario() throws Exception {
+        List<Integer> statuses = new ArrayList<>();
+        String user = userJson("dave");
+        statuses.add(status(post("/api/users").contentType(MediaType.APPLICATION_JSON).content(user)));
+        statuses.add(status(post("/api/users").contentType(MediaType.APPLICATION_JSON).content(user)));
+        statuses.add(status(post("/api/users").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"email\":\"x@example.com\",\"password\":\"secret\"}")));
+        statuses.add(status(post("/api/users/login").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"username\":\"dave\",\"password\":\"secret\"}")));
+        statuses.add(status(post("/api/users/login").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"username\":\"dave\",\"password\":\"wrong\"}")));
+
+        statuses.add(status(post("/api/carts/dave/items?productId=lamp&quantity=2")));
+        statuses.add(status(post("/api/products").contentType(MediaType.APPLICATION_JSON)
+                .content(productJson("Desk"))));
+        statuses.add(status(put("/api/products/missing").contentType(MediaType.APPLICATION_JSON)
+                .content(productJson("Desk"))));
+        statuses.add(status(patch("/api/products/lamp/stock?quantity=50")));
+        statuses.add(status(patch("/api/products/missing/stock?quantity=50")));
+        statuses.add(status(post("/api/carts/dave/items/batch").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"missing\":1}")));
+
+        MvcResult checkout = perform(post("/api/orders/user/dave"));
+        statuses.add(checkout.getResponse().getStatus());
+        String orderId = objectMapper.readTree(checkout.getResponse().getContentAsString()).get("id").asText();
+        // Carts take any quantity; checkout finds there is not enough stock
+        statuses.add(status(post("/api/carts/dave/items?productId=lamp&quantity=1000")));
+        statuses.add(status(post("/api/orders/user/dave")));
+        statuses.add(status(patch("/api/orders/" + orderId + "/status?status=shipped")));
+        statuses.add(status(patch("/api/orders/" + orderId + "/status?status=pending")));
+        statuses.add(status(delete("/api/orders/" + orderId)));
+        statuses.add(status(delete("/api/products/lamp")));
+        statuses.add(status(delete("/api/products/lamp")));
+        return statuses;
+    }
+
+    private void start(ServiceExecutor executor) {
+        this.executor = executor;
+        executor.registerGauges();
+        mvc = MockMvcBuilders.standaloneSetup(
+                        new ProductController(productService, objectMapper,
+                                new CatalogResponseCache(objectMapper, false, 0), executor),
+                        new CartController(cartService, executor),
+                        new OrderController(orderService, objectMapper, executor),
+                        new UserController(userService, objectMapper, executor))
+                .setControllerAdvice(new ServiceExceptionHandler())
+                .build();
+    }
+
+    // Occupy the pool's one thread and fill its one queue slot until release
+    private void saturate() throws InterruptedException {
+        CountDownLatch running = new CountDownLatch(1);
+        executor.execute(() -> {
+            running.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertThat(running.await(5, TimeUnit.SECONDS)).isTrue();
+        executor.execute(() -> { });
+    }
+
+    private String withCart(String userId) {
+        cartService.addToCart(userId, "lamp", 1);
+        return userId;
+    }
+
+    // Run the request, waiting for and following the async dispatch of endpoints that return a future
+    private MvcResult perform(RequestBuilder request) throws Exception {
+        MvcResult result = mvc.perform(request).andReturn();
+        if (result.getRequest().isAsyncStarted()) {
+            result.getAsyncResult(TimeUnit.SECONDS.toMillis(10));
+            return mvc.perform(asyncDispatch(result)).andReturn();
+        }
+        return result;
+    }
+
+    private int status(RequestBuilder request) throws Exception {
+        return perform(request).getResponse().getStatus();
+    }
+
+    private String productJson(String name) throws Exception {
+        return objectMapper.writeValueAsString(new Product(name, 10, "", 5, "Home"));
+    }
+
+    private String userJson(String username) throws Exception {
+        return objectMapper.writeValueAsString(
+                Map.of("username", username, "email", username + "@example.com", "password", "secret"));
+    }
+
+    private StorageEngine storage() {
+        return new StorageEngine(false, "data", FsyncPolicy.OS, 0, 0, objectMapper);
+    }
+}
@@ -0,0 +1,418 @@
+package com.shop.backend.controllers;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shop.backend.async.ServiceExecutor;
+import com.shop.backend.cache.CatalogResponseCache;
+import com.shop.backend.events.CartChangeEvent;
+import com.shop.backend.metrics.MetricsRegistry;
+import com.shop.backend.models.Cart;
+import com.shop.backend.models.Order;
+import com.shop.backend.models.Product;
+import com.shop.backend.services.core.ConcurrentCartService;
+import com.shop.backend.services.core.IndexedOrderService;
+import com.shop.backend.services.core.IndexedProductService;
+import com.shop.backend.services.core.stock.StockReservationEngine;
+import com.shop.backend.storage.DurableStore;
+import com.shop.backend.storage.FsyncPolicy;
+import com.shop.backend.storage.Mutation;
+import com.shop.backend.storage.MutationLog;
+import com.shop.backend.storage.StorageEngine;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+/**
+ * Batch endpoints apply a whole batch under one lock and log it with one
+ * append, skip what the batch contract says to skip, and answer 400 for
+ * batches that cannot be applied
+ */
+class BatchEndpointsTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+    private final RecordingStorage storage = new RecordingStorage(objectMapper);
+    private final AtomicInteger cartEvents = new AtomicInteger();
+    private StockReservationEngine stockEngine;
+    private IndexedProductService productService;
+    private ConcurrentCartService cartService;
+    private IndexedOrderService orderService;
+    private MockMvc mvc;
+
+    @BeforeEach
+    void setUp() {
+        stockEngine = new StockReservationEngine();
+        productService = new IndexedProductService(stockEngine, storage, objectMapper, event -> { }, "");
+        for (String id : new String[] {"a", "b", "c"}) {
+            Product product = new Product("Product " + id, 10, "", 1_000_000, "Books");
+            product.setId(id);
+            productService.createProduct(product);
+        }
+        productService.open();
+        cartService = new ConcurrentCartService(productService, storage, event -> {
+            if (event instanceof CartChangeEvent) {
+                cartEvents.incrementAndGet();
+            }
+        });
+        cartService.open();
+        orderService = new IndexedOrderService(cartService, productService, stockEngine, storage, event -> { });
+        orderService.open();
+
+        ServiceExecutor executor = new ServiceExecutor(new MetricsRegistry(), false, 0, 0);
+        mvc = MockMvcBuilders.standaloneSetup(
+                        new ProductController(productService, objectMapper,
+                                new CatalogResponseCache(objectMapper, false, 0), executor),
+                        new CartController(cartService, executor),
+                        new OrderController(orderService, objectMapper, executor))
+                .setControllerAdvice(new ServiceExceptionHandler())
+                .build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        orderService.shutdown();
+        stockEngine.shutdown();
+    }
+
+    @Test
+    void upsertUpdatesAndCreatesInOneAppend() throws Exception {
+        storage.clear();
+        MvcResult result = perform(post("/api/products/batch").contentType(MediaType.APPLICATION_JSON).content(
+                "[{\"id\":\"a\",\"name\":\"Renamed\",\"price\":12,\"stock\":5,\"category\":\"Books\"},"
+                        + "null,"
+                        + "{\"name\":\"Fresh\",\"price\":3,\"stock\":1,\"category\":\"Toys\"}]"));
+
+        assertThat(result.getResponse().getStatus()).isEqualTo(200);
+        JsonNode stored = json(result);
+        assertThat(stored).hasSize(2);
+        assertThat(stored.get(0).get("id").asText()).isEqualTo("a");
+        String created = stored.get(1).get("id").asText();
+        assertThat(created).isNotBlank();
+        assertThat(productService.getProductById("a").getName()).isEqualTo("Renamed");
+        assertThat(productService.getProductById(created).getName()).isEqualTo("Fresh");
+        assertThat(storage.batches("products")).containsExactly(List.of("a", created));
+    }
+
+    @Test
+    void emptyUpsertStoresNothing() throws Exception {
+        storage.clear();
+        MvcResult result = perform(post("/api/products/batch").contentType(MediaType.APPLICATION_JSON)
+                .content("[]"));
+
+        assertThat(result.getResponse().getStatus()).isEqualTo(200);
+        assertThat(json(result)).isEmpty();
+        assertThat(storage.batches("products")).isEmpty();
+    }
+
+    @Test
+    void racingUpsertsOfTheSameProductsNeverInterleave() throws Exception {
+        storage.clear();
+        int rounds = 200;
+        for (int round = 0; round < rounds; round++) {
+            // Opposite orders, so without one lock each batch could win one product
+            List<Product> first = List.of(priced("a", 1), priced("b", 1));
+            List<Product> second = List.of(priced("b", 2), priced("a", 2));
+            race(() -> productService.upsertProducts(first), () -> productService.upsertProducts(second));
+
+            assertThat(productService.getProductById("a").getPrice())
+                    .as("round %d", round).isEqualTo(productService.getProductById("b").getPrice());
+        }
+        List<List<String>> batches = storage.batches("products");
+        assertThat(batches).hasSize(2 * rounds).allSatisfy(batch -> assertThat(batch).hasSize(2));
+    }
+
+    @Test
+    void batchGetKeepsInputOrderAndSkipsUnknownIds() throws Exception {
+        MvcResult result = perform(get("/api/products/batch?ids=c,missing,a,c"));
+
+        assertThat(result.getResponse().getStatus()).isEqualTo(200);
+        List<String> ids = new ArrayList<>();
+        json(result).forEach(product -> ids.add(product.get("id").asText()));
+        assertThat(ids).containsExactly("c", "a", "c");
+        assertThat(json(perform(get("/api/products/batch?ids=missing")))).isEmpty();
+    }
+
+    @Test
+    void malformedProductBatchesAnswer400() throws Exception {
+        storage.clear();
+        assertThat(status(perform(get("/api/products/batch")))).isEqualTo(400);
+        assertThat(status(perform(post("/api/products/batch").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"id\":\"a\"}")))).isEqualTo(400);
+        assertThat(status(perform(post("/api/products/batch").contentType(MediaType.APPLICATION_JSON)
+                .content("[{\"id\":")))).isEqualTo(400);
+        assertThat(status(perform(post("/api/products/batch").contentType(MediaType.APPLICATION_JSON))))
+                .isEqualTo(400);
+        assertThat(productService.getProductById("a").getName()).isEqualTo("Product a");
+        assertThat(storage.batches("products")).isEmpty();
+    }
+
+    @Test
+    void cartBatchAddsEveryLineWithOneRecordAndOneEvent() throws Exception {
+        cartService.addToCart("alice", "a", 1);
+        storage.clear();
+        cartEvents.set(0);
+
+        MvcResult result = perform(post("/api/carts/alice/items/batch").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"a\":2,\"b\":3}"));
+
+        assertThat(result.getResponse().getStatus()).isEqualTo(200);
+        Map<String, Integer> quantities = new HashMap<>();
+        json(result).get("items").forEach(item ->
+                quantities.put(item.get("productId").asText(), item.get("quantity").asInt()));
+        assertThat(quantities).containsOnly(Map.entry("a", 3), Map.entry("b", 3));
+        assertThat(storage.batches("carts")).containsExactly(List.of("alice"));
+        assertThat(cartEvents.get()).isEqualTo(1);
+    }
+
+    @Test
+    void invalidCartBatchesAnswer400AndAddNothing() throws Exception {
+        cartService.addToCart("alice", "a", 1);
+        storage.clear();
+        cartEvents.set(0);
+
+        String[] bodies = {
+                "{\"a\":2,\"missing\":1}",
+                "{\"a\":2,\"b\":0}",
+                "{\"a\":-1}",
+                "{\"a\":null}",
+                "{}",
+                "{\"a\":\"two\"}",
+                "[\"a\"]"
+        };
+        for (String body : bodies) {
+            MvcResult result = perform(post("/api/carts/alice/items/batch").contentType(MediaType.APPLICATION_JSON)
+                    .content(body));
+            assertThat(status(result)).as(body).isEqualTo(400);
+        }
+
+        assertThat(cartService.getCartSize("alice")).isEqualTo(1);
+        assertThat(storage.batches("carts")).isEmpty();
+        assertThat(cartEvents.get()).isZero();
+    }
+
+    @Test
+    void readersNeverSeeHalfACartBatch() throws Exception {
+        cartService.createCart("alice");
+        int writers = 4;
+        int batchesPerWriter = 500;
+        AtomicBoolean done = new AtomicBoolean();
+        List<String> torn = Collections.synchronizedList(new ArrayList<>());
+        Thread reader = new Thread(() -> {
+            while (!done.get()) {
+                Cart cart = cartService.getCartByUserId("alice");
+                if (quantity(cart, "a") != quantity(cart, "b")) {
+                    torn.add(quantity(cart, "a") + "/" + quantity(cart, "b"));
+                }
+            }
+        });
+        reader.start();
+
+        Runnable[] tasks = new Runnable[writers];
+        for (int i = 0; i < writers; i++) {
+            tasks[i] = () -> {
+                for (int j = 0; j < batchesPerWriter; j++) {
+                    cartService.addItemsToCart("alice", Map.of("a", 1, "b", 1));
+                }
+            };
+        }
+        race(tasks);
+        done.set(true);
+        reader.join();
+
+        assertThat(torn).isEmpty();
+        Cart cart = cartService.getCartByUserId("alice");
+        assertThat(quantity(cart, "a")).isEqualTo(writers * batchesPerWriter);
+        assertThat(quantity(cart, "b")).isEqualTo(writers * batchesPerWriter);
+    }
+
+    @Test
+    void statusBatchMovesWhatItMayInOneAppend() throws Exception {
+        Order first = checkout("alice", "a");
+        Order second = checkout("bob", "b");
+        Order delivered = checkout("carol", "c");
+        orderService.updateOrderStatus(delivered.getId(), "SHIPPED");
+        orderService.updateOrderStatus(delivered.getId(), "DELIVERED");
+        storage.clear();
+
+        String body = objectMapper.writeValueAsString(
+                List.of(first.getId(), "missing", second.getId(), first.getId(), delivered.getId()));
+        MvcResult result = perform(patch("/api/orders/status?status=shipped")
+                .contentType(MediaType.APPLICATION_JSON).content(body));
+
+        assertThat(result.getResponse().getStatus()).isEqualTo(200);
+        assertThat(ids(json(result))).containsExactly(first.getId(), second.getId());
+        assertThat(storage.batches("orders")).containsExactly(List.of(first.getId(), second.getId()));
+        assertThat(orderService.getOrderById(delivered.getId()).getStatus()).isEqualTo("DELIVERED");
+
+        // Orders already in the status are reported again but not logged again
+        storage.clear();
+        MvcResult repeated = perform(patch("/api/orders/status?status=SHIPPED")
+                .contentType(MediaType.APPLICATION_JSON).content(body));
+        assertThat(ids(json(repeated))).containsExactly(first.getId(), second.getId());
+        assertThat(storage.batches("orders")).isEmpty();
+
+        // A known status none of the orders may move to is not an error, it moves nothing
+        MvcResult refused = perform(patch("/api/orders/status?status=pending")
+                .contentType(MediaType.APPLICATION_JSON).content(body));
+        assertThat(status(refused)).isEqualTo(200);
+        assertThat(json(refused)).isEmpty();
+        assertThat(storage.batches("orders")).isEmpty();
+    }
+
+    @Test
+    void invalidStatusBatchesAnswer400() throws Exception {
+        Order order = checkout("alice", "a");
+        storage.clear();
+        String body = objectMapper.writeValueAsString(List.of(order.getId()));
+
+        assertThat(status(perform(patch("/api/orders/status?status=lost")
+                .contentType(MediaType.APPLICATION_JSON).content(body)))).isEqualTo(400);
+        assertThat(status(perform(patch("/api/orders/status")
+                .contentType(MediaType.APPLICATION_JSON).content(body)))).isEqualTo(400);
+        assertThat(status(perform(patch("/api/orders/status?status=shipped")
+                .contentType(MediaType.APPLICATION_JSON)))).isEqualTo(400);
+        assertThat(status(perform(patch("/api/orders/status?status=shipped")
+                .contentType(MediaType.APPLICATION_JSON).content("{\"id\":1}")))).isEqualTo(400);
+
+        assertThat(orderService.getOrderById(order.getId()).getStatus()).isEqualTo("PENDING");
+        assertThat(storage.batches("orders")).isEmpty();
+    }
+
+    // Run the request, following the async dispatch of endpoints that return a future
+    private MvcResult perform(RequestBuilder request) throws Exception {
+        MvcResult result = mvc.perform(request).andReturn();
+        if (result.getRequest().isAsyncStarted()) {
+            return mvc.perform(asyncDispatch(result)).andReturn();
+        }
+        return result;
+    }
+
+    private static int status(MvcResult result) {
+        return result.getResponse().getStatus();
+    }
+
+    private JsonNode json(MvcResult result) throws Exception {
+        return objectMapper.readTree(result.getResponse().getContentAsString());
+    }
+
+    private static List<String> ids(JsonNode items) {
+        List<String> ids = new ArrayList<>();
+        items.forEach(item -> ids.add(item.get("id").asText()));
+        return ids;
+    }
+
+    private Order checkout(String userId, String productId) {
+        cartService.addToCart(userId, productId, 1);
+        Order order = orderService.createOrderFromCart(userId);
+        assertThat(order).isNotNull();
+        return order;
+    }
+
+    private static Product priced(String id, double price) {
+        Product product = new Product("Product " + id, price, "", 1_000_000, "Books");
+        product.setId(id);
+        return product;
+    }
+
+    private static int quantity(Cart cart, String productId) {
+        for (Cart.CartItem item : cart.getItems()) {
+            if (item.getProductId().equals(productId)) {
+                return item.getQuantity();
+            }
+        }
+        return 0;
+    }
+
+    // Start every task at once and wait for all of them
+    private static void race(Runnable... tasks) throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (Runnable task : tasks) {
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                task.run();
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+    }
+
+    /**
+     * Storage whose logs keep the keys of every append, one list per append,
+     * by store name
+     */
+    private static final class RecordingStorage extends StorageEngine {
+
+        private final Map<String, List<List<String>>> appends = new ConcurrentHashMap<>();
+
+        private RecordingStorage(ObjectMapper objectMapper) {
+            super(false, "data", FsyncPolicy.OS, 0, 0, objectMapper);
+        }
+
+        @Override
+        public <T> MutationLog attach(DurableStore<T> store) {
+            List<List<String>> batches = appends.computeIfAbsent(store.storeName(),
+                    name -> Collections.synchronizedList(new ArrayList<>()));
+            return new MutationLog() {
+                @Override
+                public void append(Mutation mutation) {
+                    appendAll(List.of(mutation));
+                }
+
+                @Override
+                public void appendAll(List<Mutation> mutations) {
+                    // Like the write-ahead log, an empty append writes nothing
+                    if (mutations.isEmpty()) {
+                        return;
+                    }
+                    List<String> keys = new ArrayList<>(mutations.size());
+                    for (Mutation mutation : mutations) {
+                        keys.add(mutation.getKey());
+                    }
+                    batches.add(keys);
+                }
+            };
+        }
+
+        List<List<String>> batches(String storeName) {
+            List<List<String>> batches = appends.get(storeName);
+            assertThat(batches).as("log of %s", storeName).isNotNull();
+            synchronized (batches) {
+                return new ArrayList<>(batches);
+            }
+        }
+
+        void clear() {
+            appends.values().forEach(List::clear);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.shop.backend.controllers;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * ETags and 304 answers for versioned GETs
+ */
+class ConditionalGetsTest {
+
+    private final AtomicInteger builds = new AtomicInteger();
+
+    @Test
+    void firstRequestGetsTheBodyAndAnETag() {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        ResponseEntity<String> answer = ConditionalGets.unlessNotModified(request(null, response), 7, body());
+
+        assertThat(answer.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getHeader(HttpHeaders.ETAG)).endsWith("-7\"");
+        assertThat(builds).hasValue(1);
+    }
+
+    @Test
+    void currentTagGets304WithoutBuildingTheBody() {
+        String etag = etagFor(7);
+
+        ResponseEntity<String> answer = ConditionalGets.unlessNotModified(
+                request(etag, new MockHttpServletResponse()), 7, body());
+
+        assertThat(answer.getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+        assertThat(answer.getBody()).isNull();
+        assertThat(builds).hasValue(1);
+    }
+
+    @Test
+    void olderTagGetsTheNewBody() {
+        String etag = etagFor(7);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        ResponseEntity<String> answer = ConditionalGets.unlessNotModified(request(etag, response), 8, body());
+
+        assertThat(answer.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getHeader(HttpHeaders.ETAG)).isNotEqualTo(etag).endsWith("-8\"");
+    }
+
+    @Test
+    void untrackedVersionsAreNeverConditional() {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        ResponseEntity<String> answer = ConditionalGets.unlessNotModified(request("\"anything\"", response), -1, body());
+
+        assertThat(answer.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getHeader(HttpHeaders.ETAG)).isNull();
+    }
+
+    private String etagFor(long version) {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        ConditionalGets.unlessNotModified(request(null, response), version, body());
+        return response.getHeader(HttpHeaders.ETAG);
+    }
+
+    private static ServletWebRequest request(String ifNoneMatch, MockHttpServletResponse response) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/products");
+        if (ifNoneMatch != null) {
+            request.addHeader(HttpHeaders.IF_NONE_MATCH, ifNoneMatch);
+        }
+        return new ServletWebRequest(request, response);
+    }
+
+    private Supplier<ResponseEntity<String>> body() {
+        return () -> {
+            builds.incrementAndGet();
+            return ResponseEntity.ok("body");
+        };
+    }
+}
@@ -0,0 +1,138 @@
+package com.shop.backend.controllers;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shop.backend.async.ServiceExecutor;
+import com.shop.backend.cache.CatalogResponseCache;
+import com.shop.backend.metrics.EndpointMetricsInterceptor;
+import com.shop.backend.metrics.MetricsRegistry;
+import com.shop.backend.models.Product;
+import com.shop.backend.services.core.IndexedProductService;
+import com.shop.backend.services.core.stock.StockReservationEngine;
+import com.shop.backend.storage.FsyncPolicy;
+import com.shop.backend.storage.StorageEngine;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Requests timed by the endpoint interceptor show up in the /metrics scrape
+ * under their path pattern, and the scrape is refused to remote callers
+ */
+class MetricsEndpointTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+    private final MetricsRegistry registry = new MetricsRegistry();
+    private StockReservationEngine stockEngine;
+    private String productId;
+    private MockMvc mvc;
+
+    @BeforeEach
+    void setUp() {
+        stockEngine = new StockReservationEngine();
+        IndexedProductService productService = new IndexedProductService(stockEngine,
+                new StorageEngine(false, "data", FsyncPolicy.OS, 0, 0, objectMapper), objectMapper, event -> { }, "");
+        productId = productService.createProduct(new Product("Lamp", 20, "", 5, "Home")).getId();
+        productService.open();
+        mvc = MockMvcBuilders.standaloneSetup(
+                        new ProductController(productService, objectMapper,
+                                new CatalogResponseCache(objectMapper, false, 0),
+                                new ServiceExecutor(registry, false, 0, 0)),
+                        new MetricsController(registry, true))
+                .addInterceptors(new EndpointMetricsInterceptor(registry))
+                .build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        stockEngine.shutdown();
+    }
+
+    @Test
+    void timedRequestsAreScrapedByPathPattern() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            mvc.perform(get("/api/products/" + productId)).andExpect(status().isOk());
+        }
+        mvc.perform(get("/api/products/missing")).andExpect(status().isNotFound());
+
+        String scrape = mvc.perform(get("/metrics")).andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith("text/plain"))
+                .andReturn().getResponse().getContentAsString();
+        Map<String, String> samples = samples(scrape);
+
+        String labels = "endpoint=\"GET /api/products/{id}\"";
+        assertThat(samples).containsEntry("shop_http_request_seconds_count{" + labels + "}", "4");
+        assertThat(samples).containsEntry("shop_http_request_errors_total{" + labels + "}", "1");
+        for (String quantile : new String[] {"0.5", "0.99", "0.999"}) {
+            String sample = samples.get("shop_http_request_seconds{" + labels + ",quantile=\"" + quantile + "\"}");
+            assertThat(Double.parseDouble(sample)).isPositive();
+        }
+        double p50 = Double.parseDouble(samples.get("shop_http_request_seconds{" + labels + ",quantile=\"0.5\"}"));
+        double max = Double.parseDouble(samples.get("shop_http_request_seconds_max{" + labels + "}"));
+        double sum = Double.parseDouble(samples.get("shop_http_request_seconds_sum{" + labels + "}"));
+        assertThat(p50).isLessThanOrEqualTo(max);
+        assertThat(max).isLessThanOrEqualTo(sum);
+        // The executor registers its phases up front, so they are scraped before any task ran
+        assertThat(scrape).contains("# TYPE shop_http_request_seconds summary\n",
+                "# TYPE shop_http_request_seconds_max gauge\n",
+                "# TYPE shop_http_request_errors_total counter\n",
+                "shop_executor_task_seconds_count{executor=\"service\",phase=\"run\"} 0\n");
+    }
+
+    @Test
+    void gaugesAreReadAtScrapeTime() throws Exception {
+        long[] value = {1};
+        registry.gauge("shop_test_gauge", "A test gauge", () -> value[0]);
+        registry.gauge("shop_test_labelled", "A labelled gauge", "kind", () -> Map.of("b\"q", 2L, "a", 1L));
+
+        assertThat(samples(scrape())).containsEntry("shop_test_gauge", "1");
+        value[0] = 42;
+        String scrape = scrape();
+        assertThat(samples(scrape)).containsEntry("shop_test_gauge", "42");
+        // Label values are sorted and escaped
+        assertThat(scrape).contains("shop_test_labelled{kind=\"a\"} 1\nshop_test_labelled{kind=\"b\\\"q\"} 2\n");
+    }
+
+    @Test
+    void remoteScrapesAreRefused() throws Exception {
+        mvc.perform(get("/metrics").with(request -> {
+            request.setRemoteAddr("203.0.113.9");
+            return request;
+        })).andExpect(status().isForbidden());
+        mvc.perform(get("/metrics").with(request -> {
+            request.setRemoteAddr("::1");
+            return request;
+        })).andExpect(status().isOk());
+
+        MockMvc open = MockMvcBuilders.standaloneSetup(new MetricsController(registry, false)).build();
+        open.perform(get("/metrics").with(request -> {
+            request.setRemoteAddr("203.0.113.9");
+            return request;
+        })).andExpect(status().isOk());
+    }
+
+    private String scrape() throws Exception {
+        return mvc.perform(get("/metrics")).andReturn().getResponse().getContentAsString();
+    }
+
+    // Sample name with labels -> value, comments skipped
+    private static Map<String, String> samples(String scrape) {
+        Map<String, String> samples = new HashMap<>();
+        for (String line : scrape.split("\n")) {
+            if (!line.startsWith("#") && !line.isEmpty()) {
+                int space = line.lastIndexOf(' ');
+                samples.put(line.substring(0, space), line.substring(space + 1));
+            }
+        }
+        return samples;
+    }
+}
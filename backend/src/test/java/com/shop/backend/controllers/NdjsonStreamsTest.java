@@ -0,0 +1,94 @@
+package com.shop.backend.controllers;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shop.backend.models.Page;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.BiFunction;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class NdjsonStreamsTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void writesOneLinePerItemAcrossPagesAndFlushesEachPage() throws IOException {
+        List<Integer> all = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            all.add(i);
+        }
+        List<String> cursors = new ArrayList<>();
+        // Pages of three, whatever limit is asked for
+        BiFunction<String, Integer, Page<Integer>> pager = (cursor, limit) -> {
+            cursors.add(cursor);
+            assertThat(limit).isEqualTo(Page.MAX_LIMIT);
+            int start = cursor == null ? 0 : Integer.parseInt(cursor) + 1;
+            int end = Math.min(start + 3, all.size());
+            return new Page<>(all.subList(start, end), end < all.size() ? Integer.toString(end - 1) : null);
+        };
+
+        ResponseEntity<StreamingResponseBody> response = NdjsonStreams.stream(objectMapper, pager);
+        assertThat(response.getHeaders().getContentType()).isEqualTo(MediaType.APPLICATION_NDJSON);
+        CountingStream out = new CountingStream();
+        response.getBody().writeTo(out);
+
+        assertThat(out.lines()).containsExactly("0", "1", "2", "3", "4", "5", "6", "7", "8", "9");
+        assertThat(cursors).containsExactly(null, "2", "5", "8");
+        assertThat(out.flushes).isEqualTo(4);
+    }
+
+    @Test
+    void serializesItemsWithTheMapper() throws IOException {
+        BiFunction<String, Integer, Page<List<String>>> pager =
+                (cursor, limit) -> new Page<>(Arrays.asList(Arrays.asList("a", "b\nc")), null);
+        CountingStream out = new CountingStream();
+        NdjsonStreams.stream(objectMapper, pager).getBody().writeTo(out);
+
+        // The newline inside a value is escaped, so the item stays on one line
+        assertThat(out.lines()).containsExactly("[\"a\",\"b\\nc\"]");
+    }
+
+    @Test
+    void aRejectedCursorEndsTheStream() throws IOException {
+        BiFunction<String, Integer, Page<Integer>> pager =
+                (cursor, limit) -> cursor == null ? new Page<>(Arrays.asList(1, 2), "gone") : null;
+        CountingStream out = new CountingStream();
+        NdjsonStreams.stream(objectMapper, pager).getBody().writeTo(out);
+
+        assertThat(out.lines()).containsExactly("1", "2");
+    }
+
+    @Test
+    void anEmptyListingWritesNothing() throws IOException {
+        BiFunction<String, Integer, Page<Integer>> pager = (cursor, limit) -> new Page<>(new ArrayList<>(), null);
+        CountingStream out = new CountingStream();
+        NdjsonStreams.stream(objectMapper, pager).getBody().writeTo(out);
+
+        assertThat(out.size()).isZero();
+    }
+
+    private static final class CountingStream extends ByteArrayOutputStream {
+        private int flushes;
+
+        @Override
+        public void flush() {
+            flushes++;
+        }
+
+        private List<String> lines() {
+            String text = new String(toByteArray(), StandardCharsets.UTF_8);
+            assertThat(text).endsWith("\n");
+            return Arrays.asList(text.substring(0, text.length() - 1).split("\n"));
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.shop.backend.controllers;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shop.backend.async.ServiceExecutor;
+import com.shop.backend.cache.CatalogResponseCache;
+import com.shop.backend.metrics.MetricsRegistry;
+import com.shop.backend.models.Page;
+import com.shop.backend.models.Product;
+import com.shop.backend.models.User;
+import com.shop.backend.services.core.IndexedProductService;
+import com.shop.backend.services.core.IndexedUserService;
+import com.shop.backend.services.core.stock.StockReservationEngine;
+import com.shop.backend.storage.FsyncPolicy;
+import com.shop.backend.storage.StorageEngine;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Cursor pages and NDJSON streams through the controllers, over more items
+ * than one stream page holds
+ */
+class PaginationEndpointsTest {
+
+    private static final int PRODUCTS = Page.MAX_LIMIT + 123;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+    private StockReservationEngine stockEngine;
+    private IndexedProductService productService;
+    private IndexedUserService userService;
+    private MockMvc mvc;
+
+    @BeforeEach
+    void setUp() {
+        stockEngine = new StockReservationEngine();
+        productService = new IndexedProductService(stockEngine, storage(), objectMapper, event -> { }, "");
+        for (int i = 0; i < PRODUCTS; i++) {
+            productService.createProduct(new Product("Product " + i, i, "", 1, "Books"));
+        }
+        productService.open();
+        userService = new IndexedUserService(storage());
+        userService.open();
+        for (int i = 0; i < 7; i++) {
+            userService.createUser(new User("user-" + i, "user-" + i + "@example.com", "secret", "CUSTOMER"));
+        }
+        ServiceExecutor executor = new ServiceExecutor(new MetricsRegistry(), false, 0, 0);
+        mvc = MockMvcBuilders.standaloneSetup(
+                new ProductController(productService, objectMapper,
+                        new CatalogResponseCache(objectMapper, false, 0), executor),
+                new UserController(userService, objectMapper, executor)).build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        stockEngine.shutdown();
+    }
+
+    @Test
+    void productCursorsRoundTripInCatalogOrder() throws Exception {
+        List<String> seen = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            String url = "/api/products/page?limit=100" + (cursor != null ? "&cursor=" + cursor : "");
+            JsonNode page = json(mvc.perform(get(url)).andExpect(status().isOk()).andReturn());
+            assertThat(page.get("items").size()).isLessThanOrEqualTo(100);
+            page.get("items").forEach(item -> seen.add(item.get("id").asText()));
+            cursor = page.hasNonNull("nextCursor") ? page.get("nextCursor").asText() : null;
+            pages++;
+        } while (cursor != null);
+
+        assertThat(seen).isEqualTo(ids(productService.getAllProducts()));
+        assertThat(pages).isEqualTo((PRODUCTS + 99) / 100);
+    }
+
+    @Test
+    void limitsAreClamped() throws Exception {
+        JsonNode big = json(mvc.perform(get("/api/products/page?limit=100000")).andReturn());
+        assertThat(big.get("items").size()).isEqualTo(Page.MAX_LIMIT);
+        JsonNode defaulted = json(mvc.perform(get("/api/products/page?limit=0")).andReturn());
+        assertThat(defaulted.get("items").size()).isEqualTo(Page.DEFAULT_LIMIT);
+    }
+
+    @Test
+    void badCursorsAnswer400() throws Exception {
+        mvc.perform(get("/api/products/page?cursor=not-a-cursor")).andExpect(status().isBadRequest());
+        mvc.perform(get("/api/users/page?cursor=12abc")).andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void userCursorsRoundTrip() throws Exception {
+        JsonNode first = json(mvc.perform(get("/api/users/page?limit=4")).andExpect(status().isOk()).andReturn());
+        JsonNode second = json(mvc.perform(get("/api/users/page?limit=4&cursor=" + first.get("nextCursor").asText()))
+                .andExpect(status().isOk()).andReturn());
+
+        List<String> seen = new ArrayList<>();
+        first.get("items").forEach(item -> seen.add(item.get("username").asText()));
+        second.get("items").forEach(item -> seen.add(item.get("username").asText()));
+        assertThat(seen).containsExactly("user-0", "user-1", "user-2", "user-3", "user-4", "user-5", "user-6");
+        assertThat(second.hasNonNull("nextCursor")).isFalse();
+    }
+
+    @Test
+    void productStreamCrossesPageBoundaries() throws Exception {
+        MvcResult started = mvc.perform(get("/api/products/stream")).andReturn();
+        String body = mvc.perform(asyncDispatch(started)).andExpect(status().isOk()).andReturn()
+                .getResponse().getContentAsString();
+
+        List<String> streamed = new ArrayList<>();
+        for (String line : body.split("\n")) {
+            streamed.add(objectMapper.readTree(line).get("id").asText());
+        }
+        assertThat(streamed).isEqualTo(ids(productService.getAllProducts()));
+    }
+
+    private JsonNode json(MvcResult result) throws Exception {
+        return objectMapper.readTree(result.getResponse().getContentAsString());
+    }
+
+    private static List<String> ids(List<Product> products) {
+        List<String> ids = new ArrayList<>();
+        for (Product product : products) {
+            ids.add(product.getId());
+        }
+        return ids;
+    }
+
+    private StorageEngine storage() {
+        return new StorageEngine(false, "data", FsyncPolicy.OS, 0, 0, objectMapper);
+    }
+}
@@ -0,0 +1,66 @@
+package com.shop.backend.controllers;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shop.backend.async.ServiceExecutor;
+import com.shop.backend.metrics.MetricsRegistry;
+import com.shop.backend.services.core.IndexedUserService;
+import com.shop.backend.storage.FsyncPolicy;
+import com.shop.backend.storage.StorageEngine;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Status codes for refused user writes, surfaced through the async dispatch
+ */
+class ServiceExceptionHandlerTest {
+
+    private MockMvc mvc;
+
+    @BeforeEach
+    void setUp() {
+        ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+        IndexedUserService userService = new IndexedUserService(
+                new StorageEngine(false, "data", FsyncPolicy.OS, 0, 0, objectMapper));
+        userService.open();
+        ServiceExecutor executor = new ServiceExecutor(new MetricsRegistry(), false, 0, 0);
+        mvc = MockMvcBuilders.standaloneSetup(new UserController(userService, objectMapper, executor))
+                .setControllerAdvice(new ServiceExceptionHandler())
+                .build();
+    }
+
+    @Test
+    void createAnswers400ForABlankUsernameAnd409ForATakenOne() throws Exception {
+        expectAsync(post("/api/users"), "{\"username\":\"alice\",\"email\":\"alice@example.com\"}", 201);
+        expectAsync(post("/api/users"), "{\"username\":\" \",\"email\":\"x@example.com\"}", 400);
+        expectAsync(post("/api/users"), "{\"username\":\"Alice\",\"email\":\"y@example.com\"}", 409);
+    }
+
+    @Test
+    void updateAnswers404ForAnUnknownUserAnd409ForATakenUsername() throws Exception {
+        expectAsync(post("/api/users"), "{\"username\":\"alice\",\"email\":\"alice@example.com\"}", 201);
+        expectAsync(put("/api/users/missing"), "{\"username\":\"bob\"}", 404);
+        String bob = "{\"username\":\"bob\",\"email\":\"bob@example.com\"}";
+        MvcResult created = mvc.perform(post("/api/users").contentType(MediaType.APPLICATION_JSON).content(bob))
+                .andReturn();
+        String id = new ObjectMapper().readTree(mvc.perform(asyncDispatch(created)).andReturn()
+                .getResponse().getContentAsString()).get("id").asText();
+        expectAsync(put("/api/users/" + id), "{\"username\":\"ALICE\"}", 409);
+        expectAsync(put("/api/users/" + id), "{\"username\":\"\"}", 400);
+    }
+
+    private void expectAsync(MockHttpServletRequestBuilder request,
+                             String body, int expected) throws Exception {
+        MvcResult started = mvc.perform(request.contentType(MediaType.APPLICATION_JSON).content(body)).andReturn();
+        mvc.perform(asyncDispatch(started)).andExpect(status().is(expected));
+    }
+}
@@ -0,0 +1,159 @@
+package com.shop.backend.events;
+
+import com.shop.backend.services.api.CartService;
+import com.shop.backend.services.api.OrderService;
+import com.shop.backend.services.api.ProductService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Per-subscriber coalescing and resync of the change feed
+ * The sink blocks on its first batch so later events wait in the buffer.
+ * A sentinel product event, filtered out of the subscription, tells the
+ * test when the dispatcher has handed every earlier event to the buffer.
+ */
+class ChangeFeedTest {
+
+    private static final String SENTINEL = "sentinel";
+
+    private final ProductService productService = mock(ProductService.class);
+    private ChangeFeed feed;
+
+    @AfterEach
+    void tearDown() {
+        feed.close();
+    }
+
+    @Test
+    void waitingChangesToOneEntityAreCoalesced() throws Exception {
+        feed = new ChangeFeed(productService, mock(CartService.class), mock(OrderService.class), 16, 1024);
+        BlockingSink sink = subscribe();
+        product(ProductChangeEvent.Type.CREATED, "p-1");
+        sink.awaitFirstBatch();
+
+        product(ProductChangeEvent.Type.UPDATED, "p-2");
+        product(ProductChangeEvent.Type.STOCK, "p-2");
+        product(ProductChangeEvent.Type.CREATED, "p-3");
+        product(ProductChangeEvent.Type.UPDATED, "p-3");
+        product(ProductChangeEvent.Type.CREATED, "p-4");
+        product(ProductChangeEvent.Type.DELETED, "p-4");
+        awaitBuffered();
+        sink.release();
+
+        Batch batch = sink.next();
+        assertThat(batch.dropped).isZero();
+        assertThat(batch.describe()).containsExactly("p-2 stock", "p-3 created", "p-4 deleted");
+    }
+
+    @Test
+    void fullBufferDropsTheOldestAndAsksForAResync() throws Exception {
+        feed = new ChangeFeed(productService, mock(CartService.class), mock(OrderService.class), 2, 1024);
+        BlockingSink sink = subscribe();
+        product(ProductChangeEvent.Type.CREATED, "p-1");
+        sink.awaitFirstBatch();
+
+        for (String id : List.of("p-2", "p-3", "p-4", "p-5")) {
+            product(ProductChangeEvent.Type.UPDATED, id);
+        }
+        awaitBuffered();
+        sink.release();
+
+        Batch batch = sink.next();
+        assertThat(batch.dropped).isEqualTo(2);
+        assertThat(batch.describe()).containsExactly("p-4 updated", "p-5 updated");
+        assertThat(feed.droppedCount()).isEqualTo(2);
+    }
+
+    @Test
+    void closedSubscriptionsStopReceiving() throws Exception {
+        feed = new ChangeFeed(productService, mock(CartService.class), mock(OrderService.class), 16, 1024);
+        BlockingSink sink = new BlockingSink();
+        sink.release();
+        ChangeFeed.Subscription subscription = feed.subscribe(event -> true, sink);
+        assertThat(feed.subscriberCount()).isEqualTo(1);
+
+        subscription.close();
+        product(ProductChangeEvent.Type.CREATED, "p-1");
+
+        assertThat(feed.subscriberCount()).isZero();
+        assertThat(sink.batches.poll(200, TimeUnit.MILLISECONDS)).isNull();
+    }
+
+    private BlockingSink subscribe() {
+        BlockingSink sink = new BlockingSink();
+        feed.subscribe(event -> !SENTINEL.equals(event.getId()), sink);
+        return sink;
+    }
+
+    private void product(ProductChangeEvent.Type type, String id) {
+        feed.onProductChange(new ProductChangeEvent(type, id, null, null));
+    }
+
+    // The dispatcher handles events in order, so once it reads the sentinel every earlier event is buffered
+    private void awaitBuffered() {
+        product(ProductChangeEvent.Type.UPDATED, SENTINEL);
+        verify(productService, timeout(5000)).getProductVersion(SENTINEL);
+    }
+
+    private static final class Batch {
+        private final List<FeedEvent> events;
+        private final long dropped;
+
+        private Batch(List<FeedEvent> events, long dropped) {
+            this.events = events;
+            this.dropped = dropped;
+        }
+
+        private List<String> describe() {
+            return events.stream().map(event -> event.getId() + " " + event.getType()).collect(Collectors.toList());
+        }
+    }
+
+    private static final class BlockingSink implements ChangeFeed.Sink {
+        private final BlockingQueue<Batch> batches = new LinkedBlockingQueue<>();
+        private final CountDownLatch firstBatch = new CountDownLatch(1);
+        private final CountDownLatch released = new CountDownLatch(1);
+
+        @Override
+        public void send(List<FeedEvent> events, long dropped) {
+            batches.add(new Batch(events, dropped));
+            firstBatch.countDown();
+            try {
+                released.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public void heartbeat() {
+        }
+
+        private void awaitFirstBatch() throws InterruptedException {
+            assertThat(firstBatch.await(5, TimeUnit.SECONDS)).isTrue();
+            batches.take();
+        }
+
+        private void release() {
+            released.countDown();
+        }
+
+        private Batch next() throws InterruptedException {
+            Batch batch = batches.poll(5, TimeUnit.SECONDS);
+            assertThat(batch).isNotNull();
+            return batch;
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package com.shop.backend.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Bucket boundaries, quantiles against an exact sort, and recordings from
+ * many threads at once
+ */
+class LatencyHistogramTest {
+
+    private static final double[] QUANTILES = {0, 0.001, 0.1, 0.5, 0.9, 0.99, 0.999, 1};
+
+    @Test
+    void smallValuesHaveTheirOwnBucket() {
+        for (int value = 0; value < 16; value++) {
+            assertThat(LatencyHistogram.bucketOf(value)).isEqualTo(value);
+            assertThat(LatencyHistogram.upperBoundOf(value)).isEqualTo(value);
+        }
+    }
+
+    @Test
+    void bucketsAreContiguousUpToTheOverflowBucket() {
+        int overflow = LatencyHistogram.BUCKET_COUNT - 1;
+        for (int bucket = 0; bucket < overflow; bucket++) {
+            long upper = LatencyHistogram.upperBoundOf(bucket);
+            assertThat(LatencyHistogram.bucketOf(upper)).as("upper bound of %d", bucket).isEqualTo(bucket);
+            assertThat(LatencyHistogram.bucketOf(upper + 1)).as("past bucket %d", bucket).isEqualTo(bucket + 1);
+        }
+        // Every bucket before the overflow one is reachable, and the last of them ends at 2^40 - 1
+        assertThat(LatencyHistogram.upperBoundOf(overflow - 1)).isEqualTo((1L << 40) - 1);
+        assertThat(LatencyHistogram.bucketOf(1L << 40)).isEqualTo(overflow);
+        assertThat(LatencyHistogram.bucketOf(Long.MAX_VALUE)).isEqualTo(overflow);
+    }
+
+    @Test
+    void bucketWidthStaysWithinASixteenthOfTheValue() {
+        Random random = new Random(3);
+        for (int i = 0; i < 100_000; i++) {
+            // Below 2^40, spread over every magnitude
+            long value = random.nextLong() >>> (24 + random.nextInt(40));
+            long upper = LatencyHistogram.upperBoundOf(LatencyHistogram.bucketOf(value));
+            assertThat(upper).isGreaterThanOrEqualTo(value);
+            assertThat(upper - value).as("value %d", value).isLessThanOrEqualTo(value / 16);
+        }
+    }
+
+    @Test
+    void quantilesBoundTheExactRankFromAbove() {
+        Random random = new Random(5);
+        long[] values = new long[10_007];
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < values.length; i++) {
+            // Log-uniform from 1 ns to about 1 s
+            values[i] = (long) Math.pow(10, random.nextDouble() * 9);
+            histogram.record(values[i]);
+        }
+        Arrays.sort(values);
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+
+        for (double quantile : QUANTILES) {
+            long exact = values[(int) Math.max(1, Math.ceil(quantile * values.length)) - 1];
+            long reported = snapshot.valueAtQuantile(quantile);
+            assertThat(reported).as("quantile %s", quantile).isGreaterThanOrEqualTo(exact);
+            assertThat(reported - exact).as("quantile %s", quantile).isLessThanOrEqualTo(exact / 16);
+        }
+        assertThat(snapshot.valueAtQuantile(1)).isEqualTo(values[values.length - 1]);
+        assertThat(snapshot.getMaxNanos()).isEqualTo(values[values.length - 1]);
+        assertThat(snapshot.getCount()).isEqualTo(values.length);
+        assertThat(snapshot.getSumNanos()).isEqualTo(Arrays.stream(values).sum());
+    }
+
+    @Test
+    void quantilesOfAFewValues() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long value : new long[] {1, 2, 3, 4, 1_000}) {
+            histogram.record(value);
+        }
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+
+        assertThat(snapshot.valueAtQuantile(0)).isEqualTo(1);
+        assertThat(snapshot.valueAtQuantile(0.1)).isEqualTo(1);
+        assertThat(snapshot.valueAtQuantile(0.5)).isEqualTo(3);
+        assertThat(snapshot.valueAtQuantile(0.7)).isEqualTo(4);
+        // The top bucket reaches past the largest value, which caps it
+        assertThat(snapshot.valueAtQuantile(0.81)).isEqualTo(1_000);
+        assertThat(snapshot.valueAtQuantile(1)).isEqualTo(1_000);
+    }
+
+    @Test
+    void emptyAndNegativeRecordings() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertThat(histogram.snapshot().valueAtQuantile(0.99)).isZero();
+        assertThat(histogram.snapshot().getCount()).isZero();
+
+        histogram.record(-5);
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertThat(snapshot.getCount()).isEqualTo(1);
+        assertThat(snapshot.getSumNanos()).isZero();
+        assertThat(snapshot.valueAtQuantile(0.5)).isZero();
+    }
+
+    @Test
+    void overflowingValuesReportTheMaximum() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(1L << 50);
+        histogram.record((1L << 50) + 7);
+
+        assertThat(histogram.snapshot().valueAtQuantile(0.5)).isEqualTo((1L << 50) + 7);
+    }
+
+    @Test
+    void concurrentRecordingsAreAllCounted() throws Exception {
+        int threads = 8;
+        int perThread = 50_000;
+        LatencyHistogram shared = new LatencyHistogram();
+        LatencyHistogram sequential = new LatencyHistogram();
+        long[][] values = new long[threads][perThread];
+        Random random = new Random(7);
+        for (long[] ofThread : values) {
+            for (int i = 0; i < perThread; i++) {
+                // Few distinct values, so threads keep hitting the same buckets
+                ofThread[i] = 1_000L << random.nextInt(4);
+                sequential.record(ofThread[i]);
+            }
+        }
+
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        for (long[] ofThread : values) {
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                for (long value : ofThread) {
+                    shared.record(value);
+                }
+            });
+            worker.start();
+            workers.add(worker);
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        LatencyHistogram.Snapshot expected = sequential.snapshot();
+        LatencyHistogram.Snapshot actual = shared.snapshot();
+        assertThat(actual.getCount()).isEqualTo((long) threads * perThread);
+        assertThat(actual.getSumNanos()).isEqualTo(expected.getSumNanos());
+        assertThat(actual.getMaxNanos()).isEqualTo(8_000);
+        for (double quantile : QUANTILES) {
+            assertThat(actual.valueAtQuantile(quantile)).as("quantile %s", quantile)
+                    .isEqualTo(expected.valueAtQuantile(quantile));
+        }
+    }
+}
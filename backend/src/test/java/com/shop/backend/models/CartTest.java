@@ -0,0 +1,84 @@
+package com.shop.backend.models;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CartTest {
+
+    private final Product laptop = product("p-1", 1200.10);
+    private final Product cable = product("p-2", 0.10);
+
+    @Test
+    void runningTotalFollowsEveryChange() {
+        Cart cart = new Cart("user");
+        cart.addItem(laptop, 1);
+        cart.addItem(cable, 3);
+        cart.addItem(cable, 7);
+        assertThat(cart.getTotalAmount()).isEqualTo(1201.10);
+        assertThat(cart.totalQuantity()).isEqualTo(11);
+
+        assertThat(cart.updateItemQuantity("p-1", 2)).isTrue();
+        assertThat(cart.getTotalAmount()).isEqualTo(2401.20);
+        assertThat(cart.totalQuantity()).isEqualTo(12);
+
+        assertThat(cart.removeItem("p-2")).isTrue();
+        assertThat(cart.getTotalAmount()).isEqualTo(2400.20);
+        assertThat(cart.totalQuantity()).isEqualTo(2);
+
+        cart.clear();
+        assertThat(cart.getTotalAmount()).isZero();
+        assertThat(cart.totalQuantity()).isZero();
+        assertThat(cart.getItems()).isEmpty();
+    }
+
+    @Test
+    void changesThatLeaveTheCartAsItWasReportFalse() {
+        Cart cart = new Cart("user");
+        cart.addItem(laptop, 1);
+
+        assertThat(cart.updateItemQuantity("p-1", 1)).isFalse();
+        assertThat(cart.updateItemQuantity("missing", 4)).isFalse();
+        assertThat(cart.removeItem("missing")).isFalse();
+        assertThat(cart.totalQuantity()).isEqualTo(1);
+    }
+
+    @Test
+    void itemsHandedOutCannotMoveTheTotal() {
+        Cart cart = new Cart("user");
+        cart.addItem(laptop, 1);
+
+        cart.getItem("p-1").setQuantity(50);
+        cart.getItems().get(0).setQuantity(50);
+        cart.getItems().clear();
+
+        assertThat(cart.getItem("p-1").getQuantity()).isEqualTo(1);
+        assertThat(cart.getItems()).hasSize(1);
+        assertThat(cart.getTotalAmount()).isEqualTo(1200.10);
+        assertThat(cart.getItem("missing")).isNull();
+    }
+
+    @Test
+    void setItemsKeepsItsOwnCopiesAndMergesDuplicates() {
+        List<Cart.CartItem> items = new ArrayList<>();
+        items.add(new Cart.CartItem("p-2", "Cable", 2, 0.10));
+        items.add(new Cart.CartItem("p-2", "Cable", 3, 0.10));
+        Cart cart = new Cart("user");
+        cart.setItems(items);
+
+        items.get(0).setQuantity(100);
+
+        assertThat(cart.getItem("p-2").getQuantity()).isEqualTo(5);
+        assertThat(cart.getTotalAmount()).isEqualTo(0.50);
+        assertThat(cart.totalQuantity()).isEqualTo(5);
+    }
+
+    private static Product product(String id, double price) {
+        Product product = new Product("Product " + id, price, "", 10, "test");
+        product.setId(id);
+        return product;
+    }
+}
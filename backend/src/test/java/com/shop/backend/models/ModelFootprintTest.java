@@ -0,0 +1,81 @@
+package com.shop.backend.models;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.openjdk.jol.info.GraphLayout;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Retained sizes of the models, measured with JOL, and the lazily allocated
+ * custom fields behind them
+ * The eager layout is rebuilt by adding what it used to retain per object:
+ * an empty HashMap for the custom fields and, for orders, a LocalDateTime.
+ */
+class ModelFootprintTest {
+
+    private static final ObjectMapper JSON = new ObjectMapper().findAndRegisterModules();
+
+    @Test
+    void modelsWithoutCustomFieldsRetainNoMap() {
+        List<Object> models = List.of(
+                new Product("Laptop", 1200, "High-performance laptop", 10, "Electronics"),
+                new User("alice", "alice@example.com", "secret", "CUSTOMER"),
+                new Cart("user-1"),
+                new Order("user-1", List.of(new Order.OrderItem("p-1", "Laptop", 1, 1200)), "PENDING"));
+
+        for (Object model : models) {
+            assertThat(GraphLayout.parseInstance(model).getClasses())
+                    .as(model.getClass().getSimpleName())
+                    .doesNotContain(HashMap.class);
+        }
+    }
+
+    @Test
+    void orderRetainsLessThanTheEagerLayout() {
+        Order order = new Order("user-1", List.of(new Order.OrderItem("p-1", "Laptop", 1, 1200)), "PENDING");
+        long eager = retained(order) + retained(new HashMap<>()) + retained(LocalDateTime.now());
+
+        assertThat(retained(order)).isLessThan(eager);
+        // The timestamp is a primitive field, not an object graph
+        assertThat(GraphLayout.parseInstance(order).getClasses()).doesNotContain(LocalDateTime.class);
+    }
+
+    @Test
+    void customFieldsAreWritableAndAllocatedOnFirstWrite() throws Exception {
+        Product product = new Product("Laptop", 1200, "High-performance laptop", 10, "Electronics");
+        Map<String, Object> fields = product.getCustomFields();
+        assertThat(fields).isEmpty();
+        assertThat(JSON.writeValueAsString(product)).contains("\"customFields\":{}");
+
+        fields.put("color", "silver");
+
+        assertThat(product.getCustomField("color")).isEqualTo("silver");
+        assertThat(product.getCustomFields()).containsExactly(Map.entry("color", "silver"));
+        assertThat(GraphLayout.parseInstance(product).getClasses()).contains(HashMap.class);
+        assertThat(JSON.writeValueAsString(product)).contains("\"customFields\":{\"color\":\"silver\"}");
+    }
+
+    @Test
+    void settingAViewCopiesIt() {
+        Product product = new Product();
+        product.addCustomField("color", "silver");
+        Product other = new Product();
+
+        other.setCustomFields(product.getCustomFields());
+        other.getCustomFields().put("size", "L");
+        product.setCustomFields(product.getCustomFields());
+
+        assertThat(product.getCustomFields()).containsOnlyKeys("color");
+        assertThat(other.getCustomFields()).containsOnlyKeys("color", "size");
+    }
+
+    private static long retained(Object root) {
+        return GraphLayout.parseInstance(root).totalSize();
+    }
+}
@@ -0,0 +1,51 @@
+package com.shop.backend.models;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+import static com.shop.backend.models.OrderStatus.CANCELLED;
+import static com.shop.backend.models.OrderStatus.DELIVERED;
+import static com.shop.backend.models.OrderStatus.PENDING;
+import static com.shop.backend.models.OrderStatus.SHIPPED;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OrderStatusTest {
+
+    @Test
+    void onlyTheLifecycleTransitionsAreAllowed() {
+        assertThat(allowedFrom(PENDING)).containsExactlyInAnyOrder(SHIPPED, CANCELLED);
+        assertThat(allowedFrom(SHIPPED)).containsExactly(DELIVERED);
+        assertThat(allowedFrom(DELIVERED)).isEmpty();
+        assertThat(allowedFrom(CANCELLED)).isEmpty();
+    }
+
+    @Test
+    void stayingInAStatusIsNotATransition() {
+        for (OrderStatus status : OrderStatus.values()) {
+            assertThat(status.canMoveTo(status)).as(status.name()).isFalse();
+        }
+        assertThat(PENDING.canMoveTo(null)).isFalse();
+    }
+
+    @Test
+    void parseIgnoresCaseAndSurroundingWhitespace() {
+        assertThat(OrderStatus.parse("shipped")).isEqualTo(SHIPPED);
+        assertThat(OrderStatus.parse(" Delivered ")).isEqualTo(DELIVERED);
+        assertThat(OrderStatus.parse("CANCELLED")).isEqualTo(CANCELLED);
+        assertThat(OrderStatus.parse("returned")).isNull();
+        assertThat(OrderStatus.parse("")).isNull();
+        assertThat(OrderStatus.parse(null)).isNull();
+    }
+
+    private static Set<OrderStatus> allowedFrom(OrderStatus from) {
+        Set<OrderStatus> allowed = EnumSet.noneOf(OrderStatus.class);
+        for (OrderStatus next : OrderStatus.values()) {
+            if (from.canMoveTo(next)) {
+                allowed.add(next);
+            }
+        }
+        return allowed;
+    }
+}
@@ -0,0 +1,51 @@
+package com.shop.backend.models;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class OrderTest {
+
+    @Test
+    void totalIsExactInCents() {
+        List<Order.OrderItem> items = new ArrayList<>();
+        items.add(new Order.OrderItem("p-1", "Cable", 3, 0.10));
+        Order order = new Order("user", items, OrderStatus.PENDING.name());
+        order.addItem(new Order.OrderItem("p-2", "Plug", 1, 0.20));
+        assertThat(order.getTotalAmount()).isEqualTo(0.50);
+    }
+
+    @Test
+    void itemsHandedOutCannotMoveTheTotal() {
+        List<Order.OrderItem> items = new ArrayList<>();
+        items.add(new Order.OrderItem("p-1", "Laptop", 1, 1200.0));
+        Order order = new Order("user", items, OrderStatus.PENDING.name());
+
+        items.add(new Order.OrderItem("p-2", "Mouse", 1, 20.0));
+        items.get(0).setQuantity(9);
+        order.getItems().get(0).setQuantity(9);
+        assertThatThrownBy(() -> order.getItems().add(new Order.OrderItem("p-3", "Desk", 1, 300.0)))
+                .isInstanceOf(UnsupportedOperationException.class);
+
+        assertThat(order.getItems()).hasSize(1);
+        assertThat(order.getItems().get(0).getQuantity()).isEqualTo(1);
+        assertThat(order.getTotalAmount()).isEqualTo(1200.0);
+    }
+
+    @Test
+    void setItemsRecomputesTheTotal() {
+        Order order = new Order();
+        List<Order.OrderItem> items = new ArrayList<>();
+        items.add(new Order.OrderItem("p-1", "Cable", 4, 0.10));
+        order.setItems(items);
+        assertThat(order.getTotalAmount()).isEqualTo(0.40);
+
+        order.setItems(null);
+        assertThat(order.getItems()).isEmpty();
+        assertThat(order.getTotalAmount()).isZero();
+    }
+}
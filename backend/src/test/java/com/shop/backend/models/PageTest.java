@@ -0,0 +1,76 @@
+package com.shop.backend.models;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PageTest {
+
+    @Test
+    void clampLimitKeepsPageSizesInRange() {
+        assertThat(Page.clampLimit(null)).isEqualTo(Page.DEFAULT_LIMIT);
+        assertThat(Page.clampLimit(0)).isEqualTo(Page.DEFAULT_LIMIT);
+        assertThat(Page.clampLimit(-3)).isEqualTo(Page.DEFAULT_LIMIT);
+        assertThat(Page.clampLimit(1)).isEqualTo(1);
+        assertThat(Page.clampLimit(Page.MAX_LIMIT)).isEqualTo(Page.MAX_LIMIT);
+        assertThat(Page.clampLimit(Page.MAX_LIMIT + 1)).isEqualTo(Page.MAX_LIMIT);
+    }
+
+    @Test
+    void followingCursorsVisitsEveryItemOnceInKeyOrder() {
+        List<String> all = new ArrayList<>();
+        for (int i = 0; i < 23; i++) {
+            all.add(String.format("k-%02d", (i * 7) % 23));
+        }
+        List<String> sorted = new ArrayList<>(all);
+        Collections.sort(sorted);
+        for (int limit : new int[] {1, 5, 22, 23, 24}) {
+            assertThat(pageThrough(all, limit)).as("limit %d", limit).isEqualTo(sorted);
+        }
+    }
+
+    @Test
+    void lastPageHasNoCursor() {
+        List<String> all = Arrays.asList("a", "b", "c", "d");
+        Page<String> first = Page.keyset(all, Function.identity(), null, 2);
+        assertThat(first.getItems()).containsExactly("a", "b");
+        assertThat(first.getNextCursor()).isEqualTo("b");
+
+        Page<String> last = Page.keyset(all, Function.identity(), first.getNextCursor(), 2);
+        assertThat(last.getItems()).containsExactly("c", "d");
+        assertThat(last.getNextCursor()).isNull();
+    }
+
+    @Test
+    void cursorOfARemovedItemResumesAfterItsKey() {
+        List<String> all = Arrays.asList("a", "c", "e");
+        assertThat(Page.keyset(all, Function.identity(), "b", 10).getItems()).containsExactly("c", "e");
+        assertThat(Page.keyset(all, Function.identity(), "z", 10).getItems()).isEmpty();
+    }
+
+    @Test
+    void emptyListsGiveOneEmptyPage() {
+        assertThat(Page.keyset(null, Function.<String>identity(), null, 10).getItems()).isEmpty();
+        Page<String> page = Page.keyset(Collections.<String>emptyList(), Function.identity(), "a", 10);
+        assertThat(page.getItems()).isEmpty();
+        assertThat(page.getNextCursor()).isNull();
+    }
+
+    private static List<String> pageThrough(List<String> all, int limit) {
+        List<String> seen = new ArrayList<>();
+        String cursor = null;
+        do {
+            Page<String> page = Page.keyset(all, Function.identity(), cursor, limit);
+            assertThat(page.getItems()).hasSizeLessThanOrEqualTo(limit);
+            seen.addAll(page.getItems());
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+        return seen;
+    }
+}
@@ -0,0 +1,203 @@
+package com.shop.backend.services.core;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shop.backend.models.Order;
+import com.shop.backend.services.core.stock.StockReservationEngine;
+import com.shop.backend.storage.DurableStore;
+import com.shop.backend.storage.FsyncPolicy;
+import com.shop.backend.storage.Mutation;
+import com.shop.backend.storage.MutationLog;
+import com.shop.backend.storage.StorageEngine;
+import com.shop.backend.storage.StorageException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Withdrawing queued checkouts, rolling back a batch the sink refuses, and
+ * keeping a stored batch when a later step fails
+ */
+class CheckoutPipelineTest {
+
+    private StockReservationEngine stockEngine;
+    private IndexedProductService productService;
+    private ConcurrentCartService cartService;
+    private CheckoutPipeline pipeline;
+
+    @BeforeEach
+    void setUp() {
+        stockEngine = new StockReservationEngine();
+        productService = TestServices.productService(stockEngine, TestServices.products(2, 10));
+        cartService = TestServices.cartService(productService);
+        cartService.addToCart("alice", "p-0", 2);
+        cartService.addToCart("bob", "p-1", 3);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (pipeline != null) {
+            pipeline.shutdown();
+        }
+        stockEngine.shutdown();
+    }
+
+    @Test
+    void queuedCheckoutCanBeWithdrawnButAStartedOneCannot() throws Exception {
+        CountDownLatch inSink = new CountDownLatch(1);
+        CountDownLatch releaseSink = new CountDownLatch(1);
+        pipeline = pipeline(orders -> {
+            inSink.countDown();
+            await(releaseSink);
+        });
+
+        CheckoutPipeline.Request started = pipeline.submit("alice");
+        assertThat(inSink.await(5, TimeUnit.SECONDS)).isTrue();
+        CheckoutPipeline.Request queued = pipeline.submit("bob");
+
+        assertThat(queued.withdraw()).isTrue();
+        assertThat(queued.result().getNow(null)).isNull();
+        assertThat(started.withdraw()).isFalse();
+
+        releaseSink.countDown();
+        Order order = started.result().get(5, TimeUnit.SECONDS);
+        assertThat(order.getUserId()).isEqualTo("alice");
+        // The withdrawn checkout was never committed
+        assertThat(cartService.getCartByUserId("bob").getItems()).hasSize(1);
+        assertThat(stockEngine.available("p-1")).isEqualTo(10);
+    }
+
+    @Test
+    void refusedBatchReleasesStockAndKeepsTheCart() {
+        pipeline = pipeline(orders -> {
+            throw new StorageException("disk full", null);
+        });
+
+        CheckoutPipeline.Request request = pipeline.submit("alice");
+
+        assertThatThrownBy(() -> request.result().get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(StorageException.class);
+        assertThat(stockEngine.available("p-0")).isEqualTo(10);
+        assertThat(cartService.getCartByUserId("alice").getItems()).hasSize(1);
+    }
+
+    @Test
+    void orderServiceIndexesNothingWhenTheLogWriteFails() {
+        IndexedOrderService orderService = new IndexedOrderService(cartService, productService, stockEngine,
+                new FailingStorage(), event -> { });
+        orderService.open();
+        try {
+            assertThat(orderService.createOrderFromCart("alice")).isNull();
+            assertThat(orderService.getAllOrders()).isEmpty();
+            assertThat(orderService.getOrdersByUserId("alice")).isEmpty();
+            assertThat(stockEngine.available("p-0")).isEqualTo(10);
+        } finally {
+            orderService.shutdown();
+        }
+    }
+
+    @Test
+    void errorFromTheSinkFailsOnlyItsBatch() throws Exception {
+        AtomicBoolean failing = new AtomicBoolean(true);
+        pipeline = pipeline(orders -> {
+            if (failing.getAndSet(false)) {
+                throw new OutOfMemoryError("simulated");
+            }
+        });
+
+        CheckoutPipeline.Request refused = pipeline.submit("alice");
+        assertThatThrownBy(() -> refused.result().get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(OutOfMemoryError.class);
+        assertThat(stockEngine.available("p-0")).isEqualTo(10);
+
+        // The committer survived the error
+        assertThat(pipeline.submit("alice").result().get(5, TimeUnit.SECONDS).getUserId()).isEqualTo("alice");
+        assertThat(stockEngine.available("p-0")).isEqualTo(8);
+    }
+
+    @Test
+    void failingListenerDoesNotUndoAStoredBatch() throws Exception {
+        List<Order> stored = new ArrayList<>();
+        pipeline = new CheckoutPipeline(cartService, productService, stockEngine, stored::addAll, orders -> {
+            throw new IllegalStateException("listener failed");
+        });
+
+        Order order = pipeline.submit("alice").result().get(5, TimeUnit.SECONDS);
+
+        assertThat(stored).containsExactly(order);
+        assertThat(stockEngine.available("p-0")).isEqualTo(8);
+        assertThat(stockEngine.pendingReservations()).isZero();
+        assertThat(cartService.getCartByUserId("alice").getItems()).isEmpty();
+    }
+
+    @Test
+    void failingCartClearDoesNotUndoAStoredBatch() throws Exception {
+        AtomicBoolean failing = new AtomicBoolean();
+        cartService = new ConcurrentCartService(productService, new FailingStorage(failing::get), event -> { });
+        cartService.open();
+        cartService.addToCart("alice", "p-0", 2);
+        failing.set(true);
+        List<Order> stored = new ArrayList<>();
+        pipeline = new CheckoutPipeline(cartService, productService, stockEngine, stored::addAll, orders -> { });
+
+        Order order = pipeline.submit("alice").result().get(5, TimeUnit.SECONDS);
+
+        assertThat(stored).containsExactly(order);
+        assertThat(stockEngine.available("p-0")).isEqualTo(8);
+        assertThat(stockEngine.pendingReservations()).isZero();
+        // The cart was cleared in memory and unlocked even though logging it failed
+        assertThat(cartService.getCartByUserId("alice").getItems()).isEmpty();
+    }
+
+    private CheckoutPipeline pipeline(Consumer<List<Order>> sink) {
+        return new CheckoutPipeline(cartService, productService, stockEngine, sink, orders -> { });
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Storage whose logs refuse every write while failing says so
+    private static final class FailingStorage extends StorageEngine {
+
+        private final BooleanSupplier failing;
+
+        private FailingStorage() {
+            this(() -> true);
+        }
+
+        private FailingStorage(BooleanSupplier failing) {
+            super(false, "data", FsyncPolicy.OS, 0, 0, new ObjectMapper().findAndRegisterModules());
+            this.failing = failing;
+        }
+
+        @Override
+        public <T> MutationLog attach(DurableStore<T> store) {
+            return new MutationLog() {
+                @Override
+                public void append(Mutation mutation) {
+                    appendAll(List.of(mutation));
+                }
+
+                @Override
+                public void appendAll(List<Mutation> mutations) {
+                    if (failing.getAsBoolean()) {
+                        throw new StorageException("disk full", null);
+                    }
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.shop.backend.services.core;
+
+import com.shop.backend.models.Cart;
+import com.shop.backend.services.core.stock.StockReservationEngine;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Many threads adding to a few carts at once; every add must be counted
+ */
+class ConcurrentCartServiceStressTest {
+
+    private static final int THREADS = 16;
+    private static final int USERS = 4;
+    private static final int ADDS_PER_THREAD = 1000;
+
+    private StockReservationEngine stockEngine;
+    private ConcurrentCartService service;
+    private ExecutorService pool;
+
+    @BeforeEach
+    void setUp() {
+        stockEngine = new StockReservationEngine();
+        service = TestServices.cartService(TestServices.productService(stockEngine, TestServices.products(8, 1_000_000)));
+        pool = Executors.newFixedThreadPool(THREADS);
+    }
+
+    @AfterEach
+    void tearDown() {
+        pool.shutdownNow();
+        stockEngine.shutdown();
+    }
+
+    @Test
+    void concurrentAddsLoseNoQuantity() throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            int thread = t;
+            futures.add(pool.submit(() -> {
+                start.await();
+                for (int i = 0; i < ADDS_PER_THREAD; i++) {
+                    String userId = "user-" + (thread + i) % USERS;
+                    assertThat(service.addToCart(userId, "p-" + i % 8, 1)).isNotNull();
+                    service.getCartByUserId(userId);
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+
+        int totalItems = 0;
+        double totalAmount = 0;
+        for (int u = 0; u < USERS; u++) {
+            String userId = "user-" + u;
+            Cart cart = service.getCartByUserId(userId);
+            int quantity = 0;
+            for (Cart.CartItem item : cart.getItems()) {
+                quantity += item.getQuantity();
+            }
+            assertThat(service.getCartSize(userId)).isEqualTo(quantity);
+            assertThat(cart.getItems()).hasSize(8);
+            totalItems += quantity;
+            totalAmount += service.getCartTotal(userId);
+        }
+        assertThat(totalItems).isEqualTo(THREADS * ADDS_PER_THREAD);
+        // p-i costs 1 + i and every product is added the same number of times
+        assertThat(totalAmount).isEqualTo(THREADS * ADDS_PER_THREAD / 8.0 * (1 + 2 + 3 + 4 + 5 + 6 + 7 + 8));
+    }
+}
@@ -0,0 +1,128 @@
+package com.shop.backend.services.core;
+
+import com.shop.backend.models.Cart;
+import com.shop.backend.models.Product;
+import com.shop.backend.services.api.ProductService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Two adds of the same new product interleaved at the point where a plain
+ * Cart loses one of them, first on a bare Cart and then through the service
+ */
+class ConcurrentCartServiceTest {
+
+    private final ExecutorService pool = Executors.newFixedThreadPool(2);
+
+    @AfterEach
+    void tearDown() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    void sharedCartLosesAQuantityUpdate() throws Exception {
+        Cart cart = new Cart("user");
+        PausingProduct slow = new PausingProduct();
+
+        // The slow add has seen no line for p-1 and pauses before putting its own
+        Future<?> first = pool.submit(() -> cart.addItem(slow, 1));
+        assertThat(slow.paused.await(10, TimeUnit.SECONDS)).isTrue();
+        cart.addItem(product(), 2);
+        slow.resume.countDown();
+        first.get(10, TimeUnit.SECONDS);
+
+        // Three units were added but the second line replaced the first
+        assertThat(cart.getItem("p-1").getQuantity()).isEqualTo(1);
+        assertThat(cart.getTotalAmount()).isEqualTo(3.0);
+    }
+
+    @Test
+    void serviceAppliesTheSameInterleavingOneAddAtATime() throws Exception {
+        PausingProduct slow = new PausingProduct();
+        ProductService products = mock(ProductService.class);
+        when(products.getProductById("p-1")).thenReturn(slow, product());
+        ConcurrentCartService service = TestServices.cartService(products);
+
+        Future<?> first = pool.submit(() -> service.addToCart("user", "p-1", 1));
+        assertThat(slow.paused.await(10, TimeUnit.SECONDS)).isTrue();
+        Future<?> second = pool.submit(() -> service.addToCart("user", "p-1", 2));
+        // The second add waits for the cart's lock rather than racing the first
+        Thread.sleep(100);
+        assertThat(second.isDone()).isFalse();
+        slow.resume.countDown();
+        first.get(10, TimeUnit.SECONDS);
+        second.get(10, TimeUnit.SECONDS);
+
+        assertThat(service.getCartByUserId("user").getItem("p-1").getQuantity()).isEqualTo(3);
+        assertThat(service.getCartSize("user")).isEqualTo(3);
+        assertThat(service.getCartTotal("user")).isEqualTo(3.0);
+    }
+
+    @Test
+    void changesThatLeaveTheCartAsItWasAreNotAnnounced() {
+        ProductService products = mock(ProductService.class);
+        when(products.getProductById("p-1")).thenReturn(product());
+        AtomicInteger events = new AtomicInteger();
+        ConcurrentCartService service =
+                new ConcurrentCartService(products, TestServices.inMemoryStorage(), event -> events.incrementAndGet());
+        service.open();
+        service.addToCart("user", "p-1", 2);
+        long version = service.getCartVersion("user");
+        int announced = events.get();
+
+        assertThat(service.updateCartItem("user", "p-1", 2).getItem("p-1").getQuantity()).isEqualTo(2);
+        assertThat(service.updateCartItem("user", "missing", 5).getItems()).hasSize(1);
+        assertThat(service.removeFromCart("user", "missing").getItems()).hasSize(1);
+        assertThat(service.getCartVersion("user")).isEqualTo(version);
+        assertThat(events.get()).isEqualTo(announced);
+
+        service.updateCartItem("user", "p-1", 5);
+        assertThat(service.getCartSize("user")).isEqualTo(5);
+        assertThat(service.getCartVersion("user")).isGreaterThan(version);
+        service.removeFromCart("user", "p-1");
+        assertThat(service.getCartSize("user")).isZero();
+        assertThat(events.get()).isEqualTo(announced + 2);
+    }
+
+    private static Product product() {
+        Product product = new Product("Cable", 1.0, "", 100, "test");
+        product.setId("p-1");
+        return product;
+    }
+
+    /**
+     * Blocks in getName, which Cart.addItem calls between finding no line for
+     * the product and putting a new one
+     */
+    private static final class PausingProduct extends Product {
+        private final CountDownLatch paused = new CountDownLatch(1);
+        private final CountDownLatch resume = new CountDownLatch(1);
+
+        private PausingProduct() {
+            super("Cable", 1.0, "", 100, "test");
+            setId("p-1");
+        }
+
+        @Override
+        public String getName() {
+            paused.countDown();
+            try {
+                resume.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return super.getName();
+        }
+    }
+}
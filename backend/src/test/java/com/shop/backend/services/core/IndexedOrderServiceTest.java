@@ -0,0 +1,125 @@
+package com.shop.backend.services.core;
+
+import com.shop.backend.models.Order;
+import com.shop.backend.services.core.stock.StockReservationEngine;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Per-user order count and total spent through checkout, status changes,
+ * cancels and recovery
+ */
+class IndexedOrderServiceTest {
+
+    private StockReservationEngine stockEngine;
+    private ConcurrentCartService cartService;
+    private IndexedOrderService orderService;
+
+    @BeforeEach
+    void setUp() {
+        stockEngine = new StockReservationEngine();
+        // p-i costs 1 + i
+        IndexedProductService productService = TestServices.productService(stockEngine, TestServices.products(4, 100));
+        cartService = TestServices.cartService(productService);
+        orderService = TestServices.orderService(cartService, productService, stockEngine);
+    }
+
+    @AfterEach
+    void tearDown() {
+        orderService.shutdown();
+        stockEngine.shutdown();
+    }
+
+    @Test
+    void checkoutsAddToTheirUsersAggregates() {
+        checkout("alice", "p-0", 2);
+        checkout("alice", "p-2", 1);
+        checkout("bob", "p-1", 3);
+
+        assertThat(orderService.getOrderCount("alice")).isEqualTo(2);
+        assertThat(orderService.getTotalSpent("alice")).isEqualTo(5.0);
+        assertThat(orderService.getOrderCount("bob")).isEqualTo(1);
+        assertThat(orderService.getTotalSpent("bob")).isEqualTo(6.0);
+        assertThat(orderService.getOrderCount("nobody")).isZero();
+        assertThat(orderService.getTotalSpent(null)).isZero();
+    }
+
+    @Test
+    void cancelRemovesAnOrderFromTheAggregatesOnce() {
+        Order kept = checkout("alice", "p-0", 2);
+        Order cancelled = checkout("alice", "p-3", 1);
+        long version = orderService.getUserOrdersVersion("alice");
+
+        assertThat(orderService.cancelOrder(cancelled.getId())).isTrue();
+        assertThat(orderService.cancelOrder(cancelled.getId())).isFalse();
+
+        assertThat(orderService.getOrderCount("alice")).isEqualTo(1);
+        assertThat(orderService.getTotalSpent("alice")).isEqualTo(2.0);
+        assertThat(orderService.getUserOrdersVersion("alice")).isGreaterThan(version);
+        // Cancelled orders are still listed
+        assertThat(orderService.getOrdersByUserId("alice")).extracting(Order::getId)
+                .containsExactly(kept.getId(), cancelled.getId());
+    }
+
+    @Test
+    void statusChangesKeepTheAggregates() {
+        Order first = checkout("alice", "p-0", 2);
+        Order second = checkout("alice", "p-1", 1);
+
+        orderService.updateOrderStatus(first.getId(), "SHIPPED");
+        orderService.updateOrderStatus(first.getId(), "DELIVERED");
+        orderService.updateOrderStatuses(List.of(second.getId()), "SHIPPED");
+        // Refused transitions change nothing
+        assertThat(orderService.cancelOrder(first.getId())).isFalse();
+        orderService.updateOrderStatus(second.getId(), "PENDING");
+
+        assertThat(orderService.getOrderCount("alice")).isEqualTo(2);
+        assertThat(orderService.getTotalSpent("alice")).isEqualTo(4.0);
+    }
+
+    @Test
+    void restoredStatusesMoveTheAggregates() {
+        Order order = checkout("alice", "p-1", 2);
+        Order cancelled = copyWithStatus(order, "CANCELLED");
+
+        orderService.restore(order.getId(), cancelled);
+        assertThat(orderService.getOrderCount("alice")).isZero();
+        assertThat(orderService.getTotalSpent("alice")).isZero();
+
+        orderService.restore(order.getId(), copyWithStatus(order, "PENDING"));
+        assertThat(orderService.getOrderCount("alice")).isEqualTo(1);
+        assertThat(orderService.getTotalSpent("alice")).isEqualTo(4.0);
+    }
+
+    @Test
+    void orderRestoredWithoutAUserIsKeptOutOfEveryUsersAggregates() {
+        Order orphan = new Order(null, List.of(new Order.OrderItem("p-0", "Product 0", 1, 1.0)), "PENDING");
+
+        orderService.restore(orphan.getId(), orphan);
+        orderService.restore(orphan.getId(), copyWithStatus(orphan, "SHIPPED"));
+
+        assertThat(orderService.getOrderById(orphan.getId()).getStatus()).isEqualTo("SHIPPED");
+        assertThat(orderService.getAllOrders()).hasSize(1);
+        assertThat(orderService.getOrderCount(null)).isZero();
+        assertThat(orderService.getOrdersByUserId(null)).isEmpty();
+    }
+
+    private Order checkout(String userId, String productId, int quantity) {
+        cartService.addToCart(userId, productId, quantity);
+        Order order = orderService.createOrderFromCart(userId);
+        assertThat(order).isNotNull();
+        return order;
+    }
+
+    // A log record of the order with another status
+    private static Order copyWithStatus(Order order, String status) {
+        Order copy = new Order(order.getUserId(), order.getItems(), status);
+        copy.setId(order.getId());
+        return copy;
+    }
+}
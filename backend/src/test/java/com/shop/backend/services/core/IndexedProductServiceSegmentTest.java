@@ -0,0 +1,122 @@
+package com.shop.backend.services.core;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shop.backend.models.Product;
+import com.shop.backend.services.core.catalog.CatalogSegment;
+import com.shop.backend.services.core.stock.StockReservationEngine;
+import com.shop.backend.storage.FsyncPolicy;
+import com.shop.backend.storage.StorageEngine;
+import com.shop.backend.storage.StorageException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Changes made on top of a memory-mapped catalog segment shadow its rows,
+ * and still do after a restart, whether from the log alone or from a
+ * snapshot
+ */
+class IndexedProductServiceSegmentTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final List<StockReservationEngine> engines = new ArrayList<>();
+
+    @TempDir
+    Path directory;
+
+    private Path segmentPath;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        segmentPath = directory.resolve("catalog.seg");
+        CatalogSegment.write(segmentPath, TestServices.products(5, 10), objectMapper);
+    }
+
+    @AfterEach
+    void tearDown() {
+        engines.forEach(StockReservationEngine::shutdown);
+    }
+
+    @Test
+    void updatesDeletesAndStockMovesShadowSegmentRows() {
+        StorageEngine storage = storage();
+        IndexedProductService service = open(storage);
+        assertThat(service.getProductById("p-1").getName()).isEqualTo("Product 1");
+
+        shadowRows(service);
+
+        assertShadowed(service);
+        assertThat(service.getProductsByCategory("category-1")).isEmpty();
+        assertThat(service.getProductsByCategory("Garden")).extracting(Product::getId).containsExactly("p-1");
+        assertThat(service.searchProducts("product 2")).isEmpty();
+    }
+
+    @Test
+    void shadowingSurvivesACrash() {
+        IndexedProductService service = open(storage());
+        shadowRows(service);
+
+        // No snapshot: the log alone is replayed over the segment
+        assertShadowed(open(storage()));
+    }
+
+    @Test
+    void shadowingSurvivesASnapshot() {
+        StorageEngine storage = storage();
+        shadowRows(open(storage));
+        storage.close();
+
+        assertShadowed(open(storage()));
+    }
+
+    @Test
+    void damagedSegmentFailsStartup() throws IOException {
+        byte[] image = Files.readAllBytes(segmentPath);
+        Files.write(segmentPath, Arrays.copyOf(image, image.length / 2));
+
+        assertThatThrownBy(() -> open(storage())).isInstanceOf(StorageException.class)
+                .hasMessageContaining(segmentPath.toString());
+    }
+
+    private static void shadowRows(IndexedProductService service) {
+        Product edited = service.getProductById("p-1");
+        edited.setName("Garden Chair");
+        edited.setCategory("Garden");
+        service.updateProduct("p-1", edited);
+        service.deleteProduct("p-2");
+        service.updateStock("p-3", -4);
+    }
+
+    private static void assertShadowed(IndexedProductService service) {
+        assertThat(service.getAllProducts()).extracting(Product::getId).containsExactly("p-0", "p-1", "p-3", "p-4");
+        assertThat(service.getProductById("p-1").getName()).isEqualTo("Garden Chair");
+        assertThat(service.getProductById("p-2")).isNull();
+        assertThat(service.getProductById("p-3").getStock()).isEqualTo(6);
+        assertThat(service.getProductById("p-4").getName()).isEqualTo("Product 4");
+        assertThat(service.getProductById("p-4").getStock()).isEqualTo(10);
+    }
+
+    private IndexedProductService open(StorageEngine storage) {
+        StockReservationEngine engine = new StockReservationEngine();
+        engines.add(engine);
+        IndexedProductService service =
+                new IndexedProductService(engine, storage, objectMapper, event -> { }, segmentPath.toString());
+        service.open();
+        return service;
+    }
+
+    private StorageEngine storage() {
+        return new StorageEngine(true, directory.resolve("data").toString(), FsyncPolicy.OS, 0, 0, objectMapper);
+    }
+}
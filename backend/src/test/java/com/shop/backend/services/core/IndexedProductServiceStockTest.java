@@ -0,0 +1,147 @@
+package com.shop.backend.services.core;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shop.backend.models.Product;
+import com.shop.backend.services.api.InsufficientStockException;
+import com.shop.backend.services.core.stock.StockReservation;
+import com.shop.backend.services.core.stock.StockReservationEngine;
+import com.shop.backend.storage.FsyncPolicy;
+import com.shop.backend.storage.StorageEngine;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Stock changes through updateStock and through product updates, and their
+ * recovery from the log
+ */
+class IndexedProductServiceStockTest {
+
+    private StockReservationEngine stockEngine;
+    private IndexedProductService productService;
+
+    @BeforeEach
+    void setUp() {
+        stockEngine = new StockReservationEngine();
+        productService = TestServices.productService(stockEngine, TestServices.products(4, 10));
+    }
+
+    @AfterEach
+    void tearDown() {
+        stockEngine.shutdown();
+    }
+
+    @Test
+    void updateStockReturnsNullOnlyForUnknownProducts() {
+        assertThat(productService.updateStock("missing", 1)).isNull();
+        assertThat(productService.updateStock("p-0", -4).getStock()).isEqualTo(6);
+    }
+
+    @Test
+    void removingMoreThanInStockThrowsAndLeavesTheStock() {
+        assertThatThrownBy(() -> productService.updateStock("p-0", -100))
+                .isInstanceOf(InsufficientStockException.class)
+                .hasMessageContaining("only 10 in stock");
+        assertThat(productService.getProductById("p-0").getStock()).isEqualTo(10);
+    }
+
+    @Test
+    void updateKeepsStockHeldByPendingReservations() {
+        StockReservation reservation = stockEngine.reserve(Map.of("p-0", 3), Duration.ofMinutes(1));
+        Product edited = productService.getProductById("p-0");
+        edited.setName("Renamed");
+
+        productService.updateProduct("p-0", edited);
+        assertThat(productService.getProductById("p-0").getStock()).isEqualTo(7);
+
+        stockEngine.release(reservation.getId());
+        assertThat(productService.getProductById("p-0").getStock()).isEqualTo(10);
+    }
+
+    @Test
+    void updateAppliesAStockChangeAsADelta() {
+        stockEngine.reserve(Map.of("p-1", 3), Duration.ofMinutes(1));
+        Product edited = productService.getProductById("p-1");
+        edited.setStock(edited.getStock() + 5);
+
+        productService.updateProduct("p-1", edited);
+        assertThat(productService.getProductById("p-1").getStock()).isEqualTo(12);
+    }
+
+    @Test
+    void upsertKeepsStockHeldByPendingReservations() {
+        StockReservation reservation = stockEngine.reserve(Map.of("p-2", 4), Duration.ofMinutes(1));
+        Product edited = productService.getProductById("p-2");
+        edited.setPrice(99);
+
+        productService.upsertProducts(List.of(edited));
+        stockEngine.release(reservation.getId());
+        assertThat(productService.getProductById("p-2").getStock()).isEqualTo(10);
+    }
+
+    @Test
+    void failedReservationIsNeitherAnnouncedNorVersioned() {
+        long version = productService.getCatalogVersion();
+
+        assertThat(stockEngine.reserve(Map.of("p-0", 1, "p-3", 11), Duration.ofMinutes(1))).isNull();
+
+        assertThat(productService.getCatalogVersion()).isEqualTo(version);
+        assertThat(productService.getProductById("p-0").getStock()).isEqualTo(10);
+        stockEngine.reserve(Map.of("p-0", 1, "p-3", 1), Duration.ofMinutes(1));
+        assertThat(productService.getCatalogVersion()).isEqualTo(version + 2);
+    }
+
+    @Test
+    void stockRecordsReplayOverTheProductsTheyFollow(@TempDir Path directory) {
+        StockReservationEngine firstEngine = new StockReservationEngine();
+        IndexedProductService first = durableService(directory, firstEngine);
+        Product lamp = first.createProduct(new Product("Lamp", 20, "", 10, "Home"));
+        first.updateStock(lamp.getId(), -3);
+        StockReservation sold = firstEngine.reserve(Map.of(lamp.getId(), 2), Duration.ofMinutes(1));
+        firstEngine.confirm(sold.getId());
+        assertThat(firstEngine.reserve(Map.of(lamp.getId(), 1, "missing", 1), Duration.ofMinutes(1))).isNull();
+        Product renamed = first.getProductById(lamp.getId());
+        renamed.setName("Desk Lamp");
+        first.updateProduct(lamp.getId(), renamed);
+        first.updateStock(lamp.getId(), 4);
+        Product gone = first.createProduct(new Product("Gone", 5, "", 3, "Home"));
+        first.updateStock(gone.getId(), -1);
+        first.deleteProduct(gone.getId());
+        firstEngine.shutdown();
+
+        // Recover from the log alone, as after a crash
+        IndexedProductService recovered = durableService(directory, stockEngine);
+        assertThat(recovered.getProductById(lamp.getId()).getName()).isEqualTo("Desk Lamp");
+        assertThat(recovered.getProductById(lamp.getId()).getStock()).isEqualTo(9);
+        assertThat(stockEngine.available(lamp.getId())).isEqualTo(9);
+        assertThat(recovered.getProductById(gone.getId())).isNull();
+        assertThat(recovered.getAllProducts()).extracting(Product::getId)
+                .noneMatch(id -> id.startsWith(IndexedProductService.STOCK_KEY_PREFIX));
+    }
+
+    @Test
+    void productsCannotTakeAStockRecordKey() {
+        Product product = new Product("Odd", 1, "", 1, "Home");
+        product.setId(IndexedProductService.STOCK_KEY_PREFIX + "p-0");
+
+        assertThat(productService.createProduct(product).getId())
+                .doesNotStartWith(IndexedProductService.STOCK_KEY_PREFIX);
+    }
+
+    private static IndexedProductService durableService(Path directory, StockReservationEngine engine) {
+        ObjectMapper objectMapper = new ObjectMapper();
+        StorageEngine storage = new StorageEngine(true, directory.toString(), FsyncPolicy.OS, 0, 0, objectMapper);
+        IndexedProductService service = new IndexedProductService(engine, storage, objectMapper, event -> { }, "");
+        service.open();
+        return service;
+    }
+}
@@ -0,0 +1,141 @@
+package com.shop.backend.services.core;
+
+import com.shop.backend.models.Product;
+import com.shop.backend.services.core.stock.StockReservationEngine;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Concurrent creates, updates and deletes against IndexedProductService,
+ * with readers running alongside; no write may be lost and every index
+ * must end up agreeing with the id index
+ */
+class IndexedProductServiceStressTest {
+
+    private static final int WRITERS = 8;
+    private static final int PRODUCTS_PER_WRITER = 500;
+
+    private StockReservationEngine stockEngine;
+    private IndexedProductService service;
+    private ExecutorService pool;
+
+    @BeforeEach
+    void setUp() {
+        stockEngine = new StockReservationEngine();
+        service = TestServices.productService(stockEngine, TestServices.products(10, 100));
+        pool = Executors.newFixedThreadPool(WRITERS + 2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        pool.shutdownNow();
+        stockEngine.shutdown();
+    }
+
+    @Test
+    void concurrentWritersLoseNoUpdates() throws Exception {
+        Set<String> kept = ConcurrentHashMap.newKeySet();
+        Set<String> deleted = ConcurrentHashMap.newKeySet();
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicBoolean writing = new AtomicBoolean(true);
+        List<Future<?>> writers = new ArrayList<>();
+        for (int w = 0; w < WRITERS; w++) {
+            int writer = w;
+            writers.add(pool.submit(() -> {
+                start.await();
+                for (int i = 0; i < PRODUCTS_PER_WRITER; i++) {
+                    Product created = service.createProduct(
+                            new Product("Widget " + writer + "-" + i, 10, "widget", 5, "category-" + i % 4));
+                    Product update = new Product("Gadget " + writer + "-" + i, 20, "gadget", 5, "category-" + (i + 1) % 4);
+                    assertThat(service.updateProduct(created.getId(), update)).isNotNull();
+                    if (i % 3 == 0) {
+                        assertThat(service.deleteProduct(created.getId())).isTrue();
+                        deleted.add(created.getId());
+                    } else {
+                        kept.add(created.getId());
+                    }
+                }
+                return null;
+            }));
+        }
+        List<Future<?>> readers = new ArrayList<>();
+        for (int r = 0; r < 2; r++) {
+            readers.add(pool.submit(() -> {
+                start.await();
+                while (writing.get()) {
+                    for (Product product : service.getAllProducts()) {
+                        assertThat(product.getId()).isNotNull();
+                    }
+                    service.searchProducts("gadget");
+                    service.filterProducts("category-1", 0.0, 100.0, "price");
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> writer : writers) {
+            writer.get(60, TimeUnit.SECONDS);
+        }
+        writing.set(false);
+        for (Future<?> reader : readers) {
+            reader.get(60, TimeUnit.SECONDS);
+        }
+
+        List<Product> all = service.getAllProducts();
+        Set<String> ids = new HashSet<>();
+        for (Product product : all) {
+            ids.add(product.getId());
+        }
+        assertThat(all).hasSize(10 + kept.size());
+        assertThat(ids).containsAll(kept).doesNotContainAnyElementsOf(deleted);
+        for (String id : kept) {
+            Product product = service.getProductById(id);
+            assertThat(product.getName()).startsWith("Gadget ");
+            assertThat(product.getPrice()).isEqualTo(20.0);
+        }
+        int byCategory = 0;
+        for (String category : service.getAllCategories()) {
+            byCategory += service.getProductsByCategory(category).size();
+        }
+        assertThat(byCategory).isEqualTo(all.size());
+        assertThat(service.searchProducts("widget")).isEmpty();
+        assertThat(service.searchProducts("gadget")).hasSize(kept.size());
+    }
+
+    @Test
+    void concurrentStockChangesAddUp() throws Exception {
+        int threads = 8;
+        int changesPerThread = 1000;
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            futures.add(pool.submit(() -> {
+                start.await();
+                for (int i = 0; i < changesPerThread; i++) {
+                    assertThat(service.updateStock("p-0", 1)).isNotNull();
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        assertThat(service.getProductById("p-0").getStock()).isEqualTo(100 + threads * changesPerThread);
+    }
+}
@@ -0,0 +1,68 @@
+package com.shop.backend.services.core;
+
+import com.shop.backend.models.User;
+import com.shop.backend.services.api.DuplicateUserException;
+import com.shop.backend.services.api.InvalidUserException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Invalid input and username or email conflicts on create and update
+ */
+class IndexedUserServiceTest {
+
+    private IndexedUserService userService;
+    private User alice;
+
+    @BeforeEach
+    void setUp() {
+        userService = new IndexedUserService(TestServices.inMemoryStorage());
+        userService.open();
+        alice = userService.createUser(user("alice", "alice@example.com"));
+        userService.createUser(user("bob", "bob@example.com"));
+    }
+
+    @Test
+    void createRejectsAMissingOrBlankUsername() {
+        assertThatThrownBy(() -> userService.createUser(user(null, "x@example.com")))
+                .isInstanceOf(InvalidUserException.class);
+        assertThatThrownBy(() -> userService.createUser(user("  ", "x@example.com")))
+                .isInstanceOf(InvalidUserException.class);
+    }
+
+    @Test
+    void createRejectsATakenUsernameOrEmail() {
+        assertThatThrownBy(() -> userService.createUser(user("ALICE", "other@example.com")))
+                .isInstanceOf(DuplicateUserException.class);
+        assertThatThrownBy(() -> userService.createUser(user("carol", "Bob@Example.com")))
+                .isInstanceOf(DuplicateUserException.class);
+        // The username claimed before the email check failed is free again
+        assertThat(userService.createUser(user("carol", "carol@example.com"))).isNotNull();
+    }
+
+    @Test
+    void updateTellsUnknownInvalidAndConflictingApart() {
+        assertThat(userService.updateUser("missing", user("alice2", null))).isNull();
+        assertThatThrownBy(() -> userService.updateUser(alice.getId(), user("", null)))
+                .isInstanceOf(InvalidUserException.class);
+        assertThatThrownBy(() -> userService.updateUser(alice.getId(), user("bob", null)))
+                .isInstanceOf(DuplicateUserException.class);
+        assertThatThrownBy(() -> userService.updateUser(alice.getId(), user("alice", "bob@example.com")))
+                .isInstanceOf(DuplicateUserException.class);
+
+        User renamed = userService.updateUser(alice.getId(), user("alicia", "alice@example.com"));
+        assertThat(renamed.getUsername()).isEqualTo("alicia");
+        assertThat(userService.getUserByUsername("alice")).isNull();
+    }
+
+    private static User user(String username, String email) {
+        User user = new User();
+        user.setUsername(username);
+        user.setEmail(email);
+        user.setPassword("secret");
+        return user;
+    }
+}
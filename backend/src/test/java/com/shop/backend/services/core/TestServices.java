@@ -0,0 +1,65 @@
+package com.shop.backend.services.core;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shop.backend.models.Product;
+import com.shop.backend.services.api.ProductService;
+import com.shop.backend.services.core.stock.StockReservationEngine;
+import com.shop.backend.storage.FsyncPolicy;
+import com.shop.backend.storage.StorageEngine;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * In-memory wiring of the core services for tests, without a Spring context
+ */
+final class TestServices {
+
+    private TestServices() {
+    }
+
+    static StorageEngine inMemoryStorage() {
+        return new StorageEngine(false, "data", FsyncPolicy.OS, 0, 0, new ObjectMapper().findAndRegisterModules());
+    }
+
+    /**
+     * Generate a catalog with ids "p-0" .. "p-(size-1)", spread over four categories
+     */
+    static List<Product> products(int size, int stock) {
+        List<Product> products = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            Product product = new Product("Product " + i, 1 + i % 100, "test product " + i, stock, "category-" + i % 4);
+            product.setId("p-" + i);
+            products.add(product);
+        }
+        return products;
+    }
+
+    /**
+     * Build a product service holding exactly the given products
+     */
+    static IndexedProductService productService(StockReservationEngine stockEngine, List<Product> products) {
+        IndexedProductService service =
+                new IndexedProductService(stockEngine, inMemoryStorage(), new ObjectMapper(), event -> { }, "");
+        for (Product product : products) {
+            service.createProduct(product);
+        }
+        // The catalog is not empty, so no sample products are added
+        service.open();
+        return service;
+    }
+
+    static ConcurrentCartService cartService(ProductService productService) {
+        ConcurrentCartService service = new ConcurrentCartService(productService, inMemoryStorage(), event -> { });
+        service.open();
+        return service;
+    }
+
+    static IndexedOrderService orderService(ConcurrentCartService cartService, ProductService productService,
+                                            StockReservationEngine stockEngine) {
+        IndexedOrderService service =
+                new IndexedOrderService(cartService, productService, stockEngine, inMemoryStorage(), event -> { });
+        service.open();
+        return service;
+    }
+}
@@ -0,0 +1,142 @@
+package com.shop.backend.services.core.catalog;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shop.backend.models.Product;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Writing and mapping segment files, and refusing damaged ones
+ */
+class CatalogSegmentTest {
+
+    // Header: magic, version, row count, then (offset, length) per section
+    private static final int ROWS_AT = 8;
+    private static final int SECTIONS_AT = 12;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void rowsReadBackAsWritten() throws IOException {
+        List<Product> products = products();
+        Path path = directory.resolve("catalog.seg");
+        CatalogSegment.write(path, products, objectMapper);
+
+        CatalogSegment segment = CatalogSegment.open(path, objectMapper);
+
+        assertThat(segment.size()).isEqualTo(products.size());
+        for (int row = 0; row < products.size(); row++) {
+            Product expected = products.get(row);
+            Product actual = segment.product(row);
+            assertThat(segment.id(row)).isEqualTo(expected.getId());
+            assertThat(segment.name(row)).isEqualTo(expected.getName());
+            assertThat(segment.category(row)).isEqualTo(expected.getCategory());
+            assertThat(segment.price(row)).isEqualTo(expected.getPrice());
+            assertThat(segment.stock(row)).isEqualTo(expected.getStock());
+            assertThat(actual.getId()).isEqualTo(expected.getId());
+            assertThat(actual.getDescription()).isEqualTo(expected.getDescription());
+            assertThat(actual.getImageUrl()).isEqualTo(expected.getImageUrl());
+            assertThat(actual.getCustomFields()).isEqualTo(expected.getCustomFields());
+        }
+        assertThat(Files.exists(directory.resolve("catalog.seg.tmp"))).isFalse();
+    }
+
+    @Test
+    void emptyCatalogRoundTrips() throws IOException {
+        Path path = directory.resolve("catalog.seg");
+        CatalogSegment.write(path, new ArrayList<>(), objectMapper);
+
+        assertThat(CatalogSegment.open(path, objectMapper).size()).isZero();
+    }
+
+    @Test
+    void writeReplacesAnExistingSegment() throws IOException {
+        Path path = directory.resolve("catalog.seg");
+        CatalogSegment.write(path, products(), objectMapper);
+        CatalogSegment.write(path, products().subList(0, 1), objectMapper);
+
+        CatalogSegment segment = CatalogSegment.open(path, objectMapper);
+        assertThat(segment.size()).isEqualTo(1);
+        assertThat(segment.name(0)).isEqualTo("Laptop");
+    }
+
+    @Test
+    void everyTruncationIsRefused() throws IOException {
+        byte[] image = image();
+        for (int length = 0; length < image.length; length++) {
+            Path path = directory.resolve("truncated-" + length + ".seg");
+            Files.write(path, Arrays.copyOf(image, length));
+            assertThatThrownBy(() -> CatalogSegment.open(path, objectMapper)).as("%d bytes", length)
+                    .isInstanceOf(IOException.class);
+        }
+    }
+
+    @Test
+    void damagedHeadersAreRefused() throws IOException {
+        assertRefused(image -> image.putInt(0, 0x12345678), "Not a catalog segment");
+        assertRefused(image -> image.putInt(4, 99), "Unsupported catalog segment version");
+        assertRefused(image -> image.putInt(ROWS_AT, -1), "Corrupt");
+        // Row count disagrees with the columns
+        assertRefused(image -> image.putInt(ROWS_AT, image.getInt(ROWS_AT) + 1), "Corrupt");
+        // Section running past the end of the file
+        assertRefused(image -> image.putLong(SECTIONS_AT + 8, image.capacity()), "Truncated or corrupt");
+        // Section starting inside the header
+        assertRefused(image -> image.putLong(SECTIONS_AT, 0), "Truncated or corrupt");
+    }
+
+    @Test
+    void categoryCodeOutOfRangeIsRefused() throws IOException {
+        // Category codes are the seventh section
+        assertRefused(image -> image.putInt((int) image.getLong(SECTIONS_AT + 6 * 16), 7), "Corrupt");
+    }
+
+    private void assertRefused(Consumer<ByteBuffer> damage, String message) throws IOException {
+        ByteBuffer image = ByteBuffer.wrap(image());
+        damage.accept(image);
+        Path path = Files.createTempFile(directory, "damaged", ".seg");
+        Files.write(path, image.array());
+
+        assertThatThrownBy(() -> CatalogSegment.open(path, objectMapper))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining(message);
+    }
+
+    private byte[] image() throws IOException {
+        Path path = directory.resolve("intact.seg");
+        CatalogSegment.write(path, products(), objectMapper);
+        return Files.readAllBytes(path);
+    }
+
+    private static List<Product> products() {
+        Product laptop = product("p-0", "Laptop", 1200.5, 3, "Electronics");
+        laptop.setImageUrl("https://example.com/laptop.png");
+        laptop.addCustomField("color", "grey");
+        laptop.addCustomField("ports", 4);
+        Product plain = product("p-1", "Bücher über Čaj", 0.1, 0, null);
+        plain.setDescription(null);
+        Product lamp = product("p-2", "Lamp", 35, 40, "Home");
+        Product phone = product("p-3", "Phone", 800, 15, "Electronics");
+        return List.of(laptop, plain, lamp, phone);
+    }
+
+    private static Product product(String id, String name, double price, int stock, String category) {
+        Product product = new Product(name, price, "About " + name, stock, category);
+        product.setId(id);
+        return product;
+    }
+}
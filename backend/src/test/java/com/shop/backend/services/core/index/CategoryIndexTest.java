@@ -0,0 +1,70 @@
+package com.shop.backend.services.core.index;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CategoryIndexTest {
+
+    private final CategoryIndex index = new CategoryIndex();
+
+    @Test
+    void categoriesMatchInAnyCaseAndKeepInsertionOrder() {
+        index.add("Garden", 3, "p-3");
+        index.add("GARDEN", 1, "p-1");
+        index.add("garden", 2, "p-2");
+        index.add("Kitchen", 4, "p-4");
+
+        assertThat(index.ids("gArDeN")).containsExactly("p-1", "p-2", "p-3");
+        assertThat(index.count("garden")).isEqualTo(3);
+        assertThat(index.idsBySequence("GARDEN").firstKey()).isEqualTo(1L);
+        // The first spelling added names the category
+        assertThat(index.categories()).containsExactlyInAnyOrder("Garden", "Kitchen");
+    }
+
+    @Test
+    void unknownAndNullCategoriesAreEmpty() {
+        index.add(null, 1, "p-1");
+
+        assertThat(index.ids("missing")).isEmpty();
+        assertThat(index.ids(null)).isEmpty();
+        assertThat(index.count(null)).isZero();
+        assertThat(index.categories()).isEmpty();
+    }
+
+    @Test
+    void movingAProductUpdatesBothCategories() {
+        index.add("Garden", 1, "p-1");
+        index.add("Garden", 2, "p-2");
+
+        // An update is a remove under the old category and an add under the new one
+        index.remove("garden", 2);
+        index.add("Tools", 2, "p-2");
+
+        assertThat(index.ids("Garden")).containsExactly("p-1");
+        assertThat(index.ids("Tools")).containsExactly("p-2");
+        assertThat(index.categories()).containsExactlyInAnyOrder("Garden", "Tools");
+    }
+
+    @Test
+    void removingTheLastProductDropsTheCategory() {
+        index.add("Garden", 1, "p-1");
+        index.remove("GARDEN", 1);
+        index.remove("Garden", 1);
+        index.remove("missing", 1);
+        index.remove(null, 1);
+
+        assertThat(index.categories()).isEmpty();
+        assertThat(index.count("garden")).isZero();
+
+        // A new first spelling names it again
+        index.add("GARDEN", 5, "p-5");
+        assertThat(index.categories()).containsExactly("GARDEN");
+    }
+
+    @Test
+    void foldIsTheIndexKey() {
+        assertThat(CategoryIndex.fold("Home & Garden")).isEqualTo(CategoryIndex.fold("HOME & GARDEN"));
+        assertThat(CategoryIndex.fold(null)).isNull();
+    }
+}
@@ -0,0 +1,63 @@
+package com.shop.backend.services.core.index;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PriceIndexTest {
+
+    private final PriceIndex index = new PriceIndex();
+
+    @BeforeEach
+    void setUp() {
+        index.add(20.0, 1, "p-1");
+        index.add(10.0, 2, "p-2");
+        index.add(20.0, 3, "p-3");
+        index.add(30.0, 4, "p-4");
+        index.add(0.0, 5, "p-5");
+    }
+
+    @Test
+    void rangesAreInclusiveAndOrderedByPriceThenInsertion() {
+        assertThat(index.ids(10.0, 20.0)).containsExactly("p-2", "p-1", "p-3");
+        assertThat(index.ids(20.0, 20.0)).containsExactly("p-1", "p-3");
+        assertThat(index.ids(20.01, 29.99)).isEmpty();
+        assertThat(index.range(20.0, 10.0)).isEmpty();
+    }
+
+    @Test
+    void missingBoundsLeaveTheRangeOpen() {
+        assertThat(index.range(20.0, null).values()).containsExactly("p-1", "p-3", "p-4");
+        assertThat(index.range(null, 10.0).values()).containsExactly("p-5", "p-2");
+        assertThat(index.range(null, null).values()).containsExactly("p-5", "p-2", "p-1", "p-3", "p-4");
+    }
+
+    @Test
+    void descendingViewsReverseTheWholeOrder() {
+        assertThat(new ArrayList<>(index.range(10.0, 20.0).descendingMap().values()))
+                .containsExactly("p-3", "p-1", "p-2");
+    }
+
+    @Test
+    void keysExposePriceAndSequence() {
+        PriceIndex.Key first = index.range(20.0, 20.0).firstKey();
+        assertThat(first.getPrice()).isEqualTo(20.0);
+        assertThat(first.getSequence()).isEqualTo(1L);
+    }
+
+    @Test
+    void repricingMovesTheProductAndRemovingDropsIt() {
+        // An update is a remove at the old price and an add at the new one
+        index.remove(20.0, 1);
+        index.add(35.0, 1, "p-1");
+        assertThat(index.ids(20.0, 20.0)).containsExactly("p-3");
+        assertThat(index.range(30.0, null).values()).containsExactly("p-4", "p-1");
+
+        index.remove(30.0, 4);
+        index.remove(99.0, 4);
+        assertThat(index.range(30.0, null).values()).containsExactly("p-1");
+    }
+}
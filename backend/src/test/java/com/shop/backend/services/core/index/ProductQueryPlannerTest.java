@@ -0,0 +1,150 @@
+package com.shop.backend.services.core.index;
+
+import com.shop.backend.models.Product;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Planner results must match a brute-force filter and sort, whichever
+ * index drives the query
+ */
+class ProductQueryPlannerTest {
+
+    // Above the planner's small candidate set, so large categories take the intersecting walk
+    private static final int CATALOG_SIZE = 30_000;
+
+    private final Map<String, Product> products = new HashMap<>();
+    private final Map<String, Long> sequences = new HashMap<>();
+    private final List<Product> inOrder = new ArrayList<>();
+    private final AtomicInteger resolved = new AtomicInteger();
+    private ProductQueryPlanner planner;
+
+    @BeforeEach
+    void setUp() {
+        CategoryIndex categoryIndex = new CategoryIndex();
+        PriceIndex priceIndex = new PriceIndex();
+        NameIndex nameIndex = new NameIndex();
+        Random random = new Random(7);
+        for (long sequence = 0; sequence < CATALOG_SIZE; sequence++) {
+            // "big" holds two thirds of the catalog, "rare" about one percent
+            int pick = random.nextInt(100);
+            String category = pick < 66 ? "big" : pick < 99 ? "medium-" + pick % 3 : "rare";
+            Product product = new Product("Item " + random.nextInt(5000), random.nextInt(1000), "", 1, category);
+            product.setId("p-" + sequence);
+            products.put(product.getId(), product);
+            sequences.put(product.getId(), sequence);
+            inOrder.add(product);
+            categoryIndex.add(category, sequence, product.getId());
+            priceIndex.add(product.getPrice(), sequence, product.getId());
+            nameIndex.add(product.getName(), sequence, product.getId());
+        }
+        planner = new ProductQueryPlanner(categoryIndex, priceIndex, nameIndex, id -> {
+            resolved.incrementAndGet();
+            return products.get(id);
+        }, products::size);
+    }
+
+    @Test
+    void matchesBruteForceForEveryPlan() {
+        String[] categories = {null, "big", "BIG", "rare", "medium-1", "missing"};
+        Double[][] ranges = {{null, null}, {100.0, 120.0}, {null, 500.0}, {990.0, null}, {5.0, 5.0}};
+        int[] limits = {1, 10, 1000, Integer.MAX_VALUE};
+        for (String category : categories) {
+            for (Double[] range : ranges) {
+                for (ProductQueryPlanner.SortOrder order : ProductQueryPlanner.SortOrder.values()) {
+                    for (int limit : limits) {
+                        List<Product> expected = bruteForce(category, range[0], range[1], order, limit);
+                        List<Product> actual = planner.execute(category, range[0], range[1], order, limit);
+                        assertThat(ids(actual))
+                                .as("%s %s..%s %s limit %d", category, range[0], range[1], order, limit)
+                                .isEqualTo(ids(expected));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void largeCategoryWalkResolvesOnlyMembers() {
+        resolved.set(0);
+        List<Product> result = planner.execute("big", null, null, ProductQueryPlanner.SortOrder.PRICE_ASC, 10);
+        assertThat(result).hasSize(10);
+        assertThat(resolved.get()).isEqualTo(10);
+    }
+
+    @Test
+    void zeroLimitReturnsNothing() {
+        assertThat(planner.execute(null, null, null, ProductQueryPlanner.SortOrder.NAME_ASC, 0)).isEmpty();
+    }
+
+    @Test
+    void everyPlanMatchesCategoriesLikeTheCategoryIndex() {
+        CategoryIndex categoryIndex = new CategoryIndex();
+        PriceIndex priceIndex = new PriceIndex();
+        NameIndex nameIndex = new NameIndex();
+        Map<String, Product> catalog = new HashMap<>();
+        // Lowercasing turns the final Σ into ς, so "οδοσ" is a category of its own,
+        // although equalsIgnoreCase calls it equal to "ΟΔΟΣ"
+        String[][] rows = {{"road-1", "ΟΔΟΣ", "100"}, {"road-2", "ΟΔΟΣ", "100"}, {"road-3", "ΟΔΟΣ", "100"},
+                {"other", "οδοσ", "10"}};
+        for (int sequence = 0; sequence < rows.length; sequence++) {
+            Product product = new Product(rows[sequence][0], Double.parseDouble(rows[sequence][2]), "", 1,
+                    rows[sequence][1]);
+            product.setId(rows[sequence][0]);
+            catalog.put(product.getId(), product);
+            categoryIndex.add(product.getCategory(), sequence, product.getId());
+            priceIndex.add(product.getPrice(), sequence, product.getId());
+            nameIndex.add(product.getName(), sequence, product.getId());
+        }
+        ProductQueryPlanner small = new ProductQueryPlanner(categoryIndex, priceIndex, nameIndex, catalog::get,
+                catalog::size);
+
+        for (ProductQueryPlanner.SortOrder order : ProductQueryPlanner.SortOrder.values()) {
+            // The category drives the first query, the smaller price range the second
+            assertThat(ids(small.execute("ΟΔΟΣ", null, 200.0, order, 10))).as(order.name())
+                    .containsExactlyInAnyOrder("road-1", "road-2", "road-3");
+            assertThat(small.execute("ΟΔΟΣ", 5.0, 15.0, order, 10)).as(order.name()).isEmpty();
+            assertThat(ids(small.execute("οδοσ", 5.0, 15.0, order, 10))).as(order.name()).containsExactly("other");
+        }
+    }
+
+    private List<Product> bruteForce(String category, Double minPrice, Double maxPrice,
+                                     ProductQueryPlanner.SortOrder order, int limit) {
+        Comparator<Product> primary;
+        switch (order) {
+            case PRICE_ASC:
+            case PRICE_DESC:
+                primary = Comparator.comparingDouble(Product::getPrice);
+                break;
+            default:
+                primary = Comparator.comparing(product -> product.getName().toLowerCase(Locale.ROOT));
+        }
+        Comparator<Product> ascending = primary.thenComparingLong(product -> sequences.get(product.getId()));
+        boolean descending = order == ProductQueryPlanner.SortOrder.PRICE_DESC
+                || order == ProductQueryPlanner.SortOrder.NAME_DESC;
+        return inOrder.stream()
+                .filter(product -> category == null
+                        || CategoryIndex.fold(category).equals(CategoryIndex.fold(product.getCategory())))
+                .filter(product -> minPrice == null || product.getPrice() >= minPrice)
+                .filter(product -> maxPrice == null || product.getPrice() <= maxPrice)
+                .sorted(descending ? ascending.reversed() : ascending)
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
+    private static List<String> ids(List<Product> products) {
+        return products.stream().map(Product::getId).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,187 @@
+package com.shop.backend.services.core.index;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Search results must match a brute-force substring scan ranked by the same
+ * tiers, with or without a limit
+ */
+class ProductSearchIndexTest {
+
+    private static final String[] WORDS = {
+            "laptop", "lap", "desk", "lamp", "desktop", "stand", "top", "cable", "usb-c", "charger"
+    };
+
+    private final ProductSearchIndex index = new ProductSearchIndex();
+
+    // Product id -> {name, description}, in insertion order
+    private final Map<String, String[]> documents = new LinkedHashMap<>();
+
+    @BeforeEach
+    void setUp() {
+        Random random = new Random(11);
+        for (int i = 0; i < 2_000; i++) {
+            add("p-" + i, phrase(random, 1 + random.nextInt(3)), phrase(random, random.nextInt(6)));
+        }
+    }
+
+    @Test
+    void matchesBruteForceRanking() {
+        String[] queries = {"lap", "LAPTOP", "top", "apt", "desk lamp", "usb-c", "sb-c", "stand desk", "harg",
+                "missing", "p-1"};
+        int[] limits = {1, 5, 100, Integer.MAX_VALUE};
+        for (String query : queries) {
+            for (int limit : limits) {
+                assertThat(index.search(query, limit)).as("%s limit %d", query, limit)
+                        .isEqualTo(bruteForce(query, limit));
+            }
+        }
+    }
+
+    @Test
+    void rankingFollowsTheScoreTiers() {
+        ProductSearchIndex tiers = new ProductSearchIndex();
+        tiers.index("description-inside", 0, "Mouse", "overlapping");
+        tiers.index("description-word", 1, "Mouse", "fits any laptop");
+        tiers.index("name-inside", 2, "Overlap", "");
+        tiers.index("name-word", 3, "Gaming Laptop", "");
+        tiers.index("name-prefix", 4, "Laptop Stand", "");
+        tiers.index("exact", 5, "LAP", "");
+
+        assertThat(tiers.search("lap")).containsExactly(
+                "exact", "name-prefix", "name-word", "name-inside", "description-word", "description-inside");
+        assertThat(tiers.search("lap", 2)).containsExactly("exact", "name-prefix");
+    }
+
+    @Test
+    void queriesWithoutALongEnoughWordFindNothing() {
+        assertThat(index.search("la")).isEmpty();
+        assertThat(index.search("to p")).isEmpty();
+        assertThat(index.search("")).isEmpty();
+        assertThat(index.search("--")).isEmpty();
+        assertThat(index.search(null)).isEmpty();
+        // One word long enough is looked up, the full query is still matched as a substring
+        assertThat(index.search("a lamp")).isEqualTo(bruteForce("a lamp", Integer.MAX_VALUE));
+    }
+
+    @Test
+    void limitOfZeroFindsNothing() {
+        assertThat(index.search("lap", 0)).isEmpty();
+    }
+
+    @Test
+    void reindexingAndRemovingDropStaleTerms() {
+        add("p-0", "Orchid", "purple flower");
+        assertThat(index.search("orchid")).containsExactly("p-0");
+        assertThat(index.search("purple")).containsExactly("p-0");
+
+        add("p-0", "Orchid", "white flower");
+        assertThat(index.search("purple")).isEmpty();
+        assertThat(index.search("white")).containsExactly("p-0");
+
+        index.remove("p-0");
+        documents.remove("p-0");
+        assertThat(index.search("orchid")).isEmpty();
+        assertThat(index.search("lap")).isEqualTo(bruteForce("lap", Integer.MAX_VALUE));
+        assertThat(index.size()).isEqualTo(documents.size());
+    }
+
+    private void add(String id, String name, String description) {
+        documents.remove(id);
+        documents.put(id, new String[] {name, description});
+        // Sequences follow insertion order, so a replaced product moves to the end
+        index.index(id, sequenceOf(id), name, description);
+    }
+
+    private long sequenceOf(String id) {
+        long sequence = 0;
+        for (String key : documents.keySet()) {
+            if (key.equals(id)) {
+                return sequence;
+            }
+            sequence++;
+        }
+        throw new IllegalStateException(id);
+    }
+
+    private List<String> bruteForce(String query, int limit) {
+        String q = query.toLowerCase(Locale.ROOT);
+        List<String> ids = new ArrayList<>();
+        List<Integer> tiers = new ArrayList<>();
+        boolean longWord = false;
+        for (String word : q.split("[^\\p{L}\\p{N}]+")) {
+            longWord |= word.length() >= ProductSearchIndex.MIN_FRAGMENT_LENGTH;
+        }
+        if (!longWord) {
+            return ids;
+        }
+        for (Map.Entry<String, String[]> document : documents.entrySet()) {
+            int tier = tier(document.getValue()[0].toLowerCase(Locale.ROOT),
+                    document.getValue()[1].toLowerCase(Locale.ROOT), q);
+            if (tier >= 0) {
+                ids.add(document.getKey());
+                tiers.add(tier);
+            }
+        }
+        List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < ids.size(); i++) {
+            order.add(i);
+        }
+        // Stable sort keeps insertion order within a tier
+        order.sort(Comparator.comparingInt(tiers::get));
+        List<String> result = new ArrayList<>();
+        for (int i = 0; i < order.size() && result.size() < limit; i++) {
+            result.add(ids.get(order.get(i)));
+        }
+        return result;
+    }
+
+    // 0 is the best tier, -1 means no match
+    private static int tier(String name, String description, String query) {
+        if (name.equals(query)) {
+            return 0;
+        }
+        if (name.startsWith(query)) {
+            return 1;
+        }
+        if (name.contains(query)) {
+            return startsWord(name, query) ? 2 : 3;
+        }
+        if (description.contains(query)) {
+            return startsWord(description, query) ? 4 : 5;
+        }
+        return -1;
+    }
+
+    private static boolean startsWord(String text, String query) {
+        for (int at = text.indexOf(query); at >= 0; at = text.indexOf(query, at + 1)) {
+            if (at == 0 || !Character.isLetterOrDigit(text.charAt(at - 1))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String phrase(Random random, int words) {
+        StringBuilder phrase = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            if (i > 0) {
+                phrase.append(' ');
+            }
+            String word = WORDS[random.nextInt(WORDS.length)];
+            phrase.append(random.nextBoolean() ? word.toUpperCase(Locale.ROOT) : word);
+        }
+        return phrase.toString();
+    }
+}
@@ -0,0 +1,113 @@
+package com.shop.backend.services.core.index;
+
+import com.shop.backend.models.Page;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Range pages must match a brute-force filter and sort, across partition
+ * boundaries and whether partitions are live or sealed
+ */
+class TimePartitionedIndexTest {
+
+    private static final Duration PARTITION = Duration.ofMillis(100);
+
+    @Test
+    void rangeQueriesMatchABruteForceScan() {
+        Random random = new Random(42);
+        TimePartitionedIndex<String> index = new TimePartitionedIndex<>(PARTITION);
+        List<long[]> entries = new ArrayList<>();
+        long sequence = 0;
+        // Mostly increasing times, a few late entries and many shared timestamps
+        for (long time = 0; time < 2_000; time += random.nextInt(4)) {
+            long createdAt = random.nextInt(20) == 0 ? Math.max(0, time - random.nextInt(400)) : time;
+            sequence++;
+            index.add(createdAt, sequence, createdAt + ":" + sequence);
+            entries.add(new long[] {createdAt, sequence});
+        }
+        assertThat(index.sealedPartitionCount()).isPositive();
+
+        for (int query = 0; query < 200; query++) {
+            long since = random.nextInt(2_200) - 100;
+            long until = since + random.nextInt(800);
+            int limit = 1 + random.nextInt(40);
+            assertThat(pageThrough(index, since, until, limit))
+                    .as("since %d until %d limit %d", since, until, limit)
+                    .containsExactlyElementsOf(expected(entries, since, until));
+        }
+        assertThat(pageThrough(index, Long.MIN_VALUE, Long.MAX_VALUE, 500))
+                .containsExactlyElementsOf(expected(entries, Long.MIN_VALUE, Long.MAX_VALUE));
+    }
+
+    @Test
+    void partitionsAreSealedOnceTheSecondNextOneStarts() {
+        TimePartitionedIndex<String> index = new TimePartitionedIndex<>(PARTITION);
+        index.add(10, 1, "a");
+        index.add(110, 2, "b");
+        assertThat(index.sealedPartitionCount()).isZero();
+
+        index.add(210, 3, "c");
+        assertThat(index.partitionCount()).isEqualTo(3);
+        assertThat(index.sealedPartitionCount()).isEqualTo(1);
+
+        // A late entry reopens the sealed partition and is found by the next query
+        index.add(20, 4, "late");
+        assertThat(index.sealedPartitionCount()).isZero();
+        assertThat(index.newestFirst(0, 100, null, 10).getItems()).containsExactly("late", "a");
+    }
+
+    @Test
+    void untilIsExclusiveAndSinceInclusive() {
+        TimePartitionedIndex<String> index = new TimePartitionedIndex<>(PARTITION);
+        index.add(100, 1, "start");
+        index.add(199, 2, "end");
+        index.add(200, 3, "next");
+
+        assertThat(index.newestFirst(100, 200, null, 10).getItems()).containsExactly("end", "start");
+        assertThat(index.newestFirst(200, 100, null, 10).getItems()).isEmpty();
+    }
+
+    @Test
+    void badCursorsAndLimitsAreHandled() {
+        TimePartitionedIndex<String> index = new TimePartitionedIndex<>(PARTITION);
+        index.add(5, 1, "a");
+
+        assertThat(index.newestFirst(0, 10, "not-a-cursor", 10)).isNull();
+        assertThat(index.newestFirst(0, 10, "5:x", 10)).isNull();
+        Page<String> empty = index.newestFirst(0, 10, null, 0);
+        assertThat(empty.getItems()).isEmpty();
+        assertThat(empty.getNextCursor()).isNull();
+        // A cursor past the end of the range leaves the range as it is
+        assertThat(index.newestFirst(0, 10, "1000:0", 10).getItems()).containsExactly("a");
+        assertThat(index.newestFirst(0, 5, "1000:0", 10).getItems()).isEmpty();
+    }
+
+    private static List<String> pageThrough(TimePartitionedIndex<String> index, long since, long until, int limit) {
+        List<String> all = new ArrayList<>();
+        String cursor = null;
+        do {
+            Page<String> page = index.newestFirst(since, until, cursor, limit);
+            assertThat(page.getItems()).hasSizeLessThanOrEqualTo(limit);
+            all.addAll(page.getItems());
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+        return all;
+    }
+
+    private static List<String> expected(List<long[]> entries, long since, long until) {
+        List<String> result = new ArrayList<>();
+        entries.stream()
+                .filter(entry -> entry[0] >= since && entry[0] < until)
+                .sorted(Comparator.<long[]>comparingLong(entry -> entry[0])
+                        .thenComparingLong(entry -> entry[1]).reversed())
+                .forEach(entry -> result.add(entry[0] + ":" + entry[1]));
+        return result;
+    }
+}
@@ -0,0 +1,163 @@
+package com.shop.backend.services.core.stock;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Buyers race for two scarce products through reservations and direct
+ * adjustments; stock must never go negative and every unit must be
+ * accounted for as sold, returned or still available
+ */
+class StockReservationEngineConcurrencyTest {
+
+    private static final int THREADS = 16;
+    private static final int ROUNDS = 2000;
+    private static final int INITIAL_STOCK = 500;
+    private static final String[] PRODUCTS = {"hot-1", "hot-2"};
+
+    private StockReservationEngine engine;
+    private ExecutorService pool;
+
+    @BeforeEach
+    void setUp() {
+        engine = new StockReservationEngine();
+        for (String product : PRODUCTS) {
+            engine.track(product, INITIAL_STOCK);
+        }
+        pool = Executors.newFixedThreadPool(THREADS + 1);
+    }
+
+    @AfterEach
+    void tearDown() {
+        pool.shutdownNow();
+        engine.shutdown();
+    }
+
+    @Test
+    void racingReservationsNeverOversellOrLoseASale() throws Exception {
+        AtomicLong[] sold = {new AtomicLong(), new AtomicLong()};
+        AtomicLong[] added = {new AtomicLong(), new AtomicLong()};
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicLong negativeReadings = new AtomicLong();
+        CountDownLatch start = new CountDownLatch(1);
+
+        Future<?> monitor = pool.submit(() -> {
+            start.await();
+            while (running.get()) {
+                for (String product : PRODUCTS) {
+                    if (engine.available(product) < 0) {
+                        negativeReadings.incrementAndGet();
+                    }
+                }
+            }
+            return null;
+        });
+        List<Future<?>> buyers = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            buyers.add(pool.submit(() -> {
+                start.await();
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < ROUNDS; i++) {
+                    int first = random.nextInt(1, 4);
+                    int second = random.nextInt(0, 3);
+                    switch (random.nextInt(4)) {
+                        case 0:
+                        case 1:
+                            reserveAndFinish(first, second, random.nextBoolean(), sold);
+                            break;
+                        case 2:
+                            // Direct sale, e.g. an admin stock correction
+                            if (engine.adjust(PRODUCTS[0], -first) != null) {
+                                sold[0].addAndGet(first);
+                            }
+                            break;
+                        default:
+                            if (random.nextInt(10) == 0) {
+                                engine.adjust(PRODUCTS[1], first);
+                                added[1].addAndGet(first);
+                            }
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> buyer : buyers) {
+            buyer.get(60, TimeUnit.SECONDS);
+        }
+        running.set(false);
+        monitor.get(10, TimeUnit.SECONDS);
+
+        assertThat(negativeReadings.get()).isZero();
+        assertThat(engine.pendingReservations()).isZero();
+        for (int p = 0; p < PRODUCTS.length; p++) {
+            assertThat(engine.available(PRODUCTS[p]))
+                    .as(PRODUCTS[p])
+                    .isEqualTo(INITIAL_STOCK + added[p].get() - sold[p].get())
+                    .isGreaterThanOrEqualTo(0);
+        }
+        // Demand far exceeds stock, so the race must actually have sold something
+        assertThat(sold[0].get()).isGreaterThan(0);
+    }
+
+    @Test
+    void expiredReservationReturnsStockAndCannotBeConfirmed() throws Exception {
+        StockReservation reservation = engine.reserve(Map.of(PRODUCTS[0], 5), Duration.ofMillis(20));
+        assertThat(reservation).isNotNull();
+        assertThat(engine.available(PRODUCTS[0])).isEqualTo(INITIAL_STOCK - 5);
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (reservation.getState() == StockReservation.State.PENDING && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertThat(reservation.getState()).isEqualTo(StockReservation.State.RELEASED);
+        assertThat(engine.confirm(reservation.getId())).isFalse();
+        assertThat(engine.available(PRODUCTS[0])).isEqualTo(INITIAL_STOCK);
+    }
+
+    @Test
+    void shortLineReservesNothing() {
+        Map<String, Integer> quantities = new LinkedHashMap<>();
+        quantities.put(PRODUCTS[0], 1);
+        quantities.put(PRODUCTS[1], INITIAL_STOCK + 1);
+        assertThat(engine.reserve(quantities, Duration.ofMinutes(1))).isNull();
+        assertThat(engine.available(PRODUCTS[0])).isEqualTo(INITIAL_STOCK);
+        assertThat(engine.available(PRODUCTS[1])).isEqualTo(INITIAL_STOCK);
+    }
+
+    private void reserveAndFinish(int first, int second, boolean buy, AtomicLong[] sold) {
+        Map<String, Integer> quantities = new LinkedHashMap<>();
+        quantities.put(PRODUCTS[0], first);
+        if (second > 0) {
+            quantities.put(PRODUCTS[1], second);
+        }
+        StockReservation reservation = engine.reserve(quantities, Duration.ofMinutes(1));
+        if (reservation == null) {
+            return;
+        }
+        if (buy) {
+            assertThat(engine.confirm(reservation.getId())).isTrue();
+            sold[0].addAndGet(first);
+            sold[1].addAndGet(second);
+        } else {
+            assertThat(engine.release(reservation.getId())).isTrue();
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package com.shop.backend.storage;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.BiConsumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Log truncation after snapshots and recovery from the previous snapshot
+ */
+class StorageEngineTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void snapshotsDropLogSegmentsOlderThanThePreviousSnapshot() throws IOException {
+        StorageEngine storage = storage();
+        MapStore store = new MapStore();
+        MutationLog log = storage.attach(store);
+
+        put(storage, log, store, "a", "1");
+        storage.snapshotAll();
+        // The first snapshot has no fallback, so the whole log is kept
+        assertThat(segments()).hasSize(2);
+
+        put(storage, log, store, "b", "2");
+        storage.snapshotAll();
+        put(storage, log, store, "c", "3");
+        storage.snapshotAll();
+        // Only the segments since the previous snapshot remain
+        assertThat(segments()).hasSize(2);
+        assertThat(segments()).doesNotContain("test.wal.0");
+        storage.close();
+
+        assertThat(recover().values).containsExactly(Map.entry("a", "1"), Map.entry("b", "2"), Map.entry("c", "3"));
+    }
+
+    @Test
+    void corruptSnapshotFallsBackToThePreviousOneAndItsLog() throws IOException {
+        StorageEngine storage = storage();
+        MapStore store = new MapStore();
+        MutationLog log = storage.attach(store);
+        put(storage, log, store, "a", "1");
+        storage.snapshotAll();
+        put(storage, log, store, "b", "2");
+        storage.snapshotAll();
+        put(storage, log, store, "c", "3");
+        log.append(Mutation.delete("a"));
+        store.values.remove("a");
+        // Writes a final snapshot, leaving the previous one as the fallback
+        storage.close();
+
+        corrupt(directory.resolve("test.snap"));
+
+        MapStore recovered = recover();
+        assertThat(recovered.values).containsExactly(Map.entry("b", "2"), Map.entry("c", "3"));
+        assertThat(directory.resolve("test.snap.corrupt")).exists();
+    }
+
+    @Test
+    void recoveryFailsRatherThanLoseDataWhenNoSnapshotIsUsable() throws IOException {
+        StorageEngine storage = storage();
+        MapStore store = new MapStore();
+        MutationLog log = storage.attach(store);
+        put(storage, log, store, "a", "1");
+        storage.snapshotAll();
+        put(storage, log, store, "b", "2");
+        storage.snapshotAll();
+        storage.close();
+
+        corrupt(directory.resolve("test.snap"));
+        corrupt(directory.resolve("test.snap.prev"));
+
+        assertThatThrownBy(this::recover).isInstanceOf(StorageException.class);
+    }
+
+    @Test
+    void singleFileLogBecomesTheFirstSegment() throws IOException {
+        try (WriteAheadLog legacy = new WriteAheadLog(directory.resolve("old.wal"), FsyncPolicy.OS)) {
+            legacy.append(Mutation.put("k", "\"v\"".getBytes()));
+        }
+        Files.move(directory.resolve("old.wal.0"), directory.resolve("test.wal"));
+
+        assertThat(recover().values).containsExactly(Map.entry("k", "v"));
+        assertThat(directory.resolve("test.wal.0")).exists();
+    }
+
+    private StorageEngine storage() {
+        return new StorageEngine(true, directory.toString(), FsyncPolicy.EVERY_WRITE, 50, 0, new ObjectMapper());
+    }
+
+    private MapStore recover() {
+        StorageEngine storage = storage();
+        MapStore store = new MapStore();
+        try {
+            storage.attach(store);
+        } finally {
+            storage.close();
+        }
+        return store;
+    }
+
+    private static void put(StorageEngine storage, MutationLog log, MapStore store, String key, String value) {
+        store.values.put(key, value);
+        log.append(Mutation.put(key, storage.encode(value)));
+    }
+
+    // Flip a byte inside the last chunk so its checksum no longer matches
+    private static void corrupt(Path snapshot) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(snapshot.toFile(), "rw")) {
+            long at = file.length() - 16;
+            file.seek(at);
+            int value = file.read();
+            file.seek(at);
+            file.write(value ^ 0xFF);
+        }
+    }
+
+    private List<String> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.startsWith("test.wal."))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * String store kept in a sorted map
+     */
+    private static final class MapStore implements DurableStore<String> {
+        private final Map<String, String> values = new TreeMap<>();
+
+        @Override
+        public String storeName() {
+            return "test";
+        }
+
+        @Override
+        public Class<String> entityType() {
+            return String.class;
+        }
+
+        @Override
+        public void restore(String key, String value) {
+            values.put(key, value);
+        }
+
+        @Override
+        public void discard(String key) {
+            values.remove(key);
+        }
+
+        @Override
+        public void snapshot(BiConsumer<String, String> sink) {
+            new TreeMap<>(values).forEach(sink);
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package com.shop.backend.storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Appends that fail part way must not leave a torn frame in front of later
+ * records
+ */
+class WriteAheadLogTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void tornAppendIsCutOffSoLaterRecordsReplay() throws IOException {
+        TornChannel[] channel = new TornChannel[1];
+        try (WriteAheadLog log = new WriteAheadLog(directory.resolve("test.wal"), FsyncPolicy.OS,
+                file -> channel[0] = new TornChannel(file))) {
+            log.append(put("a"));
+            long end = log.position();
+
+            channel[0].tearNextWrite = true;
+            assertThatThrownBy(() -> log.append(put("torn"))).isInstanceOf(StorageException.class);
+            assertThat(log.position()).isEqualTo(end);
+
+            log.append(put("b"));
+        }
+
+        assertThat(replay()).containsExactly("a", "b");
+    }
+
+    @Test
+    void logThatCannotCutOffATornAppendRefusesLaterOnes() throws IOException {
+        TornChannel[] channel = new TornChannel[1];
+        try (WriteAheadLog log = new WriteAheadLog(directory.resolve("test.wal"), FsyncPolicy.OS,
+                file -> channel[0] = new TornChannel(file))) {
+            log.append(put("a"));
+            channel[0].tearNextWrite = true;
+            channel[0].failTruncate = true;
+            assertThatThrownBy(() -> log.append(put("torn"))).isInstanceOf(StorageException.class);
+
+            channel[0].failTruncate = false;
+            assertThatThrownBy(() -> log.append(put("b")))
+                    .isInstanceOf(StorageException.class)
+                    .hasMessageContaining("refuses appends");
+            assertThatThrownBy(log::rotate).isInstanceOf(StorageException.class);
+        }
+
+        // Only the acknowledged record survives; the torn tail is dropped on replay
+        assertThat(replay()).containsExactly("a");
+    }
+
+    @Test
+    void failedForceAlsoTakesTheRecordBack() throws IOException {
+        TornChannel[] channel = new TornChannel[1];
+        try (WriteAheadLog log = new WriteAheadLog(directory.resolve("test.wal"), FsyncPolicy.EVERY_WRITE,
+                file -> channel[0] = new TornChannel(file))) {
+            log.append(put("a"));
+            channel[0].failForce = true;
+            assertThatThrownBy(() -> log.append(put("unsynced"))).isInstanceOf(StorageException.class);
+            channel[0].failForce = false;
+            log.append(put("b"));
+        }
+
+        assertThat(replay()).containsExactly("a", "b");
+    }
+
+    private List<String> replay() throws IOException {
+        List<String> keys = new ArrayList<>();
+        try (WriteAheadLog log = new WriteAheadLog(directory.resolve("test.wal"), FsyncPolicy.OS)) {
+            log.replay(0, mutation -> keys.add(mutation.getKey()));
+        }
+        return keys;
+    }
+
+    private static Mutation put(String key) {
+        return Mutation.put(key, ("value of " + key).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * A real file channel that can be told to write half a buffer and then
+     * fail, to fail truncation, or to fail forcing
+     */
+    private static final class TornChannel extends FileChannel {
+        private final FileChannel file;
+        private boolean tearNextWrite;
+        private boolean failTruncate;
+        private boolean failForce;
+
+        private TornChannel(Path path) throws IOException {
+            file = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            if (tearNextWrite) {
+                tearNextWrite = false;
+                ByteBuffer half = src.duplicate();
+                half.limit(src.position() + src.remaining() / 2);
+                src.position(src.position() + file.write(half));
+                throw new IOException("device removed");
+            }
+            return file.write(src);
+        }
+
+        @Override
+        public FileChannel truncate(long size) throws IOException {
+            if (failTruncate) {
+                throw new IOException("device removed");
+            }
+            file.truncate(size);
+            return this;
+        }
+
+        @Override
+        public void force(boolean metaData) throws IOException {
+            if (failForce) {
+                throw new IOException("fsync failed");
+            }
+            file.force(metaData);
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            return file.read(dst);
+        }
+
+        @Override
+        public long read(ByteBuffer[] dsts, int offset, int length) throws IOException {
+            return file.read(dsts, offset, length);
+        }
+
+        @Override
+        public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+            return file.write(srcs, offset, length);
+        }
+
+        @Override
+        public long position() throws IOException {
+            return file.position();
+        }
+
+        @Override
+        public FileChannel position(long newPosition) throws IOException {
+            file.position(newPosition);
+            return this;
+        }
+
+        @Override
+        public long size() throws IOException {
+            return file.size();
+        }
+
+        @Override
+        public long transferTo(long position, long count, WritableByteChannel target) throws IOException {
+            return file.transferTo(position, count, target);
+        }
+
+        @Override
+        public long transferFrom(ReadableByteChannel src, long position, long count) throws IOException {
+            return file.transferFrom(src, position, count);
+        }
+
+        @Override
+        public int read(ByteBuffer dst, long position) throws IOException {
+            return file.read(dst, position);
+        }
+
+        @Override
+        public int write(ByteBuffer src, long position) throws IOException {
+            return file.write(src, position);
+        }
+
+        @Override
+        public MappedByteBuffer map(MapMode mode, long position, long size) throws IOException {
+            return file.map(mode, position, size);
+        }
+
+        @Override
+        public FileLock lock(long position, long size, boolean shared) throws IOException {
+            return file.lock(position, size, shared);
+        }
+
+        @Override
+        public FileLock tryLock(long position, long size, boolean shared) throws IOException {
+            return file.tryLock(position, size, shared);
+        }
+
+        @Override
+        protected void implCloseChannel() throws IOException {
+            file.close();
+        }
+    }
+}